@@ -8,6 +8,11 @@ class Car {
 	 */
 	private String name;
 
+	/**
+	 * Dense id of the car given out by a SymbolTable, or -1 if the car has none.
+	 */
+	private int id;
+
 	/**
 	 * Reference to the next car in the train.
 	 */
@@ -18,12 +23,37 @@ class Car {
 	 */
 	private Car previous;
 
+	/**
+	 * The train that last placed this car, which may have since let it go.
+	 */
+	private Train train;
+
+	/**
+	 * The position this car was given on that train.
+	 */
+	private int position = -1;
+
+	/**
+	 * The people currently in this car.
+	 */
+	private UniqueList<Person> occupants = new UniqueList<>();
+
 	/**
 	 * Constructor for the Car class. Initializes the car's name.
 	 * @param name The name of the car.
 	 */
 	public Car(String name) {
+		this(name, -1);
+	}
+	
+	/**
+	 * Constructor for the Car class. Initializes the car's name and id.
+	 * @param name The name of the car.
+	 * @param id The dense id of the car.
+	 */
+	public Car(String name, int id) {
 		this.name = name;
+		this.id = id;
 	}
 	
 	/**
@@ -32,7 +62,10 @@ class Car {
 	 */
 	public Car getNext() {
 		//returns the next car after this one
-		//O(1)
+		//O(1), or O(log n) for a car whose train keeps its order (see Train.ordersCar)
+		if(train != null && train.ordersCar(this)) {
+			return train.nextOf(this);
+		}
 		return this.next;
 	}
 	
@@ -42,7 +75,10 @@ class Car {
 	 */
 	public Car getPrevious() {
 		//returns the car before this one
-		//O(1)
+		//O(1), or O(log n) for a car whose train keeps its order
+		if(train != null && train.ordersCar(this)) {
+			return train.previousOf(this);
+		}
 		return this.previous;
 	}
 	
@@ -52,7 +88,10 @@ class Car {
 	 */
 	public void setNext(Car next) {
 		//sets the car after this one to next (the parameter)
-		//O(1)
+		//O(1), linking a car by hand takes it out of any train that keeps its order
+		if(train != null && train.ordersCar(this)) {
+			train.release(this);
+		}
 		this.next = next;
 	}
 	
@@ -62,7 +101,10 @@ class Car {
 	 */
 	public void setPrevious(Car previous) {
 		//sets the car before this one to previous (the parameter)
-		//O(1)
+		//O(1), linking a car by hand takes it out of any train that keeps its order
+		if(train != null && train.ordersCar(this)) {
+			train.release(this);
+		}
 		this.previous = previous;
 	}
 	
@@ -76,15 +118,153 @@ class Car {
 		return name;
 	}
 
+	/**
+	 * Gets the dense id of the car.
+	 * @return The id of the car, or -1 if it has none.
+	 */
+	public int getId() {
+		//O(1)
+		return id;
+	}
+	
+	/**
+	 * Gets the train this car is on.
+	 * @return The train, or null if the car is not on a train.
+	 */
+	public Train getTrain() {
+		//O(1), the train that placed the car checks that it still holds it,
+		//or O(log n) for a car whose train keeps its order
+		return train == null ? null : train.ownerOf(this);
+	}
+	
+	/**
+	 * Gets the position of this car on its train.
+	 * @return The position (0 being the front car), or -1 if the car is not on a train.
+	 */
+	public int getPosition() {
+		//O(1), or O(log n) for a car whose train keeps its order
+		return getTrain() != null ? getIndexedPosition() : -1;
+	}
+	
+	/**
+	 * Gets the position this car was last given by a train, even if that train has let it go.
+	 * @return The last position given to this car.
+	 */
+	int getIndexedPosition() {
+		//O(1), or O(log n) for a car whose train keeps its order
+		if(train != null && train.ordersCar(this)) {
+			return train.rankOf(this);
+		}
+		return position;
+	}
+	
+	/**
+	 * Records which train placed this car and at what position.
+	 * @param train The train the car was placed on.
+	 * @param position The position of the car on that train.
+	 */
+	public void setTrain(Train train, int position) {
+		//O(1)
+		this.train = train;
+		this.position = position;
+	}
+	
+	/**
+	 * Gets the people currently in this car. The list is live, so callers that keep it
+	 * around should clone it.
+	 * @return The occupants of this car.
+	 */
+	public UniqueList<Person> getOccupants() {
+		//O(1)
+		return occupants;
+	}
+	
+	/**
+	 * Records that a person is now in this car.
+	 * @param p The person that entered the car.
+	 * @return Boolean stating whether the person was added.
+	 */
+	public boolean addOccupant(Person p) {
+		//O(1) average, plus O(log n) to tell the train when the car stops being empty
+		if(!occupants.append(p)) {
+			return false;
+		}
+		if(occupants.size() == 1) {
+			occupancyChanged();
+		}
+		return true;
+	}
+	
+	/**
+	 * Records that a person has left this car.
+	 * @param p The person that left the car.
+	 * @return Boolean stating whether the person was in the car.
+	 */
+	public boolean removeOccupant(Person p) {
+		//O(1) average, plus O(log n) to tell the train when the car becomes empty
+		if(!occupants.remove(p)) {
+			return false;
+		}
+		if(occupants.size() == 0) {
+			occupancyChanged();
+		}
+		return true;
+	}
+	
+	/**
+	 * Tells the train this car is on that the car went from empty to occupied or back.
+	 */
+	private void occupancyChanged() {
+		//O(log n)
+		if(train != null && (train.ordersCar(this) || train.holds(this))) {
+			train.occupancyChanged(this);
+		}
+	}
+
+	/**
+	 * Attaches a counter that the lookups of this car's occupants are recorded in.
+	 * @param probes The counter, or null to stop counting.
+	 */
+	void countProbes(ProbeCounter probes) {
+		occupants.countProbes(probes);
+	}
+
+	/**
+	 * Forgets every occupant of this car, for when the world is being restored.
+	 */
+	void clearOccupants() {
+		//O(1) plus O(log n) to tell the train
+		boolean wasOccupied = occupants.size() > 0;
+		ProbeCounter probes = occupants.getProbeCounter();
+		occupants = new UniqueList<>();
+		occupants.countProbes(probes);
+		if(wasOccupied) {
+			occupancyChanged();
+		}
+	}
+
 	/**
 	  * Checks if this cars name is equal to the name of another car.
 	  * @param o The object to be checked.
 	  * @return Boolean indicating whether or not the names are equal.
 	  */
 	public boolean equals(Object o) {
-		//two cars are equal if they have the same name
-		//O(1)
-		return this.name.equals(o.toString());
+		//two cars are equal if they have the same name, ids only help find cars
+		//and can not tell apart cars named by different symbol tables
+		//O(1) for the same car, otherwise O(k) where k=the length of the name
+		if(this == o) {
+			return true;
+		}
+		return o != null && this.name.equals(o.toString());
+	}
+	
+	/**
+	 * Hash code for car that matches equals by hashing the name of the car.
+	 * @return The hash code of the car's name.
+	 */
+	public int hashCode() {
+		//O(1), strings cache their hash code
+		return name.hashCode();
 	}
 	
 	/**
@@ -121,6 +301,11 @@ class Car {
 			System.out.println("Yay 3");
 		}
 		
+		if(new Car("C1", 0).equals(new Car("C1", 0)) && !new Car("C1", 0).equals(new Car("C2", 1)) && new Car("C1", 0).equals(c1)
+				&& !new Car("C1", 0).equals(new Car("X", 0)) && new Car("C1", 0).hashCode() == new Car("C1", 7).hashCode()) {
+			System.out.println("Yay 4");
+		}
+		
 		c1.printAscii();
 	}
 	
@@ -140,32 +325,40 @@ class Car {
 		   o   o  
 		*/
 		
-		Car current = this;
-		while(current != null) {
-			System.out.print(" _________");
-			current = current.getNext();
-		}
-		System.out.println();
-		
-		current = this;
-		while(current != null) {
-			System.out.print(" | "+String.format("%-5s",current.getName())+" |");
-			current = current.getNext();
-		}
-		System.out.println();
-		
-		current = this;
-		while(current != null) {
-			System.out.print("-|_______|");
-			current = current.getNext();
+		StringBuilder rows = new StringBuilder();
+		renderAscii(rows);
+		System.out.print(rows);
+	}
+	
+	/**
+	 * Appends the four rows printAscii prints for this car and the cars after it to a buffer.
+	 * @param out The buffer to append to.
+	 */
+	public void renderAscii(StringBuilder out) {
+		//O(n) where n=the number of cars from this one on, one walk builds all four rows
+		StringBuilder top = new StringBuilder();
+		StringBuilder names = new StringBuilder();
+		StringBuilder bottom = new StringBuilder();
+		StringBuilder wheels = new StringBuilder();
+		for(Car current = this; current != null; current = current.getNext()) {
+			top.append(" _________");
+			appendName(names, current.getName());
+			bottom.append("-|_______|");
+			wheels.append("   o   o  ");
 		}
-		System.out.println();
-		
-		current = this;
-		while(current != null) {
-			System.out.print("   o   o  ");
-			current = current.getNext();
+		out.append(top).append('\n').append(names).append('\n').append(bottom).append('\n').append(wheels).append('\n');
+	}
+	
+	/**
+	 * Appends the middle row of a car, the name padded to five characters, without String.format.
+	 * @param out The buffer to append to.
+	 * @param name The name of the car.
+	 */
+	static void appendName(StringBuilder out, String name) {
+		out.append(" | ").append(name);
+		for(int i = name.length(); i < 5; i++) {
+			out.append(' ');
 		}
-		System.out.println();
+		out.append(" |");
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,434 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates train and people log files in the format Simulator reads. The generator
+ * keeps its own model of every train, decoupled chain and person, so every
+ * disconnect, connect and move it writes is legal when the logs are replayed.
+ * Usage: java CaseGenerator [TrainFile] [PeopleFile] [--seed N] [--trains N] [--cars N]
+ * [--people N] [--minutes N] [--moves N] [--churn X]
+ */
+class CaseGenerator {
+
+	/**
+	 * The last minute that can be written as a "HH:MM" time (99:59).
+	 */
+	static final int MAX_MINUTES = 99 * 60 + 59;
+
+	/**
+	 * A run of coupled cars, either on a train or decoupled.
+	 */
+	private static class Chain {
+
+		/**
+		 * The train the cars are on, or -1 for a decoupled chain.
+		 */
+		private int train;
+
+		/**
+		 * The ids of the cars from front to back.
+		 */
+		private int[] cars = new int[4];
+
+		/**
+		 * The number of cars in the chain.
+		 */
+		private int size = 0;
+
+		/**
+		 * Constructor for the chain class.
+		 * @param train The train the chain is on, or -1 for a decoupled chain.
+		 */
+		Chain(int train) {
+			this.train = train;
+		}
+	}
+
+	/**
+	 * The seed for all random choices.
+	 */
+	private final long seed;
+
+	/**
+	 * The number of trains.
+	 */
+	private final int trainCount;
+
+	/**
+	 * The number of cars.
+	 */
+	private final int carCount;
+
+	/**
+	 * The number of people.
+	 */
+	private final int peopleCount;
+
+	/**
+	 * The number of minutes with actions.
+	 */
+	private final int minutes;
+
+	/**
+	 * The number of person moves attempted each minute.
+	 */
+	private final int movesPerMinute;
+
+	/**
+	 * The average number of connect/disconnect actions each minute.
+	 */
+	private final double churn;
+
+	/**
+	 * The chain each car is in, indexed by car id.
+	 */
+	private Chain[] chainOf;
+
+	/**
+	 * The position of each car in its chain, indexed by car id.
+	 */
+	private int[] indexOf;
+
+	/**
+	 * The chain on each train, indexed by train id.
+	 */
+	private Chain[] trains;
+
+	/**
+	 * The decoupled chains.
+	 */
+	private Chain[] decoupled;
+
+	/**
+	 * The number of decoupled chains.
+	 */
+	private int decoupledCount;
+
+	/**
+	 * The number of cars that are on trains (not decoupled).
+	 */
+	private int carsOnTrains;
+
+	/**
+	 * The car each person is in, indexed by person id.
+	 */
+	private int[] personCar;
+
+	/**
+	 * The number of train actions written.
+	 */
+	private long trainActions = 0;
+
+	/**
+	 * The number of person moves written.
+	 */
+	private long personMoves = 0;
+
+	/**
+	 * Constructor for the generator.
+	 * @param seed The seed for all random choices.
+	 * @param trains The number of trains.
+	 * @param cars The number of cars (at least one per train).
+	 * @param people The number of people.
+	 * @param minutes The number of minutes with actions (at most MAX_MINUTES).
+	 * @param movesPerMinute The number of person moves attempted each minute.
+	 * @param churn The average number of connect/disconnect actions each minute.
+	 */
+	public CaseGenerator(long seed, int trains, int cars, int people, int minutes, int movesPerMinute, double churn) {
+		if(trains < 1 || cars < trains) {
+			throw new IllegalArgumentException("Need at least one train and one car per train");
+		}
+		if(minutes < 0 || minutes > MAX_MINUTES) {
+			throw new IllegalArgumentException("Minutes must be between 0 and " + MAX_MINUTES);
+		}
+		this.seed = seed;
+		this.trainCount = trains;
+		this.carCount = cars;
+		this.peopleCount = people;
+		this.minutes = minutes;
+		this.movesPerMinute = movesPerMinute;
+		this.churn = churn;
+	}
+
+	/**
+	 * Writes the train and people logs.
+	 * @param trainFile The file to write the train log to.
+	 * @param peopleFile The file to write the people log to.
+	 * @throws IOException if writing fails.
+	 */
+	public void write(File trainFile, File peopleFile) throws IOException {
+		Random random = new Random(seed);
+		try(Writer train = new BufferedWriter(new FileWriter(trainFile), 1 << 16);
+				Writer people = new BufferedWriter(new FileWriter(peopleFile), 1 << 16)) {
+			writeInitialTrains(train, random);
+			writeInitialPeople(people, random);
+			StringBuilder trainBlock = new StringBuilder();
+			StringBuilder peopleBlock = new StringBuilder();
+			for(int minute = 1; minute <= minutes; minute++) {
+				trainBlock.setLength(0);
+				peopleBlock.setLength(0);
+				int actions = (int)churn + (random.nextDouble() < churn - (int)churn ? 1 : 0);
+				for(int i = 0; i < actions; i++) {
+					trainAction(trainBlock, random);
+				}
+				for(int i = 0; i < movesPerMinute; i++) {
+					personMove(peopleBlock, random);
+				}
+				writeBlock(train, minute, trainBlock);
+				writeBlock(people, minute, peopleBlock);
+			}
+		}
+	}
+
+	/**
+	 * Writes the logs to temporary files that are deleted when the program ends, for
+	 * the checks that replay a case both in Simulator and in another way.
+	 * @return The train log and then the people log.
+	 * @throws IOException if writing fails.
+	 */
+	File[] writeTemporary() throws IOException {
+		File trainFile = File.createTempFile("trains", ".txt");
+		File peopleFile = File.createTempFile("people", ".txt");
+		trainFile.deleteOnExit();
+		peopleFile.deleteOnExit();
+		write(trainFile, peopleFile);
+		return new File[] {trainFile, peopleFile};
+	}
+
+	/**
+	 * Copies a log to a temporary file and appends a block to the copy, for checking
+	 * how a case with a bad block fails.
+	 * @param log The log to copy.
+	 * @param block The block to append, with its time line and closing blank line.
+	 * @return The copy.
+	 * @throws IOException if copying fails.
+	 */
+	static File withBlock(File log, String block) throws IOException {
+		File copy = temporaryLog("");
+		Files.copy(log.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Files.writeString(copy.toPath(), block, StandardOpenOption.APPEND);
+		return copy;
+	}
+
+	/**
+	 * Writes a small hand-made log to a temporary file that is deleted when the program ends.
+	 * @param text The whole log.
+	 * @return The log.
+	 * @throws IOException if writing fails.
+	 */
+	static File temporaryLog(String text) throws IOException {
+		File log = File.createTempFile("log", ".txt");
+		log.deleteOnExit();
+		Files.writeString(log.toPath(), text);
+		return log;
+	}
+
+	/**
+	 * Spreads the cars over the trains and writes the initial train section.
+	 * @param out The train log.
+	 * @param random The source of random choices.
+	 * @throws IOException if writing fails.
+	 */
+	private void writeInitialTrains(Writer out, Random random) throws IOException {
+		chainOf = new Chain[carCount];
+		indexOf = new int[carCount];
+		trains = new Chain[trainCount];
+		decoupled = new Chain[16];
+		decoupledCount = 0;
+		carsOnTrains = carCount;
+		for(int t = 0; t < trainCount; t++) {
+			trains[t] = new Chain(t);
+		}
+		//every train gets a car, the rest are spread at random
+		for(int c = 0; c < carCount; c++) {
+			append(trains[c < trainCount ? c : random.nextInt(trainCount)], c);
+		}
+		StringBuilder line = new StringBuilder();
+		for(Chain t : trains) {
+			line.setLength(0);
+			line.append('T').append(t.train);
+			for(int i = 0; i < t.size; i++) {
+				line.append(" C").append(t.cars[i]);
+			}
+			out.append(line).append('\n');
+		}
+		out.append('\n');
+	}
+
+	/**
+	 * Places every person in a random car and writes the initial people section.
+	 * @param out The people log.
+	 * @param random The source of random choices.
+	 * @throws IOException if writing fails.
+	 */
+	private void writeInitialPeople(Writer out, Random random) throws IOException {
+		personCar = new int[peopleCount];
+		for(int p = 0; p < peopleCount; p++) {
+			personCar[p] = random.nextInt(carCount);
+			out.append('P').append(Integer.toString(p)).append(" C").append(Integer.toString(personCar[p])).append('\n');
+		}
+		out.append('\n');
+	}
+
+	/**
+	 * Writes a "HH:MM" block followed by a blank line, unless the block is empty.
+	 * @param out The log to write to.
+	 * @param minute The time of the block in minutes since midnight.
+	 * @param block The actions of the block, one per line.
+	 * @throws IOException if writing fails.
+	 */
+	private static void writeBlock(Writer out, int minute, StringBuilder block) throws IOException {
+		if(block.length() == 0) {
+			return;
+		}
+		out.append(String.format("%02d:%02d", minute / 60, minute % 60)).append('\n');
+		out.append(block).append('\n');
+	}
+
+	/**
+	 * Picks and applies one connect or disconnect action.
+	 * @param block The block the action is written to.
+	 * @param random The source of random choices.
+	 */
+	private void trainAction(StringBuilder block, Random random) {
+		if(decoupledCount > 0 && (random.nextBoolean() || carsOnTrains == 0)) {
+			//connect a decoupled chain to the back of a random train
+			int d = random.nextInt(decoupledCount);
+			Chain chain = decoupled[d];
+			decoupled[d] = decoupled[--decoupledCount];
+			decoupled[decoupledCount] = null;
+			Chain t = trains[random.nextInt(trainCount)];
+			block.append('T').append(t.train).append(" connect C").append(chain.cars[0]).append('\n');
+			for(int i = 0; i < chain.size; i++) {
+				append(t, chain.cars[i]);
+			}
+			carsOnTrains += chain.size;
+			trainActions++;
+		}
+		else if(carsOnTrains > 0) {
+			//disconnect a random car (and every car behind it) from a train that has cars
+			Chain t;
+			do {
+				t = trains[random.nextInt(trainCount)];
+			} while(t.size == 0);
+			int at = random.nextInt(t.size);
+			block.append('T').append(t.train).append(" disconnect C").append(t.cars[at]).append('\n');
+			Chain chain = new Chain(-1);
+			for(int i = at; i < t.size; i++) {
+				append(chain, t.cars[i]);
+			}
+			t.size = at;
+			carsOnTrains -= chain.size;
+			if(decoupledCount == decoupled.length) {
+				decoupled = Arrays.copyOf(decoupled, decoupledCount * 2);
+			}
+			decoupled[decoupledCount++] = chain;
+			trainActions++;
+		}
+	}
+
+	/**
+	 * Moves a random person to a car next to theirs, if there is one.
+	 * @param block The block the move is written to.
+	 * @param random The source of random choices.
+	 */
+	private void personMove(StringBuilder block, Random random) {
+		if(peopleCount == 0) {
+			return;
+		}
+		int p = random.nextInt(peopleCount);
+		int from = personCar[p];
+		Chain chain = chainOf[from];
+		int at = indexOf[from];
+		boolean canGoBack = at > 0;
+		boolean canGoForward = at < chain.size - 1;
+		if(!canGoBack && !canGoForward) {
+			return;
+		}
+		boolean back = canGoBack && (!canGoForward || random.nextBoolean());
+		int to = chain.cars[back ? at - 1 : at + 1];
+		personCar[p] = to;
+		block.append('P').append(p).append(" C").append(from).append(" C").append(to).append('\n');
+		personMoves++;
+	}
+
+	/**
+	 * Adds a car to the back of a chain.
+	 * @param chain The chain.
+	 * @param car The id of the car.
+	 */
+	private void append(Chain chain, int car) {
+		if(chain.size == chain.cars.length) {
+			chain.cars = Arrays.copyOf(chain.cars, chain.size * 2);
+		}
+		chainOf[car] = chain;
+		indexOf[car] = chain.size;
+		chain.cars[chain.size++] = car;
+	}
+
+	/**
+	 * Gets the number of connect and disconnect actions written by the last call to write.
+	 * @return The number of train actions.
+	 */
+	public long getTrainActions() {
+		return trainActions;
+	}
+
+	/**
+	 * Gets the number of person moves written by the last call to write.
+	 * @return The number of person moves.
+	 */
+	public long getPersonMoves() {
+		return personMoves;
+	}
+
+	/**
+	 * Main method, generates a case from the command line.
+	 * @param args command line arguments.
+	 */
+	public static void main(String[] args) {
+		if(args.length < 2) {
+			System.err.println("Usage: java CaseGenerator [TrainFile] [PeopleFile] [--seed N] [--trains N] [--cars N] [--people N] [--minutes N] [--moves N] [--churn X]");
+			return;
+		}
+		long seed = 1;
+		int trains = 4;
+		int cars = 40;
+		int people = 100;
+		int minutes = 60;
+		int moves = 10;
+		double churn = 0.5;
+		try {
+			for(int i = 2; i + 1 < args.length; i += 2) {
+				String value = args[i + 1];
+				switch(args[i]) {
+					case "--seed": seed = Long.parseLong(value); break;
+					case "--trains": trains = Integer.parseInt(value); break;
+					case "--cars": cars = Integer.parseInt(value); break;
+					case "--people": people = Integer.parseInt(value); break;
+					case "--minutes": minutes = Integer.parseInt(value); break;
+					case "--moves": moves = Integer.parseInt(value); break;
+					case "--churn": churn = Double.parseDouble(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			CaseGenerator generator = new CaseGenerator(seed, trains, cars, people, minutes, moves, churn);
+			generator.write(new File(args[0]), new File(args[1]));
+			System.out.println("Wrote " + generator.getTrainActions() + " train actions and " + generator.getPersonMoves() + " person moves");
+		}
+		catch(IOException e) {
+			System.out.println("Invalid file");
+		}
+		catch(IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,298 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs many independent murder cases at once, each in its own Simulator. A case is a
+ * train log, a people log, a murder car and a murder time. Cases come from a manifest
+ * file with one "TrainFile PeopleFile Car HH:MM" line per case (paths relative to the
+ * manifest), or from a directory whose sub-directories each hold train.txt, people.txt
+ * and queries.txt with one "Car HH:MM" line per case. Cases run on virtual threads
+ * when the JVM has them and on a fixed pool of platform threads otherwise.
+ * Usage: java CaseRunner [--threads N] [--open-files N] [ManifestOrDirectory] [ResultsFile]
+ */
+class CaseRunner {
+
+	/**
+	 * The number of files every running case keeps mapped.
+	 */
+	private static final int FILES_PER_CASE = 2;
+
+	/**
+	 * One case to run.
+	 */
+	static class Case {
+
+		/**
+		 * The train log.
+		 */
+		private final File trainFile;
+
+		/**
+		 * The people log.
+		 */
+		private final File peopleFile;
+
+		/**
+		 * The name of the murder car.
+		 */
+		private final String car;
+
+		/**
+		 * The time of the murder.
+		 */
+		private final String time;
+
+		/**
+		 * Constructor for the case class.
+		 * @param trainFile The train log.
+		 * @param peopleFile The people log.
+		 * @param car The name of the murder car.
+		 * @param time The time of the murder.
+		 */
+		Case(File trainFile, File peopleFile, String car, String time) {
+			this.trainFile = trainFile;
+			this.peopleFile = peopleFile;
+			this.car = car;
+			this.time = time;
+		}
+
+		/**
+		 * Gets the case as it would be written in a manifest.
+		 * @return The case.
+		 */
+		public String toString() {
+			return trainFile + " " + peopleFile + " " + car + " " + time;
+		}
+	}
+
+	/**
+	 * The number of platform threads to use when there are no virtual threads (0 for one per processor).
+	 */
+	private final int threads;
+
+	/**
+	 * Limits how many running cases hold their log files at once. Each case closes
+	 * its logs when it ends, but a closed mapping is only unmapped when it is garbage
+	 * collected, so this bounds the mappings in use rather than the ones still alive.
+	 */
+	private final Semaphore openFiles;
+
+	/**
+	 * The number of cases that failed in the last run.
+	 */
+	private int errors = 0;
+
+	/**
+	 * Constructor for the case runner.
+	 * @param threads The number of platform threads to use without virtual threads (0 for one per processor).
+	 * @param maxOpenFiles The most log files running cases may hold at once.
+	 */
+	public CaseRunner(int threads, int maxOpenFiles) {
+		if(maxOpenFiles < FILES_PER_CASE) {
+			throw new IllegalArgumentException("Every case needs " + FILES_PER_CASE + " open files");
+		}
+		this.threads = threads;
+		this.openFiles = new Semaphore(maxOpenFiles);
+	}
+
+	/**
+	 * Reads the cases from a manifest file or a directory of case directories.
+	 * @param source The manifest or directory.
+	 * @return The cases, in order.
+	 * @throws IOException if reading fails.
+	 */
+	public static List<Case> readCases(File source) throws IOException {
+		List<Case> cases = new ArrayList<>();
+		if(!source.isDirectory()) {
+			File base = source.getAbsoluteFile().getParentFile();
+			LogReader manifest = new LogReader(source);
+			while(manifest.nextLine()) {
+				if(manifest.isBlank()) {
+					continue;
+				}
+				if(manifest.tokenCount() != 4) {
+					throw new IOException("Manifest lines need a train file, a people file, a car and a time");
+				}
+				cases.add(new Case(resolve(base, manifest.token(0)), resolve(base, manifest.token(1)),
+						manifest.token(2), manifest.token(3)));
+			}
+			manifest.close();
+			return cases;
+		}
+		File[] dirs = source.listFiles(File::isDirectory);
+		Arrays.sort(dirs);
+		for(File dir : dirs) {
+			File queries = new File(dir, "queries.txt");
+			if(!queries.isFile()) {
+				continue;
+			}
+			LogReader reader = new LogReader(queries);
+			while(reader.nextLine()) {
+				if(!reader.isBlank()) {
+					cases.add(new Case(new File(dir, "train.txt"), new File(dir, "people.txt"), reader.token(0), reader.token(1)));
+				}
+			}
+			reader.close();
+		}
+		return cases;
+	}
+
+	/**
+	 * Resolves a manifest path against the manifest's directory.
+	 * @param base The directory of the manifest.
+	 * @param path The path from the manifest.
+	 * @return The file.
+	 */
+	private static File resolve(File base, String path) {
+		File f = new File(path);
+		return f.isAbsolute() ? f : new File(base, path);
+	}
+
+	/**
+	 * Runs one case in its own simulator.
+	 * @param c The case.
+	 * @return The result line: the suspects, or the error the case failed with.
+	 * @throws InterruptedException if interrupted while waiting for files.
+	 */
+	private String runCase(Case c) throws InterruptedException {
+		openFiles.acquire(FILES_PER_CASE);
+		Simulator s = null;
+		try {
+			s = new Simulator(c.trainFile, c.peopleFile);
+			UniqueList<Person> suspects = s.simulate(c.car, c.time, false);
+			if(suspects.size() == 0) {
+				return "OK\tNo suspects!";
+			}
+			StringBuilder line = new StringBuilder("OK\t");
+			for(Person p : suspects) {
+				line.append(p).append(' ');
+			}
+			line.setLength(line.length() - 1);
+			return line.toString();
+		}
+		catch(IOException e) {
+			return "ERROR\tInvalid file";
+		}
+		catch(RuntimeException e) {
+			return "ERROR\t" + e.getMessage();
+		}
+		finally {
+			//a case that fails part way still lets go of its logs
+			if(s != null) {
+				s.close();
+			}
+			openFiles.release(FILES_PER_CASE);
+		}
+	}
+
+	/**
+	 * Makes the executor the cases run on: one virtual thread per case when the JVM
+	 * has virtual threads, a fixed pool of platform threads otherwise.
+	 * @return The executor.
+	 */
+	private ExecutorService newExecutor() {
+		try {
+			//looked up at run time so the runner still builds and runs on JVMs without virtual threads
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException e) {
+			int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+			return Executors.newFixedThreadPool(n);
+		}
+	}
+
+	/**
+	 * Runs every case and writes one result line per case, in the order of the cases.
+	 * @param cases The cases.
+	 * @param results The file to write the results to.
+	 * @throws IOException if writing the results fails.
+	 * @throws InterruptedException if interrupted while waiting for the cases.
+	 */
+	public void run(List<Case> cases, File results) throws IOException, InterruptedException {
+		ExecutorService executor = newExecutor();
+		List<Future<String>> outcomes = new ArrayList<>(cases.size());
+		try {
+			for(Case c : cases) {
+				outcomes.add(executor.submit(() -> runCase(c)));
+			}
+			errors = 0;
+			try(Writer out = new BufferedWriter(new FileWriter(results), 1 << 16)) {
+				for(int i = 0; i < cases.size(); i++) {
+					String outcome;
+					try {
+						outcome = outcomes.get(i).get();
+					}
+					catch(ExecutionException e) {
+						outcome = "ERROR\t" + e.getCause();
+					}
+					if(outcome.startsWith("ERROR")) {
+						errors++;
+					}
+					out.append(cases.get(i).toString()).append('\t').append(outcome).append('\n');
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Gets the number of cases that failed in the last run.
+	 * @return The number of errors.
+	 */
+	public int getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Main method, runs the cases named on the command line.
+	 * @param args command line arguments.
+	 */
+	public static void main(String[] args) {
+		int threads = 0;
+		int maxOpenFiles = 256;
+		int first = 0;
+		try {
+			while(first + 1 < args.length && args[first].startsWith("--")) {
+				switch(args[first]) {
+					case "--threads": threads = Integer.parseInt(args[first + 1]); break;
+					case "--open-files": maxOpenFiles = Integer.parseInt(args[first + 1]); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[first]);
+				}
+				first += 2;
+			}
+			if(args.length - first != 2) {
+				System.err.println("Usage: java CaseRunner [--threads N] [--open-files N] [ManifestOrDirectory] [ResultsFile]");
+				return;
+			}
+			List<Case> cases = readCases(new File(args[first]));
+			CaseRunner runner = new CaseRunner(threads, maxOpenFiles);
+			long start = System.nanoTime();
+			runner.run(cases, new File(args[first + 1]));
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("Ran %d cases (%d errors) in %.3f s, %.1f cases/s%n",
+					cases.size(), runner.getErrors(), seconds, cases.size() / seconds);
+		}
+		catch(IOException e) {
+			System.out.println("Invalid file");
+		}
+		catch(InterruptedException e) {
+			System.out.println("Interrupted");
+		}
+		catch(IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+}
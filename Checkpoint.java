@@ -0,0 +1,300 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A compact copy of the simulated world taken between two blocks of actions. Cars,
+ * trains and people are stored by their dense ids, along with where both logs were
+ * being read, so the simulator can restore the world and carry on replaying from there.
+ */
+class Checkpoint {
+
+	/**
+	 * Shared empty array for cars and chains with nothing in them.
+	 */
+	private static final int[] NONE = new int[0];
+
+	/**
+	 * The time of the last block applied before the checkpoint (-1 if none was).
+	 */
+	private final int time;
+
+	/**
+	 * The number of actions applied before the checkpoint.
+	 */
+	private final long actions;
+
+	/**
+	 * The offset of the next line of the train log.
+	 */
+	private final long trainOffset;
+
+	/**
+	 * The offset of the next line of the people log.
+	 */
+	private final long peopleOffset;
+
+	/**
+	 * The time of the next block of train actions (-1 if there are none left).
+	 */
+	private final int nextTrainTime;
+
+	/**
+	 * The time of the next block of person actions (-1 if there are none left).
+	 */
+	private final int nextPersonTime;
+
+	/**
+	 * The car ids of each train from front to back, indexed by train id.
+	 */
+	private final int[][] trains;
+
+	/**
+	 * The car ids of each decoupled chain from front to back, in decoupledCars order.
+	 */
+	private final int[][] chains;
+
+	/**
+	 * The person ids in each car in boarding order, indexed by car id.
+	 */
+	private final int[][] occupants;
+
+	/**
+	 * Constructor for the checkpoint class.
+	 * @param time The time of the last block applied (-1 if none was).
+	 * @param actions The number of actions applied.
+	 * @param trainOffset The offset of the next line of the train log.
+	 * @param peopleOffset The offset of the next line of the people log.
+	 * @param nextTrainTime The time of the next block of train actions.
+	 * @param nextPersonTime The time of the next block of person actions.
+	 * @param trains The car ids of each train, indexed by train id.
+	 * @param chains The car ids of each decoupled chain.
+	 * @param occupants The person ids in each car, indexed by car id.
+	 */
+	Checkpoint(int time, long actions, long trainOffset, long peopleOffset, int nextTrainTime, int nextPersonTime,
+			int[][] trains, int[][] chains, int[][] occupants) {
+		this.time = time;
+		this.actions = actions;
+		this.trainOffset = trainOffset;
+		this.peopleOffset = peopleOffset;
+		this.nextTrainTime = nextTrainTime;
+		this.nextPersonTime = nextPersonTime;
+		this.trains = trains;
+		this.chains = chains;
+		this.occupants = occupants;
+	}
+
+	/**
+	 * Gets the car ids of a chain of cars starting at a car.
+	 * @param first The first car of the chain (may be null).
+	 * @param length The number of cars in the chain, or -1 if it is not known.
+	 * @return The car ids from front to back.
+	 */
+	static int[] idsOf(Car first, int length) {
+		//O(n) where n=the length of the chain
+		if(length < 0) {
+			length = 0;
+			for(Car c = first; c != null; c = c.getNext()) {
+				length++;
+			}
+		}
+		if(length == 0) {
+			return NONE;
+		}
+		int[] ids = new int[length];
+		int i = 0;
+		for(Car c = first; i < length; c = c.getNext()) {
+			ids[i++] = c.getId();
+		}
+		return ids;
+	}
+
+	/**
+	 * Gets the car ids of a train, walking the train itself rather than the cars'
+	 * neighbors, which a TreapTrain answers in O(log n) each.
+	 * @param t The train (may be null).
+	 * @return The car ids from front to back.
+	 */
+	static int[] idsOf(Train t) {
+		//O(n) where n=the number of cars on the train
+		if(t == null || t.size() == 0) {
+			return NONE;
+		}
+		int[] ids = new int[t.size()];
+		int i = 0;
+		for(Car c : t) {
+			ids[i++] = c.getId();
+		}
+		return ids;
+	}
+
+	/**
+	 * Gets the ids of the people in a car in boarding order.
+	 * @param people The occupants of the car.
+	 * @return The person ids.
+	 */
+	static int[] idsOf(UniqueList<Person> people) {
+		//O(n) where n=the number of people
+		if(people.size() == 0) {
+			return NONE;
+		}
+		int[] ids = new int[people.size()];
+		int i = 0;
+		for(Person p : people) {
+			ids[i++] = p.getId();
+		}
+		return ids;
+	}
+
+	/**
+	 * Gets the time of the last block applied before the checkpoint.
+	 * @return The time in minutes since midnight, or -1 if no block was applied.
+	 */
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets the number of actions applied before the checkpoint.
+	 * @return The number of actions.
+	 */
+	public long getActions() {
+		return actions;
+	}
+
+	/**
+	 * Gets the offset of the next line of the train log.
+	 * @return The offset.
+	 */
+	public long getTrainOffset() {
+		return trainOffset;
+	}
+
+	/**
+	 * Gets the offset of the next line of the people log.
+	 * @return The offset.
+	 */
+	public long getPeopleOffset() {
+		return peopleOffset;
+	}
+
+	/**
+	 * Gets the time of the next block of train actions.
+	 * @return The time in minutes since midnight, or -1 if there are none left.
+	 */
+	public int getNextTrainTime() {
+		return nextTrainTime;
+	}
+
+	/**
+	 * Gets the time of the next block of person actions.
+	 * @return The time in minutes since midnight, or -1 if there are none left.
+	 */
+	public int getNextPersonTime() {
+		return nextPersonTime;
+	}
+
+	/**
+	 * Gets the car ids of each train from front to back.
+	 * @return The car ids, indexed by train id.
+	 */
+	public int[][] getTrains() {
+		return trains;
+	}
+
+	/**
+	 * Gets the car ids of each decoupled chain from front to back.
+	 * @return The car ids, in decoupledCars order.
+	 */
+	public int[][] getChains() {
+		return chains;
+	}
+
+	/**
+	 * Gets the ids of the people in each car in boarding order.
+	 * @return The person ids, indexed by car id.
+	 */
+	public int[][] getOccupants() {
+		return occupants;
+	}
+
+	/**
+	 * Writes the checkpoint to a file.
+	 * @param file The file to write to.
+	 * @throws IOException if writing fails.
+	 */
+	public void write(File file) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(time);
+			out.writeLong(actions);
+			out.writeLong(trainOffset);
+			out.writeLong(peopleOffset);
+			out.writeInt(nextTrainTime);
+			out.writeInt(nextPersonTime);
+			writeTable(out, trains);
+			writeTable(out, chains);
+			writeTable(out, occupants);
+		}
+	}
+
+	/**
+	 * Reads a checkpoint written by write.
+	 * @param file The file to read from.
+	 * @return The checkpoint.
+	 * @throws IOException if reading fails.
+	 */
+	public static Checkpoint read(File file) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			int time = in.readInt();
+			long actions = in.readLong();
+			long trainOffset = in.readLong();
+			long peopleOffset = in.readLong();
+			int nextTrainTime = in.readInt();
+			int nextPersonTime = in.readInt();
+			int[][] trains = readTable(in);
+			int[][] chains = readTable(in);
+			int[][] occupants = readTable(in);
+			return new Checkpoint(time, actions, trainOffset, peopleOffset, nextTrainTime, nextPersonTime, trains, chains, occupants);
+		}
+	}
+
+	/**
+	 * Writes rows of ids, each preceded by its length.
+	 * @param out The stream to write to.
+	 * @param table The rows.
+	 * @throws IOException if writing fails.
+	 */
+	private static void writeTable(DataOutputStream out, int[][] table) throws IOException {
+		out.writeInt(table.length);
+		for(int[] row : table) {
+			out.writeInt(row.length);
+			for(int id : row) {
+				out.writeInt(id);
+			}
+		}
+	}
+
+	/**
+	 * Reads rows of ids written by writeTable.
+	 * @param in The stream to read from.
+	 * @return The rows.
+	 * @throws IOException if reading fails.
+	 */
+	private static int[][] readTable(DataInputStream in) throws IOException {
+		int[][] table = new int[in.readInt()][];
+		for(int i = 0; i < table.length; i++) {
+			int length = in.readInt();
+			int[] row = length == 0 ? NONE : new int[length];
+			for(int j = 0; j < length; j++) {
+				row[j] = in.readInt();
+			}
+			table[i] = row;
+		}
+		return table;
+	}
+}
@@ -0,0 +1,246 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Keeps the checkpoints of one simulation in the order they were taken. Checkpoints
+ * are held in memory, or written to a directory when one is given so that only their
+ * times stay in memory.
+ */
+class CheckpointStore {
+
+	/**
+	 * A checkpoint is taken once this many actions have been applied since the last one (0 to ignore).
+	 */
+	private final int everyActions;
+
+	/**
+	 * A checkpoint is taken once this many minutes have passed since the last one (0 to ignore).
+	 */
+	private final int everyMinutes;
+
+	/**
+	 * The directory checkpoints are written to, or null to keep them in memory.
+	 */
+	private final File directory;
+
+	/**
+	 * The time of each checkpoint, in the order they were taken.
+	 */
+	private int[] times = new int[16];
+
+	/**
+	 * The number of actions applied before each checkpoint.
+	 */
+	private long[] actions = new long[16];
+
+	/**
+	 * The checkpoints kept in memory (empty when they are written to disk).
+	 */
+	private Checkpoint[] kept = new Checkpoint[16];
+
+	/**
+	 * The number of checkpoints.
+	 */
+	private int size = 0;
+
+	/**
+	 * Constructor for the checkpoint store.
+	 * @param everyActions Take a checkpoint after this many actions (0 to ignore).
+	 * @param everyMinutes Take a checkpoint after this many minutes (0 to ignore).
+	 * @param directory The directory to write checkpoints to, or null to keep them in memory.
+	 */
+	CheckpointStore(int everyActions, int everyMinutes, File directory) {
+		if(everyActions <= 0 && everyMinutes <= 0) {
+			throw new IllegalArgumentException("Checkpoints need an action or minute interval");
+		}
+		if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalArgumentException("Can not create checkpoint directory " + directory);
+		}
+		this.everyActions = everyActions;
+		this.everyMinutes = everyMinutes;
+		this.directory = directory;
+	}
+
+	/**
+	 * Checks whether a checkpoint is due. Only a simulation that has gone past the
+	 * newest checkpoint can be due, so replaying from a checkpoint never takes it again.
+	 * @param time The time of the last block applied.
+	 * @param applied The number of actions applied so far.
+	 * @return Boolean stating whether a checkpoint should be added.
+	 */
+	public boolean isDue(int time, long applied) {
+		//O(1)
+		if(size == 0) {
+			return true;
+		}
+		int last = size - 1;
+		if(applied <= actions[last]) {
+			return false;
+		}
+		return (everyActions > 0 && applied - actions[last] >= everyActions)
+				|| (everyMinutes > 0 && time - times[last] >= everyMinutes);
+	}
+
+	/**
+	 * Adds a checkpoint taken after the newest one.
+	 * @param cp The checkpoint.
+	 */
+	public void add(Checkpoint cp) {
+		if(size == times.length) {
+			times = Arrays.copyOf(times, size * 2);
+			actions = Arrays.copyOf(actions, size * 2);
+			kept = Arrays.copyOf(kept, size * 2);
+		}
+		if(directory == null) {
+			kept[size] = cp;
+		}
+		else {
+			try {
+				cp.write(fileOf(size));
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		times[size] = cp.getTime();
+		actions[size] = cp.getActions();
+		size++;
+	}
+
+	/**
+	 * Finds the newest checkpoint taken at or before a time.
+	 * @param time The time in minutes since midnight.
+	 * @return The index of the checkpoint, or -1 if there is none.
+	 */
+	public int latestAtOrBefore(int time) {
+		//O(log n), checkpoints are taken in time order
+		int low = 0;
+		int high = size - 1;
+		int found = -1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(times[mid] <= time) {
+				found = mid;
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Gets the number of actions applied before a checkpoint.
+	 * @param index The index of the checkpoint.
+	 * @return The number of actions.
+	 */
+	public long actionsAt(int index) {
+		return actions[index];
+	}
+
+	/**
+	 * Gets a checkpoint, reading it back from disk if needed.
+	 * @param index The index of the checkpoint.
+	 * @return The checkpoint.
+	 */
+	public Checkpoint get(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("No checkpoint " + index);
+		}
+		if(directory == null) {
+			return kept[index];
+		}
+		try {
+			return Checkpoint.read(fileOf(index));
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Gets the number of checkpoints.
+	 * @return The number of checkpoints.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the file a checkpoint is written to.
+	 * @param index The index of the checkpoint.
+	 * @return The file.
+	 */
+	private File fileOf(int index) {
+		return new File(directory, "checkpoint-" + index + ".bin");
+	}
+
+	/**
+	 * Moves a simulation with checkpoints back and forth and compares its suspects
+	 * with fresh simulations.
+	 * @param logs The train log and the people log.
+	 * @param directory The directory to write checkpoints to, or null to keep them in memory.
+	 * @return Boolean stating whether every answer matched and checkpoints were taken.
+	 * @throws IOException if the logs can not be read.
+	 */
+	private static boolean matchesFresh(File[] logs, File directory) throws IOException {
+		int[] times = {60, 10, 35, 0, 59, 20, 45, 5};
+		Simulator s = new Simulator(logs[0], logs[1]);
+		s.enableCheckpoints(0, 10, directory);
+		boolean same = true;
+		for(int time : times) {
+			s.moveTo(time);
+			String clock = String.format("%02d:%02d", time / 60, time % 60);
+			for(int c = 0; c < 24; c += 4) {
+				same = same && Simulator.describe(s.getMurderSuspects("C" + c)).equals(Simulator.expectedSuspects(logs[0], logs[1], "C" + c, clock));
+			}
+		}
+		same = same && s.getCheckpointCount() > 1;
+		s.close();
+		return same;
+	}
+
+	/**
+	 * Main method.
+	 * @param args command line arguments.
+	 * @throws IOException if the temporary files can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File[] logs = new CaseGenerator(10, 3, 24, 40, 60, 6, 1.0).writeTemporary();
+		if(matchesFresh(logs, null)) {
+			System.out.println("Yay 1");
+		}
+		File directory = Files.createTempDirectory("checkpoints").toFile();
+		boolean same = matchesFresh(logs, directory);
+		//checkpoints read back from disk hold what was written
+		CheckpointStore store = new CheckpointStore(5, 0, directory);
+		int[][] trains = {{0, 2}, {1}};
+		int[][] chains = {{3}};
+		int[][] occupants = {{0}, {}, {1, 2}, {}};
+		store.add(new Checkpoint(7, 12, 40, 50, 9, 8, trains, chains, occupants));
+		Checkpoint back = store.get(0);
+		same = same && back.getTime() == 7 && back.getActions() == 12 && back.getNextTrainTime() == 9 && back.getNextPersonTime() == 8
+				&& Arrays.deepEquals(back.getTrains(), trains) && Arrays.deepEquals(back.getChains(), chains) && Arrays.deepEquals(back.getOccupants(), occupants);
+		for(File f : directory.listFiles()) {
+			f.delete();
+		}
+		directory.delete();
+		if(same) {
+			System.out.println("Yay 2");
+		}
+
+		//only a simulation past the newest checkpoint by an interval is due
+		store = new CheckpointStore(5, 10, null);
+		boolean due = store.isDue(0, 0);
+		store.add(new Checkpoint(0, 0, 0, 0, 1, 1, trains, chains, occupants));
+		due = due && !store.isDue(3, 4) && store.isDue(3, 5) && store.isDue(10, 1);
+		store.add(new Checkpoint(10, 6, 0, 0, 11, 11, trains, chains, occupants));
+		if(due && !store.isDue(10, 6) && store.latestAtOrBefore(-1) == -1 && store.latestAtOrBefore(9) == 0 && store.latestAtOrBefore(30) == 1) {
+			System.out.println("Yay 3");
+		}
+	}
+}
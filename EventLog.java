@@ -0,0 +1,612 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A train log and a people log compiled into one binary file, so a case can be
+ * loaded with a single mmap instead of parsing text. The file holds a fixed header,
+ * the car, train and person names (ids are their positions), the initial positions,
+ * every block of actions by id in the order Simulator applies them, and a sparse
+ * index from times to block offsets. Numbers are unsigned varints except in the
+ * header and the index, which use fixed size ints so they can be read in place.
+ * Usage: java EventLog [TrainFile] [PeopleFile] [OutFile]
+ *    or: java EventLog --test
+ */
+class EventLog {
+
+	/**
+	 * The first four bytes of every event log ("TRNB").
+	 */
+	private static final int MAGIC = 0x54524E42;
+
+	/**
+	 * The version of the format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The size of the header in bytes.
+	 */
+	private static final int HEADER_SIZE = 32;
+
+	/**
+	 * Every this many blocks get an entry in the time index.
+	 */
+	private static final int INDEX_STRIDE = 64;
+
+	/**
+	 * Marks a block of train actions.
+	 */
+	static final int TRAIN_BLOCK = 0;
+
+	/**
+	 * Marks a block of person actions.
+	 */
+	static final int PERSON_BLOCK = 1;
+
+	/**
+	 * Marks a connect action (anything else in the text log is a disconnect).
+	 */
+	static final int CONNECT = 1;
+
+	/**
+	 * Marks a disconnect action.
+	 */
+	static final int DISCONNECT = 0;
+
+	/**
+	 * The mapped file.
+	 */
+	private MappedByteBuffer buffer;
+
+	/**
+	 * The offset of the next byte to read.
+	 */
+	private int position;
+
+	/**
+	 * The offset of the initial positions.
+	 */
+	private final int initialOffset;
+
+	/**
+	 * The offset of the first block of actions.
+	 */
+	private final int eventsOffset;
+
+	/**
+	 * The offset of the time index, which is also the end of the blocks.
+	 */
+	private final int indexOffset;
+
+	/**
+	 * The number of blocks of actions.
+	 */
+	private final int blockCount;
+
+	/**
+	 * The number of entries in the time index.
+	 */
+	private final int indexCount;
+
+	/**
+	 * The car names, indexed by id.
+	 */
+	private final String[] carNames;
+
+	/**
+	 * The train names, indexed by id.
+	 */
+	private final String[] trainNames;
+
+	/**
+	 * The person names, indexed by id.
+	 */
+	private final String[] personNames;
+
+	/**
+	 * Maps an event log into memory and reads its names.
+	 * @param file The event log.
+	 * @throws IOException if the file can not be mapped or is not an event log.
+	 */
+	public EventLog(File file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long length = channel.size();
+			if(length > Integer.MAX_VALUE) {
+				throw new IOException("File " + file + " is too large to map");
+			}
+			if(length < HEADER_SIZE) {
+				throw new IOException("File " + file + " is not an event log");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+		}
+		if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("File " + file + " is not an event log");
+		}
+		initialOffset = buffer.getInt(12);
+		eventsOffset = buffer.getInt(16);
+		indexOffset = buffer.getInt(20);
+		blockCount = buffer.getInt(24);
+		indexCount = buffer.getInt(28);
+		position = buffer.getInt(8);
+		carNames = readNames();
+		trainNames = readNames();
+		personNames = readNames();
+	}
+
+	/**
+	 * Creates a second reader of the same mapped event log, for reading it on
+	 * another thread. The mapping and the names are shared, the position is not.
+	 * @param other The reader to share the mapping of.
+	 */
+	EventLog(EventLog other) {
+		buffer = other.buffer;
+		initialOffset = other.initialOffset;
+		eventsOffset = other.eventsOffset;
+		indexOffset = other.indexOffset;
+		blockCount = other.blockCount;
+		indexCount = other.indexCount;
+		position = other.buffer.getInt(8);
+		carNames = other.carNames;
+		trainNames = other.trainNames;
+		personNames = other.personNames;
+	}
+
+	/**
+	 * Reads a count followed by that many names.
+	 * @return The names.
+	 */
+	private String[] readNames() {
+		String[] names = new String[readVarint()];
+		for(int i = 0; i < names.length; i++) {
+			byte[] bytes = new byte[readVarint()];
+			buffer.get(position, bytes);
+			position += bytes.length;
+			names[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return names;
+	}
+
+	/**
+	 * Reads an unsigned varint and moves past it.
+	 * @return The number.
+	 */
+	public int readVarint() {
+		//O(1), at most five bytes
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get(position++);
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while(b < 0);
+		return value;
+	}
+
+	/**
+	 * Reads one byte and moves past it.
+	 * @return The byte, from 0 to 255.
+	 */
+	public int readByte() {
+		return buffer.get(position++) & 0xFF;
+	}
+
+	/**
+	 * Gets the time of the next block without moving past it.
+	 * @return The time in minutes since midnight, or -1 if there are no blocks left.
+	 */
+	public int blockTime() {
+		if(position >= indexOffset) {
+			return -1;
+		}
+		int at = position;
+		int time = readVarint();
+		position = at;
+		return time;
+	}
+
+	/**
+	 * Moves to the initial positions.
+	 */
+	public void startInitial() {
+		position = initialOffset;
+	}
+
+	/**
+	 * Moves to the first block of actions.
+	 */
+	public void startEvents() {
+		position = eventsOffset;
+	}
+
+	/**
+	 * Moves to the indexed block nearest before the first block at or after a time,
+	 * so that a forward scan from there finds every block from that time on.
+	 * @param time The time in minutes since midnight.
+	 */
+	public void seekTime(int time) {
+		//O(log n) where n=the number of index entries
+		int low = 0;
+		int high = indexCount - 1;
+		int found = -1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(buffer.getInt(indexOffset + mid * 8) < time) {
+				found = mid;
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		position = found == -1 ? eventsOffset : buffer.getInt(indexOffset + found * 8 + 4);
+	}
+
+	/**
+	 * Gets the offset of the next byte to read, which can be passed to seek later.
+	 * @return The offset.
+	 */
+	public long position() {
+		return position;
+	}
+
+	/**
+	 * Moves to an offset returned by position().
+	 * @param offset The offset.
+	 */
+	public void seek(long offset) {
+		if(offset < eventsOffset || offset > indexOffset) {
+			throw new IllegalArgumentException("Offset " + offset + " is not in the blocks");
+		}
+		position = (int)offset;
+	}
+
+	/**
+	 * Gets the number of blocks of actions.
+	 * @return The number of blocks.
+	 */
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * Gets the number of car names.
+	 * @return The number of cars.
+	 */
+	public int carCount() {
+		return carNames.length;
+	}
+
+	/**
+	 * Gets the name of a car.
+	 * @param id The id of the car.
+	 * @return The name.
+	 */
+	public String carName(int id) {
+		return carNames[id];
+	}
+
+	/**
+	 * Gets the number of train names.
+	 * @return The number of trains.
+	 */
+	public int trainCount() {
+		return trainNames.length;
+	}
+
+	/**
+	 * Gets the name of a train.
+	 * @param id The id of the train.
+	 * @return The name.
+	 */
+	public String trainName(int id) {
+		return trainNames[id];
+	}
+
+	/**
+	 * Gets the number of person names.
+	 * @return The number of people.
+	 */
+	public int personCount() {
+		return personNames.length;
+	}
+
+	/**
+	 * Gets the name of a person.
+	 * @param id The id of the person.
+	 * @return The name.
+	 */
+	public String personName(int id) {
+		return personNames[id];
+	}
+
+	/**
+	 * Releases the mapped file.
+	 */
+	public void close() {
+		//the mapping itself is unmapped when it is garbage collected
+		buffer = null;
+	}
+
+	/**
+	 * Compiles a train log and a people log into an event log. Names are given ids
+	 * in the order Simulator would intern them, and blocks are written in the order
+	 * Simulator would apply them (train blocks first when the times are equal).
+	 * @param trainFile The train log.
+	 * @param peopleFile The people log.
+	 * @param out The event log to write.
+	 * @return The number of blocks written.
+	 * @throws IOException if reading or writing fails, or a line is not an action.
+	 */
+	public static int compile(File trainFile, File peopleFile, File out) throws IOException {
+		SymbolTable cars = new SymbolTable();
+		SymbolTable trains = new SymbolTable();
+		SymbolTable people = new SymbolTable();
+		ByteArrayOutputStream initial = new ByteArrayOutputStream();
+		ByteArrayOutputStream events = new ByteArrayOutputStream(1 << 16);
+		int[] indexTimes = new int[16];
+		int[] indexOffsets = new int[16];
+		int indexed = 0;
+		LogReader trainLog = new LogReader(trainFile);
+		LogReader peopleLog = new LogReader(peopleFile);
+
+		//initial train positions: train id, car count, car ids
+		ByteArrayOutputStream lines = new ByteArrayOutputStream();
+		int count = 0;
+		while(trainLog.nextLine() && !trainLog.isBlank()) {
+			writeVarint(lines, trains.intern(trainLog.token(0)));
+			writeVarint(lines, trainLog.tokenCount() - 1);
+			for(int i = 1; i < trainLog.tokenCount(); i++) {
+				writeVarint(lines, cars.intern(trainLog.token(i)));
+			}
+			count++;
+		}
+		writeVarint(initial, count);
+		lines.writeTo(initial);
+
+		//initial people positions: person id, car id
+		lines.reset();
+		count = 0;
+		while(peopleLog.nextLine() && !peopleLog.isBlank()) {
+			checkTokens(peopleLog, 2, peopleFile);
+			writeVarint(lines, people.intern(peopleLog.token(0)));
+			writeVarint(lines, cars.intern(peopleLog.token(1)));
+			count++;
+		}
+		writeVarint(initial, count);
+		lines.writeTo(initial);
+
+		//blocks, merged the same way Simulator.step merges them
+		int blocks = 0;
+		int nextTrainTime = trainLog.nextTime();
+		int nextPersonTime = peopleLog.nextTime();
+		while(nextTrainTime != -1 || nextPersonTime != -1) {
+			boolean trainBlock = nextTrainTime != -1 && (nextPersonTime == -1 || nextTrainTime <= nextPersonTime);
+			int time = trainBlock ? nextTrainTime : nextPersonTime;
+			LogReader log = trainBlock ? trainLog : peopleLog;
+			lines.reset();
+			count = 0;
+			while(log.nextLine() && !log.isBlank()) {
+				if(trainBlock) {
+					checkTokens(log, 3, trainFile);
+					writeVarint(lines, trains.intern(log.token(0)));
+					lines.write(log.tokenEquals(1, "connect") ? CONNECT : DISCONNECT);
+					writeVarint(lines, cars.intern(log.token(2)));
+				}
+				else {
+					checkTokens(log, 3, peopleFile);
+					writeVarint(lines, people.intern(log.token(0)));
+					writeVarint(lines, cars.intern(log.token(1)));
+					writeVarint(lines, cars.intern(log.token(2)));
+				}
+				count++;
+			}
+			if(blocks % INDEX_STRIDE == 0) {
+				if(indexed == indexTimes.length) {
+					indexTimes = Arrays.copyOf(indexTimes, indexed * 2);
+					indexOffsets = Arrays.copyOf(indexOffsets, indexed * 2);
+				}
+				indexTimes[indexed] = time;
+				indexOffsets[indexed] = events.size();
+				indexed++;
+			}
+			writeVarint(events, time);
+			events.write(trainBlock ? TRAIN_BLOCK : PERSON_BLOCK);
+			writeVarint(events, count);
+			lines.writeTo(events);
+			blocks++;
+			if(trainBlock) {
+				nextTrainTime = trainLog.nextTime();
+			}
+			else {
+				nextPersonTime = peopleLog.nextTime();
+			}
+		}
+		trainLog.close();
+		peopleLog.close();
+
+		ByteArrayOutputStream names = new ByteArrayOutputStream();
+		writeNames(names, cars);
+		writeNames(names, trains);
+		writeNames(names, people);
+
+		int namesOffset = HEADER_SIZE;
+		int initialOffset = namesOffset + names.size();
+		int eventsOffset = initialOffset + initial.size();
+		int indexOffset = eventsOffset + events.size();
+		try(DataOutputStream file = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out), 1 << 16))) {
+			file.writeInt(MAGIC);
+			file.writeInt(VERSION);
+			file.writeInt(namesOffset);
+			file.writeInt(initialOffset);
+			file.writeInt(eventsOffset);
+			file.writeInt(indexOffset);
+			file.writeInt(blocks);
+			file.writeInt(indexed);
+			names.writeTo(file);
+			initial.writeTo(file);
+			events.writeTo(file);
+			//the index was built with offsets into the blocks, make them file offsets
+			for(int i = 0; i < indexed; i++) {
+				file.writeInt(indexTimes[i]);
+				file.writeInt(indexOffsets[i] + eventsOffset);
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * Makes sure an action line has enough tokens.
+	 * @param log The reader positioned at the line.
+	 * @param tokens The number of tokens needed.
+	 * @param file The file being read (for the error message).
+	 * @throws IOException if the line is too short.
+	 */
+	private static void checkTokens(LogReader log, int tokens, File file) throws IOException {
+		if(log.tokenCount() < tokens) {
+			throw new IOException("A line in " + file + " has " + log.tokenCount() + " parts instead of " + tokens);
+		}
+	}
+
+	/**
+	 * Writes an unsigned varint.
+	 * @param out The stream to write to.
+	 * @param value The number, which must not be negative.
+	 */
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Writes a count followed by every name of a symbol table in id order.
+	 * @param out The stream to write to.
+	 * @param symbols The names.
+	 */
+	private static void writeNames(ByteArrayOutputStream out, SymbolTable symbols) {
+		writeVarint(out, symbols.size());
+		for(int id = 0; id < symbols.size(); id++) {
+			byte[] bytes = symbols.name(id).getBytes(StandardCharsets.UTF_8);
+			writeVarint(out, bytes.length);
+			out.write(bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Compiles a pair of logs into a temporary event log and asks it who was in a
+	 * car, the way expectedSuspects asks a fresh Simulator.
+	 * @param trainFile The train log.
+	 * @param peopleFile The people log.
+	 * @param car The car of the murder.
+	 * @param time The time of the murder.
+	 * @return The suspects separated by spaces, "No suspects!", or the error message.
+	 * @throws IOException if the event log can not be written.
+	 */
+	private static String compiledSuspects(File trainFile, File peopleFile, String car, String time) throws IOException {
+		File out = File.createTempFile("events", ".bin");
+		out.deleteOnExit();
+		try {
+			compile(trainFile, peopleFile, out);
+			return Simulator.describe(new Simulator(out).simulate(car, time, false));
+		}
+		catch(RuntimeException e) {
+			return e.getMessage();
+		}
+	}
+
+	/**
+	 * Checks compiled logs against fresh simulations of the text logs.
+	 * @throws IOException if the temporary logs can not be written.
+	 */
+	private static void test() throws IOException {
+		File[] logs = new CaseGenerator(15, 3, 24, 40, 60, 6, 1.0).writeTemporary();
+		String[] times = {"00:00", "00:25", "01:00"};
+		int same = 0;
+		int asked = 0;
+		for(String time : times) {
+			for(int c = 0; c < 24; c += 3) {
+				if(compiledSuspects(logs[0], logs[1], "C" + c, time).equals(Simulator.expectedSuspects(logs[0], logs[1], "C" + c, time))) {
+					same++;
+				}
+				asked++;
+			}
+		}
+		if(same == asked) {
+			System.out.println("Yay 1");
+		}
+
+		//a bad action fails the compiled replay with the same message as the text one
+		File trains = CaseGenerator.withBlock(logs[0], "01:01\nT0 connect C0\nT0 connect C0\n\n");
+		File people = CaseGenerator.withBlock(logs[1], "01:01\nP0 C0 C0\nP0 C0 C0\n\n");
+		String trainError = compiledSuspects(trains, logs[1], "C0", "02:00");
+		String personError = compiledSuspects(logs[0], people, "C0", "02:00");
+		if(trainError.startsWith("[1:1] ") && trainError.equals(Simulator.expectedSuspects(trains, logs[1], "C0", "02:00"))
+				&& personError.startsWith("[1:1] ") && personError.equals(Simulator.expectedSuspects(logs[0], people, "C0", "02:00"))) {
+			System.out.println("Yay 2");
+		}
+
+		//seeking a time lands before every block from that time on, and never goes back
+		File out = File.createTempFile("events", ".bin");
+		out.deleteOnExit();
+		int blocks = compile(logs[0], logs[1], out);
+		EventLog log = new EventLog(out);
+		log.startEvents();
+		long first = log.position();
+		long last = first;
+		boolean landed = true;
+		for(int time = 0; time <= 90; time++) {
+			log.seekTime(time);
+			long at = log.position();
+			landed = landed && at >= last && (at == first || (log.blockTime() != -1 && log.blockTime() < time));
+			last = at;
+		}
+		log.close();
+		if(blocks > INDEX_STRIDE && landed && last > first) {
+			System.out.println("Yay 3");
+		}
+	}
+
+	/**
+	 * Main method, compiles a pair of text logs from the command line or checks compiling with --test.
+	 * @param args command line arguments.
+	 */
+	public static void main(String[] args) {
+		if(args.length == 1 && args[0].equals("--test")) {
+			try {
+				test();
+			}
+			catch(IOException e) {
+				System.out.println("Invalid file");
+			}
+			return;
+		}
+		if(args.length != 3) {
+			System.err.println("Usage: java EventLog [TrainFile] [PeopleFile] [OutFile]");
+			System.err.println("   or: java EventLog --test");
+			return;
+		}
+		try {
+			File out = new File(args[2]);
+			long start = System.nanoTime();
+			int blocks = compile(new File(args[0]), new File(args[1]), out);
+			long textBytes = new File(args[0]).length() + new File(args[1]).length();
+			System.out.printf("Wrote %d blocks in %d bytes (%.1f%% of the text logs) in %.3f ms%n",
+					blocks, out.length(), 100.0 * out.length() / Math.max(1, textBytes), (System.nanoTime() - start) / 1e6);
+		}
+		catch(IOException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+}
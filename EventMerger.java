@@ -0,0 +1,428 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Interleaves any number of time-ordered event sources into one time-ordered
+ * stream of blocks. The head block of every source sits in a binary min-heap
+ * ordered by time, then kind (train actions before person actions at the same
+ * minute), then the order the sources were given in, so each block costs
+ * O(log k) for k sources. Sources can be read ahead on their own threads, so the
+ * next blocks are already parsed while the current one is applied.
+ */
+class EventMerger {
+
+	/**
+	 * An event source read ahead on its own thread into a small ring of blocks.
+	 */
+	private static class Prefetcher implements EventSource {
+
+		/**
+		 * Marks the end of the source in the queue of read blocks.
+		 */
+		private static final Block END = new Block();
+
+		/**
+		 * The source being read ahead.
+		 */
+		private final EventSource source;
+
+		/**
+		 * Blocks read and waiting to be used, in order.
+		 */
+		private final BlockingQueue<Block> ready;
+
+		/**
+		 * Blocks used up and ready to be read into again.
+		 */
+		private final BlockingQueue<Block> free;
+
+		/**
+		 * The thread reading ahead.
+		 */
+		private final Thread reader;
+
+		/**
+		 * The block handed out last, given back to the reader on the next call.
+		 */
+		private Block current = null;
+
+		/**
+		 * Whether END has been taken from the queue.
+		 */
+		private boolean ended = false;
+
+		/**
+		 * The error reading ahead failed with, thrown when the reader gets to it so it
+		 * surfaces at the same point it would have without reading ahead.
+		 */
+		private volatile RuntimeException error = null;
+
+		/**
+		 * Constructor for the prefetcher, starts reading ahead at once.
+		 * @param source The source to read ahead.
+		 * @param depth The number of blocks that may be read ahead.
+		 * @param name The name of the reading thread.
+		 */
+		Prefetcher(EventSource source, int depth, String name) {
+			this.source = source;
+			this.ready = new ArrayBlockingQueue<>(depth + 1);
+			this.free = new ArrayBlockingQueue<>(depth + 1);
+			for(int i = 0; i < depth + 1; i++) {
+				free.add(new Block());
+			}
+			this.reader = new Thread(this::readAhead, name);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		/**
+		 * Reads blocks into free buffers until the source ends, fails or is closed.
+		 */
+		private void readAhead() {
+			try {
+				while(true) {
+					Block into = free.take();
+					Block read;
+					try {
+						read = source.nextBlock();
+					}
+					catch(RuntimeException e) {
+						error = e;
+						ready.put(END);
+						return;
+					}
+					if(read == null) {
+						ready.put(END);
+						return;
+					}
+					//the source reuses its block, so copy it into the free one
+					into.reset(read.time, read.kind);
+					if(into.actions.length < read.actions.length) {
+						into.actions = new int[read.actions.length];
+					}
+					System.arraycopy(read.actions, 0, into.actions, 0, read.count * 4);
+					into.count = read.count;
+					ready.put(into);
+				}
+			}
+			catch(InterruptedException e) {
+				//closed while waiting
+			}
+		}
+
+		/**
+		 * Takes the next block read ahead.
+		 * @return The block, or null at the end of the source.
+		 */
+		public Block nextBlock() {
+			if(current != null) {
+				free.add(current);
+				current = null;
+			}
+			if(ended) {
+				return null;
+			}
+			try {
+				Block b = ready.take();
+				if(b == END) {
+					ended = true;
+					if(error != null) {
+						throw error;
+					}
+					return null;
+				}
+				current = b;
+				return b;
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while reading ahead");
+			}
+		}
+
+		/**
+		 * Stops reading ahead and closes the source.
+		 */
+		public void close() {
+			reader.interrupt();
+			try {
+				reader.join();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			source.close();
+		}
+	}
+
+	/**
+	 * The sources, in the order they were given.
+	 */
+	private final EventSource[] sources;
+
+	/**
+	 * The head block of each source, or null once the source has ended.
+	 */
+	private final EventSource.Block[] heads;
+
+	/**
+	 * The indexes of the sources with a head block, as a binary min-heap.
+	 */
+	private final int[] heap;
+
+	/**
+	 * The number of sources in the heap.
+	 */
+	private int size = 0;
+
+	/**
+	 * The source whose head block was handed out last and has to be read again
+	 * before the next block is picked (-1 if none).
+	 */
+	private int taken = -1;
+
+	/**
+	 * Constructor for the event merger.
+	 * @param sources The sources to interleave; at equal times and kinds the earlier source goes first.
+	 * @param readAhead The number of blocks to read ahead of each source on its own thread (0 to read on demand).
+	 */
+	EventMerger(EventSource[] sources, int readAhead) {
+		this.sources = new EventSource[sources.length];
+		for(int i = 0; i < sources.length; i++) {
+			this.sources[i] = readAhead > 0 ? new Prefetcher(sources[i], readAhead, "event-source-" + i) : sources[i];
+		}
+		this.heads = new EventSource.Block[sources.length];
+		this.heap = new int[sources.length];
+		for(int i = 0; i < sources.length; i++) {
+			refill(i);
+		}
+	}
+
+	/**
+	 * Reads the next block of a source into the heap.
+	 * @param i The index of the source.
+	 */
+	private void refill(int i) {
+		//O(log k)
+		heads[i] = sources[i].nextBlock();
+		if(heads[i] != null) {
+			heap[size] = i;
+			siftUp(size++);
+		}
+	}
+
+	/**
+	 * Checks whether one source's head block goes before another's.
+	 * @param i The index of one source.
+	 * @param j The index of the other source.
+	 * @return Boolean stating whether i's block goes first.
+	 */
+	private boolean before(int i, int j) {
+		EventSource.Block a = heads[i];
+		EventSource.Block b = heads[j];
+		if(a.time != b.time) {
+			return a.time < b.time;
+		}
+		if(a.kind != b.kind) {
+			return a.kind < b.kind;
+		}
+		return i < j;
+	}
+
+	/**
+	 * Moves a heap entry up until its parent goes before it.
+	 * @param at The position in the heap.
+	 */
+	private void siftUp(int at) {
+		int moving = heap[at];
+		while(at > 0) {
+			int parent = (at - 1) >>> 1;
+			if(!before(moving, heap[parent])) {
+				break;
+			}
+			heap[at] = heap[parent];
+			at = parent;
+		}
+		heap[at] = moving;
+	}
+
+	/**
+	 * Moves a heap entry down until it goes before both children.
+	 * @param at The position in the heap.
+	 */
+	private void siftDown(int at) {
+		int moving = heap[at];
+		while(true) {
+			int child = at * 2 + 1;
+			if(child >= size) {
+				break;
+			}
+			if(child + 1 < size && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if(!before(heap[child], moving)) {
+				break;
+			}
+			heap[at] = heap[child];
+			at = child;
+		}
+		heap[at] = moving;
+	}
+
+	/**
+	 * Reads again the source whose block was handed out last, now that it has been used.
+	 */
+	private void settle() {
+		if(taken != -1) {
+			int i = taken;
+			taken = -1;
+			refill(i);
+		}
+	}
+
+	/**
+	 * Gets the time of the next block.
+	 * @return The time in minutes since midnight, or -1 if every source has ended.
+	 */
+	public int nextTime() {
+		//O(log k)
+		settle();
+		return size == 0 ? -1 : heads[heap[0]].time;
+	}
+
+	/**
+	 * Takes the next block. It stays valid until the next call to nextTime or next.
+	 * @return The block, or null if every source has ended.
+	 * @throws RuntimeException if reading a source failed.
+	 */
+	public EventSource.Block next() {
+		//O(log k)
+		settle();
+		if(size == 0) {
+			return null;
+		}
+		int i = heap[0];
+		heap[0] = heap[--size];
+		if(size > 0) {
+			siftDown(0);
+		}
+		taken = i;
+		return heads[i];
+	}
+
+	/**
+	 * Gets the number of sources.
+	 * @return The number of sources.
+	 */
+	public int sourceCount() {
+		return sources.length;
+	}
+
+	/**
+	 * Stops any reading ahead and closes every source.
+	 */
+	public void close() {
+		for(EventSource s : sources) {
+			s.close();
+		}
+	}
+
+	/**
+	 * Splits a log in two: the initial positions and the blocks of even minutes go
+	 * in the first, and the blocks of odd minutes in the second, after an empty
+	 * initial section. Merged back together they are the same log.
+	 * @param log The log.
+	 * @return The two halves.
+	 * @throws IOException if the log can not be read or the halves written.
+	 */
+	private static File[] splitByMinute(File log) throws IOException {
+		StringBuilder even = new StringBuilder();
+		StringBuilder odd = new StringBuilder("\n");
+		StringBuilder into = even;
+		for(String line : Files.readAllLines(log.toPath())) {
+			if(line.length() == 5 && line.charAt(2) == ':') {
+				into = Integer.parseInt(line.substring(3)) % 2 == 0 ? even : odd;
+			}
+			into.append(line).append('\n');
+		}
+		return new File[] {CaseGenerator.temporaryLog(even.toString()), CaseGenerator.temporaryLog(odd.toString())};
+	}
+
+	/**
+	 * Makes a source that hands out a fixed list of blocks, each holding one action
+	 * that names the source.
+	 * @param timesAndKinds The time and kind of each block, in order.
+	 * @param id The number put in each block's action.
+	 * @return The source.
+	 */
+	private static EventSource fixedSource(int[] timesAndKinds, int id) {
+		return new EventSource() {
+			private int at = 0;
+
+			public Block nextBlock() {
+				if(at == timesAndKinds.length) {
+					return null;
+				}
+				Block b = new Block();
+				b.reset(timesAndKinds[at], timesAndKinds[at + 1]);
+				b.add(MOVE, id, 0, 0);
+				at += 2;
+				return b;
+			}
+
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * Main method, checks merged halves of a case against the whole case.
+	 * @param args command line arguments.
+	 * @throws IOException if the case can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File[] logs = new CaseGenerator(19, 3, 24, 40, 60, 6, 1.0).writeTemporary();
+		File[] trains = splitByMinute(logs[0]);
+		File[] people = splitByMinute(logs[1]);
+		String[] times = {"00:00", "00:25", "01:00"};
+		int same = 0;
+		int asked = 0;
+		for(int readAhead = 0; readAhead <= 2; readAhead += 2) {
+			for(String time : times) {
+				for(int c = 0; c < 24; c += 3) {
+					Simulator merged = new Simulator(trains, people, readAhead);
+					String suspects = Simulator.describe(merged.simulate("C" + c, time, false));
+					merged.close();
+					if(suspects.equals(Simulator.expectedSuspects(logs[0], logs[1], "C" + c, time))) {
+						same++;
+					}
+					asked++;
+				}
+			}
+		}
+		if(same == asked) {
+			System.out.println("Yay 1");
+		}
+
+		//train blocks go before person blocks at a minute, then the earlier source goes first
+		int[][] made = {{5, EventSource.PERSON_ACTIONS, 9, EventSource.TRAIN_ACTIONS}, {5, EventSource.TRAIN_ACTIONS, 7, EventSource.PERSON_ACTIONS}, {5, EventSource.PERSON_ACTIONS}};
+		for(int readAhead = 0; readAhead <= 2; readAhead += 2) {
+			EventSource[] sources = new EventSource[made.length];
+			for(int i = 0; i < made.length; i++) {
+				sources[i] = fixedSource(made[i], i);
+			}
+			EventMerger merger = new EventMerger(sources, readAhead);
+			String order = "";
+			for(EventSource.Block b = merger.next(); b != null; b = merger.next()) {
+				order += b.time + "/" + b.kind + "/" + b.actions[1] + " ";
+			}
+			if(order.equals("5/0/1 5/1/0 5/1/2 7/1/1 9/0/0 ") && merger.sourceCount() == 3 && merger.nextTime() == -1) {
+				System.out.println("Yay " + (2 + readAhead / 2));
+			}
+			merger.close();
+		}
+	}
+}
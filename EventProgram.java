@@ -0,0 +1,740 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A train log and a people log compiled into a flat int[] program, for replaying
+ * one case again and again, such as in Monte-Carlo analyses. Every action is five
+ * ints (time, opcode, and the train and car ids or the person, from car and to car
+ * ids) with every name already resolved, in the order Simulator applies them. A
+ * Replay runs the program over int[] columns in a tight loop that allocates
+ * nothing, resets to the initial positions with a few array copies, and fails on
+ * contradictions in the logs with the same messages as Simulator. A name that was
+ * never in the initial positions fails with "[h:m] Nothing is named X" (just
+ * "Nothing is named X" for the murder location), where Simulator runs into a
+ * NullPointerException. A program never changes once compiled, so any number of
+ * replays on any number of threads can share it. Run Simulator with --batch
+ * --world program to replay a case here.
+ */
+final class EventProgram {
+
+	/**
+	 * The offset of the time (minutes since midnight) in an action.
+	 */
+	static final int TIME = 0;
+
+	/**
+	 * The offset of the opcode (EventSource.CONNECT, DISCONNECT or MOVE) in an action.
+	 */
+	static final int OPCODE = 1;
+
+	/**
+	 * The offset of the train or person id in an action.
+	 */
+	static final int A = 2;
+
+	/**
+	 * The offset of the car or from car id in an action.
+	 */
+	static final int B = 3;
+
+	/**
+	 * The offset of the to car id in an action (0 for train actions).
+	 */
+	static final int C = 4;
+
+	/**
+	 * The number of ints in an action.
+	 */
+	static final int STRIDE = 5;
+
+	/**
+	 * A world the program is replayed into. Trains, cars and people are ids, and
+	 * every link between them is an int column, like OffHeapWorld but on the heap.
+	 * A replay is used by one thread at a time.
+	 */
+	static final class Replay {
+
+		/**
+		 * The program being replayed.
+		 */
+		private final EventProgram program;
+
+		/**
+		 * The first car of each train, or -1 for an empty train.
+		 */
+		private final int[] trainHead;
+
+		/**
+		 * The last car of each train, or -1 for an empty train.
+		 */
+		private final int[] trainTail;
+
+		/**
+		 * The car behind each car, or -1.
+		 */
+		private final int[] carNext;
+
+		/**
+		 * The car in front of each car, or -1.
+		 */
+		private final int[] carPrevious;
+
+		/**
+		 * The train each car is on, or -1 for a decoupled car. A decoupled car with no
+		 * car in front of it heads a chain in the decoupled cars list.
+		 */
+		private final int[] carTrain;
+
+		/**
+		 * The first person to board each car of the people in it, or -1.
+		 */
+		private final int[] carFirst;
+
+		/**
+		 * The last person to board each car of the people in it, or -1.
+		 */
+		private final int[] carLast;
+
+		/**
+		 * The number of people in each car.
+		 */
+		private final int[] carCount;
+
+		/**
+		 * The car each person is in, or -1.
+		 */
+		private final int[] personCar;
+
+		/**
+		 * The person who boarded each person's car after them, or -1.
+		 */
+		private final int[] personNext;
+
+		/**
+		 * The person who boarded each person's car before them, or -1.
+		 */
+		private final int[] personPrevious;
+
+		/**
+		 * The offset of the next action in the program.
+		 */
+		private int pc = 0;
+
+		/**
+		 * Constructor for a replay, starting at the initial positions.
+		 * @param program The program to replay.
+		 */
+		Replay(EventProgram program) {
+			this(program, program.trainNames.size(), program.carNames.size(), program.personNames.size());
+			reset();
+		}
+
+		/**
+		 * Constructor for an empty world.
+		 * @param program The program to replay.
+		 * @param trains The number of trains.
+		 * @param cars The number of cars.
+		 * @param people The number of people.
+		 */
+		private Replay(EventProgram program, int trains, int cars, int people) {
+			this.program = program;
+			trainHead = filled(trains);
+			trainTail = filled(trains);
+			carNext = filled(cars);
+			carPrevious = filled(cars);
+			carTrain = filled(cars);
+			carFirst = filled(cars);
+			carLast = filled(cars);
+			carCount = new int[cars];
+			personCar = filled(people);
+			personNext = filled(people);
+			personPrevious = filled(people);
+		}
+
+		/**
+		 * Creates an array of -1s.
+		 * @param length The length of the array.
+		 * @return The array.
+		 */
+		private static int[] filled(int length) {
+			int[] array = new int[length];
+			Arrays.fill(array, -1);
+			return array;
+		}
+
+		/**
+		 * Puts every train, car and person back at their initial positions.
+		 */
+		public void reset() {
+			//O(t+c+p) array copies, nothing is allocated
+			Replay from = program.initial;
+			System.arraycopy(from.trainHead, 0, trainHead, 0, trainHead.length);
+			System.arraycopy(from.trainTail, 0, trainTail, 0, trainTail.length);
+			System.arraycopy(from.carNext, 0, carNext, 0, carNext.length);
+			System.arraycopy(from.carPrevious, 0, carPrevious, 0, carPrevious.length);
+			System.arraycopy(from.carTrain, 0, carTrain, 0, carTrain.length);
+			System.arraycopy(from.carFirst, 0, carFirst, 0, carFirst.length);
+			System.arraycopy(from.carLast, 0, carLast, 0, carLast.length);
+			System.arraycopy(from.carCount, 0, carCount, 0, carCount.length);
+			System.arraycopy(from.personCar, 0, personCar, 0, personCar.length);
+			System.arraycopy(from.personNext, 0, personNext, 0, personNext.length);
+			System.arraycopy(from.personPrevious, 0, personPrevious, 0, personPrevious.length);
+			pc = 0;
+		}
+
+		/**
+		 * Applies every action at or before a time that has not been applied yet.
+		 * @param until The last time (minutes since midnight) that may be applied.
+		 * @return The number of actions applied.
+		 * @throws RuntimeException if the logs contradict themselves, with the same message as Simulator.
+		 */
+		public int runUntil(int until) {
+			//O(a) where a=the number of actions applied, nothing is allocated
+			int[] code = program.code;
+			int end = program.length;
+			int start = pc;
+			while(pc < end && code[pc + TIME] <= until) {
+				int time = code[pc + TIME];
+				switch(code[pc + OPCODE]) {
+					case EventSource.CONNECT: connect(time, code[pc + A], code[pc + B]); break;
+					case EventSource.DISCONNECT: disconnect(time, code[pc + A], code[pc + B]); break;
+					default: move(time, code[pc + A], code[pc + B], code[pc + C]);
+				}
+				pc += STRIDE;
+			}
+			return (pc - start) / STRIDE;
+		}
+
+		/**
+		 * Connects the decoupled chain a car heads to the back of a train.
+		 * @param time The current time (for use in error messages).
+		 * @param train The id of the train.
+		 * @param car The id of the car.
+		 */
+		private void connect(int time, int train, int car) {
+			//O(n) where n=the number of cars in the chain
+			program.checkCar(time, car);
+			if(carTrain[car] != -1 || carPrevious[car] != -1) {
+				throw new RuntimeException(stamp(time) + "Car " + program.carNames.name(car) + " is not in the decoupledCars list");
+			}
+			program.checkTrain(time, train);
+			append(train, car);
+		}
+
+		/**
+		 * Links a chain of cars to the back of a train.
+		 * @param train The id of the train.
+		 * @param car The id of the first car of the chain.
+		 */
+		private void append(int train, int car) {
+			int tail = trainTail[train];
+			if(tail == -1) {
+				trainHead[train] = car;
+			}
+			else {
+				carNext[tail] = car;
+				carPrevious[car] = tail;
+			}
+			for(int c = car; c != -1; c = carNext[c]) {
+				carTrain[c] = train;
+				tail = c;
+			}
+			trainTail[train] = tail;
+		}
+
+		/**
+		 * Disconnects a car and the cars behind it from a train, leaving them as a decoupled chain.
+		 * @param time The current time (for use in error messages).
+		 * @param train The id of the train.
+		 * @param car The id of the car.
+		 */
+		private void disconnect(int time, int train, int car) {
+			//O(n) where n=the number of cars disconnected
+			program.checkTrain(time, train);
+			program.checkCar(time, car);
+			if(carTrain[car] != train) {
+				throw new RuntimeException("Can not disconnect a car that doesn't exist");
+			}
+			int before = carPrevious[car];
+			if(before == -1) {
+				trainHead[train] = -1;
+			}
+			else {
+				carNext[before] = -1;
+				carPrevious[car] = -1;
+			}
+			trainTail[train] = before;
+			for(int c = car; c != -1; c = carNext[c]) {
+				carTrain[c] = -1;
+			}
+		}
+
+		/**
+		 * Moves a person from one car to the car next to it.
+		 * @param time The current time (for use in error messages).
+		 * @param person The id of the person.
+		 * @param from The id of the car the record says they are in.
+		 * @param to The id of the car they move to.
+		 */
+		private void move(int time, int person, int from, int to) {
+			//O(1)
+			program.checkPerson(time, person);
+			program.checkCar(time, from);
+			program.checkCar(time, to);
+			int car = personCar[person];
+			if(car != from) {
+				throw new RuntimeException(stamp(time) + "Person " + program.personNames.name(person) + " cannot be in car "
+						+ program.carNames.name(from) + " according to the record");
+			}
+			if(carNext[car] != to && carPrevious[car] != to) {
+				throw new RuntimeException(stamp(time) + "Person " + program.personNames.name(person) + " cannot move to car "
+						+ program.carNames.name(to) + " according to the record");
+			}
+			leave(person, car);
+			board(person, to);
+		}
+
+		/**
+		 * Puts a person at the end of a car's occupants.
+		 * @param person The id of the person.
+		 * @param car The id of the car.
+		 */
+		private void board(int person, int car) {
+			//O(1)
+			int last = carLast[car];
+			personPrevious[person] = last;
+			personNext[person] = -1;
+			if(last == -1) {
+				carFirst[car] = person;
+			}
+			else {
+				personNext[last] = person;
+			}
+			carLast[car] = person;
+			carCount[car]++;
+			personCar[person] = car;
+		}
+
+		/**
+		 * Takes a person out of a car's occupants.
+		 * @param person The id of the person.
+		 * @param car The id of the car.
+		 */
+		private void leave(int person, int car) {
+			//O(1)
+			int previous = personPrevious[person];
+			int next = personNext[person];
+			if(previous == -1) {
+				carFirst[car] = next;
+			}
+			else {
+				personNext[previous] = next;
+			}
+			if(next == -1) {
+				carLast[car] = previous;
+			}
+			else {
+				personPrevious[next] = previous;
+			}
+			carCount[car]--;
+			personCar[person] = -1;
+		}
+
+		/**
+		 * Finds the ids of the suspects for a murder in a car: the people in it, or
+		 * else the people in the nearest occupied cars in front of and behind it.
+		 * @param car The id of the car (see EventProgram.carId).
+		 * @param into The array to put the ids in, at least as long as the number of people.
+		 * @return The number of suspects.
+		 */
+		public int suspectIds(int car, int[] into) {
+			//O(n) where n=the number of cars walked past, nothing is allocated
+			if(carCount[car] > 0) {
+				return occupantIds(car, into, 0);
+			}
+			int count = 0;
+			int c = carPrevious[car];
+			while(c != -1 && carCount[c] == 0) {
+				c = carPrevious[c];
+			}
+			if(c != -1) {
+				count = occupantIds(c, into, count);
+			}
+			c = carNext[car];
+			while(c != -1 && carCount[c] == 0) {
+				c = carNext[c];
+			}
+			if(c != -1) {
+				count = occupantIds(c, into, count);
+			}
+			return count;
+		}
+
+		/**
+		 * Copies the ids of the people in a car, in the order they boarded.
+		 * @param car The id of the car.
+		 * @param into The array to put the ids in.
+		 * @param count The number of ids already in the array.
+		 * @return The number of ids in the array afterwards.
+		 */
+		private int occupantIds(int car, int[] into, int count) {
+			for(int p = carFirst[car]; p != -1; p = personNext[p]) {
+				into[count++] = p;
+			}
+			return count;
+		}
+
+		/**
+		 * Finds the suspects for a murder in the current state of the world.
+		 * @param murderLocation The location of the murder (car name).
+		 * @return Thin views of the suspects.
+		 */
+		public UniqueList<Person> getMurderSuspects(String murderLocation) {
+			int car = program.carId(murderLocation);
+			int[] ids = new int[program.personNames.size()];
+			int count = suspectIds(car, ids);
+			UniqueList<Person> suspects = new UniqueList<>();
+			Car view = null;
+			for(int i = 0; i < count; i++) {
+				int p = ids[i];
+				if(view == null || view.getId() != personCar[p]) {
+					view = new Car(program.carNames.name(personCar[p]), personCar[p]);
+				}
+				suspects.append(new Person(program.personNames.name(p), p, view));
+			}
+			return suspects;
+		}
+	}
+
+	/**
+	 * The train names.
+	 */
+	private final SymbolTable trainNames;
+
+	/**
+	 * The car names.
+	 */
+	private final SymbolTable carNames;
+
+	/**
+	 * The person names.
+	 */
+	private final SymbolTable personNames;
+
+	/**
+	 * The number of trains with initial positions; higher ids were only named in actions.
+	 */
+	private final int placedTrains;
+
+	/**
+	 * The number of cars on the initial trains; higher ids were only named elsewhere.
+	 */
+	private final int placedCars;
+
+	/**
+	 * The number of people with initial positions; higher ids were only named in actions.
+	 */
+	private final int placedPeople;
+
+	/**
+	 * The actions, STRIDE ints each.
+	 */
+	private final int[] code;
+
+	/**
+	 * The number of ints of code used.
+	 */
+	private final int length;
+
+	/**
+	 * The world at the initial positions, copied by Replay.reset.
+	 */
+	private final Replay initial;
+
+	/**
+	 * Constructor for the program, builds the initial world.
+	 * @param trainNames The train names.
+	 * @param carNames The car names.
+	 * @param personNames The person names.
+	 * @param placedTrains The number of trains with initial positions.
+	 * @param placedCars The number of cars on the initial trains.
+	 * @param placedPeople The number of people with initial positions.
+	 * @param trainLines Each initial train as its id, its number of cars and their ids.
+	 * @param personLines Each initial person as their id and their car's id (-1 for none).
+	 * @param code The actions.
+	 * @param length The number of ints of code used.
+	 */
+	private EventProgram(SymbolTable trainNames, SymbolTable carNames, SymbolTable personNames,
+			int placedTrains, int placedCars, int placedPeople, IntList trainLines, IntList personLines, int[] code, int length) {
+		this.trainNames = trainNames;
+		this.carNames = carNames;
+		this.personNames = personNames;
+		this.placedTrains = placedTrains;
+		this.placedCars = placedCars;
+		this.placedPeople = placedPeople;
+		this.code = code;
+		this.length = length;
+		this.initial = new Replay(this, trainNames.size(), carNames.size(), personNames.size());
+		for(int i = 0; i < trainLines.size; ) {
+			int train = trainLines.ints[i++];
+			int cars = trainLines.ints[i++];
+			for(int j = 0; j < cars; j++) {
+				initial.append(train, trainLines.ints[i++]);
+			}
+		}
+		for(int i = 0; i < personLines.size; i += 2) {
+			int person = personLines.ints[i];
+			int car = personLines.ints[i + 1];
+			//a person listed twice stays where they were first put
+			if(car != -1 && initial.personCar[person] == -1) {
+				initial.board(person, car);
+			}
+		}
+	}
+
+	/**
+	 * A growable list of ints, used while compiling.
+	 */
+	private static final class IntList {
+
+		/**
+		 * The ints.
+		 */
+		int[] ints = new int[64];
+
+		/**
+		 * The number of ints.
+		 */
+		int size = 0;
+
+		/**
+		 * Adds an int to the end.
+		 * @param value The int.
+		 */
+		void add(int value) {
+			//O(1) amortized
+			if(size == ints.length) {
+				ints = Arrays.copyOf(ints, size * 2);
+			}
+			ints[size++] = value;
+		}
+	}
+
+	/**
+	 * Compiles a train log and a people log. Names are given ids in the order
+	 * Simulator would intern them, and actions are put in the order Simulator would
+	 * apply them (train blocks first when the times are equal).
+	 * @param trainFile The train log.
+	 * @param peopleFile The people log.
+	 * @return The program.
+	 * @throws IOException if reading fails.
+	 */
+	public static EventProgram compile(File trainFile, File peopleFile) throws IOException {
+		SymbolTable trains = new SymbolTable();
+		SymbolTable cars = new SymbolTable();
+		SymbolTable people = new SymbolTable();
+		IntList trainLines = new IntList();
+		IntList personLines = new IntList();
+		IntList code = new IntList();
+		try(LogReader trainLog = new LogReader(trainFile); LogReader peopleLog = new LogReader(peopleFile)) {
+			while(trainLog.nextLine() && !trainLog.isBlank()) {
+				trainLines.add(trains.intern(trainLog.token(0)));
+				trainLines.add(trainLog.tokenCount() - 1);
+				for(int i = 1; i < trainLog.tokenCount(); i++) {
+					trainLines.add(cars.intern(trainLog.token(i)));
+				}
+			}
+			int placedTrains = trains.size();
+			int placedCars = cars.size();
+			while(peopleLog.nextLine() && !peopleLog.isBlank()) {
+				int car = cars.lookup(peopleLog.token(1));
+				personLines.add(people.intern(peopleLog.token(0)));
+				personLines.add(car < placedCars ? car : -1);
+			}
+			int placedPeople = people.size();
+
+			//actions, merged the same way Simulator.step merges blocks
+			int nextTrainTime = trainLog.nextTime();
+			int nextPersonTime = peopleLog.nextTime();
+			while(nextTrainTime != -1 || nextPersonTime != -1) {
+				boolean trainBlock = nextTrainTime != -1 && (nextPersonTime == -1 || nextTrainTime <= nextPersonTime);
+				int time = trainBlock ? nextTrainTime : nextPersonTime;
+				LogReader log = trainBlock ? trainLog : peopleLog;
+				while(log.nextLine() && !log.isBlank()) {
+					code.add(time);
+					if(trainBlock) {
+						code.add(log.tokenEquals(1, "connect") ? EventSource.CONNECT : EventSource.DISCONNECT);
+						code.add(trains.intern(log.token(0)));
+						code.add(cars.intern(log.token(2)));
+						code.add(0);
+					}
+					else {
+						code.add(EventSource.MOVE);
+						code.add(people.intern(log.token(0)));
+						code.add(cars.intern(log.token(1)));
+						code.add(cars.intern(log.token(2)));
+					}
+				}
+				if(trainBlock) {
+					nextTrainTime = trainLog.nextTime();
+				}
+				else {
+					nextPersonTime = peopleLog.nextTime();
+				}
+			}
+			return new EventProgram(trains, cars, people, placedTrains, placedCars, placedPeople,
+					trainLines, personLines, code.ints, code.size);
+		}
+	}
+
+	/**
+	 * Gets the id of a car to ask Replay.suspectIds about.
+	 * @param name The name of the car.
+	 * @return The id of the car.
+	 * @throws RuntimeException if no car has the name.
+	 */
+	public int carId(String name) {
+		int id = carNames.lookup(name);
+		if(id == -1 || id >= placedCars) {
+			throw new RuntimeException("Nothing is named " + name);
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the name of a person, such as one found by Replay.suspectIds.
+	 * @param id The id of the person.
+	 * @return The name.
+	 */
+	public String personName(int id) {
+		return personNames.name(id);
+	}
+
+	/**
+	 * Gets the number of people, which is the most suspects there can be.
+	 * @return The number of people.
+	 */
+	public int personCount() {
+		return personNames.size();
+	}
+
+	/**
+	 * Gets the number of actions.
+	 * @return The number of actions.
+	 */
+	public int actionCount() {
+		return length / STRIDE;
+	}
+
+	/**
+	 * Makes sure a train named in an action exists.
+	 * @param time The current time (for use in error messages).
+	 * @param train The id of the train.
+	 */
+	private void checkTrain(int time, int train) {
+		if(train >= placedTrains) {
+			throw new RuntimeException(stamp(time) + "Nothing is named " + trainNames.name(train));
+		}
+	}
+
+	/**
+	 * Makes sure a car named in an action exists.
+	 * @param time The current time (for use in error messages).
+	 * @param car The id of the car.
+	 */
+	private void checkCar(int time, int car) {
+		if(car >= placedCars) {
+			throw new RuntimeException(stamp(time) + "Nothing is named " + carNames.name(car));
+		}
+	}
+
+	/**
+	 * Makes sure a person named in an action exists.
+	 * @param time The current time (for use in error messages).
+	 * @param person The id of the person.
+	 */
+	private void checkPerson(int time, int person) {
+		if(person >= placedPeople) {
+			throw new RuntimeException(stamp(time) + "Nothing is named " + personNames.name(person));
+		}
+	}
+
+	/**
+	 * Formats a time the way Simulator's error messages start.
+	 * @param time The time in minutes since midnight.
+	 * @return The time in square brackets followed by a space.
+	 */
+	private static String stamp(int time) {
+		int hour = time/60;
+		int minute = time-(hour*60);
+		return "[" + hour + ":" + minute + "] ";
+	}
+
+	/**
+	 * Compiles and replays a case up to a time and describes the suspects, or the
+	 * error compiling or replaying failed with.
+	 * @param logs The train log and the people log.
+	 * @param murderLocation The location of the murder (car name).
+	 * @param murderTime The time of the murder in minutes since midnight.
+	 * @return The suspects as Simulator.describe puts them, or the error message.
+	 */
+	private static String suspects(File[] logs, String murderLocation, int murderTime) {
+		try {
+			Replay replay = new Replay(compile(logs[0], logs[1]));
+			replay.runUntil(murderTime);
+			return Simulator.describe(replay.getMurderSuspects(murderLocation));
+		}
+		catch(IOException e) {
+			return "Invalid file";
+		}
+		catch(RuntimeException e) {
+			return e.getMessage();
+		}
+	}
+
+	/**
+	 * Main method, checks replays of a compiled program against Simulator on a generated case.
+	 * @param args command line arguments.
+	 * @throws IOException if the case can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File[] logs = new CaseGenerator(9, 3, 24, 40, 60, 6, 1.0).writeTemporary();
+		String[] times = {"00:00", "00:17", "00:45", "01:00"};
+		//one replay runs forward through the times, and is reset to run the first window again
+		Replay replay = new Replay(compile(logs[0], logs[1]));
+		int same = 0;
+		for(int round = 0; round < 2; round++) {
+			for(String time : times) {
+				replay.runUntil(Integer.parseInt(time.substring(0, 2)) * 60 + Integer.parseInt(time.substring(3)));
+				for(int c = 0; c < 24; c++) {
+					if(Simulator.describe(replay.getMurderSuspects("C" + c)).equals(Simulator.expectedSuspects(logs[0], logs[1], "C" + c, time))) {
+						same++;
+					}
+				}
+			}
+			replay.reset();
+		}
+		if(same == 2 * times.length * 24) {
+			System.out.println("Yay 1");
+		}
+
+		//connecting a car twice and moving a person to their own car both fail somewhere
+		File[] badTrains = {CaseGenerator.withBlock(logs[0], "01:01\nT0 connect C0\nT0 connect C0\n\n"), logs[1]};
+		File[] badPeople = {logs[0], CaseGenerator.withBlock(logs[1], "01:01\nP0 C0 C0\nP0 C0 C0\n\n")};
+		String trainError = suspects(badTrains, "C0", 61);
+		String personError = suspects(badPeople, "C0", 61);
+		if(trainError.equals("[1:1] Car C0 is not in the decoupledCars list")
+				&& trainError.equals(Simulator.expectedSuspects(badTrains[0], badTrains[1], "C0", "01:01"))
+				&& personError.startsWith("[1:1] Person P0 cannot")
+				&& personError.equals(Simulator.expectedSuspects(badPeople[0], badPeople[1], "C0", "01:01"))) {
+			System.out.println("Yay 2");
+		}
+
+		//unknown names are reported by name rather than running into a null
+		File[] unknown = {logs[0], CaseGenerator.withBlock(logs[1], "01:01\nZ C0 C1\n\n")};
+		if(suspects(unknown, "C0", 61).equals("[1:1] Nothing is named Z") && suspects(logs, "Z", 60).equals("Nothing is named Z")) {
+			System.out.println("Yay 3");
+		}
+	}
+}
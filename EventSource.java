@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+/**
+ * A time-ordered stream of blocks of actions, such as one train log or one people
+ * feed. Each block holds the actions that happen at one minute, already turned into
+ * dense ids. Any number of sources can be interleaved by an EventMerger.
+ */
+interface EventSource {
+
+	/**
+	 * The kind of a block of train actions, which goes before person actions at the same minute.
+	 */
+	int TRAIN_ACTIONS = 0;
+
+	/**
+	 * The kind of a block of person actions.
+	 */
+	int PERSON_ACTIONS = 1;
+
+	/**
+	 * Action code for disconnecting a car (and the cars behind it) from a train.
+	 */
+	int DISCONNECT = 0;
+
+	/**
+	 * Action code for connecting a decoupled car (and the cars behind it) to a train.
+	 */
+	int CONNECT = 1;
+
+	/**
+	 * Action code for a person moving from one car to the next.
+	 */
+	int MOVE = 2;
+
+	/**
+	 * One block of actions. Every action is four ints: the action code and then
+	 * the train and car ids (for CONNECT and DISCONNECT) or the person, from car
+	 * and to car ids (for MOVE).
+	 */
+	class Block {
+
+		/**
+		 * The time of the block in minutes since midnight.
+		 */
+		int time;
+
+		/**
+		 * TRAIN_ACTIONS or PERSON_ACTIONS.
+		 */
+		int kind;
+
+		/**
+		 * The actions, four ints each.
+		 */
+		int[] actions = new int[64];
+
+		/**
+		 * The number of actions.
+		 */
+		int count;
+
+		/**
+		 * Empties the block for reuse.
+		 * @param time The time of the block.
+		 * @param kind The kind of the block.
+		 */
+		void reset(int time, int kind) {
+			this.time = time;
+			this.kind = kind;
+			this.count = 0;
+		}
+
+		/**
+		 * Adds an action to the block.
+		 * @param code The action code.
+		 * @param a The train or person id.
+		 * @param b The car or from car id.
+		 * @param c The to car id (0 for train actions).
+		 */
+		void add(int code, int a, int b, int c) {
+			//O(1) amortized
+			int at = count * 4;
+			if(at + 4 > actions.length) {
+				actions = Arrays.copyOf(actions, actions.length * 2);
+			}
+			actions[at] = code;
+			actions[at + 1] = a;
+			actions[at + 2] = b;
+			actions[at + 3] = c;
+			count++;
+		}
+	}
+
+	/**
+	 * Reads the next block.
+	 * @return The block, or null when the source has no blocks left. The block may
+	 * be reused by the next call, so it must be used up before then.
+	 */
+	Block nextBlock();
+
+	/**
+	 * Releases whatever the source holds open.
+	 */
+	void close();
+}
@@ -0,0 +1,190 @@
+/**
+ * An open-addressing hash index with linear probing, shared by UniqueList and
+ * UniquePairList. The lists keep their own insertion order and hand the index
+ * the entries to find by key; the index only knows each entry's key and the
+ * spread hash code cached on it.
+ * @param <E> The type of entry in the index.
+ */
+class HashIndex<E extends HashIndex.Entry> {
+
+	/**
+	 * Something kept in the index, which caches the spread hash code of its key.
+	 */
+	abstract static class Entry {
+
+		/**
+		 * The spread hash code of the key, cached for probing and resizing.
+		 */
+		int hash;
+
+		/**
+		 * Gets the key the entry is found by.
+		 * @return The key.
+		 */
+		abstract Object key();
+	}
+
+	/**
+	 * The initial capacity of the table, must be a power of two.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The slots of the table, or null until the first entry is added.
+	 */
+	private E[] table;
+
+	/**
+	 * The number of entries in the table.
+	 */
+	private int size = 0;
+
+	/**
+	 * Counts the lookups of this index, or null if nothing counts them.
+	 */
+	private ProbeCounter probes;
+
+	/**
+	 * Scrambles a hash code so that runs of similar hash codes (like those of
+	 * "Car1", "Car2", ...) do not end up in one long probe run.
+	 * @param key The key to hash.
+	 * @return The spread hash code.
+	 */
+	static int hash(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Attaches a counter that every later lookup of this index is recorded in.
+	 * @param probes The counter, or null to stop counting.
+	 */
+	void countProbes(ProbeCounter probes) {
+		this.probes = probes;
+	}
+
+	/**
+	 * Gets the counter the lookups of this index are recorded in.
+	 * @return The counter, or null if nothing counts them.
+	 */
+	ProbeCounter getProbeCounter() {
+		return probes;
+	}
+
+	/**
+	 * Finds the slot holding the entry with a key equal to the given one.
+	 * @param key The key to look for.
+	 * @param hash The spread hash code of the key.
+	 * @return The slot of the entry, or -1 if there is none.
+	 */
+	int find(Object key, int hash) {
+		//O(1) average
+		if(table == null) {
+			return -1;
+		}
+		int mask = table.length - 1;
+		int start = hash & mask;
+		int i = start;
+		E e;
+		while((e = table[i]) != null) {
+			if(e.hash == hash) {
+				Object k = e.key();
+				if(k == key || k.equals(key)) {
+					if(probes != null) {
+						probes.lookedUp(((i - start) & mask) + 1);
+					}
+					return i;
+				}
+			}
+			i = (i + 1) & mask;
+		}
+		if(probes != null) {
+			probes.lookedUp(((i - start) & mask) + 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the entry in a slot.
+	 * @param slot A slot returned by find.
+	 * @return The entry.
+	 */
+	E at(int slot) {
+		return table[slot];
+	}
+
+	/**
+	 * Adds an entry whose key is not in the index yet, growing the table first
+	 * if it would be more than half full.
+	 * @param entry The entry, with its hash already set.
+	 */
+	void add(E entry) {
+		//O(1) amortized
+		if(table == null || (size + 1) * 2 > table.length) {
+			grow();
+		}
+		place(entry);
+		size++;
+	}
+
+	/**
+	 * Clears a slot and shifts later entries of the same probe run back into the
+	 * hole so that lookups never stop early at it.
+	 * @param slot A slot returned by find.
+	 */
+	void removeAt(int slot) {
+		//O(1) average
+		int mask = table.length - 1;
+		int hole = slot;
+		int i = slot;
+		table[hole] = null;
+		size--;
+		while(true) {
+			i = (i + 1) & mask;
+			E e = table[i];
+			if(e == null) {
+				return;
+			}
+			int home = e.hash & mask;
+			//move e into the hole unless its home slot lies cyclically in (hole, i]
+			boolean stays = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);
+			if(!stays) {
+				table[hole] = e;
+				table[i] = null;
+				hole = i;
+			}
+		}
+	}
+
+	/**
+	 * Puts an entry into the first free slot of its probe sequence.
+	 * @param entry The entry.
+	 */
+	private void place(E entry) {
+		int mask = table.length - 1;
+		int i = entry.hash & mask;
+		while(table[i] != null) {
+			i = (i + 1) & mask;
+		}
+		table[i] = entry;
+	}
+
+	/**
+	 * Doubles the table (or creates it) and places every entry again.
+	 */
+	private void grow() {
+		//O(n)
+		E[] old = table;
+		int capacity = old == null ? INITIAL_CAPACITY : old.length << 1;
+		@SuppressWarnings("unchecked")
+		E[] grown = (E[]) new Entry[capacity];
+		table = grown;
+		if(old != null) {
+			for(E e : old) {
+				if(e != null) {
+					place(e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+/**
+ * A list of unique dense ids (such as car ids from a SymbolTable) in the order they
+ * were appended. The ids are linked through arrays indexed by id, so appending,
+ * removing and checking an id are all O(1) without hashing or allocating.
+ */
+class IdList {
+
+	/**
+	 * Marks an id that is not in the list.
+	 */
+	private static final int ABSENT = -2;
+
+	/**
+	 * Marks the end of the list.
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * The id after each id (NONE for the last), indexed by id.
+	 */
+	private int[] next = new int[0];
+
+	/**
+	 * The id before each id (NONE for the first, ABSENT if the id is not in the list), indexed by id.
+	 */
+	private int[] previous = new int[0];
+
+	/**
+	 * The first id in the list.
+	 */
+	private int first = NONE;
+
+	/**
+	 * The last id in the list.
+	 */
+	private int last = NONE;
+
+	/**
+	 * The number of ids in the list.
+	 */
+	private int size = 0;
+
+	/**
+	 * Appends an id to the end of the list if it is not in the list already.
+	 * @param id The id.
+	 * @return Boolean stating whether the id was appended.
+	 */
+	public boolean append(int id) {
+		//O(1) amortized
+		if(contains(id)) {
+			return false;
+		}
+		if(id >= previous.length) {
+			int length = Math.max(id + 1, previous.length * 2);
+			int from = previous.length;
+			next = Arrays.copyOf(next, length);
+			previous = Arrays.copyOf(previous, length);
+			Arrays.fill(previous, from, length, ABSENT);
+		}
+		previous[id] = last;
+		next[id] = NONE;
+		if(last == NONE) {
+			first = id;
+		}
+		else {
+			next[last] = id;
+		}
+		last = id;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes an id from the list.
+	 * @param id The id.
+	 * @return Boolean stating whether the id was in the list.
+	 */
+	public boolean remove(int id) {
+		//O(1)
+		if(!contains(id)) {
+			return false;
+		}
+		int before = previous[id];
+		int after = next[id];
+		if(before == NONE) {
+			first = after;
+		}
+		else {
+			next[before] = after;
+		}
+		if(after == NONE) {
+			last = before;
+		}
+		else {
+			previous[after] = before;
+		}
+		previous[id] = ABSENT;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Checks whether an id is in the list.
+	 * @param id The id.
+	 * @return Boolean stating whether the id is in the list.
+	 */
+	public boolean contains(int id) {
+		//O(1)
+		return id >= 0 && id < previous.length && previous[id] != ABSENT;
+	}
+
+	/**
+	 * Removes every id.
+	 */
+	public void clear() {
+		//O(n) where n=the largest id appended
+		Arrays.fill(previous, ABSENT);
+		first = NONE;
+		last = NONE;
+		size = 0;
+	}
+
+	/**
+	 * Gets the first id.
+	 * @return The first id, or -1 if the list is empty.
+	 */
+	public int first() {
+		return first;
+	}
+
+	/**
+	 * Gets the id after an id in the list.
+	 * @param id An id in the list.
+	 * @return The next id, or -1 if the id is the last.
+	 */
+	public int next(int id) {
+		return next[id];
+	}
+
+	/**
+	 * Gets the number of ids in the list.
+	 * @return The size of the list.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Main method.
+	 * @param args command line arguments.
+	 */
+	public static void main(String[] args) {
+		IdList ids = new IdList();
+		if(ids.append(5) && ids.append(2) && ids.append(9) && !ids.append(2) && ids.size() == 3 && ids.contains(9) && !ids.contains(3)) {
+			System.out.println("Yay 1");
+		}
+		if(ids.remove(2) && !ids.remove(2) && !ids.contains(2) && ids.first() == 5 && ids.next(5) == 9 && ids.next(9) == -1) {
+			System.out.println("Yay 2");
+		}
+		ids.append(2);
+		ids.remove(5);
+		String order = "";
+		for(int id = ids.first(); id != -1; id = ids.next(id)) {
+			order += id + " ";
+		}
+		ids.clear();
+		if(order.equals("9 2 ") && ids.size() == 0 && ids.first() == -1 && ids.append(9)) {
+			System.out.println("Yay 3");
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * An event source reading the blocks of a train log or a people log whose initial
+ * positions have already been read. Names are turned into ids with the simulator's
+ * symbol tables, which only lookup, so a source can be read ahead on another thread.
+ */
+class LogEventSource implements EventSource {
+
+	/**
+	 * The log, positioned after its initial positions.
+	 */
+	private final LogReader log;
+
+	/**
+	 * TRAIN_ACTIONS for a train log, PERSON_ACTIONS for a people log.
+	 */
+	private final int kind;
+
+	/**
+	 * The train names.
+	 */
+	private final SymbolTable trainSymbols;
+
+	/**
+	 * The car names.
+	 */
+	private final SymbolTable carSymbols;
+
+	/**
+	 * The person names.
+	 */
+	private final SymbolTable personSymbols;
+
+	/**
+	 * The block handed out last, reused for the next one.
+	 */
+	private final Block block = new Block();
+
+	/**
+	 * Constructor for the log event source.
+	 * @param log The log, positioned after its initial positions.
+	 * @param kind TRAIN_ACTIONS for a train log, PERSON_ACTIONS for a people log.
+	 * @param trainSymbols The train names.
+	 * @param carSymbols The car names.
+	 * @param personSymbols The person names.
+	 */
+	LogEventSource(LogReader log, int kind, SymbolTable trainSymbols, SymbolTable carSymbols, SymbolTable personSymbols) {
+		this.log = log;
+		this.kind = kind;
+		this.trainSymbols = trainSymbols;
+		this.carSymbols = carSymbols;
+		this.personSymbols = personSymbols;
+	}
+
+	/**
+	 * Reads the next block, the same lines Simulator.doNextTrainAction and
+	 * doNextPersonAction read.
+	 * @return The block, or null at the end of the log.
+	 */
+	public Block nextBlock() {
+		//O(n) where n=the number of lines in the block
+		int time = log.nextTime();
+		if(time == -1) {
+			return null;
+		}
+		block.reset(time, kind);
+		while(log.nextLine()) {
+			if(log.isBlank()) {
+				break;
+			}
+			if(kind == TRAIN_ACTIONS) {
+				int code = log.tokenEquals(1, "connect") ? CONNECT : DISCONNECT;
+				block.add(code, trainSymbols.lookup(log.token(0)), carSymbols.lookup(log.token(2)), 0);
+			}
+			else {
+				block.add(MOVE, personSymbols.lookup(log.token(0)), carSymbols.lookup(log.token(1)),
+						carSymbols.lookup(log.token(2)));
+			}
+		}
+		return block;
+	}
+
+	/**
+	 * Releases the log.
+	 */
+	public void close() {
+		log.close();
+	}
+}
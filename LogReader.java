@@ -0,0 +1,525 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a train or people log line by line straight out of a memory mapped file.
+ * Lines are split into space separated tokens in place (like String.split(" ")),
+ * times are parsed from the bytes, and each distinct name is only turned into a
+ * String once, so reading a line allocates nothing.
+ */
+class LogReader implements Closeable {
+
+	/**
+	 * The initial capacity of the name cache, must be a power of two.
+	 */
+	private static final int INITIAL_CACHE_CAPACITY = 64;
+
+	/**
+	 * The file being read.
+	 */
+	private final File file;
+
+	/**
+	 * The mapped contents of the file.
+	 */
+	private MappedByteBuffer buffer;
+
+	/**
+	 * The number of bytes that can be read (only whole lines when following).
+	 */
+	private int limit;
+
+	/**
+	 * Whether the file is still being written, so a last line without a newline
+	 * is not finished yet.
+	 */
+	private boolean follow = false;
+
+	/**
+	 * The offset of the first byte of the next line.
+	 */
+	private int position = 0;
+
+	/**
+	 * The offset of the first byte of the current line.
+	 */
+	private int lineStart = 0;
+
+	/**
+	 * The offset just past the last byte of the current line (without the line break).
+	 */
+	private int lineEnd = 0;
+
+	/**
+	 * The number of tokens on the current line.
+	 */
+	private int tokenCount = 0;
+
+	/**
+	 * The offsets of the first byte of each token on the current line.
+	 */
+	private int[] tokenStarts = new int[4];
+
+	/**
+	 * The offsets just past the last byte of each token on the current line.
+	 */
+	private int[] tokenEnds = new int[4];
+
+	/**
+	 * The bytes of every name handed out so far, indexed like cachedNames.
+	 */
+	private byte[][] cachedBytes = new byte[INITIAL_CACHE_CAPACITY][];
+
+	/**
+	 * Names handed out so far, in an open-addressing table keyed by the hash of their bytes.
+	 */
+	private String[] cachedNames = new String[INITIAL_CACHE_CAPACITY];
+
+	/**
+	 * The number of names in the cache.
+	 */
+	private int cachedCount = 0;
+
+	/**
+	 * Maps a log file into memory.
+	 * @param file The file to read.
+	 * @throws IOException if the file can not be opened or is too large to map.
+	 */
+	public LogReader(File file) throws IOException {
+		this.file = file;
+		map();
+		limit = buffer.capacity();
+	}
+
+	/**
+	 * Creates a second reader of the same mapped file, for reading it on another
+	 * thread. The mapping is shared, the position and the name cache are not.
+	 * @param other The reader to share the mapping of.
+	 */
+	LogReader(LogReader other) {
+		this.file = other.file;
+		this.buffer = other.buffer;
+		this.limit = other.limit;
+	}
+
+	/**
+	 * Maps the whole file as it is now.
+	 * @throws IOException if the file can not be opened or is too large to map.
+	 */
+	private void map() throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long length = channel.size();
+			if(length > Integer.MAX_VALUE) {
+				throw new IOException("File " + file + " is too large to map");
+			}
+			//the mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+		}
+	}
+
+	/**
+	 * Treats the file as one that is still being written, like tail -f: only lines
+	 * ending in a newline are read, and refresh picks up lines added later.
+	 */
+	public void follow() {
+		follow = true;
+		limit = wholeLines(limit);
+	}
+
+	/**
+	 * Maps the file again if it has grown since it was last mapped.
+	 * @return Boolean stating whether there are new lines to read.
+	 * @throws IOException if the file can not be mapped again.
+	 */
+	public boolean refresh() throws IOException {
+		if(buffer == null) {
+			return false;
+		}
+		int before = limit;
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if(channel.size() > buffer.capacity()) {
+				map();
+			}
+		}
+		limit = follow ? wholeLines(buffer.capacity()) : buffer.capacity();
+		return limit > before;
+	}
+
+	/**
+	 * Finds the end of the last whole line.
+	 * @param length The number of bytes available.
+	 * @return The offset just past the last newline, or 0 if there is none.
+	 */
+	private int wholeLines(int length) {
+		//O(k) where k = the length of the unfinished last line
+		int i = length;
+		while(i > 0 && buffer.get(i - 1) != '\n') {
+			i--;
+		}
+		return i;
+	}
+
+	/**
+	 * Checks whether the block starting at the next line has been written up to
+	 * its closing blank line. A file that is not being followed is finished, so
+	 * every block in it is complete.
+	 * @return Boolean stating whether the block can be read.
+	 */
+	public boolean blockComplete() {
+		//O(k) where k = the length of the block
+		if(!follow) {
+			return true;
+		}
+		int start = position;
+		for(int i = position; i < limit; i++) {
+			if(buffer.get(i) == '\n') {
+				if(i == start || (i == start + 1 && buffer.get(start) == '\r')) {
+					return true;
+				}
+				start = i + 1;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if there is another line to read.
+	 * @return Boolean stating whether there is another line.
+	 */
+	public boolean hasNextLine() {
+		//O(1)
+		return position < limit;
+	}
+
+	/**
+	 * Moves to the next line and splits it into tokens.
+	 * @return Boolean stating whether there was another line.
+	 */
+	public boolean nextLine() {
+		//O(k) where k = the length of the line
+		if(position >= limit) {
+			return false;
+		}
+		lineStart = position;
+		tokenCount = 0;
+		int tokenStart = position;
+		int i = position;
+		while(i < limit) {
+			byte b = buffer.get(i);
+			if(b == '\n') {
+				break;
+			}
+			if(b == ' ') {
+				addToken(tokenStart, i);
+				tokenStart = i + 1;
+			}
+			i++;
+		}
+		position = i < limit ? i + 1 : i;
+		lineEnd = i;
+		if(lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+			lineEnd--;
+		}
+		addToken(tokenStart, lineEnd);
+		//like String.split, trailing empty tokens are dropped
+		while(lineEnd > lineStart && tokenCount > 0 && tokenStarts[tokenCount - 1] == tokenEnds[tokenCount - 1]) {
+			tokenCount--;
+		}
+		return true;
+	}
+
+	/**
+	 * Records a token on the current line.
+	 * @param start The offset of the first byte of the token.
+	 * @param end The offset just past the last byte of the token.
+	 */
+	private void addToken(int start, int end) {
+		if(tokenCount == tokenStarts.length) {
+			tokenStarts = java.util.Arrays.copyOf(tokenStarts, tokenCount * 2);
+			tokenEnds = java.util.Arrays.copyOf(tokenEnds, tokenCount * 2);
+		}
+		tokenStarts[tokenCount] = start;
+		tokenEnds[tokenCount] = Math.max(start, end);
+		tokenCount++;
+	}
+
+	/**
+	 * Checks if the current line is empty.
+	 * @return Boolean stating whether the current line is empty.
+	 */
+	public boolean isBlank() {
+		//O(1)
+		return lineEnd == lineStart;
+	}
+
+	/**
+	 * Gets the number of tokens on the current line.
+	 * @return The number of tokens.
+	 */
+	public int tokenCount() {
+		//O(1)
+		return tokenCount;
+	}
+
+	/**
+	 * Checks if a token on the current line is equal to a word, without creating a String.
+	 * @param index The index of the token.
+	 * @param word The word to compare to (ASCII).
+	 * @return Boolean stating whether the token is the word.
+	 */
+	public boolean tokenEquals(int index, String word) {
+		//O(k) where k = the length of the word
+		checkToken(index);
+		int start = tokenStarts[index];
+		if(tokenEnds[index] - start != word.length()) {
+			return false;
+		}
+		for(int i = 0; i < word.length(); i++) {
+			if(buffer.get(start + i) != word.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the length of a token on the current line in bytes.
+	 * @param index The index of the token.
+	 * @return The number of bytes in the token.
+	 */
+	public int tokenLength(int index) {
+		//O(1)
+		checkToken(index);
+		return tokenEnds[index] - tokenStarts[index];
+	}
+
+	/**
+	 * Copies the bytes of a token on the current line, without creating a String
+	 * or adding the name to the cache.
+	 * @param index The index of the token.
+	 * @param into The array to copy into, at least tokenLength(index) long.
+	 */
+	public void copyToken(int index, byte[] into) {
+		//O(k) where k = the length of the token
+		checkToken(index);
+		buffer.get(tokenStarts[index], into, 0, tokenEnds[index] - tokenStarts[index]);
+	}
+
+	/**
+	 * Gets a token on the current line as a String. The same String instance is
+	 * returned every time the same name is read.
+	 * @param index The index of the token.
+	 * @return The token.
+	 */
+	public String token(int index) {
+		//O(k) where k = the length of the token
+		checkToken(index);
+		int start = tokenStarts[index];
+		int length = tokenEnds[index] - start;
+		int hash = 1;
+		for(int i = 0; i < length; i++) {
+			hash = 31 * hash + buffer.get(start + i);
+		}
+		hash *= 0x9E3779B9;
+		hash ^= hash >>> 16;
+		int mask = cachedNames.length - 1;
+		int slot = hash & mask;
+		byte[] bytes;
+		while((bytes = cachedBytes[slot]) != null) {
+			if(sameBytes(bytes, start, length)) {
+				return cachedNames[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		bytes = new byte[length];
+		buffer.get(start, bytes);
+		String name = new String(bytes, StandardCharsets.UTF_8);
+		cachedBytes[slot] = bytes;
+		cachedNames[slot] = name;
+		cachedCount++;
+		if(cachedCount * 2 > cachedNames.length) {
+			growCache();
+		}
+		return name;
+	}
+
+	/**
+	 * Checks a cached name against a range of the mapped file.
+	 * @param bytes The bytes of the cached name.
+	 * @param start The offset of the range in the file.
+	 * @param length The length of the range.
+	 * @return Boolean stating whether the bytes are the same.
+	 */
+	private boolean sameBytes(byte[] bytes, int start, int length) {
+		if(bytes.length != length) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if(bytes[i] != buffer.get(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Doubles the name cache and re-inserts every name.
+	 */
+	private void growCache() {
+		byte[][] oldBytes = cachedBytes;
+		String[] oldNames = cachedNames;
+		cachedBytes = new byte[oldBytes.length * 2][];
+		cachedNames = new String[oldNames.length * 2];
+		int mask = cachedNames.length - 1;
+		for(int i = 0; i < oldBytes.length; i++) {
+			byte[] bytes = oldBytes[i];
+			if(bytes == null) {
+				continue;
+			}
+			int hash = 1;
+			for(byte b : bytes) {
+				hash = 31 * hash + b;
+			}
+			hash *= 0x9E3779B9;
+			hash ^= hash >>> 16;
+			int slot = hash & mask;
+			while(cachedBytes[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			cachedBytes[slot] = bytes;
+			cachedNames[slot] = oldNames[i];
+		}
+	}
+
+	/**
+	 * Throws the same kind of exception String.split would lead to for a missing token.
+	 * @param index The index of the token.
+	 */
+	private void checkToken(int index) {
+		if(index >= tokenCount) {
+			throw new ArrayIndexOutOfBoundsException("Index " + index + " out of bounds for length " + tokenCount);
+		}
+	}
+
+	/**
+	 * Gets the time on the current line if the line is exactly a "HH:MM" time.
+	 * @return The time in minutes since midnight, or -1 if the line is not a time.
+	 */
+	public int time() {
+		//O(1), parsed from the digits without a regex
+		if(lineEnd - lineStart != 5 || buffer.get(lineStart + 2) != ':') {
+			return -1;
+		}
+		int h1 = digit(lineStart);
+		int h2 = digit(lineStart + 1);
+		int m1 = digit(lineStart + 3);
+		int m2 = digit(lineStart + 4);
+		if((h1 | h2 | m1 | m2) < 0) {
+			return -1;
+		}
+		return (h1 * 10 + h2) * 60 + m1 * 10 + m2;
+	}
+
+	/**
+	 * Reads a decimal digit from the file.
+	 * @param offset The offset of the byte.
+	 * @return The value of the digit, or -1 if the byte is not a digit.
+	 */
+	private int digit(int offset) {
+		int d = buffer.get(offset) - '0';
+		return d >= 0 && d <= 9 ? d : -1;
+	}
+
+	/**
+	 * Skips through the file until a time is found.
+	 * @return The time in minutes since midnight, or -1 at the end of the file.
+	 */
+	public int nextTime() {
+		while(nextLine()) {
+			int time = time();
+			if(time != -1) {
+				return time;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the offset of the next line, which can be passed to seek later.
+	 * @return The offset of the next line.
+	 */
+	public long position() {
+		return position;
+	}
+
+	/**
+	 * Moves to a position returned by position().
+	 * @param offset The offset of the next line to read.
+	 */
+	public void seek(long offset) {
+		if(offset < 0 || offset > limit) {
+			throw new IllegalArgumentException("Offset " + offset + " is outside of the file");
+		}
+		position = (int)offset;
+		lineStart = position;
+		lineEnd = position;
+		tokenCount = 0;
+	}
+
+	/**
+	 * Releases the mapped file.
+	 */
+	public void close() {
+		//the mapping itself is unmapped when it is garbage collected
+		buffer = null;
+		limit = 0;
+		position = 0;
+	}
+
+	/**
+	 * Appends text to a log, as whoever writes it would.
+	 * @param log The log.
+	 * @param text The text to append.
+	 * @throws IOException if the log can not be written.
+	 */
+	private static void append(File log, String text) throws IOException {
+		Files.writeString(log.toPath(), text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Main method, reads a log while it is written.
+	 * @param args command line arguments.
+	 * @throws IOException if the temporary log can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File log = File.createTempFile("trains", ".txt");
+		log.deleteOnExit();
+		append(log, "T1 C1 C2\n\n00:01\nT1 rev");
+		LogReader r = new LogReader(log);
+		r.follow();
+		if(r.nextLine() && r.tokenCount() == 3 && r.token(0).equals("T1") && r.tokenEquals(2, "C2")
+				&& r.nextLine() && r.isBlank() && !r.blockComplete()) {
+			System.out.println("Yay 1");
+		}
+
+		//the unfinished line is only read once its newline is written
+		long block = r.position();
+		boolean complete = r.nextTime() == 1 && !r.nextLine();
+		append(log, "erse\n\n");
+		if(complete && r.refresh() && r.blockComplete() && r.nextLine() && r.token(1).equals("reverse") && !r.refresh()) {
+			System.out.println("Yay 2");
+		}
+
+		r.seek(block);
+		if(r.nextTime() == 1 && r.nextLine() && r.tokenCount() == 2 && r.nextLine() && r.isBlank() && r.nextTime() == -1) {
+			System.out.println("Yay 3");
+		}
+		r.close();
+	}
+}
@@ -0,0 +1,431 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An index of where everybody and every car was over time, recorded while the
+ * simulator replays the logs. Each person has a list of car intervals and each car
+ * has lists of train/position/neighbour intervals and of visits, all kept in time
+ * order, so questions about any replayed moment are answered with binary searches
+ * instead of another replay. Everything is stored by dense id; -1 means "none".
+ * Times are minutes since midnight, with the initial positions at time -1.
+ */
+class OccupancyTimeline {
+
+	/**
+	 * The end of a visit that has not ended yet.
+	 */
+	private static final int OPEN = Integer.MAX_VALUE;
+
+	/**
+	 * A growable list of fixed-size integer records, the first field of which is a
+	 * time that never goes down.
+	 */
+	private static class Track {
+
+		/**
+		 * The number of fields in each record.
+		 */
+		private final int stride;
+
+		/**
+		 * The records, one after the other.
+		 */
+		private int[] data;
+
+		/**
+		 * The number of records.
+		 */
+		private int size = 0;
+
+		/**
+		 * Constructor for the track class.
+		 * @param stride The number of fields in each record.
+		 */
+		Track(int stride) {
+			this.stride = stride;
+			this.data = new int[stride * 2];
+		}
+
+		/**
+		 * Makes room for one more record.
+		 * @return The offset of the new record.
+		 */
+		private int next() {
+			int offset = size * stride;
+			if(offset + stride > data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			size++;
+			return offset;
+		}
+
+		/**
+		 * Finds the last record at or before a time.
+		 * @param time The time.
+		 * @return The offset of the record, or -1 if every record is later.
+		 */
+		int lastAt(int time) {
+			//O(log n)
+			int low = 0;
+			int high = size - 1;
+			int found = -1;
+			while(low <= high) {
+				int mid = (low + high) >>> 1;
+				if(data[mid * stride] <= time) {
+					found = mid;
+					low = mid + 1;
+				}
+				else {
+					high = mid - 1;
+				}
+			}
+			return found == -1 ? -1 : found * stride;
+		}
+	}
+
+	/**
+	 * The car intervals of each person (time, car), indexed by person id.
+	 */
+	private Track[] personCars = new Track[16];
+
+	/**
+	 * The placement intervals of each car (time, train, position, previous car, next car), indexed by car id.
+	 */
+	private Track[] carPlaces = new Track[16];
+
+	/**
+	 * The occupant count intervals of each car (time, count), indexed by car id.
+	 */
+	private Track[] carCounts = new Track[16];
+
+	/**
+	 * The visits to each car (start, end, person) in boarding order, indexed by car id.
+	 */
+	private Track[] carVisits = new Track[16];
+
+	/**
+	 * The offset of each person's current visit in their car's visits, indexed by person id.
+	 */
+	private int[] openVisit = new int[16];
+
+	/**
+	 * The number of actions the timeline has recorded.
+	 */
+	private long actions = 0;
+
+	/**
+	 * The timeline is complete for every time before this one.
+	 */
+	private int validBefore = -1;
+
+	/**
+	 * Gets the track for an id, creating it (and growing the array) if needed.
+	 * @param tracks The tracks, indexed by id.
+	 * @param id The id.
+	 * @param stride The number of fields in each record.
+	 * @return The tracks, or a larger copy of them.
+	 */
+	private static Track[] ensure(Track[] tracks, int id, int stride) {
+		if(id >= tracks.length) {
+			tracks = Arrays.copyOf(tracks, Math.max(id + 1, tracks.length * 2));
+		}
+		if(tracks[id] == null) {
+			tracks[id] = new Track(stride);
+		}
+		return tracks;
+	}
+
+	/**
+	 * Records where a car is and who its neighbours are.
+	 * @param time The time of the change.
+	 * @param c The car.
+	 * @param train The id of the train the car is on, or -1 if it is decoupled.
+	 * @param position The position of the car on the train, or -1 if it is decoupled.
+	 */
+	void placeCar(int time, Car c, int train, int position) {
+		//O(1) amortized
+		int id = c.getId();
+		carPlaces = ensure(carPlaces, id, 5);
+		Track track = carPlaces[id];
+		int at = track.next();
+		track.data[at] = time;
+		track.data[at + 1] = train;
+		track.data[at + 2] = position;
+		track.data[at + 3] = c.getPrevious() == null ? -1 : c.getPrevious().getId();
+		track.data[at + 4] = c.getNext() == null ? -1 : c.getNext().getId();
+	}
+
+	/**
+	 * Records where every car of a chain is, starting at a car.
+	 * @param time The time of the change.
+	 * @param first The first car to record.
+	 * @param train The id of the train the chain is on, or -1 if it is decoupled.
+	 */
+	void placeChain(int time, Car first, int train) {
+		//O(n) where n=the number of cars from first to the end of the chain
+		for(Car c = first; c != null; c = c.getNext()) {
+			placeCar(time, c, train, train == -1 ? -1 : c.getIndexedPosition());
+		}
+	}
+
+	/**
+	 * Records a person getting into a car.
+	 * @param time The time of the move.
+	 * @param person The id of the person.
+	 * @param car The id of the car.
+	 */
+	void board(int time, int person, int car) {
+		//O(1) amortized
+		personCars = ensure(personCars, person, 2);
+		Track track = personCars[person];
+		int at = track.next();
+		track.data[at] = time;
+		track.data[at + 1] = car;
+
+		carVisits = ensure(carVisits, car, 3);
+		Track visits = carVisits[car];
+		at = visits.next();
+		visits.data[at] = time;
+		visits.data[at + 1] = OPEN;
+		visits.data[at + 2] = person;
+		if(person >= openVisit.length) {
+			openVisit = Arrays.copyOf(openVisit, Math.max(person + 1, openVisit.length * 2));
+		}
+		openVisit[person] = at;
+		count(time, car, 1);
+	}
+
+	/**
+	 * Records a person moving from one car to another.
+	 * @param time The time of the move.
+	 * @param person The id of the person.
+	 * @param from The id of the car they left.
+	 * @param to The id of the car they got into.
+	 */
+	void move(int time, int person, int from, int to) {
+		//O(1) amortized
+		carVisits[from].data[openVisit[person] + 1] = time;
+		count(time, from, -1);
+		board(time, person, to);
+	}
+
+	/**
+	 * Changes the occupant count of a car.
+	 * @param time The time of the change.
+	 * @param car The id of the car.
+	 * @param change How much the count changes by.
+	 */
+	private void count(int time, int car, int change) {
+		carCounts = ensure(carCounts, car, 2);
+		Track track = carCounts[car];
+		int current = track.size == 0 ? 0 : track.data[(track.size - 1) * 2 + 1];
+		int at = track.next();
+		track.data[at] = time;
+		track.data[at + 1] = current + change;
+	}
+
+	/**
+	 * Marks how far the timeline has been recorded.
+	 * @param actions The number of actions recorded.
+	 * @param nextTime The time of the next block not recorded yet, or -1 if there are none.
+	 */
+	void recordedUpTo(long actions, int nextTime) {
+		this.actions = actions;
+		this.validBefore = nextTime == -1 ? Integer.MAX_VALUE : nextTime;
+	}
+
+	/**
+	 * Gets the number of actions the timeline has recorded.
+	 * @return The number of actions.
+	 */
+	public long getActions() {
+		return actions;
+	}
+
+	/**
+	 * Checks whether every action at or before a time has been recorded.
+	 * @param time The time in minutes since midnight.
+	 * @return Boolean stating whether queries at that time can be answered.
+	 */
+	public boolean covers(int time) {
+		return time < validBefore;
+	}
+
+	/**
+	 * Gets the car a person was in at a time.
+	 * @param person The id of the person.
+	 * @param time The time in minutes since midnight.
+	 * @return The id of the car, or -1 if the person is unknown.
+	 */
+	public int carOf(int person, int time) {
+		//O(log n) where n=the number of moves of the person
+		return field(personCars, person, time, 1);
+	}
+
+	/**
+	 * Gets the train a car was on at a time.
+	 * @param car The id of the car.
+	 * @param time The time in minutes since midnight.
+	 * @return The id of the train, or -1 if the car was decoupled.
+	 */
+	public int trainOf(int car, int time) {
+		//O(log n) where n=the number of times the car was moved
+		return field(carPlaces, car, time, 1);
+	}
+
+	/**
+	 * Gets the position of a car on its train at a time.
+	 * @param car The id of the car.
+	 * @param time The time in minutes since midnight.
+	 * @return The position, or -1 if the car was decoupled.
+	 */
+	public int positionOf(int car, int time) {
+		//O(log n) where n=the number of times the car was moved
+		return field(carPlaces, car, time, 2);
+	}
+
+	/**
+	 * Gets the car in front of a car at a time.
+	 * @param car The id of the car.
+	 * @param time The time in minutes since midnight.
+	 * @return The id of the previous car, or -1 if there was none.
+	 */
+	public int previousOf(int car, int time) {
+		//O(log n) where n=the number of times the car was moved
+		return field(carPlaces, car, time, 3);
+	}
+
+	/**
+	 * Gets the car behind a car at a time.
+	 * @param car The id of the car.
+	 * @param time The time in minutes since midnight.
+	 * @return The id of the next car, or -1 if there was none.
+	 */
+	public int nextOf(int car, int time) {
+		//O(log n) where n=the number of times the car was moved
+		return field(carPlaces, car, time, 4);
+	}
+
+	/**
+	 * Gets the number of people in a car at a time.
+	 * @param car The id of the car.
+	 * @param time The time in minutes since midnight.
+	 * @return The number of occupants.
+	 */
+	public int countOf(int car, int time) {
+		//O(log n) where n=the number of moves into and out of the car
+		return Math.max(0, field(carCounts, car, time, 1));
+	}
+
+	/**
+	 * Gets the people in a car at a time, in boarding order.
+	 * @param car The id of the car.
+	 * @param time The time in minutes since midnight.
+	 * @return The ids of the occupants.
+	 */
+	public int[] occupantsOf(int car, int time) {
+		//O(log n + k) where k=the number of visits scanned back from the time
+		//until every occupant has been found
+		int[] found = new int[countOf(car, time)];
+		if(found.length == 0) {
+			return found;
+		}
+		Track visits = carVisits[car];
+		int at = visits.lastAt(time);
+		int left = found.length;
+		for(; at >= 0 && left > 0; at -= 3) {
+			if(visits.data[at + 1] > time) {
+				found[--left] = visits.data[at + 2];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the suspects for a murder the same way Simulator.getMurderSuspects does,
+	 * but at any recorded time: the people in the murder car, or else the people in
+	 * the nearest occupied cars in front of and behind it.
+	 * @param car The id of the murder car.
+	 * @param time The time of the murder in minutes since midnight.
+	 * @return The ids of the suspects.
+	 */
+	public int[] suspects(int car, int time) {
+		//O(log n) per car looked at
+		int[] onCar = occupantsOf(car, time);
+		if(onCar.length > 0) {
+			return onCar;
+		}
+		int before = previousOf(car, time);
+		while(before != -1 && countOf(before, time) == 0) {
+			before = previousOf(before, time);
+		}
+		int after = nextOf(car, time);
+		while(after != -1 && countOf(after, time) == 0) {
+			after = nextOf(after, time);
+		}
+		int[] front = before == -1 ? onCar : occupantsOf(before, time);
+		int[] back = after == -1 ? onCar : occupantsOf(after, time);
+		int[] all = Arrays.copyOf(front, front.length + back.length);
+		System.arraycopy(back, 0, all, front.length, back.length);
+		return all;
+	}
+
+	/**
+	 * Reads one field of the last record at or before a time.
+	 * @param tracks The tracks, indexed by id.
+	 * @param id The id.
+	 * @param time The time.
+	 * @param field The field to read.
+	 * @return The field, or -1 if there is no such record.
+	 */
+	private static int field(Track[] tracks, int id, int time, int field) {
+		if(id < 0 || id >= tracks.length || tracks[id] == null) {
+			return -1;
+		}
+		Track track = tracks[id];
+		int at = track.lastAt(time);
+		return at == -1 ? -1 : track.data[at + field];
+	}
+
+	/**
+	 * Main method.
+	 * @param args command line arguments.
+	 * @throws IOException if the temporary logs can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File[] logs = new CaseGenerator(12, 3, 24, 40, 60, 6, 1.0).writeTemporary();
+		Simulator s = new Simulator(logs[0], logs[1]);
+		s.enableTimeline();
+		//later times replay and record, earlier ones are looked up
+		int[] times = {30, 0, 60, 12, 45, 59};
+		boolean same = true;
+		for(int time : times) {
+			String clock = String.format("%02d:%02d", time / 60, time % 60);
+			for(int c = 0; c < 24; c++) {
+				same = same && Simulator.describe(s.timelineSuspects("C" + c, clock)).equals(Simulator.expectedSuspects(logs[0], logs[1], "C" + c, clock));
+			}
+		}
+		s.close();
+		if(same) {
+			System.out.println("Yay 1");
+		}
+
+		//cars are ids 0-3 and people 0-1 in the order they first appear
+		File trains = CaseGenerator.temporaryLog("T1 C1 C2 C3\nT2 C4\n\n00:02\nT1 disconnect C2\n\n00:04\nT2 connect C2\n\n");
+		File people = CaseGenerator.temporaryLog("P1 C1\nP2 C3\n\n00:01\nP1 C1 C2\n\n00:03\nP2 C3 C2\n\n");
+		s = new Simulator(trains, people);
+		s.enableTimeline();
+		s.moveTo(5);
+		OccupancyTimeline timeline = s.getTimeline();
+		s.close();
+		if(timeline.carOf(0, -1) == 0 && timeline.carOf(0, 1) == 1 && timeline.trainOf(1, 1) == 0 && timeline.positionOf(1, 1) == 1
+				&& timeline.trainOf(1, 2) == -1 && timeline.previousOf(1, 2) == -1 && timeline.nextOf(1, 2) == 2 && timeline.nextOf(0, 2) == -1) {
+			System.out.println("Yay 2");
+		}
+		if(Arrays.equals(timeline.occupantsOf(1, 3), new int[] {0, 1}) && timeline.countOf(2, 3) == 0 && timeline.trainOf(1, 4) == 1
+				&& timeline.previousOf(1, 4) == 3 && timeline.nextOf(3, 4) == 1 && timeline.covers(5)) {
+			System.out.println("Yay 3");
+		}
+	}
+}
@@ -0,0 +1,860 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A world kept in off-heap columns of ints instead of Person, Car and Train objects,
+ * for cases with tens of millions of people. Every train, car and person is a dense
+ * id; the car each person is in, the links between cars, the train each car is on
+ * and the people in each car are ints in direct buffers, and the names are bytes in
+ * direct buffers, so the heap holds the same handful of objects however large the
+ * case grows and the garbage collector has nothing to trace. Person and Car objects
+ * are only created as thin views for the suspects that are returned.
+ *
+ * The logs are replayed in the same order as Simulator does and contradictions in
+ * them fail with the same messages, but the world can not be printed, checkpointed
+ * or followed. A name that was never in the initial positions fails with "[h:m]
+ * Nothing is named X" (just "Nothing is named X" for the murder location), where
+ * Simulator runs into a NullPointerException. Direct buffers count against
+ * -XX:MaxDirectMemorySize, which defaults to the heap size. Run Simulator with
+ * --batch --world offheap to replay a case here.
+ */
+class OffHeapWorld {
+
+	/**
+	 * A growable column of ints in a direct buffer.
+	 */
+	private static final class IntColumn {
+
+		/**
+		 * The ints, in native byte order.
+		 */
+		private IntBuffer ints;
+
+		/**
+		 * The value of entries that were never set.
+		 */
+		private final int empty;
+
+		/**
+		 * Constructor for the column.
+		 * @param capacity The number of entries to start with.
+		 * @param empty The value of entries that were never set.
+		 */
+		IntColumn(int capacity, int empty) {
+			this.empty = empty;
+			this.ints = allocate(capacity);
+		}
+
+		/**
+		 * Allocates a direct buffer of empty ints.
+		 * @param capacity The number of ints.
+		 * @return The buffer.
+		 */
+		private IntBuffer allocate(int capacity) {
+			//O(n) where n=the capacity, direct buffers start out zeroed
+			IntBuffer ints = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+			if(empty != 0) {
+				for(int i = 0; i < capacity; i++) {
+					ints.put(i, empty);
+				}
+			}
+			return ints;
+		}
+
+		/**
+		 * Gets an entry.
+		 * @param i The index of the entry.
+		 * @return The entry.
+		 */
+		int get(int i) {
+			//O(1)
+			return ints.get(i);
+		}
+
+		/**
+		 * Sets an entry.
+		 * @param i The index of the entry.
+		 * @param value The new value.
+		 */
+		void set(int i, int value) {
+			//O(1)
+			ints.put(i, value);
+		}
+
+		/**
+		 * Makes room for a number of entries, doubling the column if it is too small.
+		 * @param n The number of entries needed.
+		 */
+		void ensure(int n) {
+			//O(1) amortized
+			int capacity = ints.capacity();
+			if(n <= capacity) {
+				return;
+			}
+			IntBuffer grown = allocate(grownCapacity(capacity, n, 4));
+			grown.put(0, ints, 0, capacity);
+			ints = grown;
+		}
+
+		/**
+		 * Gets the number of entries there is room for.
+		 * @return The capacity.
+		 */
+		int capacity() {
+			return ints.capacity();
+		}
+
+		/**
+		 * Gets the number of bytes the column holds off heap.
+		 * @return The number of bytes.
+		 */
+		long bytes() {
+			return ints.capacity() * 4L;
+		}
+	}
+
+	/**
+	 * Interns names into dense ids like SymbolTable, but keeps the bytes of the names
+	 * and the hash table in direct buffers, and takes names as bytes so reading a log
+	 * creates no Strings.
+	 */
+	private static final class Names {
+
+		/**
+		 * The bytes of every name, one after the other.
+		 */
+		private ByteBuffer bytes = ByteBuffer.allocateDirect(1024);
+
+		/**
+		 * The number of bytes used.
+		 */
+		private int used = 0;
+
+		/**
+		 * The offset of the first byte of each name, indexed by id, followed by the
+		 * number of bytes used.
+		 */
+		private final IntColumn starts = new IntColumn(64, 0);
+
+		/**
+		 * Open-addressing hash table holding the id of each name (-1 marks an empty slot).
+		 */
+		private IntColumn table = new IntColumn(64, -1);
+
+		/**
+		 * The number of names.
+		 */
+		private int size = 0;
+
+		/**
+		 * Gets the id of a name, giving the name the next free id if it is new.
+		 * @param name The bytes of the name (only the first length are used).
+		 * @param length The length of the name.
+		 * @return The id of the name.
+		 */
+		int intern(byte[] name, int length) {
+			//O(k) average where k=the length of the name
+			int slot = slotOf(name, length);
+			if(table.get(slot) != -1) {
+				return table.get(slot);
+			}
+			if(used + length > bytes.capacity()) {
+				ByteBuffer grown = ByteBuffer.allocateDirect(grownCapacity(bytes.capacity(), used + length, 1));
+				grown.put(0, bytes, 0, used);
+				bytes = grown;
+			}
+			bytes.put(used, name, 0, length);
+			used += length;
+			int id = size++;
+			starts.ensure(size + 1);
+			starts.set(size, used);
+			table.set(slot, id);
+			if(size * 2 > table.capacity()) {
+				grow();
+			}
+			return id;
+		}
+
+		/**
+		 * Gets the id of a name without interning it.
+		 * @param name The bytes of the name (only the first length are used).
+		 * @param length The length of the name.
+		 * @return The id of the name, or -1 if it was never interned.
+		 */
+		int lookup(byte[] name, int length) {
+			//O(k) average where k=the length of the name
+			return table.get(slotOf(name, length));
+		}
+
+		/**
+		 * Gets the name with the given id as a String.
+		 * @param id The id of the name.
+		 * @return The name.
+		 */
+		String name(int id) {
+			//O(k) where k=the length of the name, a new String every time
+			int start = starts.get(id);
+			byte[] name = new byte[starts.get(id + 1) - start];
+			bytes.get(start, name);
+			return new String(name, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Gets the number of names.
+		 * @return The number of names.
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Hashes a name the same way LogReader does.
+		 * @param name The bytes of the name.
+		 * @param length The length of the name.
+		 * @return The scrambled hash.
+		 */
+		private static int hash(byte[] name, int length) {
+			int hash = 1;
+			for(int i = 0; i < length; i++) {
+				hash = 31 * hash + name[i];
+			}
+			hash *= 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+
+		/**
+		 * Finds the slot holding a name, or the empty slot where it would go.
+		 * @param name The bytes of the name.
+		 * @param length The length of the name.
+		 * @return The slot.
+		 */
+		private int slotOf(byte[] name, int length) {
+			int mask = table.capacity() - 1;
+			int slot = hash(name, length) & mask;
+			int id;
+			while((id = table.get(slot)) != -1) {
+				if(sameName(id, name, length)) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * Checks a stored name against the bytes of a name.
+		 * @param id The id of the stored name.
+		 * @param name The bytes of the name.
+		 * @param length The length of the name.
+		 * @return Boolean stating whether the names are the same.
+		 */
+		private boolean sameName(int id, byte[] name, int length) {
+			int start = starts.get(id);
+			if(starts.get(id + 1) - start != length) {
+				return false;
+			}
+			for(int i = 0; i < length; i++) {
+				if(bytes.get(start + i) != name[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Doubles the hash table and re-inserts every id.
+		 */
+		private void grow() {
+			//O(n) where n=the total length of the names
+			table = new IntColumn(grownCapacity(table.capacity(), table.capacity() * 2, 4), -1);
+			int mask = table.capacity() - 1;
+			byte[] name = new byte[16];
+			for(int id = 0; id < size; id++) {
+				int start = starts.get(id);
+				int length = starts.get(id + 1) - start;
+				if(name.length < length) {
+					name = new byte[length];
+				}
+				bytes.get(start, name, 0, length);
+				int slot = hash(name, length) & mask;
+				while(table.get(slot) != -1) {
+					slot = (slot + 1) & mask;
+				}
+				table.set(slot, id);
+			}
+		}
+
+		/**
+		 * Gets the number of bytes the names hold off heap.
+		 * @return The number of bytes.
+		 */
+		long bytes() {
+			return bytes.capacity() + starts.bytes() + table.bytes();
+		}
+	}
+
+	/**
+	 * The train names.
+	 */
+	private final Names trainNames = new Names();
+
+	/**
+	 * The car names.
+	 */
+	private final Names carNames = new Names();
+
+	/**
+	 * The person names.
+	 */
+	private final Names personNames = new Names();
+
+	/**
+	 * The first car of each train, or -1 for an empty train.
+	 */
+	private final IntColumn trainHead = new IntColumn(16, -1);
+
+	/**
+	 * The last car of each train, or -1 for an empty train.
+	 */
+	private final IntColumn trainTail = new IntColumn(16, -1);
+
+	/**
+	 * The car behind each car, or -1.
+	 */
+	private final IntColumn carNext = new IntColumn(64, -1);
+
+	/**
+	 * The car in front of each car, or -1.
+	 */
+	private final IntColumn carPrevious = new IntColumn(64, -1);
+
+	/**
+	 * The train each car is on, or -1 for a decoupled car. A decoupled car with no
+	 * car in front of it heads a chain in the decoupled cars list.
+	 */
+	private final IntColumn carTrain = new IntColumn(64, -1);
+
+	/**
+	 * The first person to board each car of the people in it, or -1 for an empty car.
+	 */
+	private final IntColumn carFirst = new IntColumn(64, -1);
+
+	/**
+	 * The last person to board each car of the people in it, or -1 for an empty car.
+	 */
+	private final IntColumn carLast = new IntColumn(64, -1);
+
+	/**
+	 * The number of people in each car.
+	 */
+	private final IntColumn carCount = new IntColumn(64, 0);
+
+	/**
+	 * The car each person is in, or -1.
+	 */
+	private final IntColumn personCar = new IntColumn(64, -1);
+
+	/**
+	 * The person who boarded each person's car after them, or -1.
+	 */
+	private final IntColumn personNext = new IntColumn(64, -1);
+
+	/**
+	 * The person who boarded each person's car before them, or -1.
+	 */
+	private final IntColumn personPrevious = new IntColumn(64, -1);
+
+	/**
+	 * The bytes of the name being read, reused for every token.
+	 */
+	private byte[] scratch = new byte[64];
+
+	/**
+	 * The number of blocks applied by the last simulation.
+	 */
+	private int stepsApplied = 0;
+
+	/**
+	 * How long the last simulation spent reading the initial positions, in nanoseconds.
+	 */
+	private long setupNanos = 0;
+
+	/**
+	 * How long the last simulation spent replaying blocks, in nanoseconds.
+	 */
+	private long replayNanos = 0;
+
+	/**
+	 * How long the last simulation spent finding the suspects, in nanoseconds.
+	 */
+	private long suspectNanos = 0;
+
+	/**
+	 * Works out how large a column has to grow to, doubling it when that fits in
+	 * a direct buffer.
+	 * @param capacity The number of entries now.
+	 * @param needed The number of entries needed.
+	 * @param entryBytes The number of bytes per entry.
+	 * @return The new number of entries.
+	 * @throws RuntimeException if the entries needed do not fit in a direct buffer.
+	 */
+	private static int grownCapacity(int capacity, int needed, int entryBytes) {
+		long most = (Integer.MAX_VALUE - 8) / entryBytes;
+		if(needed > most) {
+			throw new RuntimeException("The world is too large to keep off heap");
+		}
+		return (int)Math.min(most, Math.max((long)needed, capacity * 2L));
+	}
+
+	/**
+	 * Replays the logs up to the time of the murder and finds the suspects.
+	 * @param trainFile The train log.
+	 * @param peopleFile The people log.
+	 * @param murderLocation The location of the murder (car name).
+	 * @param murderTimeStr The time of the murder ("HH:MM").
+	 * @return Views of the suspects.
+	 * @throws IOException if reading from the files fails.
+	 * @throws RuntimeException if the logs contradict themselves.
+	 */
+	public UniqueList<Person> simulate(File trainFile, File peopleFile, String murderLocation, String murderTimeStr) throws IOException {
+		String[] parts = murderTimeStr.split(":");
+		int murderTime = Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
+		long start = System.nanoTime();
+		try(LogReader trainLog = new LogReader(trainFile); LogReader peopleLog = new LogReader(peopleFile)) {
+			setupTrains(trainLog);
+			setupPeople(peopleLog);
+			long setupDone = System.nanoTime();
+			setupNanos = setupDone - start;
+
+			//the same order as Simulator.step: train blocks win ties
+			int nextTrainTime = trainLog.nextTime();
+			int nextPersonTime = peopleLog.nextTime();
+			stepsApplied = 0;
+			while(true) {
+				boolean trainDue = nextTrainTime != -1 && nextTrainTime <= murderTime;
+				boolean personDue = nextPersonTime != -1 && nextPersonTime <= murderTime;
+				if(trainDue && (!personDue || nextTrainTime <= nextPersonTime)) {
+					trainBlock(trainLog, nextTrainTime);
+					nextTrainTime = trainLog.nextTime();
+				}
+				else if(personDue) {
+					personBlock(peopleLog, nextPersonTime);
+					nextPersonTime = peopleLog.nextTime();
+				}
+				else {
+					break;
+				}
+				stepsApplied++;
+			}
+			long replayDone = System.nanoTime();
+			replayNanos = replayDone - setupDone;
+			UniqueList<Person> suspects = getMurderSuspects(murderLocation);
+			suspectNanos = System.nanoTime() - replayDone;
+			return suspects;
+		}
+	}
+
+	/**
+	 * Reads the initial train positions.
+	 * @param log The train log, at its start.
+	 */
+	private void setupTrains(LogReader log) {
+		while(log.nextLine()) {
+			if(log.isBlank()) {
+				return;
+			}
+			int train = trainNames.intern(read(log, 0), log.tokenLength(0));
+			trainHead.ensure(train + 1);
+			trainTail.ensure(train + 1);
+			for(int i = 1; i < log.tokenCount(); i++) {
+				int car = carNames.intern(read(log, i), log.tokenLength(i));
+				ensureCars(car + 1);
+				int tail = trainTail.get(train);
+				if(tail == -1) {
+					trainHead.set(train, car);
+				}
+				else {
+					carNext.set(tail, car);
+					carPrevious.set(car, tail);
+				}
+				trainTail.set(train, car);
+				carTrain.set(car, train);
+			}
+		}
+	}
+
+	/**
+	 * Reads the initial people positions. A person listed twice stays where they were first put.
+	 * @param log The people log, at its start.
+	 */
+	private void setupPeople(LogReader log) {
+		while(log.nextLine()) {
+			if(log.isBlank()) {
+				return;
+			}
+			int car = carNames.lookup(read(log, 1), log.tokenLength(1));
+			int size = personNames.size();
+			int person = personNames.intern(read(log, 0), log.tokenLength(0));
+			if(person == size) {
+				personCar.ensure(person + 1);
+				personNext.ensure(person + 1);
+				personPrevious.ensure(person + 1);
+				if(car != -1) {
+					board(person, car);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes room in every car column.
+	 * @param n The number of cars.
+	 */
+	private void ensureCars(int n) {
+		carNext.ensure(n);
+		carPrevious.ensure(n);
+		carTrain.ensure(n);
+		carFirst.ensure(n);
+		carLast.ensure(n);
+		carCount.ensure(n);
+	}
+
+	/**
+	 * Copies the bytes of a token into the scratch array.
+	 * @param log The log.
+	 * @param index The index of the token on the current line.
+	 * @return The scratch array.
+	 */
+	private byte[] read(LogReader log, int index) {
+		int length = log.tokenLength(index);
+		if(scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		log.copyToken(index, scratch);
+		return scratch;
+	}
+
+	/**
+	 * Looks up the name in a token.
+	 * @param log The log.
+	 * @param index The index of the token on the current line.
+	 * @param names The names the token is one of.
+	 * @param time The current time (for use in error messages).
+	 * @return The id of the name.
+	 * @throws RuntimeException if the name is not known.
+	 */
+	private int lookup(LogReader log, int index, Names names, int time) {
+		int id = names.lookup(read(log, index), log.tokenLength(index));
+		if(id == -1) {
+			throw new RuntimeException(stamp(time) + "Nothing is named " + log.token(index));
+		}
+		return id;
+	}
+
+	/**
+	 * Formats a time the way Simulator's error messages start.
+	 * @param time The time in minutes since midnight.
+	 * @return The time in square brackets followed by a space.
+	 */
+	private static String stamp(int time) {
+		int hour = time/60;
+		int minute = time-(hour*60);
+		return "[" + hour + ":" + minute + "] ";
+	}
+
+	/**
+	 * Applies one block of train actions.
+	 * @param log The train log, just past the time of the block.
+	 * @param time The time of the block (for use in error messages).
+	 */
+	private void trainBlock(LogReader log, int time) {
+		while(log.nextLine()) {
+			if(log.isBlank()) {
+				return;
+			}
+			int train = lookup(log, 0, trainNames, time);
+			int car = lookup(log, 2, carNames, time);
+			if(log.tokenEquals(1, "connect")) {
+				connect(time, train, car);
+			}
+			else {
+				disconnect(train, car);
+			}
+		}
+	}
+
+	/**
+	 * Applies one block of person actions.
+	 * @param log The people log, just past the time of the block.
+	 * @param time The time of the block (for use in error messages).
+	 */
+	private void personBlock(LogReader log, int time) {
+		while(log.nextLine()) {
+			if(log.isBlank()) {
+				return;
+			}
+			int person = lookup(log, 0, personNames, time);
+			int from = lookup(log, 1, carNames, time);
+			int to = lookup(log, 2, carNames, time);
+			move(time, person, from, to);
+		}
+	}
+
+	/**
+	 * Connects the decoupled chain a car heads to the back of a train.
+	 * @param time The current time (for use in error messages).
+	 * @param train The id of the train.
+	 * @param car The id of the car.
+	 */
+	private void connect(int time, int train, int car) {
+		//O(n) where n=the number of cars in the chain
+		if(carTrain.get(car) != -1 || carPrevious.get(car) != -1) {
+			throw new RuntimeException(stamp(time) + "Car " + carNames.name(car) + " is not in the decoupledCars list");
+		}
+		int tail = trainTail.get(train);
+		if(tail == -1) {
+			trainHead.set(train, car);
+		}
+		else {
+			carNext.set(tail, car);
+			carPrevious.set(car, tail);
+		}
+		for(int c = car; c != -1; c = carNext.get(c)) {
+			carTrain.set(c, train);
+			tail = c;
+		}
+		trainTail.set(train, tail);
+	}
+
+	/**
+	 * Disconnects a car and the cars behind it from a train, leaving them as a decoupled chain.
+	 * @param train The id of the train.
+	 * @param car The id of the car.
+	 */
+	private void disconnect(int train, int car) {
+		//O(n) where n=the number of cars disconnected
+		if(carTrain.get(car) != train) {
+			throw new RuntimeException("Can not disconnect a car that doesn't exist");
+		}
+		int before = carPrevious.get(car);
+		if(before == -1) {
+			trainHead.set(train, -1);
+		}
+		else {
+			carNext.set(before, -1);
+			carPrevious.set(car, -1);
+		}
+		trainTail.set(train, before);
+		for(int c = car; c != -1; c = carNext.get(c)) {
+			carTrain.set(c, -1);
+		}
+	}
+
+	/**
+	 * Moves a person from one car to the car next to it.
+	 * @param time The current time (for use in error messages).
+	 * @param person The id of the person.
+	 * @param from The id of the car the record says they are in.
+	 * @param to The id of the car they move to.
+	 */
+	private void move(int time, int person, int from, int to) {
+		//O(1)
+		int car = personCar.get(person);
+		if(car != from) {
+			throw new RuntimeException(stamp(time) + "Person " + personNames.name(person) + " cannot be in car " + carNames.name(from) + " according to the record");
+		}
+		if(to == -1 || (carNext.get(car) != to && carPrevious.get(car) != to)) {
+			throw new RuntimeException(stamp(time) + "Person " + personNames.name(person) + " cannot move to car " + carNames.name(to) + " according to the record");
+		}
+		leave(person, car);
+		board(person, to);
+	}
+
+	/**
+	 * Puts a person at the end of a car's occupants.
+	 * @param person The id of the person.
+	 * @param car The id of the car.
+	 */
+	private void board(int person, int car) {
+		//O(1)
+		int last = carLast.get(car);
+		personPrevious.set(person, last);
+		personNext.set(person, -1);
+		if(last == -1) {
+			carFirst.set(car, person);
+		}
+		else {
+			personNext.set(last, person);
+		}
+		carLast.set(car, person);
+		carCount.set(car, carCount.get(car) + 1);
+		personCar.set(person, car);
+	}
+
+	/**
+	 * Takes a person out of a car's occupants.
+	 * @param person The id of the person.
+	 * @param car The id of the car.
+	 */
+	private void leave(int person, int car) {
+		//O(1)
+		int previous = personPrevious.get(person);
+		int next = personNext.get(person);
+		if(previous == -1) {
+			carFirst.set(car, next);
+		}
+		else {
+			personNext.set(previous, next);
+		}
+		if(next == -1) {
+			carLast.set(car, previous);
+		}
+		else {
+			personPrevious.set(next, previous);
+		}
+		carCount.set(car, carCount.get(car) - 1);
+		personCar.set(person, -1);
+	}
+
+	/**
+	 * Finds the suspects for the murder in the current state of the world: the
+	 * people on the murder car, or else the people on the nearest occupied cars in
+	 * front of and behind it.
+	 * @param murderLocation The location of the murder (car name).
+	 * @return Views of the suspects.
+	 */
+	public UniqueList<Person> getMurderSuspects(String murderLocation) {
+		//O(n) where n=the number of cars walked past, only the suspects are created on the heap
+		byte[] name = murderLocation.getBytes(StandardCharsets.UTF_8);
+		int car = carNames.lookup(name, name.length);
+		if(car == -1) {
+			throw new RuntimeException("Nothing is named " + murderLocation);
+		}
+		UniqueList<Person> suspects = new UniqueList<>();
+		if(carCount.get(car) > 0) {
+			addViews(car, suspects);
+			return suspects;
+		}
+		int c = carPrevious.get(car);
+		while(c != -1 && carCount.get(c) == 0) {
+			c = carPrevious.get(c);
+		}
+		if(c != -1) {
+			addViews(c, suspects);
+		}
+		c = carNext.get(car);
+		while(c != -1 && carCount.get(c) == 0) {
+			c = carNext.get(c);
+		}
+		if(c != -1) {
+			addViews(c, suspects);
+		}
+		return suspects;
+	}
+
+	/**
+	 * Creates thin views of the people in a car, in the order they boarded.
+	 * @param car The id of the car.
+	 * @param into The list to add the views to.
+	 */
+	private void addViews(int car, UniqueList<Person> into) {
+		//O(p) where p=the number of people in the car
+		Car view = new Car(carNames.name(car), car);
+		for(int p = carFirst.get(car); p != -1; p = personNext.get(p)) {
+			into.append(new Person(personNames.name(p), p, view));
+		}
+	}
+
+	/**
+	 * Gets the number of people in the world.
+	 * @return The number of people.
+	 */
+	public int personCount() {
+		return personNames.size();
+	}
+
+	/**
+	 * Gets the number of bytes the world holds off heap.
+	 * @return The number of bytes.
+	 */
+	public long offHeapBytes() {
+		return trainNames.bytes() + carNames.bytes() + personNames.bytes()
+				+ trainHead.bytes() + trainTail.bytes()
+				+ carNext.bytes() + carPrevious.bytes() + carTrain.bytes()
+				+ carFirst.bytes() + carLast.bytes() + carCount.bytes()
+				+ personCar.bytes() + personNext.bytes() + personPrevious.bytes();
+	}
+
+	/**
+	 * Describes how long the last simulation took and how much it kept off heap.
+	 * @return A one line summary.
+	 */
+	public String getTimingSummary() {
+		return String.format("Replayed %d time steps in %.3f ms (setup %.3f ms, suspects %.3f ms, %.1f MB off heap)",
+				stepsApplied, replayNanos / 1e6, setupNanos / 1e6, suspectNanos / 1e6, offHeapBytes() / 1e6);
+	}
+
+	/**
+	 * Replays a case in a new off-heap world and describes the suspects, or the
+	 * error the replay failed with.
+	 * @param logs The train log and the people log.
+	 * @param murderLocation The location of the murder (car name).
+	 * @param murderTimeStr The time of the murder ("HH:MM").
+	 * @return The suspects as Simulator.describe puts them, or the error message.
+	 */
+	private static String suspects(File[] logs, String murderLocation, String murderTimeStr) {
+		try {
+			return Simulator.describe(new OffHeapWorld().simulate(logs[0], logs[1], murderLocation, murderTimeStr));
+		}
+		catch(IOException e) {
+			return "Invalid file";
+		}
+		catch(RuntimeException e) {
+			return e.getMessage();
+		}
+	}
+
+	/**
+	 * Main method, checks the off-heap world against Simulator on a generated case.
+	 * @param args command line arguments.
+	 * @throws IOException if the case can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File[] logs = new CaseGenerator(5, 3, 24, 40, 60, 6, 1.0).writeTemporary();
+		String[] times = {"00:00", "00:17", "00:45", "01:00"};
+		int same = 0;
+		for(String time : times) {
+			for(int c = 0; c < 24; c++) {
+				if(suspects(logs, "C" + c, time).equals(Simulator.expectedSuspects(logs[0], logs[1], "C" + c, time))) {
+					same++;
+				}
+			}
+		}
+		if(same == times.length * 24) {
+			System.out.println("Yay 1");
+		}
+
+		//connecting a car twice and moving a person to their own car both fail somewhere
+		File[] badTrains = {CaseGenerator.withBlock(logs[0], "01:01\nT0 connect C0\nT0 connect C0\n\n"), logs[1]};
+		File[] badPeople = {logs[0], CaseGenerator.withBlock(logs[1], "01:01\nP0 C0 C0\nP0 C0 C0\n\n")};
+		String trainError = suspects(badTrains, "C0", "01:01");
+		String personError = suspects(badPeople, "C0", "01:01");
+		if(trainError.equals("[1:1] Car C0 is not in the decoupledCars list")
+				&& trainError.equals(Simulator.expectedSuspects(badTrains[0], badTrains[1], "C0", "01:01"))
+				&& personError.startsWith("[1:1] Person P0 cannot")
+				&& personError.equals(Simulator.expectedSuspects(badPeople[0], badPeople[1], "C0", "01:01"))) {
+			System.out.println("Yay 2");
+		}
+
+		//unknown names are reported by name rather than running into a null
+		File[] unknown = {CaseGenerator.withBlock(logs[0], "01:01\nT0 disconnect Z\n\n"), logs[1]};
+		if(suspects(unknown, "C0", "01:01").equals("[1:1] Nothing is named Z")
+				&& suspects(logs, "Z", "01:00").equals("Nothing is named Z")) {
+			System.out.println("Yay 3");
+		}
+	}
+}
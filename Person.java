@@ -8,19 +8,40 @@ class Person {
 	 */
 	private String name;
 
+	/**
+	 * Dense id of the person given out by a SymbolTable, or -1 if the person has none.
+	 */
+	private int id;
+
 	/**
 	 * The car the person is currently in.
 	 */
 	private Car currentCar;
 
 	/**
-	 * The constructor for Person. Initializes a Person with their name and with the car they are in.
+	 * The constructor for Person. Initializes a Person with their name and with the car they are in,
+	 * and adds the person to that car's occupants.
 	 * @param name The name of this person.
 	 * @param currentCar The car this person is in currently.
 	 */
 	public Person(String name, Car currentCar) {
+		this(name, -1, currentCar);
+	}
+	
+	/**
+	 * The constructor for Person. Initializes a Person with their name, id and the car they are in,
+	 * and adds the person to that car's occupants.
+	 * @param name The name of this person.
+	 * @param id The dense id of this person.
+	 * @param currentCar The car this person is in currently.
+	 */
+	public Person(String name, int id, Car currentCar) {
 		this.name = name;
+		this.id = id;
 		this.currentCar = currentCar;
+		if(currentCar != null) {
+			currentCar.addOccupant(this);
+		}
 	}
 	
 	/**
@@ -33,6 +54,15 @@ class Person {
 		return name;
 	}
 	
+	/**
+	 * Gets the dense id of the person.
+	 * @return The id of this person, or -1 if the person has none.
+	 */
+	public int getId() {
+		//O(1)
+		return id;
+	}
+	
 	/**
 	 * Gets the car this person is currently in.
 	 * @return The "currentCar" variable of this person.
@@ -54,22 +84,42 @@ class Person {
 		//cars are not adjacent, returns false (and the
 		//person remains in their current car). Returns
 		//true if the person was able to move.
-		//O(1)
-		if(currentCar.getPrevious() != null) {
-			if(currentCar.getPrevious().equals(c)) {
-				currentCar = currentCar.getPrevious();
-				return true;
-			}
+		//O(1), the simulator passes the cars themselves so equals stops at the reference check
+		Car previous = currentCar.getPrevious();
+		if(previous != null && previous.equals(c)) {
+			switchCar(previous);
+			return true;
+		}
+		Car next = currentCar.getNext();
+		if(next != null && next.equals(c)) {
+			switchCar(next);
+			return true;
 		}
-		if(currentCar.getNext() != null) {
-			if(currentCar.getNext().equals(c)) {
-				currentCar = currentCar.getNext();
-				return true;
-			}
-		} 
 		return false;
 	}
 	
+	/**
+	 * Moves this person into another car, keeping the occupants of both cars up to date.
+	 * @param c The car the person moves into.
+	 */
+	private void switchCar(Car c) {
+		//O(1) average
+		currentCar.removeOccupant(this);
+		currentCar = c;
+		c.addOccupant(this);
+	}
+	
+	/**
+	 * Puts this person in a car without checking that it is next to their current car,
+	 * for when the world is being restored. The current car must not list them any more.
+	 * @param c The car the person is placed in.
+	 */
+	void placeIn(Car c) {
+		//O(1) average
+		currentCar = c;
+		c.addOccupant(this);
+	}
+	
 	/**
 	 * Checks if this person's name is equal to another person's name.
 	 * @param o Object to be compared.
@@ -77,8 +127,20 @@ class Person {
 	 */
 	public boolean equals(Object o) {
 		//two people are "equal" if they have the same name
-		//O(1)
-		return o.toString() == this.toString();
+		//O(1) for the same person, otherwise O(k) where k=the length of the name
+		if(this == o) {
+			return true;
+		}
+		return o != null && this.name.equals(o.toString());
+	}
+	
+	/**
+	 * Hash code for Person that matches equals by hashing the name of the person.
+	 * @return The hash code of the person's name.
+	 */
+	public int hashCode() {
+		//O(1), strings cache their hash code
+		return name.hashCode();
 	}
 	
 	/**
@@ -121,5 +183,9 @@ class Person {
 		if(!p3.moveToCar(c1) && p3.moveToCar(c2) && p3.getCurrentCar().equals(c2)) {
 			System.out.println("Yay 4");
 		}
+		if(c2.getOccupants().size() == 1 && c2.getOccupants().contains(p3) && !c3.getOccupants().contains(p3)
+				&& c1.getOccupants().get(p1) == p1) {
+			System.out.println("Yay 5");
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+/**
+ * Counts hash table lookups and the slots they scan: those of the UniqueLists and
+ * UniquePairLists it is attached to, and those of the SymbolTable lookups it is
+ * passed to. Nothing is counted without a counter, so the collections do not
+ * depend on whoever reads the counts. A counter is not safe to share between
+ * threads.
+ */
+class ProbeCounter {
+
+	/**
+	 * The number of lookups.
+	 */
+	private long lookups = 0;
+
+	/**
+	 * The number of slots the lookups scanned.
+	 */
+	private long slotsScanned = 0;
+
+	/**
+	 * The most slots a single lookup scanned.
+	 */
+	private int longestProbe = 0;
+
+	/**
+	 * Records a lookup.
+	 * @param slots The number of slots the lookup scanned.
+	 */
+	void lookedUp(int slots) {
+		//O(1)
+		lookups++;
+		slotsScanned += slots;
+		if(slots > longestProbe) {
+			longestProbe = slots;
+		}
+	}
+
+	/**
+	 * Gets the number of lookups.
+	 * @return The number of lookups.
+	 */
+	long getLookups() {
+		return lookups;
+	}
+
+	/**
+	 * Gets the number of slots the lookups scanned.
+	 * @return The number of slots.
+	 */
+	long getSlotsScanned() {
+		return slotsScanned;
+	}
+
+	/**
+	 * Gets the most slots a single lookup scanned.
+	 * @return The longest probe.
+	 */
+	int getLongestProbe() {
+		return longestProbe;
+	}
+
+	/**
+	 * Sets every count back to zero.
+	 */
+	void reset() {
+		lookups = 0;
+		slotsScanned = 0;
+		longestProbe = 0;
+	}
+}
@@ -1,5 +1,12 @@
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.io.File;
 
 /**
@@ -10,9 +17,9 @@ class Simulator {
 
 	/**
 	 * Sets up the trains and connects each train with the right cars.
-	 * @param trainScanner Scanner that reads in data from file containing initial train positions.
+	 * @param trainLog Reader for the file containing initial train positions.
 	 */
-	public void setupInitialTrainPositions(Scanner trainScanner) {
+	public void setupInitialTrainPositions(LogReader trainLog) {
 		//look at setupInitialPeoplePositions() before writing this!
 		
 		//get each line from the scanner
@@ -27,28 +34,45 @@ class Simulator {
 		
 		//but also add them to the list of all cars (the list is called "cars")
 
-		while(trainScanner.hasNextLine()) {
+		while(trainLog.nextLine()) {
 
-			String s = trainScanner.nextLine();
-
-			if(s.length() == 0) {
+			if(trainLog.isBlank()) {
 				return;
 			}
 
-			String[] parts = s.split(" ");
+			Train t = addTrain(trainLog.token(0));
 
-			String trainName = parts[0];
+			for(int i = 1; i < trainLog.tokenCount(); i++) {
+				addCar(t, trainLog.token(i));
+			}
+		}
+	}
 
-			Train t = new Train(trainName);
+	/**
+	 * Creates a train and adds it to the trains, indexed by id.
+	 * @param trainName The name of the train.
+	 * @return The new train.
+	 */
+	private Train addTrain(String trainName) {
+		int trainId = trainSymbols.intern(trainName, probes);
 
-			trains.append(trainName, t);
+		Train t = TREAP_TRAINS ? new TreapTrain(trainName, trainId, yard) : new Train(trainName, trainId);
 
-			for(int i = 1; i < parts.length; i++) {
-				Car c = new Car(parts[i]);
-				t.connectCar(c);
-				cars.append(parts[i], c);
-			}
-		}
+		trainsById = put(trainsById, trainId, t);
+		return t;
+	}
+
+	/**
+	 * Creates a car, connects it to the back of a train and adds it to the cars, indexed by id.
+	 * @param t The train.
+	 * @param carName The name of the car.
+	 */
+	private void addCar(Train t, String carName) {
+		int carId = carSymbols.intern(carName, probes);
+		Car c = new Car(carName, carId);
+		c.countProbes(probes);
+		t.connectCar(c);
+		carsById = put(carsById, carId, c);
 	}
 	
 	//*****************************************************************/
@@ -56,34 +80,187 @@ class Simulator {
 	//*****************************************************************/
 	
 	/**
-	 *  The scanner to the file containing the train actions.
+	 *  Whether trains are built as TreapTrains, which split, join and reverse in
+	 *  O(log n), instead of Trains (run with -Dsimulator.trains=treap).
+	 */
+	private static final boolean TREAP_TRAINS = "treap".equals(System.getProperty("simulator.trains"));
+	
+	/**
+	 *  The reader for the file containing the train actions.
+	 */
+	private LogReader trainLog;
+	
+	/**
+	 *  The reader for the file containing the person actions.
+	 */
+	private LogReader peopleLog;
+	
+	/**
+	 *  The reader for a compiled event log, or null when reading text logs.
+	 *  Its blocks are already merged, so they all go through nextTrainTime.
+	 */
+	private EventLog events = null;
+	
+	/**
+	 *  The train logs and then the people logs when there are more than two
+	 *  sources to merge, or null otherwise.
+	 */
+	private LogReader[] sourceLogs = null;
+	
+	/**
+	 *  The number of train logs at the front of sourceLogs.
+	 */
+	private int trainSourceCount = 0;
+	
+	/**
+	 *  The number of blocks each merged source is read ahead on its own thread.
+	 */
+	private int readAhead = 0;
+	
+	/**
+	 *  Interleaves the blocks of sourceLogs once the initial positions are read,
+	 *  or null when there are not many sources.
+	 */
+	private EventMerger merger = null;
+	
+	/**
+	 *  Counts the lookups of the symbol tables and of the lists that hold the
+	 *  world while metrics are on, or null.
+	 */
+	private final ProbeCounter probes = SimulatorMetrics.ENABLED ? new ProbeCounter() : null;
+	
+	/**
+	 *  Interns car names into dense ids. The symbol tables and the arrays
+	 *  indexed by id are the only record of the world: a name is looked up by
+	 *  its id, and trains and people are listed in id order, which is the order
+	 *  they were first read in.
+	 */
+	private SymbolTable carSymbols = new SymbolTable();
+	
+	/**
+	 *  Interns train names into dense ids.
+	 */
+	private SymbolTable trainSymbols = new SymbolTable();
+	
+	/**
+	 *  Interns person names into dense ids.
+	 */
+	private SymbolTable personSymbols = new SymbolTable();
+	
+	/**
+	 *  The cars, indexed by id.
+	 */
+	private Car[] carsById = new Car[16];
+	
+	/**
+	 *  The trains, indexed by id.
+	 */
+	private Train[] trainsById = new Train[16];
+	
+	/**
+	 *  The people, indexed by id.
+	 */
+	private Person[] peopleById = new Person[16];
+	
+	/**
+	 *  The nodes of the cars shared by the trains when they are TreapTrains, so
+	 *  decoupled chains can move from one train to another.
+	 */
+	private final TreapTrain.Yard yard = new TreapTrain.Yard();
+	
+	/**
+	 *  The ids of the first cars of the decoupled chains, in the order they
+	 *  were decoupled.
+	 */
+	private IdList decoupled = new IdList();
+	
+	/**
+	 *  The time of the next block of train actions (-1 if there are none left).
+	 */
+	private int nextTrainTime = -1;
+	
+	/**
+	 *  The time of the next block of person actions (-1 if there are none left).
+	 */
+	private int nextPersonTime = -1;
+	
+	/**
+	 *  How many time steps the last simulation applied.
+	 */
+	private int stepsApplied = 0;
+	
+	/**
+	 *  Whether the initial positions have been read.
+	 */
+	private boolean prepared = false;
+	
+	/**
+	 *  The time of the last block applied (-1 if none has been).
+	 */
+	private int lastAppliedTime = -1;
+	
+	/**
+	 *  Whether the last block applied was a block of person actions, so poll
+	 *  can tell a train block for the same minute that was written too late.
+	 */
+	private boolean personBlockLast = false;
+	
+	/**
+	 *  The number of actions applied since the initial positions.
+	 */
+	private long actionsApplied = 0;
+	
+	/**
+	 *  The checkpoints taken so far, or null if checkpoints are off.
 	 */
-	private Scanner trainScanner;
+	private CheckpointStore checkpoints = null;
 	
 	/**
-	 *  The scanner to the file containing the person actions.
+	 *  Whether the checkpoints belong to another simulator, so this one only
+	 *  restores them and never adds any.
 	 */
-	private Scanner peopleScanner;
+	private boolean sharedCheckpoints = false;
 	
 	/**
-	 *  A map between car names and car objects.
+	 *  The occupancy timeline being recorded, or null if it is off.
 	 */
-	private UniquePairList<String,Car> cars = new UniquePairList<>();
+	private OccupancyTimeline timeline = null;
 	
 	/**
-	 *  A map between train names and train objects.
+	 *  Publishes a snapshot of the world after every block, or null if snapshots are off.
 	 */
-	private UniquePairList<String,Train> trains = new UniquePairList<>();
+	private WorldSnapshot.Publisher snapshots = null;
 	
 	/**
-	 *  A map between person names and person objects.
+	 *  Remembers the suspects of recently asked cars until an action changes
+	 *  them, or null if suspects are always worked out.
 	 */
-	private UniquePairList<String,Person> people = new UniquePairList<>();
+	private SuspectCache suspectCache = null;
 	
 	/**
-	 *  A set of cars that have been decoupled.
+	 *  Draws the world in interactive mode, created the first time it is needed.
 	 */
-	private UniqueList<Car> decoupledCars = new UniqueList<>();
+	private WorldRenderer renderer = null;
+	
+	/**
+	 *  Whether the block being applied goes into the timeline.
+	 */
+	private boolean recording = false;
+	
+	/**
+	 *  Nanoseconds the last simulation spent reading the initial positions.
+	 */
+	private long setupNanos = 0;
+	
+	/**
+	 *  Nanoseconds the last simulation spent replaying the actions.
+	 */
+	private long replayNanos = 0;
+	
+	/**
+	 *  Nanoseconds the last simulation spent finding the suspects.
+	 */
+	private long suspectNanos = 0;
 	
 	/**
 	 *  Initialize the simulator to use specific files for the
@@ -91,16 +268,117 @@ class Simulator {
 	 *  
 	 *  @param trainFile the file containing the train movements
 	 *  @param peopleFile the file containing the person movements
-	 *  @throws IOException if openning a scanner fails
+	 *  @throws IOException if mapping either file fails
 	 */
 	public Simulator(File trainFile, File peopleFile) throws IOException {
-		//open scanners to the files
-		this.trainScanner = new Scanner(trainFile);
-		this.peopleScanner = new Scanner(peopleFile);
+		//map the files into memory, letting go of the train log if the people log fails
+		this.trainLog = new LogReader(trainFile);
+		try {
+			this.peopleLog = new LogReader(peopleFile);
+		}
+		catch(IOException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	/**
+	 *  Initialize the simulator to use an event log compiled from a train
+	 *  file and a people file (see EventLog).
+	 *  
+	 *  @param eventFile the compiled event log
+	 *  @throws IOException if mapping the file fails or it is not an event log
+	 */
+	public Simulator(File eventFile) throws IOException {
+		//map the file into memory
+		this.events = new EventLog(eventFile);
+	}
+	
+	/**
+	 *  Initialize the simulator to merge any number of train logs and people
+	 *  logs, such as per-train logs and separate staff and passenger feeds.
+	 *  Every log starts with its own initial positions. Blocks are applied in
+	 *  time order, train blocks before person blocks at the same minute, and
+	 *  logs of the same kind in the order given. Checkpoints and following
+	 *  need a single train log and people log.
+	 *  
+	 *  @param trainFiles the files containing the train movements
+	 *  @param peopleFiles the files containing the person movements
+	 *  @param readAhead the number of blocks to read ahead of each log on its own thread (0 for none)
+	 *  @throws IOException if mapping any file fails
+	 */
+	public Simulator(File[] trainFiles, File[] peopleFiles, int readAhead) throws IOException {
+		//map the files into memory
+		this.sourceLogs = new LogReader[trainFiles.length + peopleFiles.length];
+		this.trainSourceCount = trainFiles.length;
+		this.readAhead = readAhead;
+		try {
+			for(int i = 0; i < sourceLogs.length; i++) {
+				sourceLogs[i] = new LogReader(i < trainFiles.length ? trainFiles[i] : peopleFiles[i - trainFiles.length]);
+			}
+		}
+		catch(IOException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	/**
+	 *  Initialize a simulator that reads the same mapped logs as another one and
+	 *  starts from the latest of its checkpoints at or before a time, to work on
+	 *  another thread. The world is built from the other simulator's names and
+	 *  that checkpoint, so the initial positions are never read again. The other
+	 *  simulator must not take checkpoints or learn new names while this one is
+	 *  in use.
+	 *  
+	 *  @param original the simulator to share the logs, names and checkpoints of
+	 *  @param time the time to start from, in minutes since midnight
+	 */
+	private Simulator(Simulator original, int time) {
+		//O(c+t+p) where c=the number of cars, t=the number of trains and p=the number of people
+		if(original.events != null) {
+			this.events = new EventLog(original.events);
+		}
+		else {
+			this.trainLog = new LogReader(original.trainLog);
+			this.peopleLog = new LogReader(original.peopleLog);
+		}
+		this.checkpoints = original.checkpoints;
+		this.sharedCheckpoints = true;
+		this.carSymbols = original.carSymbols;
+		this.trainSymbols = original.trainSymbols;
+		this.personSymbols = original.personSymbols;
+		
+		//the same trains, cars and people, which the checkpoint links up
+		for(int id = 0; id < original.trainsById.length; id++) {
+			Train t = original.trainsById[id];
+			if(t != null) {
+				Train copy = TREAP_TRAINS ? new TreapTrain(t.getName(), id, yard) : new Train(t.getName(), id);
+				trainsById = put(trainsById, id, copy);
+			}
+		}
+		for(int id = 0; id < original.carsById.length; id++) {
+			Car c = original.carsById[id];
+			if(c != null) {
+				Car copy = new Car(c.getName(), id);
+				copy.countProbes(probes);
+				carsById = put(carsById, id, copy);
+			}
+		}
+		for(int id = 0; id < original.peopleById.length; id++) {
+			Person p = original.peopleById[id];
+			if(p != null) {
+				Person copy = new Person(p.getName(), id, null);
+				peopleById = put(peopleById, id, copy);
+			}
+		}
+		prepared = true;
+		restore(checkpoints.get(checkpoints.latestAtOrBefore(time)));
 	}
 	
 	/**
-	 *  Runs the entire simulation start to finish.
+	 *  Runs the entire simulation start to finish, printing the world and
+	 *  waiting for the user after every time step.
 	 *  
 	 *  @param murderLocation the location of the murder (car name)
 	 *  @param murderTimeStr the time of the murder
@@ -109,66 +387,936 @@ class Simulator {
 	 *  @throws RuntimeException if anything used by this class throws a runtime exception
 	 */
 	public UniqueList<Person> simulate(String murderLocation, String murderTimeStr) throws IOException {
-		int nextTrainTime = 0;
-		int nextPersonTime = 0;
-		
-		String[] parts = murderTimeStr.split(":");
-		int murderTime = (Integer.parseInt(parts[0])*60)+Integer.parseInt(parts[1]);
+		return simulate(murderLocation, murderTimeStr, true);
+	}
+	
+	/**
+	 *  Runs the entire simulation start to finish. In batch (non-interactive)
+	 *  mode nothing is rendered and the user is never prompted, so the
+	 *  simulation can run unattended.
+	 *  
+	 *  @param murderLocation the location of the murder (car name)
+	 *  @param murderTimeStr the time of the murder
+	 *  @param interactive whether to print the world and wait for the user after every time step
+	 *  @return the murder suspects
+	 *  @throws IOException if reading from the files fails
+	 *  @throws RuntimeException if anything used by this class throws a runtime exception
+	 */
+	public UniqueList<Person> simulate(String murderLocation, String murderTimeStr, boolean interactive) throws IOException {
+		int murderTime = parseTime(murderTimeStr);
 
+		long start = System.nanoTime();
+		
 		//start the trains and people at their locations
-		setupInitialTrainPositions(trainScanner);
-		setupInitialPeoplePositions(peopleScanner);
+		prepare();
+		
+		long setupDone = System.nanoTime();
+		setupNanos = setupDone - start;
+		
+		Scanner input = null;
+		if(interactive) {
+			//prints out the world for easy ASCII viewing
+			render(0);
+			
+			//pause for person
+			input = new Scanner(System.in);
+			System.out.println("Hit enter to continue");
+			input.nextLine();
+		}
 		
-		//both scanners are now past the intialization sections
-		//so get the next time trains (and people) need to perform
-		//some action
-		nextTrainTime = getNextTime(trainScanner); //time in seconds since midnight
-		nextPersonTime = getNextTime(peopleScanner); //time in seconds since midnight
+		//the readers have read the times for both files
+		stepsApplied = 0;
+		int time;
+		while((time = step(murderTime)) != -1) {
+			stepsApplied++;
+			if(interactive) {
+				//print world
+				render(time);
+				
+				System.out.println("Hit enter to continue");
+				input.nextLine();
+			}
+		}
+		//release the files
+		close();
+		
+		long replayDone = System.nanoTime();
+		replayNanos = replayDone - setupDone;
+		
+		UniqueList<Person> suspects = getMurderSuspects(murderLocation);
+		suspectNanos = System.nanoTime() - replayDone;
+		return suspects;
+	}
+	
+	/**
+	 *  Converts a "HH:MM" time to minutes since midnight.
+	 *  
+	 *  @param timeStr the time
+	 *  @return the time in minutes since midnight
+	 */
+	private static int parseTime(String timeStr) {
+		String[] parts = timeStr.split(":");
+		return (Integer.parseInt(parts[0])*60)+Integer.parseInt(parts[1]);
+	}
+	
+	/**
+	 *  Reads the initial positions of the trains and people, unless that has
+	 *  already been done, and takes the first checkpoint if checkpoints are on.
+	 */
+	private void prepare() {
+		if(prepared) {
+			return;
+		}
+		prepared = true;
+		long start = SimulatorMetrics.ENABLED ? System.nanoTime() : 0;
+		if(events != null) {
+			setupFromEvents();
+		}
+		else if(sourceLogs != null) {
+			setupFromSources();
+		}
+		else {
+			setupInitialTrainPositions(trainLog);
+			setupInitialPeoplePositions(peopleLog);
+			
+			//both readers are now past the intialization sections
+			//so get the next time trains (and people) need to perform
+			//some action
+			nextTrainTime = getNextTime(trainLog); //time in minutes since midnight
+			nextPersonTime = getNextTime(peopleLog); //time in minutes since midnight
+		}
+		if(SimulatorMetrics.ENABLED) {
+			for(Train t : trainsById) {
+				if(t != null) {
+					SimulatorMetrics.get().trainBuilt(t.size());
+				}
+			}
+			SimulatorMetrics.get().setup(System.nanoTime() - start);
+			SimulatorMetrics.get().lookedUp(probes);
+		}
 		
-		//prints out the world for easy ASCII viewing
-		printWorld(0, trains, people, decoupledCars);
+		if(checkpoints != null && !sharedCheckpoints) {
+			checkpoints.add(checkpoint());
+		}
+		if(timeline != null) {
+			for(int id = 0; id < trainSymbols.size(); id++) {
+				Train t = trainById(id);
+				if(t != null && t.size() > 0) {
+					timeline.placeChain(-1, t.carAt(0), id);
+				}
+			}
+			for(int id = 0; id < personSymbols.size(); id++) {
+				Person p = personById(id);
+				if(p != null && p.getCurrentCar() != null) {
+					timeline.board(-1, id, p.getCurrentCar().getId());
+				}
+			}
+			timeline.recordedUpTo(actionsApplied, nextBlockTime());
+		}
+		if(snapshots != null) {
+			publishSnapshot();
+		}
+	}
+	
+	/**
+	 *  Reads the names and the initial positions from the event log. Every
+	 *  name is interned first, in id order, so the ids match the log's.
+	 */
+	private void setupFromEvents() {
+		for(int id = 0; id < events.carCount(); id++) {
+			carSymbols.intern(events.carName(id), probes);
+		}
+		for(int id = 0; id < events.trainCount(); id++) {
+			trainSymbols.intern(events.trainName(id), probes);
+		}
+		for(int id = 0; id < events.personCount(); id++) {
+			personSymbols.intern(events.personName(id), probes);
+		}
 		
-		//pause for person
-		Scanner input = new Scanner(System.in);
-		System.out.println("Hit enter to continue");
-		input.nextLine();
+		events.startInitial();
+		int trainLines = events.readVarint();
+		for(int i = 0; i < trainLines; i++) {
+			Train t = addTrain(events.trainName(events.readVarint()));
+			int carCount = events.readVarint();
+			for(int j = 0; j < carCount; j++) {
+				addCar(t, events.carName(events.readVarint()));
+			}
+		}
+		int personLines = events.readVarint();
+		for(int i = 0; i < personLines; i++) {
+			String personName = events.personName(events.readVarint());
+			addPerson(personName, events.carName(events.readVarint()));
+		}
 		
-		//the scanners have read the times for both files
-		while(nextTrainTime != -1 || nextPersonTime != -1) {
-			if(nextTrainTime > murderTime && nextPersonTime > murderTime) {
-				break;
+		events.startEvents();
+		nextTrainTime = events.blockTime();
+		nextPersonTime = -1;
+	}
+	
+	/**
+	 *  Reads the initial positions from every merged log and starts merging
+	 *  their blocks.
+	 */
+	private void setupFromSources() {
+		EventSource[] sources = new EventSource[sourceLogs.length];
+		for(int i = 0; i < sourceLogs.length; i++) {
+			boolean trainSource = i < trainSourceCount;
+			if(trainSource) {
+				setupInitialTrainPositions(sourceLogs[i]);
+			}
+			else {
+				setupInitialPeoplePositions(sourceLogs[i]);
+			}
+		}
+		//every name is known now, so the sources only look names up
+		for(int i = 0; i < sourceLogs.length; i++) {
+			int kind = i < trainSourceCount ? EventSource.TRAIN_ACTIONS : EventSource.PERSON_ACTIONS;
+			sources[i] = new LogEventSource(sourceLogs[i], kind, trainSymbols, carSymbols, personSymbols);
+		}
+		merger = new EventMerger(sources, readAhead);
+	}
+	
+	/**
+	 *  Applies a block taken from the merged sources.
+	 *  
+	 *  @param block the block
+	 */
+	private void doNextSourceBlock(EventSource.Block block) {
+		int[] actions = block.actions;
+		for(int i = 0, at = 0; i < block.count; i++, at += 4) {
+			switch(actions[at]) {
+				case EventSource.CONNECT: applyConnect(block.time, actions[at + 1], actions[at + 2]); break;
+				case EventSource.DISCONNECT: applyDisconnect(block.time, actions[at + 1], actions[at + 2]); break;
+				default: applyMove(block.time, actions[at + 1], actions[at + 2], actions[at + 3]);
+			}
+		}
+	}
+	
+	/**
+	 *  Applies the next block of the event log.
+	 *  
+	 *  @param time the time of the block (for use in error messages)
+	 */
+	private void doNextEventBlock(int time) {
+		events.readVarint(); //the time, which is already known
+		boolean trainBlock = events.readByte() == EventLog.TRAIN_BLOCK;
+		int count = events.readVarint();
+		for(int i = 0; i < count; i++) {
+			if(trainBlock) {
+				int trainId = events.readVarint();
+				boolean connect = events.readByte() == EventLog.CONNECT;
+				int carId = events.readVarint();
+				if(connect) {
+					applyConnect(time, trainId, carId);
+				}
+				else {
+					applyDisconnect(time, trainId, carId);
+				}
+			}
+			else {
+				int personId = events.readVarint();
+				int fromId = events.readVarint();
+				int toId = events.readVarint();
+				applyMove(time, personId, fromId, toId);
+			}
+		}
+	}
+	
+	/**
+	 *  Prints the world, timing it when metrics are on.
+	 *  
+	 *  @param time the time the world is at
+	 */
+	private void render(int time) {
+		long start = SimulatorMetrics.ENABLED ? System.nanoTime() : 0;
+		if(renderer == null) {
+			renderer = new WorldRenderer(System.out);
+		}
+		renderer.render(time, actionsApplied, trainsById, peopleById, decoupledCars());
+		if(SimulatorMetrics.ENABLED) {
+			SimulatorMetrics.get().render(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 *  Gets the time of the next block of either log.
+	 *  
+	 *  @return the time in minutes since midnight, or -1 if there are no blocks left
+	 */
+	private int nextBlockTime() {
+		if(merger != null) {
+			return merger.nextTime();
+		}
+		if(nextTrainTime == -1 || nextPersonTime == -1) {
+			return Math.max(nextTrainTime, nextPersonTime);
+		}
+		return Math.min(nextTrainTime, nextPersonTime);
+	}
+	
+	/**
+	 *  Turns on the occupancy timeline, which records every move while the logs
+	 *  are replayed so that timelineSuspects can answer questions about any
+	 *  replayed time without replaying again. Must be called before the
+	 *  simulation starts.
+	 */
+	public void enableTimeline() {
+		if(prepared) {
+			throw new RuntimeException("The timeline must be enabled before the simulation starts");
+		}
+		timeline = new OccupancyTimeline();
+	}
+	
+	/**
+	 *  Turns on snapshots: after every block it applies, the simulator publishes an
+	 *  immutable copy of the world that other threads can read while the replay
+	 *  carries on. Consecutive snapshots share whatever did not change.
+	 */
+	public void enableSnapshots() {
+		if(snapshots != null) {
+			return;
+		}
+		snapshots = new WorldSnapshot.Publisher();
+		if(prepared) {
+			publishSnapshot();
+		}
+	}
+	
+	/**
+	 *  Turns on the suspect cache, so asking for the suspects of the same car
+	 *  again is answered from the cache until an action changes them.
+	 *  
+	 *  @param capacity the most cars to remember
+	 */
+	public void enableSuspectCache(int capacity) {
+		suspectCache = new SuspectCache(capacity);
+	}
+	
+	/**
+	 *  Gets the suspect cache, with its hit and miss counts.
+	 *  
+	 *  @return the cache, or null if it is off
+	 */
+	public SuspectCache getSuspectCache() {
+		return suspectCache;
+	}
+	
+	/**
+	 *  Gets the snapshot published last. Safe to call from any thread.
+	 *  
+	 *  @return the snapshot, or null if snapshots are off or none has been published yet
+	 */
+	public WorldSnapshot getSnapshot() {
+		WorldSnapshot.Publisher publisher = snapshots;
+		return publisher == null ? null : publisher.latest();
+	}
+	
+	/**
+	 *  Publishes a snapshot of the world as it is now.
+	 */
+	private void publishSnapshot() {
+		snapshots.publish(lastAppliedTime, actionsApplied, trainSymbols, carSymbols, personSymbols,
+				trainsById, carsById, peopleById, decoupledCars(), decoupled.size());
+	}
+	
+	/**
+	 *  Gets the first cars of the decoupled chains, in the order they were
+	 *  decoupled, without copying them.
+	 *  
+	 *  @return an iterable view of the cars
+	 */
+	private Iterable<Car> decoupledCars() {
+		return () -> new Iterator<Car>() {
+			private int id = decoupled.first();
+			
+			public boolean hasNext() {
+				return id != -1;
 			}
 			
-			if(nextTrainTime != -1 && (nextTrainTime <= nextPersonTime || nextPersonTime == -1)) {
-				//do action
-				doNextTrainAction(nextTrainTime);
-				
-				//print world
-				printWorld(nextTrainTime, trains, people, decoupledCars);
-				
-				//parse time
-				nextTrainTime = getNextTime(trainScanner);
+			public Car next() {
+				Car c = carsById[id];
+				id = decoupled.next(id);
+				return c;
 			}
-			else if(nextPersonTime != -1 && (nextPersonTime < nextTrainTime || nextTrainTime == -1)) {
-				//do action
-				doNextPersonAction(nextPersonTime);
-				
-				//print world
-				printWorld(nextPersonTime, trains, people, decoupledCars);
-				
-				//parse time
-				nextPersonTime = getNextTime(peopleScanner);
+		};
+	}
+	
+	/**
+	 *  Gets the occupancy timeline.
+	 *  
+	 *  @return the timeline, or null if it is off
+	 */
+	public OccupancyTimeline getTimeline() {
+		return timeline;
+	}
+	
+	/**
+	 *  Finds the suspects for a murder at any time using the occupancy timeline.
+	 *  Times that have already been replayed are answered with binary searches;
+	 *  later times replay (and record) the logs up to the time first.
+	 *  
+	 *  @param murderLocation the location of the murder (car name)
+	 *  @param murderTimeStr the time of the murder
+	 *  @return the murder suspects
+	 *  @throws RuntimeException if the timeline is off or the replay fails
+	 */
+	public UniqueList<Person> timelineSuspects(String murderLocation, String murderTimeStr) {
+		if(timeline == null) {
+			throw new RuntimeException("The timeline must be enabled first");
+		}
+		int time = parseTime(murderTimeStr);
+		prepare();
+		if(!timeline.covers(time)) {
+			moveTo(time);
+		}
+		UniqueList<Person> suspects = new UniqueList<>();
+		for(int id : timeline.suspects(carSymbols.lookup(murderLocation, probes), time)) {
+			suspects.append(peopleById[id]);
+		}
+		return suspects;
+	}
+	
+	/**
+	 *  Turns on checkpoints, so that suspectsAt can jump to any time by restoring
+	 *  the nearest earlier checkpoint and replaying only the actions after it.
+	 *  Must be called before the simulation starts.
+	 *  
+	 *  @param everyActions take a checkpoint after this many actions (0 to ignore)
+	 *  @param everyMinutes take a checkpoint after this many minutes (0 to ignore)
+	 *  @param directory the directory to write checkpoints to, or null to keep them in memory
+	 */
+	public void enableCheckpoints(int everyActions, int everyMinutes, File directory) {
+		if(prepared) {
+			throw new RuntimeException("Checkpoints must be enabled before the simulation starts");
+		}
+		if(sourceLogs != null) {
+			throw new RuntimeException("Checkpoints need a single train log and people log");
+		}
+		checkpoints = new CheckpointStore(everyActions, everyMinutes, directory);
+	}
+	
+	/**
+	 *  Gets the number of checkpoints taken so far.
+	 *  
+	 *  @return the number of checkpoints (0 if checkpoints are off)
+	 */
+	public int getCheckpointCount() {
+		return checkpoints == null ? 0 : checkpoints.size();
+	}
+	
+	/**
+	 *  Finds the suspects for a murder at any time. Unlike simulate this can be
+	 *  called again and again with times in any order, but going back in time
+	 *  needs checkpoints (see enableCheckpoints). Call close when done.
+	 *  
+	 *  @param murderLocation the location of the murder (car name)
+	 *  @param murderTimeStr the time of the murder
+	 *  @return the murder suspects
+	 *  @throws RuntimeException if anything used by this class throws a runtime exception
+	 */
+	public UniqueList<Person> suspectsAt(String murderLocation, String murderTimeStr) {
+		moveTo(parseTime(murderTimeStr));
+		return getMurderSuspects(murderLocation);
+	}
+	
+	/**
+	 *  Finds the suspects for many murder hypotheses in one pass through the logs.
+	 *  The queries are answered in time order, snapshotting the suspects as the
+	 *  sweep reaches each time, so the cost is about one replay however many
+	 *  queries there are. Queries before the current time of the world need
+	 *  checkpoints (see enableCheckpoints). Call close when done.
+	 *  
+	 *  @param murderLocations the location (car name) of each murder
+	 *  @param murderTimeStrs the time of each murder
+	 *  @return the suspects for each query, in the order the queries were given
+	 *  @throws RuntimeException if anything used by this class throws a runtime exception
+	 */
+	public UniqueList<Person>[] suspectsFor(String[] murderLocations, String[] murderTimeStrs) {
+		if(murderLocations.length != murderTimeStrs.length) {
+			throw new IllegalArgumentException("Every murder location needs a time");
+		}
+		//sort by time with the query index in the low bits so ties keep their order
+		long[] order = new long[murderTimeStrs.length];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = ((long)parseTime(murderTimeStrs[i]) << 32) | i;
+		}
+		Arrays.sort(order);
+		
+		@SuppressWarnings("unchecked")
+		UniqueList<Person>[] suspects = (UniqueList<Person>[]) new UniqueList<?>[order.length];
+		for(long key : order) {
+			int i = (int)key;
+			moveTo((int)(key >>> 32));
+			suspects[i] = getMurderSuspects(murderLocations[i]);
+		}
+		return suspects;
+	}
+	
+	/**
+	 *  Finds everyone who was a suspect for a murder at some minute of a window of
+	 *  time, and for how many of its minutes. With checkpoints the world is
+	 *  replayed once to the end of the window and the minutes are then split
+	 *  across cores with fork/join, each stretch worked out by its own simulator
+	 *  that restores the nearest shared checkpoint, so a long window takes about
+	 *  as long as one query. Without checkpoints the minutes are swept one after
+	 *  another. With checkpoints the world is put back at the time it was at
+	 *  before the window was swept; without them it can only move forward, so it
+	 *  is left at the end of the window. Call close when done.
+	 *  
+	 *  @param murderLocation the location of the murder (car name)
+	 *  @param fromStr the first minute of the window ("HH:MM")
+	 *  @param toStr the last minute of the window ("HH:MM")
+	 *  @return the suspects and the minutes each was a suspect
+	 *  @throws RuntimeException if anything used by this class throws a runtime exception
+	 */
+	public WindowSuspects suspectsDuring(String murderLocation, String fromStr, String toStr) {
+		return suspectsDuring(murderLocation, fromStr, toStr, ForkJoinPool.getCommonPoolParallelism());
+	}
+	
+	/**
+	 *  Finds everyone who was a suspect for a murder at some minute of a window of
+	 *  time, splitting the window for a given number of workers (see above).
+	 *  
+	 *  @param murderLocation the location of the murder (car name)
+	 *  @param fromStr the first minute of the window ("HH:MM")
+	 *  @param toStr the last minute of the window ("HH:MM")
+	 *  @param workers the number of stretches to split the window into (1 to sweep it in this simulator)
+	 *  @return the suspects and the minutes each was a suspect
+	 */
+	WindowSuspects suspectsDuring(String murderLocation, String fromStr, String toStr, int workers) {
+		int from = parseTime(fromStr);
+		int to = parseTime(toStr);
+		if(to < from) {
+			throw new IllegalArgumentException("The window ends before it starts");
+		}
+		int before = lastAppliedTime;
+		WindowSuspects.Tally tally;
+		if(checkpoints == null || workers < 2 || from == to) {
+			tally = sweep(murderLocation, from, to);
+		}
+		else {
+			//replay to the end of the window once, so the checkpoints cover all of it
+			moveTo(to);
+			int chunk = (to - from + workers) / workers;
+			tally = ForkJoinPool.commonPool().invoke(new WindowSweep(murderLocation, from, to, chunk));
+		}
+		if(checkpoints != null) {
+			//leave the caller's world where it was
+			moveTo(before);
+		}
+		//hand out this world's people rather than the workers'
+		UniquePairList<Person,Integer> minutes = new UniquePairList<>();
+		for(int i = 0; i < tally.size(); i++) {
+			int id = tally.idAt(i);
+			minutes.append(personById(id), tally.minutesOf(id));
+		}
+		return new WindowSuspects(from, to, minutes);
+	}
+	
+	/**
+	 *  Works out the suspects at every minute of a stretch of time, one minute
+	 *  after another.
+	 *  
+	 *  @param murderLocation the location of the murder (car name)
+	 *  @param from the first minute
+	 *  @param to the last minute
+	 *  @return how many minutes each person was a suspect
+	 */
+	private WindowSuspects.Tally sweep(String murderLocation, int from, int to) {
+		WindowSuspects.Tally tally = new WindowSuspects.Tally();
+		for(int minute = from; minute <= to; minute++) {
+			moveTo(minute);
+			tally.count(getMurderSuspects(murderLocation));
+		}
+		return tally;
+	}
+	
+	/**
+	 *  Sweeps a stretch of a window, splitting it in half until each half is
+	 *  short enough for one simulator of its own.
+	 */
+	@SuppressWarnings("serial") //never serialized, it holds the simulator it sweeps for
+	private class WindowSweep extends RecursiveTask<WindowSuspects.Tally> {
+		
+		/**
+		 *  The location of the murder (car name).
+		 */
+		private final String murderLocation;
+		
+		/**
+		 *  The first minute of the stretch.
+		 */
+		private final int from;
+		
+		/**
+		 *  The last minute of the stretch.
+		 */
+		private final int to;
+		
+		/**
+		 *  The most minutes swept by one simulator.
+		 */
+		private final int chunk;
+		
+		/**
+		 *  Constructor for the sweep.
+		 *  
+		 *  @param murderLocation the location of the murder (car name)
+		 *  @param from the first minute of the stretch
+		 *  @param to the last minute of the stretch
+		 *  @param chunk the most minutes swept by one simulator
+		 */
+		WindowSweep(String murderLocation, int from, int to, int chunk) {
+			this.murderLocation = murderLocation;
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+		}
+		
+		/**
+		 *  Sweeps the stretch.
+		 *  
+		 *  @return how many minutes each person was a suspect
+		 */
+		protected WindowSuspects.Tally compute() {
+			if(to - from + 1 <= chunk) {
+				Simulator worker = new Simulator(Simulator.this, from);
+				try {
+					return worker.sweep(murderLocation, from, to);
+				}
+				finally {
+					worker.close();
+				}
+			}
+			int middle = (from + to) >>> 1;
+			WindowSweep later = new WindowSweep(murderLocation, middle + 1, to, chunk);
+			later.fork();
+			WindowSuspects.Tally tally = new WindowSweep(murderLocation, from, middle, chunk).compute();
+			tally.addAll(later.join());
+			return tally;
+		}
+	}
+	
+	/**
+	 *  Puts the world in its state at a time: every block at or before the time is
+	 *  applied and no block after it is. The nearest checkpoint at or before the
+	 *  time is restored when the world is past the time or behind the checkpoint.
+	 *  
+	 *  @param time the time in minutes since midnight
+	 */
+	public void moveTo(int time) {
+		prepare();
+		int best = checkpoints == null ? -1 : checkpoints.latestAtOrBefore(time);
+		if(lastAppliedTime > time) {
+			if(best == -1) {
+				throw new RuntimeException("Can not go back in time without checkpoints");
+			}
+			restore(checkpoints.get(best));
+		}
+		else if(best != -1 && checkpoints.actionsAt(best) > actionsApplied) {
+			//skip ahead instead of replaying what the checkpoint already has
+			restore(checkpoints.get(best));
+		}
+		while(step(time) != -1) {
+			//keep applying blocks until none are due
+		}
+	}
+	
+	/**
+	 *  Follows both logs while they are still being written, like tail -f.
+	 *  Call poll to apply whatever has been added since the last call. Must be
+	 *  called before the simulation starts.
+	 */
+	public void follow() {
+		if(prepared) {
+			throw new RuntimeException("Logs must be followed before the simulation starts");
+		}
+		if(events != null) {
+			throw new RuntimeException("A compiled event log can not be followed");
+		}
+		if(sourceLogs != null) {
+			throw new RuntimeException("Following needs a single train log and people log");
+		}
+		trainLog.follow();
+		peopleLog.follow();
+	}
+	
+	/**
+	 *  Picks up lines added to the logs and applies every complete block, in the
+	 *  same order simulate() would. A block is complete once its closing blank
+	 *  line has been written. The logs must be written as time goes by: a block
+	 *  added to one log is never earlier than a block already applied from the
+	 *  other, and a train block is written no later than the people block of
+	 *  the same minute. So while both logs have a next block the earlier one
+	 *  (the train block on a tie) goes first, and while one log has nothing
+	 *  more the other log's complete blocks are applied without waiting for it.
+	 *  A block that breaks that order can not be applied where simulate() would
+	 *  have, so it is reported instead.
+	 *  
+	 *  @return the number of blocks applied
+	 *  @throws IOException if the logs can not be mapped again
+	 *  @throws RuntimeException if the logs are inconsistent or a block is out of order
+	 */
+	public int poll() throws IOException {
+		if(events != null) {
+			throw new RuntimeException("A compiled event log can not be followed");
+		}
+		if(sourceLogs != null) {
+			throw new RuntimeException("Following needs a single train log and people log");
+		}
+		trainLog.refresh();
+		peopleLog.refresh();
+		if(!prepared) {
+			if(!trainLog.blockComplete() || !peopleLog.blockComplete()) {
+				//the initial positions are not all written yet
+				return 0;
+			}
+			prepare();
+		}
+		int applied = 0;
+		while(true) {
+			if(nextTrainTime == -1) {
+				nextTrainTime = getNextTime(trainLog);
+			}
+			if(nextPersonTime == -1) {
+				nextPersonTime = getNextTime(peopleLog);
+			}
+			if(nextTrainTime == -1 && nextPersonTime == -1) {
+				return applied;
+			}
+			//a log with nothing pending does not hold up the other one
+			boolean trainFirst = nextPersonTime == -1 || (nextTrainTime != -1 && nextTrainTime <= nextPersonTime);
+			if(!(trainFirst ? trainLog : peopleLog).blockComplete()) {
+				return applied;
+			}
+			int time = trainFirst ? nextTrainTime : nextPersonTime;
+			if(time < lastAppliedTime || (trainFirst && time == lastAppliedTime && personBlockLast)) {
+				int hour = time/60;
+				int minute = time-(hour*60);
+				throw new RuntimeException("[" + hour + ":" + minute + "] The " + (trainFirst ? "train" : "people")
+						+ " log has a block written after a later one was applied");
+			}
+			step(time);
+			applied++;
+		}
+	}
+	
+	/**
+	 *  Gets the time of the last block applied.
+	 *  
+	 *  @return the time in minutes since midnight, or -1 if no block has been applied
+	 */
+	public int getCurrentTime() {
+		return lastAppliedTime;
+	}
+	
+	/**
+	 *  Releases the log files, including any a constructor mapped before it failed.
+	 */
+	public void close() {
+		if(events != null) {
+			events.close();
+			return;
+		}
+		if(merger != null) {
+			merger.close();
+			return;
+		}
+		if(sourceLogs != null) {
+			for(LogReader log : sourceLogs) {
+				if(log != null) {
+					log.close();
+				}
+			}
+			return;
+		}
+		if(trainLog != null) {
+			trainLog.close();
+		}
+		if(peopleLog != null) {
+			peopleLog.close();
+		}
+	}
+	
+	/**
+	 *  Copies the current world into a checkpoint.
+	 *  
+	 *  @return the checkpoint
+	 */
+	private Checkpoint checkpoint() {
+		//O(c+p) where c=the number of cars and p=the number of people
+		int[][] trainCars = new int[trainSymbols.size()][];
+		for(int id = 0; id < trainCars.length; id++) {
+			trainCars[id] = Checkpoint.idsOf(trainById(id));
+		}
+		int[][] chains = new int[decoupled.size()][];
+		int i = 0;
+		for(Car c : decoupledCars()) {
+			chains[i++] = Checkpoint.idsOf(c, -1);
+		}
+		int[][] occupants = new int[carSymbols.size()][];
+		for(int id = 0; id < occupants.length; id++) {
+			Car c = carById(id);
+			occupants[id] = Checkpoint.idsOf(c == null ? new UniqueList<>() : c.getOccupants());
+		}
+		//an event log has one reader, its offset goes where the train log's would
+		long trainOffset = events != null ? events.position() : trainLog.position();
+		long peopleOffset = events != null ? 0 : peopleLog.position();
+		return new Checkpoint(lastAppliedTime, actionsApplied, trainOffset, peopleOffset,
+				nextTrainTime, nextPersonTime, trainCars, chains, occupants);
+	}
+	
+	/**
+	 *  Rebuilds the world from a checkpoint and moves both readers back to
+	 *  where they were when it was taken.
+	 *  
+	 *  @param cp the checkpoint
+	 */
+	private void restore(Checkpoint cp) {
+		//O(c+p) where c=the number of cars and p=the number of people
+		for(int id = 0; id < carSymbols.size(); id++) {
+			Car c = carById(id);
+			if(c != null) {
+				c.setNext(null);
+				c.setPrevious(null);
+				c.clearOccupants();
+			}
+		}
+		int[][] trainCars = cp.getTrains();
+		for(int id = 0; id < trainCars.length; id++) {
+			Train t = trainById(id);
+			if(t != null) {
+				t.clear();
+				t.connectCar(link(trainCars[id]));
+			}
+		}
+		decoupled.clear();
+		for(int[] chain : cp.getChains()) {
+			decoupled.append(link(chain).getId());
+		}
+		int[][] occupants = cp.getOccupants();
+		for(int id = 0; id < occupants.length; id++) {
+			Car c = carsById[id];
+			for(int personId : occupants[id]) {
+				peopleById[personId].placeIn(c);
+			}
+		}
+		
+		if(renderer != null) {
+			renderer.invalidate();
+		}
+		if(suspectCache != null) {
+			suspectCache.clear();
+		}
+		if(events != null) {
+			events.seek(cp.getTrainOffset());
+		}
+		else {
+			trainLog.seek(cp.getTrainOffset());
+			peopleLog.seek(cp.getPeopleOffset());
+		}
+		nextTrainTime = cp.getNextTrainTime();
+		nextPersonTime = cp.getNextPersonTime();
+		lastAppliedTime = cp.getTime();
+		personBlockLast = false;
+		actionsApplied = cp.getActions();
+		if(snapshots != null) {
+			snapshots.everythingChanged();
+			publishSnapshot();
+		}
+	}
+	
+	/**
+	 *  Links cars into a chain in the given order.
+	 *  
+	 *  @param ids the car ids from front to back
+	 *  @return the first car, or null if there are no cars
+	 */
+	private Car link(int[] ids) {
+		//O(n) where n=the number of cars
+		Car previous = null;
+		for(int id : ids) {
+			Car c = carsById[id];
+			c.setPrevious(previous);
+			if(previous != null) {
+				previous.setNext(c);
+			}
+			previous = c;
+		}
+		return ids.length == 0 ? null : carsById[ids[0]];
+	}
+	
+	/**
+	 *  Applies the next block of actions that happens at or before the given
+	 *  time. Train actions go before person actions with the same time.
+	 *  
+	 *  @param until the last time (minutes since midnight) that may be applied
+	 *  @return the time of the block applied, or -1 if no block is due
+	 */
+	public int step(int until) {
+		long start = SimulatorMetrics.ENABLED ? System.nanoTime() : 0;
+		boolean trainDue = nextTrainTime != -1 && nextTrainTime <= until;
+		boolean personDue = nextPersonTime != -1 && nextPersonTime <= until;
+		
+		//only blocks past the end of the timeline are recorded, not ones
+		//replayed again after restoring a checkpoint
+		recording = timeline != null && actionsApplied == timeline.getActions();
+		int time;
+		if(merger != null) {
+			//any number of sources, merged in the same order
+			time = merger.nextTime();
+			if(time == -1 || time > until) {
+				return -1;
+			}
+			doNextSourceBlock(merger.next());
+			personBlockLast = false;
+		}
+		else if(trainDue && (!personDue || nextTrainTime <= nextPersonTime)) {
+			time = nextTrainTime;
+			if(events != null) {
+				//the event log's blocks are already merged in this order
+				doNextEventBlock(time);
+				nextTrainTime = events.blockTime();
 			}
-			
-			System.out.println("Hit enter to continue");
-			input.nextLine();
+			else {
+				doNextTrainAction(time);
+				nextTrainTime = getNextTime(trainLog);
+			}
+			personBlockLast = false;
 		}
-		//close the streams
-		trainScanner.close();
-		peopleScanner.close();
-		
-		
-		return getMurderSuspects(murderLocation);
+		else if(personDue) {
+			time = nextPersonTime;
+			doNextPersonAction(time);
+			nextPersonTime = getNextTime(peopleLog);
+			personBlockLast = true;
+		}
+		else {
+			return -1;
+		}
+		lastAppliedTime = time;
+		if(recording) {
+			timeline.recordedUpTo(actionsApplied, nextBlockTime());
+		}
+		if(checkpoints != null && !sharedCheckpoints && checkpoints.isDue(time, actionsApplied)) {
+			checkpoints.add(checkpoint());
+		}
+		if(snapshots != null) {
+			publishSnapshot();
+		}
+		if(SimulatorMetrics.ENABLED) {
+			SimulatorMetrics.get().replay(System.nanoTime() - start);
+			SimulatorMetrics.get().lookedUp(probes);
+		}
+		return time;
+	}
+	
+	/**
+	 *  Describes how long the last simulation took.
+	 *  
+	 *  @return a one line timing summary
+	 */
+	public String getTimingSummary() {
+		return String.format("Replayed %d time steps in %.3f ms (setup %.3f ms, suspects %.3f ms)",
+				stepsApplied, replayNanos / 1e6, setupNanos / 1e6, suspectNanos / 1e6);
 	}
 	
 	/**
@@ -187,8 +1335,7 @@ class Simulator {
 		System.out.println();
 		
 		System.out.println("Trains:\n");
-		for(String name : trains.getKeys()) {
-			Train t = trains.getValue(name);
+		for(Train t : trains.values()) {
 			t.printAscii();
 			System.out.println();
 		}
@@ -202,8 +1349,7 @@ class Simulator {
 		System.out.println("\n");
 		
 		System.out.println("People:");
-		for(String name : people.getKeys()) {
-			Person p = people.getValue(name);
+		for(Person p : people.values()) {
 			System.out.println(p + " on car " + p.getCurrentCar());
 		}
 		System.out.println();
@@ -211,120 +1357,248 @@ class Simulator {
 	}
 	
 	/**
-	 *  Reads in the next train actions from the scanner given.
+	 *  Reads in the next train actions from the train log.
 	 *  
 	 *  @param time the current time (for use in error messages)
 	 */
 	public void doNextTrainAction(int time) {
-		while(trainScanner.hasNextLine()) {
-			String line = trainScanner.nextLine();
-			if(line.equals("")) {
+		while(trainLog.nextLine()) {
+			if(trainLog.isBlank()) {
 				//we're done reading the train actions
 				return;
 			}
 			
-			String[] parts = line.split(" ");
+			int trainId = trainSymbols.lookup(trainLog.token(0), probes);
+			int carId = carSymbols.lookup(trainLog.token(2), probes);
 			
-			Train t = trains.getValue(parts[0]);
-			//System.out.println(parts[0] + "|" + parts[1] + "|" + parts[2]);
-			Car c = cars.getValue(parts[2]);
-			//System.out.println("Train " + t + " car " + c);
-			
-			if(parts[1].equals("connect")) {
-				if(!decoupledCars.contains(c)) {
-					int hour = time/60;
-					int minute = time-(hour*60);
-					throw new RuntimeException("[" + hour + ":" + minute + "] Car " + c + " is not in the decoupledCars list");
-				}
-				
-				t.connectCar(c);
-				decoupledCars.remove(c);
+			if(trainLog.tokenEquals(1, "connect")) {
+				applyConnect(time, trainId, carId);
 			}
 			else {
-				t.disconnectCar(c);
-				decoupledCars.append(c);
+				applyDisconnect(time, trainId, carId);
 			}
 		}
 	}
 	
 	/**
-	 *  Reads in the next person actions from the scanner given.
+	 *  Reads in the next person actions from the people log.
 	 *  
 	 *  @param time the current time (for use in error messages)
 	 */
 	public void doNextPersonAction(int time) {
-		while(peopleScanner.hasNextLine()) {
-			String line = peopleScanner.nextLine();
-			if(line.equals("")) {
+		while(peopleLog.nextLine()) {
+			if(peopleLog.isBlank()) {
 				//we're done reading the people actions
 				return;
 			}
 			
-			String[] parts = line.split(" ");
-			
-			Person p = people.getValue(parts[0]);
-			Car c1 = cars.getValue(parts[1]);
-			Car c2 = cars.getValue(parts[2]);
-			
-			if(!p.getCurrentCar().equals(c1)) {
-				int hour = time/60;
-				int minute = time-(hour*60);
-				throw new RuntimeException("[" + hour + ":" + minute + "] Person " + p + " cannot be in car " + c1 + " according to the record");
-			}
-			
-			if(!p.moveToCar(c2)) {
-				int hour = time/60;
-				int minute = time-(hour*60);
-				throw new RuntimeException("[" + hour + ":" + minute + "] Person " + p + " cannot move to car " + c2 + " according to the record");
+			int personId = personSymbols.lookup(peopleLog.token(0), probes);
+			int fromId = carSymbols.lookup(peopleLog.token(1), probes);
+			int toId = carSymbols.lookup(peopleLog.token(2), probes);
+			applyMove(time, personId, fromId, toId);
+		}
+	}
+	
+	/**
+	 *  Connects a decoupled car (and the cars behind it) to the back of a train.
+	 *  
+	 *  @param time the current time (for use in error messages)
+	 *  @param trainId the id of the train
+	 *  @param carId the id of the car
+	 */
+	private void applyConnect(int time, int trainId, int carId) {
+		Train t = trainById(trainId);
+		Car c = carById(carId);
+		if(!decoupled.contains(c.getId())) {
+			int hour = time/60;
+			int minute = time-(hour*60);
+			throw new RuntimeException("[" + hour + ":" + minute + "] Car " + c + " is not in the decoupledCars list");
+		}
+		
+		t.connectCar(c);
+		decoupled.remove(c.getId());
+		if(snapshots != null) {
+			snapshots.trainChanged();
+		}
+		if(suspectCache != null) {
+			suspectCache.connected(trainId);
+		}
+		if(SimulatorMetrics.ENABLED) {
+			SimulatorMetrics.get().connected(t.size());
+		}
+		if(recording) {
+			Car before = c.getPrevious();
+			if(before != null) {
+				timeline.placeCar(time, before, t.getId(), before.getIndexedPosition());
 			}
+			timeline.placeChain(time, c, t.getId());
 		}
+		actionsApplied++;
 	}
 	
 	/**
-	 *  Skips through the file until a time is found and returns that time
-	 *  in seconds since midnight.
+	 *  Disconnects a car (and the cars behind it) from a train.
 	 *  
-	 *  @param s the scanner to read from
-	 *  @return the next time in seconds since midnight
+	 *  @param time the current time
+	 *  @param trainId the id of the train
+	 *  @param carId the id of the car
 	 */
-	public int getNextTime(Scanner s) {
-		while(s.hasNextLine()) {
-			String line = s.nextLine();
-			if(line.matches("\\d\\d:\\d\\d")) {
-				String[] parts = line.split(":");
-				return (Integer.parseInt(parts[0])*60)+Integer.parseInt(parts[1]);
+	private void applyDisconnect(int time, int trainId, int carId) {
+		Train t = trainById(trainId);
+		Car c = carById(carId);
+		Car before = c.getPrevious();
+		int size = t.size();
+		t.disconnectCar(c);
+		decoupled.append(c.getId());
+		if(snapshots != null) {
+			snapshots.trainChanged();
+		}
+		if(suspectCache != null) {
+			suspectCache.disconnected(trainId);
+		}
+		if(SimulatorMetrics.ENABLED) {
+			SimulatorMetrics.get().disconnected(size - t.size());
+		}
+		if(recording) {
+			if(before != null) {
+				timeline.placeCar(time, before, t.getId(), before.getIndexedPosition());
 			}
+			timeline.placeChain(time, c, -1);
+		}
+		actionsApplied++;
+	}
+	
+	/**
+	 *  Moves a person from one car to the car next to it.
+	 *  
+	 *  @param time the current time (for use in error messages)
+	 *  @param personId the id of the person
+	 *  @param fromId the id of the car the record says they are in
+	 *  @param toId the id of the car they move to
+	 */
+	private void applyMove(int time, int personId, int fromId, int toId) {
+		Person p = personById(personId);
+		Car c1 = carById(fromId);
+		Car c2 = carById(toId);
+		
+		if(p.getCurrentCar().getId() != c1.getId()) {
+			int hour = time/60;
+			int minute = time-(hour*60);
+			throw new RuntimeException("[" + hour + ":" + minute + "] Person " + p + " cannot be in car " + c1 + " according to the record");
+		}
+		
+		if(!p.moveToCar(c2)) {
+			int hour = time/60;
+			int minute = time-(hour*60);
+			throw new RuntimeException("[" + hour + ":" + minute + "] Person " + p + " cannot move to car " + c2 + " according to the record");
+		}
+		if(recording) {
+			timeline.move(time, p.getId(), c1.getId(), c2.getId());
+		}
+		if(snapshots != null) {
+			snapshots.personMoved(p.getId(), c1.getId(), c2.getId());
+		}
+		if(suspectCache != null) {
+			suspectCache.moved(c1.getId(), c2.getId());
 		}
-		return -1;
+		if(SimulatorMetrics.ENABLED) {
+			SimulatorMetrics.get().moved();
+		}
+		actionsApplied++;
+	}
+	
+	/**
+	 *  Skips through the file until a time is found and returns that time
+	 *  in minutes since midnight.
+	 *  
+	 *  @param log the reader to read from
+	 *  @return the next time in minutes since midnight, or -1 at the end of the file
+	 */
+	public int getNextTime(LogReader log) {
+		return log.nextTime();
 	}
 	
 	/**
 	 *  Reads in and sets up the initial people positions.
 	 *  
-	 *  @param peopleScanner the scanner to read from
+	 *  @param peopleLog the reader to read from
 	 */
-	public void setupInitialPeoplePositions(Scanner peopleScanner) {
+	public void setupInitialPeoplePositions(LogReader peopleLog) {
 		//get initial people positions
-		while(peopleScanner.hasNextLine()) {
-			//get a line and break it into parts
-			String s = peopleScanner.nextLine();
-			if(s.length() == 0) {
+		while(peopleLog.nextLine()) {
+			//the reader breaks the line into parts
+			if(peopleLog.isBlank()) {
 				//if the line is blank, we're done reading the people's initial positions
 				return;
 			}
-			String[] parts = s.split(" ");
-			
-			//get the name of the person
-			String personName = parts[0];
 			
-			//get the car they start on
-			String carName = parts[1];
-			Car c = cars.getValue(carName);
-			
-			//create a new person
-			Person p = new Person(personName, c);
-			people.append(personName, p); //add to the list of all people
+			//get the name of the person and the car they start on
+			addPerson(peopleLog.token(0), peopleLog.token(1));
+		}
+	}
+	
+	/**
+	 *  Creates a person on a car and adds them to the people, indexed by id.
+	 *  
+	 *  @param personName the name of the person
+	 *  @param carName the name of the car they start on
+	 */
+	private void addPerson(String personName, String carName) {
+		Car c = carById(carSymbols.lookup(carName, probes));
+		
+		//create a new person
+		int personId = personSymbols.intern(personName, probes);
+		Person p = new Person(personName, personId, c);
+		peopleById = put(peopleById, personId, p);
+	}
+	
+	/**
+	 *  Stores an object at an id, growing the array if needed. An id that
+	 *  already has an object keeps it (the first object with a name wins).
+	 *  
+	 *  @param array the array indexed by id
+	 *  @param id the id of the object
+	 *  @param value the object
+	 *  @return the array, or a larger copy of it
+	 */
+	private static <T> T[] put(T[] array, int id, T value) {
+		if(id >= array.length) {
+			array = Arrays.copyOf(array, Math.max(id + 1, array.length * 2));
+		}
+		if(array[id] == null) {
+			array[id] = value;
 		}
+		return array;
+	}
+	
+	/**
+	 *  Gets a car by its id.
+	 *  
+	 *  @param id the id of the car (-1 for an unknown name)
+	 *  @return the car, or null if the id is -1
+	 */
+	private Car carById(int id) {
+		return id < 0 || id >= carsById.length ? null : carsById[id];
+	}
+	
+	/**
+	 *  Gets a train by its id.
+	 *  
+	 *  @param id the id of the train (-1 for an unknown name)
+	 *  @return the train, or null if the id is -1
+	 */
+	private Train trainById(int id) {
+		return id < 0 || id >= trainsById.length ? null : trainsById[id];
+	}
+	
+	/**
+	 *  Gets a person by their id.
+	 *  
+	 *  @param id the id of the person (-1 for an unknown name)
+	 *  @return the person, or null if the id is -1
+	 */
+	private Person personById(int id) {
+		return id < 0 || id >= peopleById.length ? null : peopleById[id];
 	}
 	
 	/**
@@ -337,47 +1611,80 @@ class Simulator {
 	 *  @returns a set of potential murderers.
 	 */
 	public UniqueList<Person> getMurderSuspects(String murderLocation) {
+		if(!SimulatorMetrics.ENABLED) {
+			return findMurderSuspects(murderLocation);
+		}
+		long start = System.nanoTime();
+		UniqueList<Person> suspects = findMurderSuspects(murderLocation);
+		SimulatorMetrics.get().suspects(System.nanoTime() - start);
+		return suspects;
+	}
+	
+	/**
+	 *  Finds the suspects for the murder in the current state of the world.
+	 *  
+	 *  @param murderLocation murder location (car name)
+	 *  @return the murder suspects
+	 */
+	private UniqueList<Person> findMurderSuspects(String murderLocation) {
 		//see if anyone was on the murder car
-		Car carObj = cars.getValue(murderLocation);
+		Car carObj = carById(carSymbols.lookup(murderLocation, probes));
+		if(suspectCache != null) {
+			UniqueList<Person> cached = suspectCache.get(carObj.getId());
+			if(cached != null) {
+				return cached;
+			}
+		}
 		UniqueList<Person> peopleOnMurderCar = getPeopleOnCar(carObj);
 		if(peopleOnMurderCar.size() > 0) {
+			if(suspectCache != null) {
+				suspectCache.putOccupants(carObj.getId(), peopleOnMurderCar);
+			}
 			return peopleOnMurderCar;
 		}
 		
 		UniqueList<Person> peopleNeighborCars = new UniqueList<>();
 		
-		//find people on earlier cars
-		Car c = carObj.getPrevious();
-		UniqueList<Person> peopleOnPrevCar = null;
-		while(c != null) {
-			peopleOnPrevCar = getPeopleOnCar(c);
-			if(peopleOnPrevCar.size() != 0) {
-				break;
+		//find people on the closest earlier and later cars that have anyone on them,
+		//in O(log n) through the train's occupancy index, walking only decoupled chains
+		Train t = carObj.getTrain();
+		Car before;
+		if(t != null) {
+			before = t.nearestOccupiedBefore(carObj);
+		}
+		else {
+			before = carObj.getPrevious();
+			while(before != null && before.getOccupants().size() == 0) {
+				before = before.getPrevious();
 			}
-			c = c.getPrevious();
 		}
-		if(peopleOnPrevCar != null) {
-			for(Person p : peopleOnPrevCar) {
-				peopleNeighborCars.append((Person)p);
+		if(before != null) {
+			for(Person p : before.getOccupants()) {
+				peopleNeighborCars.append(p);
 			}
 		}
 		
-		//find people on later cars
-		c = carObj.getNext();
-		UniqueList<Person> peopleOnNextCars = null;
-		while(c != null) {
-			peopleOnNextCars = getPeopleOnCar(c);
-			if(peopleOnNextCars.size() != 0) {
-				break;
+		Car after;
+		if(t != null) {
+			after = t.nearestOccupiedAfter(carObj);
+		}
+		else {
+			after = carObj.getNext();
+			while(after != null && after.getOccupants().size() == 0) {
+				after = after.getNext();
 			}
-			c = c.getNext();
 		}
-		if(peopleOnNextCars != null) {
-			for(Person p : peopleOnNextCars) {
-				peopleNeighborCars.append((Person)p);
+		if(after != null) {
+			for(Person p : after.getOccupants()) {
+				peopleNeighborCars.append(p);
 			}
 		}
 		
+		if(suspectCache != null) {
+			suspectCache.putNeighbors(carObj.getId(), before == null ? -1 : before.getId(),
+					after == null ? -1 : after.getId(), t == null ? -1 : t.getId(), peopleNeighborCars);
+		}
+		
 		//return combination of each
 		return peopleNeighborCars;
 	}
@@ -388,44 +1695,447 @@ class Simulator {
 	 *  @param carObj the car to examine
 	 *  @return the people on the car
 	 */
-	//@SuppressWarnings("unchecked")
 	private UniqueList<Person> getPeopleOnCar(Car carObj) {
-		//map people to the cars they are in
-		UniqueList<Person> peopleOnCar = new UniqueList<>();
+		//the car keeps its own occupants, copy them so the caller
+		//does not see later moves
+		return carObj.getOccupants().clone();
+	}
+
+	/**
+	 *  Prints the suspects, or that there are none.
+	 *  
+	 *  @param suspects the suspects
+	 */
+	private static void printSuspects(UniqueList<Person> suspects) {
+		if(suspects.size() == 0) {
+			System.out.println("No suspects!");
+		}
+		else {
+			System.out.println("Suspects:");
+			for(Person p : suspects) {
+				System.out.println(p);
+			}
+		}
+	}
+
+	/**
+	 *  Describes suspects on one line, for comparing the answers of the
+	 *  different ways of replaying a case.
+	 *  
+	 *  @param suspects the suspects
+	 *  @return the names of the suspects separated by spaces, or "No suspects!"
+	 */
+	static String describe(UniqueList<Person> suspects) {
+		if(suspects.size() == 0) {
+			return "No suspects!";
+		}
+		StringBuilder line = new StringBuilder();
+		for(Person p : suspects) {
+			line.append(line.length() == 0 ? "" : " ").append(p);
+		}
+		return line.toString();
+	}
+	
+	/**
+	 *  Runs a fresh simulation of two logs in batch mode, which the other ways
+	 *  of replaying a case are checked against.
+	 *  
+	 *  @param trainFile the file containing the train movements
+	 *  @param peopleFile the file containing the person movements
+	 *  @param murderLocation the location of the murder (car name)
+	 *  @param murderTimeStr the time of the murder
+	 *  @return the suspects as describe() puts them, or the message of the error the simulation failed with
+	 */
+	static String expectedSuspects(File trainFile, File peopleFile, String murderLocation, String murderTimeStr) {
+		try {
+			return describe(new Simulator(trainFile, peopleFile).simulate(murderLocation, murderTimeStr, false));
+		}
+		catch(IOException e) {
+			return "Invalid file";
+		}
+		catch(RuntimeException e) {
+			return e.getMessage();
+		}
+	}
+	
+	/**
+	 *  Splits a comma separated list of file names.
+	 *  
+	 *  @param names the file names
+	 *  @return the files
+	 */
+	private static File[] filesOf(String names) {
+		String[] parts = names.split(",");
+		File[] files = new File[parts.length];
+		for(int i = 0; i < parts.length; i++) {
+			files[i] = new File(parts[i]);
+		}
+		return files;
+	}
+	
+	/**
+	 *  Answers every "CarOfMurder TimeOfMurder" line of a query file in one
+	 *  pass and prints the suspects for each, in the order of the file.
+	 *  
+	 *  @param args command line arguments starting with --queries
+	 */
+	private static void answerQueries(String[] args) {
+		if(args.length != 4) {
+			System.err.println("Usage: java Simulator --queries [TrainNotes] [PeopleNotes] [QueryFile]");
+			return;
+		}
+		try {
+			//read the queries
+			LogReader queryLog = new LogReader(new File(args[3]));
+			String[] locations = new String[16];
+			String[] times = new String[16];
+			int count = 0;
+			while(queryLog.nextLine()) {
+				if(queryLog.isBlank()) {
+					continue;
+				}
+				if(count == locations.length) {
+					locations = Arrays.copyOf(locations, count * 2);
+					times = Arrays.copyOf(times, count * 2);
+				}
+				locations[count] = queryLog.token(0);
+				times[count] = queryLog.token(1);
+				count++;
+			}
+			queryLog.close();
+			locations = Arrays.copyOf(locations, count);
+			times = Arrays.copyOf(times, count);
+			
+			Simulator s = new Simulator(new File(args[1]), new File(args[2]));
+			long start = System.nanoTime();
+			UniqueList<Person>[] suspects = s.suspectsFor(locations, times);
+			long elapsed = System.nanoTime() - start;
+			s.close();
+			
+			StringBuilder line = new StringBuilder();
+			for(int i = 0; i < count; i++) {
+				line.setLength(0);
+				line.append(locations[i]).append(' ').append(times[i]).append(':');
+				if(suspects[i].size() == 0) {
+					line.append(" No suspects!");
+				}
+				for(Person p : suspects[i]) {
+					line.append(' ').append(p);
+				}
+				System.out.println(line);
+			}
+			System.out.printf("Answered %d queries in %.3f ms%n", count, elapsed / 1e6);
+		}
+		catch(IOException e) {
+			System.out.println("Invalid file");
+		}
+		catch(RuntimeException e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 *  Follows both logs as they are written and prints the suspects for a car
+	 *  every time new blocks have been applied. Runs until it is stopped.
+	 *  
+	 *  @param args command line arguments starting with --follow
+	 */
+	private static void followLogs(String[] args) {
+		if(args.length != 4 && args.length != 5) {
+			System.err.println("Usage: java Simulator --follow [TrainNotes] [PeopleNotes] [CarOfMurder] [PollMillis]");
+			return;
+		}
+		try {
+			long pollMillis = args.length == 5 ? Long.parseLong(args[4]) : 1000;
+			Simulator s = new Simulator(new File(args[1]), new File(args[2]));
+			s.follow();
+			StringBuilder line = new StringBuilder();
+			while(true) {
+				if(s.poll() > 0) {
+					int time = s.getCurrentTime();
+					line.setLength(0);
+					line.append(String.format("[%02d:%02d] Suspects:", time / 60, time % 60));
+					UniqueList<Person> suspects = s.getMurderSuspects(args[3]);
+					if(suspects.size() == 0) {
+						line.append(" none");
+					}
+					for(Person p : suspects) {
+						line.append(' ').append(p);
+					}
+					System.out.println(line);
+				}
+				Thread.sleep(pollMillis);
+			}
+		}
+		catch(IOException e) {
+			System.out.println("Invalid file");
+		}
+		catch(InterruptedException e) {
+			System.out.println("Interrupted");
+		}
+		catch(RuntimeException e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 *  Appends text to a log, as whoever writes it would.
+	 *  
+	 *  @param log the log
+	 *  @param text the text to append
+	 *  @throws IOException if the log can not be written
+	 */
+	private static void append(File log, String text) throws IOException {
+		Files.writeString(log.toPath(), text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+	
+	/**
+	 *  Creates an empty log that is deleted when the program ends.
+	 *  
+	 *  @param prefix the start of the file name
+	 *  @return the log
+	 *  @throws IOException if the log can not be created
+	 */
+	private static File tempLog(String prefix) throws IOException {
+		File log = File.createTempFile(prefix, ".txt");
+		log.deleteOnExit();
+		return log;
+	}
+	
+	/**
+	 *  Checks following logs while they are written.
+	 *  
+	 *  @throws IOException if the temporary logs can not be written
+	 */
+	private static void testFollowing() throws IOException {
+		//the train log never has an action, which must not hold up the people log
+		File trains = tempLog("trains");
+		File people = tempLog("people");
+		append(trains, "T1 C1 C2 C3\n\n");
+		append(people, "P1 C1\nP2 C3\n\n00:01\nP1 C1 C2\n\n00:02\nP2 C3");
+		Simulator s = new Simulator(trains, people);
+		s.follow();
+		if(s.poll() == 1 && s.getCurrentTime() == 1 && s.getMurderSuspects("C2").size() == 1) {
+			System.out.println("Yay 1");
+		}
+		append(people, " C2\n\n");
+		if(s.poll() == 1 && s.getCurrentTime() == 2 && s.getMurderSuspects("C2").size() == 2 && s.poll() == 0) {
+			System.out.println("Yay 2");
+		}
+		s.close();
+		
+		//and the people log never has an action, which must not hold up the train log
+		trains = tempLog("trains");
+		people = tempLog("people");
+		append(trains, "T1 C1 C2\nT2 C3\n\n00:01\nT1 disconnect C2\nT2 connect C2\n\n");
+		append(people, "P1 C2\n\n");
+		s = new Simulator(trains, people);
+		s.follow();
+		if(s.poll() == 1 && s.getCurrentTime() == 1 && s.getMurderSuspects("C3").size() == 1) {
+			System.out.println("Yay 3");
+		}
 		
-		for(String name : people.getKeys()) {
-			Person p = people.getValue(name);
-			if(p.getCurrentCar().equals(carObj)) {
-				peopleOnCar.append(p);
+		//a train block for a minute whose people block was already applied is out of order,
+		//and so is any block earlier than the last one applied
+		append(people, "00:02\nP1 C2 C3\n\n");
+		boolean late = s.poll() == 1;
+		append(trains, "00:02\nT2 disconnect C2\n\n");
+		try {
+			s.poll();
+			late = false;
+		}
+		catch(RuntimeException e) {
+			late = late && e.getMessage().equals("[0:2] The train log has a block written after a later one was applied");
+		}
+		s.close();
+		trains = tempLog("trains");
+		people = tempLog("people");
+		append(trains, "T1 C1 C2\n\n00:05\nT1 disconnect C2\n\n");
+		append(people, "P1 C1\n\n");
+		s = new Simulator(trains, people);
+		s.follow();
+		boolean early = s.poll() == 1;
+		append(people, "00:04\nP1 C1 C2\n\n");
+		try {
+			s.poll();
+			early = false;
+		}
+		catch(RuntimeException e) {
+			early = early && e.getMessage().equals("[0:4] The people log has a block written after a later one was applied");
+		}
+		s.close();
+		if(late && early) {
+			System.out.println("Yay 4");
+		}
+	}
+	
+	/**
+	 *  Checks answering many queries in one pass against a fresh simulation of
+	 *  each query.
+	 *  
+	 *  @throws IOException if the temporary logs can not be written
+	 */
+	private static void testSuspectsFor() throws IOException {
+		File[] logs = new CaseGenerator(11, 3, 24, 40, 60, 6, 1.0).writeTemporary();
+		//out of order, with repeated times and cars
+		String[] times = {"00:40", "00:05", "01:00", "00:05", "00:00", "00:33", "00:40", "00:59", "00:12", "00:33"};
+		String[] cars = new String[times.length];
+		for(int i = 0; i < cars.length; i++) {
+			cars[i] = "C" + (i * 7 % 24);
+		}
+		cars[3] = cars[1];
+		Simulator s = new Simulator(logs[0], logs[1]);
+		UniqueList<Person>[] answers = s.suspectsFor(cars, times);
+		s.close();
+		int same = 0;
+		for(int i = 0; i < cars.length; i++) {
+			if(describe(answers[i]).equals(expectedSuspects(logs[0], logs[1], cars[i], times[i]))) {
+				same++;
 			}
 		}
+		if(same == cars.length) {
+			System.out.println("Yay 5");
+		}
 		
-		return peopleOnCar;
+		//queries before the current time need checkpoints
+		s = new Simulator(logs[0], logs[1]);
+		s.enableCheckpoints(0, 10, null);
+		s.moveTo(60);
+		answers = s.suspectsFor(cars, times);
+		s.close();
+		same = 0;
+		for(int i = 0; i < cars.length; i++) {
+			if(describe(answers[i]).equals(expectedSuspects(logs[0], logs[1], cars[i], times[i]))) {
+				same++;
+			}
+		}
+		s = new Simulator(logs[0], logs[1]);
+		s.moveTo(60);
+		boolean refused = false;
+		try {
+			s.suspectsFor(cars, times);
+		}
+		catch(RuntimeException e) {
+			refused = e.getMessage().equals("Can not go back in time without checkpoints");
+		}
+		s.close();
+		if(same == cars.length && refused) {
+			System.out.println("Yay 6");
+		}
 	}
-
+	
 	/**
 	 *  This method actually runs the simulator and handles command line args.
 	 *  
 	 *  @param args command line arguments
 	 */
 	public static void main(String[] args) {
-		if(args.length != 4) {
-			System.err.println("Usage: java Simulator [TrainNotes] [PeopleNotes] [CarOfMurder] [TimeOfMurder]");
+		if(args.length > 0 && args[0].equals("--queries")) {
+			answerQueries(args);
+			return;
+		}
+		if(args.length > 0 && args[0].equals("--follow")) {
+			followLogs(args);
+			return;
+		}
+		if(args.length > 0 && args[0].equals("--test")) {
+			try {
+				testFollowing();
+				testSuspectsFor();
+			}
+			catch(IOException e) {
+				System.out.println("Invalid file");
+			}
+			return;
+		}
+		boolean batch = args.length > 0 && args[0].equals("--batch");
+		int first = batch ? 1 : 0;
+		//a batch run can replay into another world than these objects
+		String world = "objects";
+		if(batch && args.length > 2 && args[1].equals("--world")) {
+			world = args[2];
+			first = 3;
+		}
+		//three arguments name a compiled event log instead of the two notes
+		int count = args.length - first;
+		if(count != 4 && count != 3) {
+			System.err.println("Usage: java Simulator [--batch] [TrainNotes] [PeopleNotes] [CarOfMurder] [TimeOfMurder]");
+			System.err.println("   or: java Simulator [--batch] [TrainNotes,TrainNotes...] [PeopleNotes,PeopleNotes...] [CarOfMurder] [TimeOfMurder]");
+			System.err.println("   or: java Simulator [--batch] [EventLog] [CarOfMurder] [TimeOfMurder]");
+			System.err.println("   or: java Simulator --batch --world [objects|offheap|program] [TrainNotes] [PeopleNotes] [CarOfMurder] [TimeOfMurder]");
+			System.err.println("   or: java Simulator --queries [TrainNotes] [PeopleNotes] [QueryFile]");
+			System.err.println("   or: java Simulator --follow [TrainNotes] [PeopleNotes] [CarOfMurder] [PollMillis]");
+			System.err.println("   or: java Simulator --test");
+			System.err.println("   (TimeOfMurder can also be a window such as 14:05-14:40)");
+			return;
 		}
 		
-		String trainFile = args[0];
-		String peopleFile = args[1];
+		String trainFile = args[first];
+		String peopleFile = args[first+1];
+		int murder = first + count - 2;
 		
 		try {
-			Simulator s = new Simulator(new File(trainFile), new File(peopleFile));
-			UniqueList<Person> suspects = s.simulate(args[2], args[3]);
-			if(suspects.size() == 0) {
-				System.out.println("No suspects!");
+			if(!world.equals("objects") && !world.equals("offheap") && !world.equals("program")) {
+				System.out.println("Unknown world " + world);
+				return;
+			}
+			if(!world.equals("objects") && (count != 4 || trainFile.contains(",") || peopleFile.contains(",") || args[murder+1].contains("-"))) {
+				System.out.println("The " + world + " world replays one train log and one people log up to one time");
+				return;
+			}
+			if(world.equals("offheap")) {
+				OffHeapWorld offHeap = new OffHeapWorld();
+				printSuspects(offHeap.simulate(new File(trainFile), new File(peopleFile), args[murder], args[murder+1]));
+				System.out.println(offHeap.getTimingSummary());
+				return;
+			}
+			if(world.equals("program")) {
+				long start = System.nanoTime();
+				EventProgram program = EventProgram.compile(new File(trainFile), new File(peopleFile));
+				long compiled = System.nanoTime();
+				EventProgram.Replay replay = new EventProgram.Replay(program);
+				int actions = replay.runUntil(parseTime(args[murder+1]));
+				long replayed = System.nanoTime();
+				printSuspects(replay.getMurderSuspects(args[murder]));
+				System.out.printf("Replayed %d actions in %.3f ms (compile %.3f ms)%n", actions,
+						(replayed - compiled) / 1e6, (compiled - start) / 1e6);
+				return;
+			}
+			Simulator s;
+			if(count == 3) {
+				s = new Simulator(new File(trainFile));
+			}
+			else if(trainFile.contains(",") || peopleFile.contains(",")) {
+				//comma separated lists of notes are merged
+				s = new Simulator(filesOf(trainFile), filesOf(peopleFile), Integer.getInteger("simulator.readAhead", 4));
 			}
 			else {
-				System.out.println("Suspects:");
-				for(Person p : suspects) {
-					System.out.println(p);
+				s = new Simulator(new File(trainFile), new File(peopleFile));
+			}
+			int dash = args[murder+1].indexOf('-');
+			if(dash != -1) {
+				//a window such as 14:05-14:40 is swept from checkpoints every 10 minutes
+				if(s.sourceLogs == null) {
+					s.enableCheckpoints(0, 10, null);
+				}
+				WindowSuspects window = s.suspectsDuring(args[murder], args[murder+1].substring(0, dash), args[murder+1].substring(dash + 1));
+				s.close();
+				if(window.getSuspects().size() == 0) {
+					System.out.println("No suspects!");
+				}
+				else {
+					System.out.println("Suspects (minutes suspected):");
+					System.out.print(window);
+				}
+				return;
+			}
+			printSuspects(s.simulate(args[murder], args[murder+1], !batch));
+			if(batch) {
+				System.out.println(s.getTimingSummary());
+				if(SimulatorMetrics.ENABLED) {
+					System.out.println(SimulatorMetrics.get());
 				}
 			}
 		}
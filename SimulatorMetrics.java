@@ -0,0 +1,354 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters for the simulation engine, registered with the platform MBean server as
+ * "trains:type=SimulatorMetrics". Metrics are off unless the JVM is started with
+ * -Dsimulator.metrics=true; callers check ENABLED first, which the JIT folds away
+ * when it is false. The counters are shared by every simulator in the JVM and are
+ * safe to update from many threads.
+ */
+class SimulatorMetrics implements SimulatorMetricsMBean {
+
+	/**
+	 * Whether metrics are collected.
+	 */
+	static final boolean ENABLED = Boolean.getBoolean("simulator.metrics");
+
+	/**
+	 * The name the metrics are registered under.
+	 */
+	static final String OBJECT_NAME = "trains:type=SimulatorMetrics";
+
+	/**
+	 * The metrics of this JVM.
+	 */
+	private static final SimulatorMetrics INSTANCE = new SimulatorMetrics();
+
+	static {
+		if(ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+			}
+			catch(JMException e) {
+				throw new RuntimeException("Can not register " + OBJECT_NAME, e);
+			}
+		}
+	}
+
+	/**
+	 * The number of connect actions applied.
+	 */
+	private final LongAdder connects = new LongAdder();
+
+	/**
+	 * The number of disconnect actions applied.
+	 */
+	private final LongAdder disconnects = new LongAdder();
+
+	/**
+	 * The number of person moves applied.
+	 */
+	private final LongAdder moves = new LongAdder();
+
+	/**
+	 * Nanoseconds spent reading initial positions.
+	 */
+	private final LongAdder setupNanos = new LongAdder();
+
+	/**
+	 * Nanoseconds spent applying blocks of actions.
+	 */
+	private final LongAdder replayNanos = new LongAdder();
+
+	/**
+	 * Nanoseconds spent printing the world.
+	 */
+	private final LongAdder renderNanos = new LongAdder();
+
+	/**
+	 * Nanoseconds spent finding suspects.
+	 */
+	private final LongAdder suspectNanos = new LongAdder();
+
+	/**
+	 * The number of hash table lookups.
+	 */
+	private final LongAdder lookups = new LongAdder();
+
+	/**
+	 * The number of slots the lookups scanned.
+	 */
+	private final LongAdder slotsScanned = new LongAdder();
+
+	/**
+	 * The most slots a single lookup scanned.
+	 */
+	private final LongAccumulator longestProbe = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * The most cars any train has had.
+	 */
+	private final LongAccumulator longestTrain = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * The most cars any decoupled chain has had.
+	 */
+	private final LongAccumulator longestChain = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Suspect lookups answered from a SuspectCache.
+	 */
+	private final LongAdder suspectCacheHits = new LongAdder();
+
+	/**
+	 * Suspect lookups a SuspectCache did not have.
+	 */
+	private final LongAdder suspectCacheMisses = new LongAdder();
+
+	/**
+	 * Constructor for the metrics, there is only one.
+	 */
+	private SimulatorMetrics() {
+	}
+
+	/**
+	 * Gets the metrics of this JVM.
+	 * @return The metrics.
+	 */
+	static SimulatorMetrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Records a connect action.
+	 * @param trainLength The number of cars on the train afterwards.
+	 */
+	void connected(int trainLength) {
+		connects.increment();
+		longestTrain.accumulate(trainLength);
+	}
+
+	/**
+	 * Records a disconnect action.
+	 * @param chainLength The number of cars that were disconnected.
+	 */
+	void disconnected(int chainLength) {
+		disconnects.increment();
+		longestChain.accumulate(chainLength);
+	}
+
+	/**
+	 * Records a person move.
+	 */
+	void moved() {
+		moves.increment();
+	}
+
+	/**
+	 * Records the length of a train while the initial positions are read.
+	 * @param trainLength The number of cars on the train.
+	 */
+	void trainBuilt(int trainLength) {
+		longestTrain.accumulate(trainLength);
+	}
+
+	/**
+	 * Records time spent reading initial positions.
+	 * @param nanos The time in nanoseconds.
+	 */
+	void setup(long nanos) {
+		setupNanos.add(nanos);
+	}
+
+	/**
+	 * Records time spent applying a block of actions.
+	 * @param nanos The time in nanoseconds.
+	 */
+	void replay(long nanos) {
+		replayNanos.add(nanos);
+	}
+
+	/**
+	 * Records time spent printing the world.
+	 * @param nanos The time in nanoseconds.
+	 */
+	void render(long nanos) {
+		renderNanos.add(nanos);
+	}
+
+	/**
+	 * Records time spent finding suspects.
+	 * @param nanos The time in nanoseconds.
+	 */
+	void suspects(long nanos) {
+		suspectNanos.add(nanos);
+	}
+
+	/**
+	 * Adds the hash table lookups a simulator counted and starts its count again.
+	 * @param probes The lookups counted since the last call.
+	 */
+	void lookedUp(ProbeCounter probes) {
+		lookups.add(probes.getLookups());
+		slotsScanned.add(probes.getSlotsScanned());
+		longestProbe.accumulate(probes.getLongestProbe());
+		probes.reset();
+	}
+
+	/**
+	 * Records a suspect lookup answered from a SuspectCache.
+	 */
+	void suspectCacheHit() {
+		suspectCacheHits.increment();
+	}
+
+	/**
+	 * Records a suspect lookup a SuspectCache did not have.
+	 */
+	void suspectCacheMissed() {
+		suspectCacheMisses.increment();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getConnects() {
+		return connects.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getDisconnects() {
+		return disconnects.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getPersonMoves() {
+		return moves.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getSetupMillis() {
+		return setupNanos.sum() / 1e6;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getReplayMillis() {
+		return replayNanos.sum() / 1e6;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getRenderMillis() {
+		return renderNanos.sum() / 1e6;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getSuspectMillis() {
+		return suspectNanos.sum() / 1e6;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getLookups() {
+		return lookups.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getLookupSlotsScanned() {
+		return slotsScanned.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getAverageProbeLength() {
+		long n = lookups.sum();
+		return n == 0 ? 0 : (double)slotsScanned.sum() / n;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getLongestProbe() {
+		return longestProbe.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getLongestTrain() {
+		return longestTrain.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getLongestDecoupledChain() {
+		return longestChain.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getSuspectCacheHits() {
+		return suspectCacheHits.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getSuspectCacheMisses() {
+		return suspectCacheMisses.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset() {
+		connects.reset();
+		disconnects.reset();
+		moves.reset();
+		setupNanos.reset();
+		replayNanos.reset();
+		renderNanos.reset();
+		suspectNanos.reset();
+		lookups.reset();
+		slotsScanned.reset();
+		longestProbe.reset();
+		longestTrain.reset();
+		longestChain.reset();
+		suspectCacheHits.reset();
+		suspectCacheMisses.reset();
+	}
+
+	/**
+	 * Describes every counter on one line.
+	 * @return The counters.
+	 */
+	public String toString() {
+		return String.format("connects=%d disconnects=%d moves=%d setup=%.3fms replay=%.3fms render=%.3fms suspects=%.3fms"
+				+ " lookups=%d avgProbe=%.2f longestProbe=%d longestTrain=%d longestChain=%d"
+				+ " cacheHits=%d cacheMisses=%d",
+				getConnects(), getDisconnects(), getPersonMoves(), getSetupMillis(), getReplayMillis(), getRenderMillis(),
+				getSuspectMillis(), getLookups(), getAverageProbeLength(), getLongestProbe(), getLongestTrain(),
+				getLongestDecoupledChain(), getSuspectCacheHits(), getSuspectCacheMisses());
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * The management interface of SimulatorMetrics, as shown in JConsole or VisualVM.
+ * JMX requires a standard MBean interface to be public.
+ */
+public interface SimulatorMetricsMBean {
+
+	/**
+	 * Gets the number of connect actions applied.
+	 * @return The number of connects.
+	 */
+	long getConnects();
+
+	/**
+	 * Gets the number of disconnect actions applied.
+	 * @return The number of disconnects.
+	 */
+	long getDisconnects();
+
+	/**
+	 * Gets the number of person moves applied.
+	 * @return The number of moves.
+	 */
+	long getPersonMoves();
+
+	/**
+	 * Gets the time spent reading initial positions.
+	 * @return The time in milliseconds.
+	 */
+	double getSetupMillis();
+
+	/**
+	 * Gets the time spent applying blocks of actions.
+	 * @return The time in milliseconds.
+	 */
+	double getReplayMillis();
+
+	/**
+	 * Gets the time spent printing the world.
+	 * @return The time in milliseconds.
+	 */
+	double getRenderMillis();
+
+	/**
+	 * Gets the time spent finding suspects.
+	 * @return The time in milliseconds.
+	 */
+	double getSuspectMillis();
+
+	/**
+	 * Gets the number of hash table lookups the simulators made: every name looked
+	 * up or interned in their symbol tables, which is how each action finds its
+	 * train, cars and person, and every lookup in the lists of people on each car.
+	 * Names looked up by merged logs read ahead on their own threads are not counted.
+	 * @return The number of lookups.
+	 */
+	long getLookups();
+
+	/**
+	 * Gets the number of hash table slots those lookups scanned.
+	 * @return The number of slots.
+	 */
+	long getLookupSlotsScanned();
+
+	/**
+	 * Gets the average number of slots scanned per lookup.
+	 * @return The average probe length.
+	 */
+	double getAverageProbeLength();
+
+	/**
+	 * Gets the most slots a single lookup scanned.
+	 * @return The longest probe.
+	 */
+	long getLongestProbe();
+
+	/**
+	 * Gets the most cars any train has had.
+	 * @return The longest train.
+	 */
+	long getLongestTrain();
+
+	/**
+	 * Gets the most cars any decoupled chain has had.
+	 * @return The longest decoupled chain.
+	 */
+	long getLongestDecoupledChain();
+
+	/**
+	 * Gets the number of suspect lookups answered from a suspect cache.
+	 * @return The number of hits.
+	 */
+	long getSuspectCacheHits();
+
+	/**
+	 * Gets the number of suspect lookups a suspect cache did not have.
+	 * @return The number of misses.
+	 */
+	long getSuspectCacheMisses();
+
+	/**
+	 * Sets every counter back to zero.
+	 */
+	void reset();
+}
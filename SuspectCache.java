@@ -0,0 +1,528 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A bounded least recently used cache of murder suspects by car, for an
+ * investigator asking about the same cars again and again between actions. An
+ * entry stays valid until an action touches what it was worked out from, and only
+ * those entries are dropped. The suspects of an occupied car only change when
+ * someone moves into or out of it. The suspects of an empty car are the occupants
+ * of its nearest occupied neighbors with only empty cars in between, and since
+ * people move one car at a time nobody gets into that range without leaving one of
+ * the neighbors, so they only change on moves into or out of the car or its two
+ * neighbors, or when cars are connected or disconnected on its train.
+ *
+ * Entries live in fixed slots threaded onto linked lists of int indexes: one for
+ * the recency order, one per car for the entries that depend on it and one per
+ * train for the entries of empty cars on it, so every operation is O(1) apart from
+ * copying the suspects.
+ */
+class SuspectCache {
+
+	/**
+	 * Entries per slot in the dependency lists: the car itself and its two neighbors.
+	 */
+	private static final int DEPENDENCIES = 3;
+
+	/**
+	 * The car of each slot, or -1 for a free slot.
+	 */
+	private final int[] slotCar;
+
+	/**
+	 * The suspects of each slot.
+	 */
+	private final UniqueList<Person>[] results;
+
+	/**
+	 * The train list each slot is on: the train id + 1, 0 for decoupled cars, or -1
+	 * for an occupied car, which no train action can change.
+	 */
+	private final int[] slotTrain;
+
+	/**
+	 * The more recently used slot of each slot, or -1 for the newest.
+	 */
+	private final int[] newer;
+
+	/**
+	 * The less recently used slot of each slot, or -1 for the oldest (or, for a
+	 * free slot, the next free slot).
+	 */
+	private final int[] older;
+
+	/**
+	 * The most recently used slot, or -1 if the cache is empty.
+	 */
+	private int newest = -1;
+
+	/**
+	 * The least recently used slot, or -1 if the cache is empty.
+	 */
+	private int oldest = -1;
+
+	/**
+	 * The first free slot, or -1 if every slot is used.
+	 */
+	private int free;
+
+	/**
+	 * The car each dependency (slot * 3 + 0, 1 or 2) is on, or -1 if it is unused.
+	 */
+	private final int[] dependencyCar;
+
+	/**
+	 * The next dependency on the same car, or -1.
+	 */
+	private final int[] dependencyNext;
+
+	/**
+	 * The previous dependency on the same car, or -1.
+	 */
+	private final int[] dependencyPrevious;
+
+	/**
+	 * The first dependency on each car, or -1.
+	 */
+	private int[] carDependencies = new int[0];
+
+	/**
+	 * The slot holding each car's entry, or -1.
+	 */
+	private int[] carSlot = new int[0];
+
+	/**
+	 * The next slot on the same train list, or -1.
+	 */
+	private final int[] trainNext;
+
+	/**
+	 * The previous slot on the same train list, or -1.
+	 */
+	private final int[] trainPrevious;
+
+	/**
+	 * The first slot on each train list (train id + 1, 0 for decoupled cars), or -1.
+	 */
+	private int[] trainSlots = new int[0];
+
+	/**
+	 * The number of entries.
+	 */
+	private int size = 0;
+
+	/**
+	 * The number of lookups answered from the cache.
+	 */
+	private long hits = 0;
+
+	/**
+	 * The number of lookups that had to be worked out.
+	 */
+	private long misses = 0;
+
+	/**
+	 * Constructor for the suspect cache.
+	 * @param capacity The most entries to keep.
+	 */
+	SuspectCache(int capacity) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("The suspect cache needs room for at least one car");
+		}
+		slotCar = new int[capacity];
+		@SuppressWarnings("unchecked")
+		UniqueList<Person>[] results = (UniqueList<Person>[])new UniqueList<?>[capacity];
+		this.results = results;
+		slotTrain = new int[capacity];
+		newer = new int[capacity];
+		older = new int[capacity];
+		dependencyCar = new int[capacity * DEPENDENCIES];
+		dependencyNext = new int[capacity * DEPENDENCIES];
+		dependencyPrevious = new int[capacity * DEPENDENCIES];
+		trainNext = new int[capacity];
+		trainPrevious = new int[capacity];
+		clear();
+	}
+
+	/**
+	 * Gets the suspects of a car if they are cached, and counts a hit or a miss.
+	 * @param car The id of the car.
+	 * @return A copy of the suspects, or null if the car has no entry.
+	 */
+	public UniqueList<Person> get(int car) {
+		//O(s) where s=the number of suspects, which are copied
+		int slot = car < carSlot.length ? carSlot[car] : -1;
+		if(slot == -1) {
+			misses++;
+			if(SimulatorMetrics.ENABLED) {
+				SimulatorMetrics.get().suspectCacheMissed();
+			}
+			return null;
+		}
+		hits++;
+		if(SimulatorMetrics.ENABLED) {
+			SimulatorMetrics.get().suspectCacheHit();
+		}
+		unlinkRecency(slot);
+		linkNewest(slot);
+		return results[slot].clone();
+	}
+
+	/**
+	 * Caches the suspects of an occupied car, which are its occupants.
+	 * @param car The id of the car.
+	 * @param suspects The suspects, which are copied.
+	 */
+	public void putOccupants(int car, UniqueList<Person> suspects) {
+		int slot = claim(car, suspects);
+		slotTrain[slot] = -1;
+		depend(slot, 0, car);
+	}
+
+	/**
+	 * Caches the suspects of an empty car, which are the occupants of its nearest
+	 * occupied neighbors.
+	 * @param car The id of the car.
+	 * @param before The id of the nearest occupied car in front of it, or -1.
+	 * @param after The id of the nearest occupied car behind it, or -1.
+	 * @param train The id of the train the car is on, or -1 for a decoupled car.
+	 * @param suspects The suspects, which are copied.
+	 */
+	public void putNeighbors(int car, int before, int after, int train, UniqueList<Person> suspects) {
+		int slot = claim(car, suspects);
+		depend(slot, 0, car);
+		depend(slot, 1, before);
+		depend(slot, 2, after);
+		int list = train + 1;
+		if(list >= trainSlots.length) {
+			trainSlots = grow(trainSlots, list + 1);
+		}
+		slotTrain[slot] = list;
+		trainPrevious[slot] = -1;
+		trainNext[slot] = trainSlots[list];
+		if(trainSlots[list] != -1) {
+			trainPrevious[trainSlots[list]] = slot;
+		}
+		trainSlots[list] = slot;
+	}
+
+	/**
+	 * Drops the entries a person moving between two cars changes.
+	 * @param from The id of the car they left.
+	 * @param to The id of the car they moved to.
+	 */
+	public void moved(int from, int to) {
+		//O(e) where e=the number of entries dropped
+		dropDependents(from);
+		dropDependents(to);
+	}
+
+	/**
+	 * Drops the entries of empty cars on a train that cars were disconnected from.
+	 * @param train The id of the train.
+	 */
+	public void disconnected(int train) {
+		//O(e) where e=the number of entries dropped
+		dropTrain(train + 1);
+	}
+
+	/**
+	 * Drops the entries of empty cars on a train that a decoupled chain was connected
+	 * to, and on decoupled chains.
+	 * @param train The id of the train.
+	 */
+	public void connected(int train) {
+		//O(e) where e=the number of entries dropped
+		dropTrain(train + 1);
+		dropTrain(0);
+	}
+
+	/**
+	 * Drops every entry, for when the whole world changes at once.
+	 */
+	public void clear() {
+		//O(c) where c=the capacity
+		Arrays.fill(slotCar, -1);
+		Arrays.fill(slotTrain, -1);
+		Arrays.fill(results, null);
+		Arrays.fill(dependencyCar, -1);
+		Arrays.fill(carDependencies, -1);
+		Arrays.fill(carSlot, -1);
+		Arrays.fill(trainSlots, -1);
+		for(int i = 0; i < slotCar.length; i++) {
+			older[i] = i + 1 < slotCar.length ? i + 1 : -1;
+		}
+		free = 0;
+		newest = -1;
+		oldest = -1;
+		size = 0;
+	}
+
+	/**
+	 * Gets the number of lookups answered from the cache.
+	 * @return The number of hits.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that were not cached.
+	 * @return The number of misses.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the number of cars with an entry.
+	 * @return The number of entries.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Takes a slot for a car's entry, dropping the car's old entry or else the least
+	 * recently used one if the cache is full.
+	 * @param car The id of the car.
+	 * @param suspects The suspects, which are copied.
+	 * @return The slot, with no dependencies and not on a train list.
+	 */
+	private int claim(int car, UniqueList<Person> suspects) {
+		//O(s) where s=the number of suspects
+		if(car >= carSlot.length) {
+			carSlot = grow(carSlot, car + 1);
+		}
+		if(carSlot[car] != -1) {
+			drop(carSlot[car]);
+		}
+		if(free == -1) {
+			drop(oldest);
+		}
+		int slot = free;
+		free = older[slot];
+		slotCar[slot] = car;
+		results[slot] = suspects.clone();
+		carSlot[car] = slot;
+		linkNewest(slot);
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Drops every entry that depends on a car.
+	 * @param car The id of the car, or -1.
+	 */
+	private void dropDependents(int car) {
+		if(car < 0 || car >= carDependencies.length) {
+			return;
+		}
+		while(carDependencies[car] != -1) {
+			drop(carDependencies[car] / DEPENDENCIES);
+		}
+	}
+
+	/**
+	 * Drops every entry on a train list.
+	 * @param list The train id + 1, or 0 for decoupled cars.
+	 */
+	private void dropTrain(int list) {
+		if(list >= trainSlots.length) {
+			return;
+		}
+		while(trainSlots[list] != -1) {
+			drop(trainSlots[list]);
+		}
+	}
+
+	/**
+	 * Drops an entry and frees its slot.
+	 * @param slot The slot.
+	 */
+	private void drop(int slot) {
+		//O(1)
+		for(int k = 0; k < DEPENDENCIES; k++) {
+			undepend(slot * DEPENDENCIES + k);
+		}
+		int list = slotTrain[slot];
+		if(list != -1) {
+			if(trainPrevious[slot] == -1) {
+				trainSlots[list] = trainNext[slot];
+			}
+			else {
+				trainNext[trainPrevious[slot]] = trainNext[slot];
+			}
+			if(trainNext[slot] != -1) {
+				trainPrevious[trainNext[slot]] = trainPrevious[slot];
+			}
+			slotTrain[slot] = -1;
+		}
+		unlinkRecency(slot);
+		carSlot[slotCar[slot]] = -1;
+		slotCar[slot] = -1;
+		results[slot] = null;
+		older[slot] = free;
+		free = slot;
+		size--;
+	}
+
+	/**
+	 * Records that a slot's entry depends on a car.
+	 * @param slot The slot.
+	 * @param k Which of the slot's dependencies this is.
+	 * @param car The id of the car, or -1 for none.
+	 */
+	private void depend(int slot, int k, int car) {
+		if(car == -1) {
+			return;
+		}
+		if(car >= carDependencies.length) {
+			carDependencies = grow(carDependencies, car + 1);
+		}
+		int d = slot * DEPENDENCIES + k;
+		dependencyCar[d] = car;
+		dependencyPrevious[d] = -1;
+		dependencyNext[d] = carDependencies[car];
+		if(carDependencies[car] != -1) {
+			dependencyPrevious[carDependencies[car]] = d;
+		}
+		carDependencies[car] = d;
+	}
+
+	/**
+	 * Takes a dependency off its car's list.
+	 * @param d The dependency.
+	 */
+	private void undepend(int d) {
+		int car = dependencyCar[d];
+		if(car == -1) {
+			return;
+		}
+		if(dependencyPrevious[d] == -1) {
+			carDependencies[car] = dependencyNext[d];
+		}
+		else {
+			dependencyNext[dependencyPrevious[d]] = dependencyNext[d];
+		}
+		if(dependencyNext[d] != -1) {
+			dependencyPrevious[dependencyNext[d]] = dependencyPrevious[d];
+		}
+		dependencyCar[d] = -1;
+	}
+
+	/**
+	 * Puts a slot at the most recently used end.
+	 * @param slot The slot, not in the recency order.
+	 */
+	private void linkNewest(int slot) {
+		newer[slot] = -1;
+		older[slot] = newest;
+		if(newest != -1) {
+			newer[newest] = slot;
+		}
+		newest = slot;
+		if(oldest == -1) {
+			oldest = slot;
+		}
+	}
+
+	/**
+	 * Takes a slot out of the recency order.
+	 * @param slot The slot.
+	 */
+	private void unlinkRecency(int slot) {
+		if(newer[slot] == -1) {
+			newest = older[slot];
+		}
+		else {
+			older[newer[slot]] = older[slot];
+		}
+		if(older[slot] == -1) {
+			oldest = newer[slot];
+		}
+		else {
+			newer[older[slot]] = newer[slot];
+		}
+	}
+
+	/**
+	 * Copies an index array into a larger one, filling the new entries with -1.
+	 * @param array The array.
+	 * @param needed The length needed.
+	 * @return The larger array.
+	 */
+	private static int[] grow(int[] array, int needed) {
+		int length = array.length;
+		int[] grown = Arrays.copyOf(array, Math.max(needed, length * 2));
+		Arrays.fill(grown, length, grown.length, -1);
+		return grown;
+	}
+
+	/**
+	 * Asks a cached and an uncached simulator about the same car.
+	 * @param cached The simulator with the cache.
+	 * @param uncached The simulator without one.
+	 * @param car The name of the car.
+	 * @return Boolean stating whether both gave the same suspects in the same order.
+	 */
+	private static boolean same(Simulator cached, Simulator uncached, String car) {
+		return Simulator.describe(cached.getMurderSuspects(car)).equals(Simulator.describe(uncached.getMurderSuspects(car)));
+	}
+
+	/**
+	 * Main method, checks cached suspects against an uncached simulator.
+	 * @param args command line arguments.
+	 * @throws IOException if the cases can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		//a move at 00:01, a disconnect at 00:02 and a move at 00:03, each asked about
+		//before and after
+		File trains = CaseGenerator.temporaryLog("T1 C1 C2 C3 C4\nT2 C5 C6\n\n00:02\nT1 disconnect C4\n\n");
+		File people = CaseGenerator.temporaryLog("P1 C1\nP2 C4\nP3 C6\n\n00:01\nP1 C1 C2\n\n00:03\nP3 C6 C5\n\n");
+		Simulator cached = new Simulator(trains, people);
+		Simulator uncached = new Simulator(trains, people);
+		cached.enableSuspectCache(8);
+		SuspectCache cache = cached.getSuspectCache();
+		String[][] asked = {{"C1", "C3", "C1", "C3"}, {"C3", "C5"}, {"C5", "C3"}, {"C5", "C3"}};
+		boolean found = true;
+		for(int time = 0; time < asked.length; time++) {
+			cached.moveTo(time);
+			uncached.moveTo(time);
+			for(String car : asked[time]) {
+				found = found && same(cached, uncached, car);
+			}
+		}
+		//hits: C1 and C3 asked again, C5 kept over the disconnect and C3 kept over the last move
+		if(found && cache.getHits() == 4 && cache.getMisses() == 6 && cache.size() == 2) {
+			System.out.println("Yay 1");
+		}
+
+		//a generated case asked about at random every minute, with fewer slots than cars
+		File[] logs = new CaseGenerator(3, 3, 24, 30, 60, 4, 1.0).writeTemporary();
+		cached = new Simulator(logs[0], logs[1]);
+		uncached = new Simulator(logs[0], logs[1]);
+		cached.enableSuspectCache(8);
+		cache = cached.getSuspectCache();
+		Random random = new Random(11);
+		int questions = 0;
+		int wrong = 0;
+		for(int time = 0; time <= 60; time++) {
+			cached.moveTo(time);
+			uncached.moveTo(time);
+			for(int q = 0; q < 20; q++) {
+				//most questions are about a few cars, the rest about any car
+				String car = "C" + random.nextInt(q % 4 == 0 ? 24 : 6);
+				questions++;
+				if(!same(cached, uncached, car)) {
+					wrong++;
+				}
+			}
+		}
+		if(wrong == 0 && cache.getHits() + cache.getMisses() == questions && cache.getHits() > questions / 2 && cache.size() <= 8) {
+			System.out.println("Yay 2");
+		}
+	}
+}
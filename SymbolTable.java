@@ -0,0 +1,164 @@
+import java.util.Arrays;
+
+/**
+ * Interns names into dense integer ids. The first name interned gets id 0, the
+ * next new name gets id 1, and so on, so ids can be used to index arrays.
+ * A table is shared by every simulator (and event source) that reads the same
+ * names, so probes are counted in a counter the caller passes in rather than
+ * one attached to the table.
+ */
+class SymbolTable {
+
+	/**
+	 * The initial capacity of the hash table, must be a power of two.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The interned names, indexed by id.
+	 */
+	private String[] names = new String[INITIAL_CAPACITY / 2];
+
+	/**
+	 * Open-addressing hash table holding id + 1 for each name (0 marks an empty slot).
+	 */
+	private int[] table = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The number of interned names.
+	 */
+	private int size = 0;
+
+	/**
+	 * Gets the id of a name, giving the name the next free id if it is new.
+	 * @param name The name to intern.
+	 * @return The id of the name.
+	 */
+	public int intern(String name) {
+		return intern(name, null);
+	}
+
+	/**
+	 * Gets the id of a name, giving the name the next free id if it is new, and
+	 * counts the slots the lookup scanned.
+	 * @param name The name to intern.
+	 * @param probes The counter to record the lookup in, or null.
+	 * @return The id of the name.
+	 */
+	public int intern(String name, ProbeCounter probes) {
+		//O(1) average
+		int slot = slotOf(name, probes);
+		if(table[slot] != 0) {
+			return table[slot] - 1;
+		}
+		if(size == names.length) {
+			names = Arrays.copyOf(names, size * 2);
+		}
+		int id = size++;
+		names[id] = name;
+		table[slot] = id + 1;
+		if(size * 2 > table.length) {
+			grow();
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the id of a name without interning it.
+	 * @param name The name to look up.
+	 * @return The id of the name, or -1 if it was never interned.
+	 */
+	public int lookup(String name) {
+		return lookup(name, null);
+	}
+
+	/**
+	 * Gets the id of a name without interning it, and counts the slots the
+	 * lookup scanned.
+	 * @param name The name to look up.
+	 * @param probes The counter to record the lookup in, or null.
+	 * @return The id of the name, or -1 if it was never interned.
+	 */
+	public int lookup(String name, ProbeCounter probes) {
+		//O(1) average
+		return table[slotOf(name, probes)] - 1;
+	}
+
+	/**
+	 * Gets the name with the given id.
+	 * @param id The id of the name.
+	 * @return The name.
+	 */
+	public String name(int id) {
+		//O(1)
+		if(id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("No name has id " + id);
+		}
+		return names[id];
+	}
+
+	/**
+	 * Gets the number of interned names, which is also the next id to be handed out.
+	 * @return The number of names.
+	 */
+	public int size() {
+		//O(1)
+		return size;
+	}
+
+	/**
+	 * Finds the slot holding a name, or the empty slot where it would go.
+	 * @param name The name to look for.
+	 * @param probes The counter to record the lookup in, or null.
+	 * @return The slot.
+	 */
+	private int slotOf(String name, ProbeCounter probes) {
+		int mask = table.length - 1;
+		int start = HashIndex.hash(name) & mask;
+		int slot = start;
+		int entry;
+		while((entry = table[slot]) != 0) {
+			if(names[entry - 1].equals(name)) {
+				break;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if(probes != null) {
+			probes.lookedUp(((slot - start) & mask) + 1);
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the hash table and re-inserts every id.
+	 */
+	private void grow() {
+		table = new int[table.length * 2];
+		for(int id = 0; id < size; id++) {
+			table[slotOf(names[id], null)] = id + 1;
+		}
+	}
+
+	/**
+	 * Main method.
+	 * @param args command line arguments.
+	 */
+	public static void main(String[] args) {
+		SymbolTable symbols = new SymbolTable();
+		if(symbols.intern("Car1") == 0 && symbols.intern("Car2") == 1 && symbols.intern("Car1") == 0) {
+			System.out.println("Yay 1");
+		}
+		for(int i = 0; i < 10000; i++) {
+			symbols.intern("C" + i);
+		}
+		if(symbols.size() == 10002 && symbols.lookup("C9999") == 10001 && symbols.lookup("Nope") == -1
+				&& symbols.name(1).equals("Car2")) {
+			System.out.println("Yay 2");
+		}
+		ProbeCounter probes = new ProbeCounter();
+		if(symbols.lookup("C5", probes) == 7 && symbols.intern("C6", probes) == 8 && symbols.lookup("Nope", probes) == -1
+				&& probes.getLookups() == 3 && probes.getSlotsScanned() >= 3 && probes.getLongestProbe() >= 1) {
+			System.out.println("Yay 3");
+		}
+	}
+}
@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
@@ -10,6 +11,11 @@ class Train implements Iterable<Car> {
 	 */
 	private String name;
 
+	/**
+	 * Dense id of the train given out by a SymbolTable, or -1 if the train has none.
+	 */
+	private int id;
+
 	/**
 	 * The first car in the train.
 	 */
@@ -25,12 +31,43 @@ class Train implements Iterable<Car> {
 	 */
 	private int size = 0;
 
+	/**
+	 * The cars on the train indexed by their position, 0 being the front car.
+	 */
+	private Car[] slots = new Car[8];
+
+	/**
+	 * Whether the car at each position had anyone in it when last told, indexed like slots.
+	 */
+	private boolean[] occupied = new boolean[8];
+
+	/**
+	 * A Fenwick tree over occupied (1-based), so the number of occupied cars in front of
+	 * any position, and the position of the k-th occupied car, take O(log n) to find.
+	 */
+	private int[] occupiedTree = new int[9];
+
+	/**
+	 * Counts changes to the cars on the train, so cached renderings know when they are stale.
+	 */
+	private int modCount = 0;
+
 	/**
 	 * Constructor for the Train class. Initializes the name of the train.
 	 * @param name The name for the train.
 	 */
 	public Train(String name) {
+		this(name, -1);
+	}
+
+	/**
+	 * Constructor for the Train class. Initializes the name and id of the train.
+	 * @param name The name for the train.
+	 * @param id The dense id of the train.
+	 */
+	public Train(String name, int id) {
 		this.name = name;
+		this.id = id;
 	}
 
 	/**
@@ -43,6 +80,15 @@ class Train implements Iterable<Car> {
 		return name;
 	}
 	
+	/**
+	 * Gets the dense id of the train.
+	 * @return the id of the train, or -1 if it has none.
+	 */
+	public int getId() {
+		//O(1)
+		return id;
+	}
+	
 	/**
 	 * Gets an iterator that starts at the first traincar in the train and can go to the last train car.
 	 * @return An iterator for this train.
@@ -80,8 +126,236 @@ class Train implements Iterable<Car> {
 	 */
 	public boolean equals(Object o) {
 		//two trains are equal if they have the same name
+		//O(1) for the same train, otherwise O(k) where k=the length of the name
+		if(this == o) {
+			return true;
+		}
+		if(o instanceof Train) {
+			return this.name.equals(((Train)o).name);
+		}
+		return o != null && this.name.equals(o.toString());
+	}
+	
+	/**
+	 * Hash code for the train, based on its name.
+	 * @return The hash code of the train's name.
+	 */
+	public int hashCode() {
+		//O(1)
+		return name.hashCode();
+	}
+	
+	/**
+	 * Gets the number of cars on the train.
+	 * @return The size of the train.
+	 */
+	public int size() {
+		//O(1)
+		return size;
+	}
+	
+	/**
+	 * Gets the car at a position on the train.
+	 * @param position The position of the car, 0 being the front car.
+	 * @return The car at that position.
+	 */
+	public Car carAt(int position) {
+		//O(1)
+		if(position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Train " + name + " has no position " + position);
+		}
+		return slots[position];
+	}
+	
+	/**
+	 * Gets the number of changes made to the cars on the train so far.
+	 * @return The modification count.
+	 */
+	int getModCount() {
+		//O(1)
+		return modCount;
+	}
+	
+	/**
+	 * Checks whether a car is on this train using the position index.
+	 * @param c The car to check.
+	 * @return Boolean stating whether this exact car is on the train.
+	 */
+	boolean holds(Car c) {
+		//O(1), positions past size are left over from earlier disconnects
+		int position = c.getIndexedPosition();
+		return position >= 0 && position < size && slots[position] == c;
+	}
+	
+	/**
+	 * Puts a car at the back of the position index.
+	 * @param c The car to index.
+	 */
+	private void place(Car c) {
+		if(size == slots.length) {
+			slots = Arrays.copyOf(slots, size * 2);
+			occupied = Arrays.copyOf(occupied, size * 2);
+			rebuildOccupied();
+		}
+		slots[size] = c;
+		c.setTrain(this, size);
+		markOccupied(size, c.getOccupants().size() > 0);
+		size++;
+	}
+	
+	/**
+	 * Rebuilds the Fenwick tree from the occupied flags.
+	 */
+	private void rebuildOccupied() {
+		//O(n) where n=the capacity of the position index
+		int n = occupied.length;
+		int[] tree = new int[n + 1];
+		for(int i = 1; i <= n; i++) {
+			if(occupied[i - 1]) {
+				tree[i]++;
+			}
+			int parent = i + (i & -i);
+			if(parent <= n) {
+				tree[parent] += tree[i];
+			}
+		}
+		occupiedTree = tree;
+	}
+	
+	/**
+	 * Sets whether the car at a position has anyone in it.
+	 * @param position The position.
+	 * @param flag Whether the car is occupied.
+	 */
+	private void markOccupied(int position, boolean flag) {
+		//O(log n)
+		if(occupied[position] == flag) {
+			return;
+		}
+		occupied[position] = flag;
+		int change = flag ? 1 : -1;
+		for(int i = position + 1; i < occupiedTree.length; i += i & -i) {
+			occupiedTree[i] += change;
+		}
+	}
+	
+	/**
+	 * Counts the occupied cars in front of a position.
+	 * @param position The position.
+	 * @return The number of occupied cars at positions 0 to position - 1.
+	 */
+	private int occupiedBefore(int position) {
+		//O(log n)
+		int count = 0;
+		for(int i = position; i > 0; i -= i & -i) {
+			count += occupiedTree[i];
+		}
+		return count;
+	}
+	
+	/**
+	 * Finds the position of the k-th occupied car from the front.
+	 * @param k The rank of the car, 1 being the first occupied car.
+	 * @return The position, or -1 if there are fewer than k occupied cars.
+	 */
+	private int occupiedAt(int k) {
+		//O(log n), walks down the Fenwick tree
+		int position = 0;
+		for(int step = Integer.highestOneBit(occupiedTree.length - 1); step > 0; step >>= 1) {
+			int next = position + step;
+			if(next < occupiedTree.length && occupiedTree[next] < k) {
+				position = next;
+				k -= occupiedTree[next];
+			}
+		}
+		return position < occupied.length ? position : -1;
+	}
+	
+	/**
+	 * Tells the train that one of its cars went from empty to occupied or back.
+	 * @param c The car, which must be on this train.
+	 */
+	void occupancyChanged(Car c) {
+		//O(log n)
+		markOccupied(c.getIndexedPosition(), c.getOccupants().size() > 0);
+	}
+
+	/**
+	 * Checks whether this train keeps the order of a car it placed itself, so that the
+	 * car's neighbors, position and train come from this train instead of the car's links.
+	 * A Train orders no cars: it reads the links the cars keep.
+	 * @param c A car this train placed.
+	 * @return Boolean stating whether the train orders the car.
+	 */
+	boolean ordersCar(Car c) {
 		//O(1)
-		return this.toString() == o.toString();
+		return false;
+	}
+
+	/**
+	 * Gets the car behind a car this train orders.
+	 * @param c A car for which ordersCar is true.
+	 * @return The next car, or null if there is none.
+	 */
+	Car nextOf(Car c) {
+		return null;
+	}
+
+	/**
+	 * Gets the car in front of a car this train orders.
+	 * @param c A car for which ordersCar is true.
+	 * @return The previous car, or null if there is none.
+	 */
+	Car previousOf(Car c) {
+		return null;
+	}
+
+	/**
+	 * Gets the position of a car this train orders among the cars it is joined to.
+	 * @param c A car for which ordersCar is true.
+	 * @return The position, 0 being the front car.
+	 */
+	int rankOf(Car c) {
+		return -1;
+	}
+
+	/**
+	 * Gets the train a car this train placed is on now.
+	 * @param c A car this train placed.
+	 * @return The train, or null if the car is not on a train.
+	 */
+	Train ownerOf(Car c) {
+		//O(1)
+		return holds(c) ? this : null;
+	}
+
+	/**
+	 * Stops ordering a car that is about to be linked by hand.
+	 * @param c A car for which ordersCar is true.
+	 */
+	void release(Car c) {
+	}
+	
+	/**
+	 * Finds the nearest car in front of a car that has anyone in it.
+	 * @param c A car on this train.
+	 * @return The occupied car, or null if every car in front of c is empty.
+	 */
+	public Car nearestOccupiedBefore(Car c) {
+		//O(log n), positions past size never count because only earlier ones are summed
+		int before = occupiedBefore(c.getIndexedPosition());
+		return before == 0 ? null : slots[occupiedAt(before)];
+	}
+	
+	/**
+	 * Finds the nearest car behind a car that has anyone in it.
+	 * @param c A car on this train.
+	 * @return The occupied car, or null if every car behind c is empty.
+	 */
+	public Car nearestOccupiedAfter(Car c) {
+		//O(log n), an answer past size is left over from earlier disconnects
+		int position = occupiedAt(occupiedBefore(c.getIndexedPosition() + 1) + 1);
+		return position == -1 || position >= size ? null : slots[position];
 	}
 	
 	/**
@@ -96,26 +370,20 @@ class Train implements Iterable<Car> {
 		if(c == null) {
 			return;
 		}
-		// Train is empty
+		modCount++;
 		if(head == null) {
-			Car currCar = c;
-			size++;
-			head = currCar;
+			// Train is empty
+			head = c;
 			head.setPrevious(null);
-			tail = currCar;
-			while(tail.getNext() != null) {
-				tail = tail.getNext();
-				size++;
-			}
-			return;
 		}
-		while(c != null) {
-			Car currCar = c;
+		else {
 			// Train has items in it
-			currCar.setPrevious(tail);
-			tail.setNext(currCar);
-			tail = currCar;
-			size++;
+			c.setPrevious(tail);
+			tail.setNext(c);
+		}
+		while(c != null) {
+			place(c);
+			tail = c;
 			c = c.getNext();
 		}
 	}
@@ -129,94 +397,80 @@ class Train implements Iterable<Car> {
 		//returns the car disconnected from the train
 		//should throw the following exception if the car isn't on
 		//the train: RuntimeException("Can not disconnect a car that doesn't exist");
-		//required Big-O: O(n) where n=the number of cars on this train
-		if(head == null) {
-			throw new RuntimeException("Can not disconnect a car that doesn't exist");
+		//O(1) through the position index, the cars behind c keep stale
+		//positions that holds() ignores because they are past size
+		if(!holds(c)) {
+			c = findEqualCar(c);
 		}
-		if(c.equals(head)) {
-			Car removedCar = head;
+		modCount++;
+		int position = c.getIndexedPosition();
+		if(position == 0) {
 			head = null;
 			tail = null;
 			size = 0;
-			return removedCar;
+			return c;
 		}
-		else{
-			int index = 0;
-			for(Car car: this){
-				if(c.equals(car)) {
-					Car removedCar = car;
-					tail = car.getPrevious();
-					removedCar.setPrevious(null);
-					tail.setNext(null);
-					size = index;
-					return removedCar;
-				}
-				index++;
+		tail = slots[position - 1];
+		c.setPrevious(null);
+		tail.setNext(null);
+		size = position;
+		return c;
+	}
+	
+	/**
+	 * Finds the car on this train that is equal to (but not the same object as) a car.
+	 * @param c The car to look for.
+	 * @return The car on this train.
+	 */
+	private Car findEqualCar(Car c) {
+		//O(n), only used for cars that are not the ones on the train
+		for(int i = 0; i < size; i++) {
+			if(c.equals(slots[i])) {
+				return slots[i];
 			}
 		}
 		throw new RuntimeException("Can not disconnect a car that doesn't exist");
 	}
 
 	/**
-	 * Class that iterates througha train backwards.
+	 * Removes every car from the train without touching the links between them,
+	 * for when the world is being restored.
 	 */
-	private class BackwardsIterator {
-
-		/**
-		 * Reference to the tail of the train.
-		 */
-		private Car indexEnd = tail;
-
-		/**
-		 * Checks if there is a previous car.
-		 * @return Boolean stating if there is a previous car or not.
-		 */
-		public boolean hasPrevious() {
-			return indexEnd != null;
-		}
-
-		/**
-		 * Moves the index to the next previous car and returns the current car. 
-		 * @return The current car.
-		 */
-		public Car previous() {
-			Car currCar = indexEnd;
-			indexEnd = indexEnd.getPrevious();
-			return currCar;
-		}
+	void clear() {
+		//O(1), the cars keep stale positions that holds() ignores
+		modCount++;
+		head = null;
+		tail = null;
+		size = 0;
 	}
+
 	/**
 	 * Reverses the order of the train cars in the train.
 	 */
 	public void reverseTrain() {
 		//reconnects all the cars on the train in the reverse order
 		//that they currently are (e.g. changes C1->C2->C3 to
-		//C3->C2->C1). You may find using a second train to do this useful.
-		//required Big-O: O(n) where n=the number of cars on this train
-		//careful not to end up with O(n^2) which is easy to do by calling O(n)
-		//methods in a loop
-		Train temp = new Train(this.getName());
-		BackwardsIterator iterator = new BackwardsIterator();
-		while(iterator.hasPrevious()) {
-			Car currCar = iterator.previous();
-			if(temp.head == null) {
-				temp.head = currCar;
-				temp.head.setPrevious(null);
-				temp.tail = currCar;
-				temp.tail.setNext(null);
-				temp.size++;
-			}
-			else {
-				currCar.setPrevious(temp.tail);
-				temp.tail.setNext(currCar);
-				temp.tail = currCar;
-				temp.tail.setNext(null);
-				temp.size++;
-			}
+		//C3->C2->C1).
+		//O(n) where n=the number of cars on this train, the position
+		//index is reversed in place and the links are rebuilt from it
+		modCount++;
+		for(int i = 0, j = size - 1; i < j; i++, j--) {
+			Car swap = slots[i];
+			slots[i] = slots[j];
+			slots[j] = swap;
+			boolean flag = occupied[i];
+			occupied[i] = occupied[j];
+			occupied[j] = flag;
+		}
+		rebuildOccupied();
+		for(int i = 0; i < size; i++) {
+			Car c = slots[i];
+			c.setTrain(this, i);
+			c.setPrevious(i > 0 ? slots[i - 1] : null);
+			c.setNext(i < size - 1 ? slots[i + 1] : null);
 		}
-		this.disconnectCar(head);
-		this.connectCar(temp.head);
-		this.size = temp.size;
+		head = size > 0 ? slots[0] : null;
+		tail = size > 0 ? slots[size - 1] : null;
 	}
 	
 	/**
@@ -233,7 +487,7 @@ class Train implements Iterable<Car> {
 		Train t1 = new Train("T1");
 		Train t1b = new Train("T1");
 		
-		if(t1.getName().equals("T1") && t1.equals(t1b)) {
+		if(t1.getName().equals("T1") && t1.equals(t1b) && !new Train("T1", 0).equals(new Train("T2", 0))) {
 			System.out.println("Yay 1");
 		}
 		
@@ -339,6 +593,58 @@ class Train implements Iterable<Car> {
 		Em.printAscii();
 		System.out.println(Tom.size + " " + Ed.size + " " + Jim.size + " " + Em.size);
 		*/
+		
+		Train t = new Train("T");
+		Car[] cs = new Car[50000];
+		for(int i = 0; i < cs.length; i++) {
+			cs[i] = new Car("C" + i);
+			t.connectCar(cs[i]);
+		}
+		Car back = t.disconnectCar(cs[30000]);
+		if(back == cs[30000] && t.size() == 30000 && cs[29999].getNext() == null && cs[30000].getTrain() == null
+				&& cs[29999].getTrain() == t && cs[29999].getPosition() == 29999) {
+			System.out.println("Yay 1");
+		}
+		
+		Train u = new Train("U");
+		u.connectCar(back);
+		t.reverseTrain();
+		if(u.size() == 20000 && cs[49999].getTrain() == u && cs[49999].getPosition() == 19999
+				&& t.carAt(0) == cs[29999] && cs[0].getPosition() == 29999 && cs[1].getNext() == cs[0]) {
+			System.out.println("Yay 2");
+		}
+		
+		try {
+			t.disconnectCar(cs[40000]);
+		}
+		catch(RuntimeException e) {
+			if(t.disconnectCar(new Car("C5")) == cs[5] && t.size() == 29994) {
+				System.out.println("Yay 3");
+			}
+		}
+		
+		Train v = new Train("V");
+		Car[] vs = new Car[10000];
+		for(int i = 0; i < vs.length; i++) {
+			vs[i] = new Car("V" + i);
+			v.connectCar(vs[i]);
+		}
+		Person near = new Person("Near", vs[100]);
+		Person far = new Person("Far", vs[9000]);
+		boolean found = v.nearestOccupiedBefore(vs[5000]) == vs[100] && v.nearestOccupiedAfter(vs[5000]) == vs[9000]
+				&& v.nearestOccupiedBefore(vs[100]) == null;
+		v.disconnectCar(vs[8000]);
+		found = found && v.nearestOccupiedAfter(vs[5000]) == null;
+		v.reverseTrain();
+		vs[100].removeOccupant(near);
+		vs[4000].addOccupant(near);
+		found = found && v.nearestOccupiedAfter(vs[5000]) == vs[4000] && v.nearestOccupiedBefore(vs[5000]) == null;
+		v.connectCar(vs[8000]);
+		found = found && v.nearestOccupiedBefore(vs[4000]) == null && v.nearestOccupiedAfter(vs[4000]) == vs[9000]
+				&& vs[9000].removeOccupant(far) && vs[0].addOccupant(far) && v.nearestOccupiedAfter(vs[4000]) == vs[0];
+		if(found) {
+			System.out.println("Yay 4");
+		}
 	}
 	
 	//*****************************************************************/
@@ -349,11 +655,12 @@ class Train implements Iterable<Car> {
 	 * @return a string representation of the train.
 	 */
 	public String toString() {
-		String s = getName();
+		//O(n), one builder instead of a new string per car
+		StringBuilder s = new StringBuilder(getName());
 		for(Car c : this) {
-			s += " " + c;
+			s.append(' ').append(c);
 		}
-		return s;
+		return s.toString();
 	}
 	
 	/**
@@ -368,28 +675,32 @@ class Train implements Iterable<Car> {
 		  /O-O-O     o   o  
 		*/
 		
-		System.out.print(String.format("%-4s",getName())+"o O___");
-		for(Car c : this) {
-			System.out.print(" _________");
-		}
-		System.out.println();
-		
-		System.out.print("  _][__|o|");
-		for(Car c : this) {
-			System.out.print(" | "+String.format("%-5s",c.getName())+" |");
-		}
-		System.out.println();
-		
-		System.out.print(" |_______|");
-		for(Car c : this) {
-			System.out.print("-|_______|");
+		StringBuilder rows = new StringBuilder();
+		renderAscii(rows);
+		System.out.print(rows);
+	}
+	
+	/**
+	 * Appends the four rows printAscii prints to a buffer.
+	 * @param out The buffer to append to.
+	 */
+	public void renderAscii(StringBuilder out) {
+		//O(n), one walk over the cars builds all four rows
+		int width = 10 + 10 * size;
+		StringBuilder top = new StringBuilder(width).append(getName());
+		while(top.length() < 4) {
+			top.append(' ');
 		}
-		System.out.println();
-		
-		System.out.print("  /O-O-O  ");
+		top.append("o O___");
+		StringBuilder names = new StringBuilder(width).append("  _][__|o|");
+		StringBuilder bottom = new StringBuilder(width).append(" |_______|");
+		StringBuilder wheels = new StringBuilder(width).append("  /O-O-O  ");
 		for(Car c : this) {
-			System.out.print("   o   o  ");
+			top.append(" _________");
+			Car.appendName(names, c.getName());
+			bottom.append("-|_______|");
+			wheels.append("   o   o  ");
 		}
-		System.out.println();
+		out.append(top).append('\n').append(names).append('\n').append(bottom).append('\n').append(wheels).append('\n');
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,813 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A train kept as an implicit treap instead of a position index: a randomly balanced
+ * binary tree whose in-order walk is the order of the cars, with a lazy reverse flag.
+ * Disconnecting splits the tree at a car, connecting a chain that came off a treap
+ * train joins the two trees, and reversing flips one flag, each in O(log n) expected
+ * time. A decoupled chain stays a tree of its own until it is connected again.
+ * The nodes of the cars are kept in a Yard indexed by car id, which the trains of one
+ * simulation share so chains can move between them; the cars only remember which
+ * train placed them and ask it for their neighbors and position, which the tree
+ * answers in O(log n) so existing callers see the same adjacency as on a Train.
+ * Every train of a simulation should be a TreapTrain or none should.
+ */
+class TreapTrain extends Train {
+
+	/**
+	 * A car's place in a treap.
+	 */
+	static final class Node {
+
+		/**
+		 * The car.
+		 */
+		private final Car car;
+
+		/**
+		 * The random heap priority that keeps the tree balanced.
+		 */
+		private final int priority = ThreadLocalRandom.current().nextInt();
+
+		/**
+		 * The left child: cars in front of this one (or behind it, if reversed is set).
+		 */
+		private Node left;
+
+		/**
+		 * The right child: cars behind this one (or in front of it, if reversed is set).
+		 */
+		private Node right;
+
+		/**
+		 * The parent, or null for the root.
+		 */
+		private Node parent;
+
+		/**
+		 * The number of cars in this subtree.
+		 */
+		private int size = 1;
+
+		/**
+		 * The number of cars in this subtree with anyone in them.
+		 */
+		private int occupied;
+
+		/**
+		 * Whether the order of this subtree is reversed and not yet pushed to the children.
+		 */
+		private boolean reversed = false;
+
+		/**
+		 * The train this tree is, set on the root only (null for a decoupled chain).
+		 */
+		private TreapTrain owner = null;
+
+		/**
+		 * Constructor for the node class.
+		 * @param car The car.
+		 */
+		Node(Car car) {
+			this.car = car;
+			this.occupied = car.getOccupants().size() > 0 ? 1 : 0;
+		}
+
+		/**
+		 * Gets the root of the tree this node is in.
+		 * @return The root.
+		 */
+		private Node root() {
+			//O(log n)
+			Node n = this;
+			while(n.parent != null) {
+				n = n.parent;
+			}
+			return n;
+		}
+
+		/**
+		 * Gets the train this node's tree is.
+		 * @return The train, or null for a decoupled chain.
+		 */
+		TreapTrain owner() {
+			return root().owner;
+		}
+
+		/**
+		 * Pushes every pending reverse on the path from the root down to this node,
+		 * so the children of every node on the path are in their real order.
+		 */
+		private void pushPath() {
+			//O(log n)
+			if(parent != null) {
+				parent.pushPath();
+			}
+			push(this);
+		}
+
+		/**
+		 * Gets the position of this node's car in its tree.
+		 * @return The position, 0 being the front car.
+		 */
+		int rank() {
+			//O(log n)
+			pushPath();
+			int rank = sizeOf(left);
+			for(Node n = this; n.parent != null; n = n.parent) {
+				if(n == n.parent.right) {
+					rank += sizeOf(n.parent.left) + 1;
+				}
+			}
+			return rank;
+		}
+
+		/**
+		 * Gets the car behind this one.
+		 * @return The next car, or null if this is the last car.
+		 */
+		Car next() {
+			//O(log n)
+			pushPath();
+			if(right != null) {
+				Node n = right;
+				push(n);
+				while(n.left != null) {
+					n = n.left;
+					push(n);
+				}
+				return n.car;
+			}
+			Node n = this;
+			while(n.parent != null && n == n.parent.right) {
+				n = n.parent;
+			}
+			return n.parent == null ? null : n.parent.car;
+		}
+
+		/**
+		 * Gets the car in front of this one.
+		 * @return The previous car, or null if this is the first car.
+		 */
+		Car previous() {
+			//O(log n)
+			pushPath();
+			if(left != null) {
+				Node n = left;
+				push(n);
+				while(n.right != null) {
+					n = n.right;
+					push(n);
+				}
+				return n.car;
+			}
+			Node n = this;
+			while(n.parent != null && n == n.parent.left) {
+				n = n.parent;
+			}
+			return n.parent == null ? null : n.parent.car;
+		}
+
+		/**
+		 * Updates the occupied counts after the car went from empty to occupied or back.
+		 */
+		void occupancyChanged() {
+			//O(log n)
+			int now = car.getOccupants().size() > 0 ? 1 : 0;
+			int change = now - (occupied - occupiedOf(left) - occupiedOf(right));
+			for(Node n = this; n != null && change != 0; n = n.parent) {
+				n.occupied += change;
+			}
+		}
+	}
+
+	/**
+	 * The nodes of the cars of a group of treap trains that trade chains, indexed by car id.
+	 */
+	static final class Yard {
+
+		/**
+		 * The node of each car, indexed by car id (null for a car in no treap).
+		 */
+		private Node[] nodes = new Node[16];
+
+		/**
+		 * Gets the node of a car.
+		 * @param c The car.
+		 * @return The node, or null if the car is in no treap of this yard.
+		 */
+		Node get(Car c) {
+			//O(1)
+			int id = c.getId();
+			if(id < 0 || id >= nodes.length) {
+				return null;
+			}
+			Node n = nodes[id];
+			return n != null && n.car == c ? n : null;
+		}
+
+		/**
+		 * Gives a car a new node.
+		 * @param n The node, which knows its car.
+		 */
+		void put(Node n) {
+			//O(1) amortized
+			int id = n.car.getId();
+			if(id < 0) {
+				throw new RuntimeException("Car " + n.car + " needs an id to be on a TreapTrain");
+			}
+			if(id >= nodes.length) {
+				nodes = Arrays.copyOf(nodes, Math.max(id + 1, nodes.length * 2));
+			}
+			nodes[id] = n;
+		}
+
+		/**
+		 * Takes a car out of its treap.
+		 * @param c The car.
+		 */
+		void remove(Car c) {
+			//O(1)
+			if(get(c) != null) {
+				nodes[c.getId()] = null;
+			}
+		}
+	}
+
+	/**
+	 * The nodes of the cars, shared with the trains this one trades chains with.
+	 */
+	private final Yard yard;
+
+	/**
+	 * The root of the treap, or null for an empty train.
+	 */
+	private Node root = null;
+
+	/**
+	 * Counts changes to the cars on the train.
+	 */
+	private int changes = 0;
+
+	/**
+	 * Constructor for the TreapTrain class.
+	 * @param name The name for the train.
+	 */
+	public TreapTrain(String name) {
+		this(name, -1, new Yard());
+	}
+
+	/**
+	 * Constructor for the TreapTrain class.
+	 * @param name The name for the train.
+	 * @param id The dense id of the train.
+	 */
+	public TreapTrain(String name, int id) {
+		this(name, id, new Yard());
+	}
+
+	/**
+	 * Constructor for the TreapTrain class.
+	 * @param name The name for the train.
+	 * @param id The dense id of the train.
+	 * @param yard The nodes of the cars, shared by every train chains may move between.
+	 */
+	public TreapTrain(String name, int id, Yard yard) {
+		super(name, id);
+		this.yard = yard;
+	}
+
+	/**
+	 * Gets the size of a subtree.
+	 * @param n The subtree (may be null).
+	 * @return The number of cars in it.
+	 */
+	private static int sizeOf(Node n) {
+		return n == null ? 0 : n.size;
+	}
+
+	/**
+	 * Gets the occupied count of a subtree.
+	 * @param n The subtree (may be null).
+	 * @return The number of occupied cars in it.
+	 */
+	private static int occupiedOf(Node n) {
+		return n == null ? 0 : n.occupied;
+	}
+
+	/**
+	 * Hands a pending reverse down to the children.
+	 * @param n The node (may be null).
+	 */
+	private static void push(Node n) {
+		//O(1)
+		if(n == null || !n.reversed) {
+			return;
+		}
+		Node swap = n.left;
+		n.left = n.right;
+		n.right = swap;
+		if(n.left != null) {
+			n.left.reversed ^= true;
+		}
+		if(n.right != null) {
+			n.right.reversed ^= true;
+		}
+		n.reversed = false;
+	}
+
+	/**
+	 * Recomputes a node's counts from its children and adopts them.
+	 * @param n The node.
+	 */
+	private static void update(Node n) {
+		//O(1)
+		n.size = 1 + sizeOf(n.left) + sizeOf(n.right);
+		n.occupied = (n.car.getOccupants().size() > 0 ? 1 : 0) + occupiedOf(n.left) + occupiedOf(n.right);
+		if(n.left != null) {
+			n.left.parent = n;
+		}
+		if(n.right != null) {
+			n.right.parent = n;
+		}
+	}
+
+	/**
+	 * Joins two trees, every car of the first in front of every car of the second.
+	 * @param a The front tree (may be null).
+	 * @param b The back tree (may be null).
+	 * @return The root of the joined tree.
+	 */
+	private static Node merge(Node a, Node b) {
+		//O(log n) expected
+		if(a == null) {
+			return b;
+		}
+		if(b == null) {
+			return a;
+		}
+		if(a.priority > b.priority) {
+			push(a);
+			a.right = merge(a.right, b);
+			update(a);
+			return a;
+		}
+		push(b);
+		b.left = merge(a, b.left);
+		update(b);
+		return b;
+	}
+
+	/**
+	 * Splits a tree into its first count cars and the rest.
+	 * @param n The tree (may be null).
+	 * @param count The number of cars that go into the front tree.
+	 * @return The front and back trees.
+	 */
+	private static Node[] split(Node n, int count) {
+		//O(log n) expected
+		if(n == null) {
+			return new Node[2];
+		}
+		push(n);
+		Node[] parts;
+		if(sizeOf(n.left) >= count) {
+			parts = split(n.left, count);
+			n.left = parts[1];
+			update(n);
+			parts[1] = n;
+		}
+		else {
+			parts = split(n.right, count - sizeOf(n.left) - 1);
+			n.right = parts[0];
+			update(n);
+			parts[0] = n;
+		}
+		return parts;
+	}
+
+	/**
+	 * Makes a node the root of this train.
+	 * @param n The new root (may be null).
+	 */
+	private void setRoot(Node n) {
+		if(root != null && root != n) {
+			root.owner = null;
+		}
+		root = n;
+		if(n != null) {
+			n.parent = null;
+			n.owner = this;
+		}
+	}
+
+	/**
+	 * Makes a node the root of a decoupled chain.
+	 * @param n The root (may be null).
+	 */
+	private static void detach(Node n) {
+		if(n != null) {
+			n.parent = null;
+			n.owner = null;
+		}
+	}
+
+	/**
+	 * Connects a car to the back of the train as well as all cars after that car.
+	 * @param c The car to be attached to the back of the train.
+	 */
+	public void connectCar(Car c) {
+		//O(log n) for a chain that came off a treap train, O(k log n) for
+		//k cars that have never been in one
+		if(c == null) {
+			return;
+		}
+		changes++;
+		Node chain;
+		Node n = yard.get(c);
+		if(n != null) {
+			Node chainRoot = n.root();
+			int rank = n.rank();
+			if(chainRoot.owner != null) {
+				//taken off the back of another train
+				TreapTrain other = chainRoot.owner;
+				Node[] parts = split(chainRoot, rank);
+				other.setRoot(parts[0]);
+				other.changes++;
+				chain = parts[1];
+			}
+			else if(rank > 0) {
+				//the cars in front of c stay a decoupled chain of their own
+				Node[] parts = split(chainRoot, rank);
+				detach(parts[0]);
+				chain = parts[1];
+			}
+			else {
+				chain = chainRoot;
+			}
+		}
+		else {
+			chain = null;
+			for(Car next = c; next != null; ) {
+				Car after = next.getNext();
+				Node node = new Node(next);
+				yard.put(node);
+				next.setTrain(this, -1);
+				chain = merge(chain, node);
+				chain.parent = null;
+				next = after;
+			}
+		}
+		if(root != null) {
+			root.owner = null;
+		}
+		detach(chain);
+		setRoot(merge(root, chain));
+	}
+
+	/**
+	 * Disconnects a car from the train as well as all subsequent cars, which stay
+	 * joined as a decoupled chain.
+	 * @param c The car to be disconnected from the train.
+	 * @return The car that was disconnected.
+	 */
+	public Car disconnectCar(Car c) {
+		//O(log n)
+		if(!holds(c)) {
+			c = findEqual(c);
+		}
+		changes++;
+		Node[] parts = split(root, yard.get(c).rank());
+		setRoot(parts[0]);
+		detach(parts[1]);
+		return c;
+	}
+
+	/**
+	 * Finds the car on this train that is equal to (but not the same object as) a car.
+	 * @param c The car to look for.
+	 * @return The car on this train.
+	 */
+	private Car findEqual(Car c) {
+		//O(n), only used for cars that are not the ones on the train
+		for(Car mine : this) {
+			if(c.equals(mine)) {
+				return mine;
+			}
+		}
+		throw new RuntimeException("Can not disconnect a car that doesn't exist");
+	}
+
+	/**
+	 * Reverses the order of the cars on the train.
+	 */
+	public void reverseTrain() {
+		//O(1), the flag is pushed down the tree as parts of it are used
+		changes++;
+		if(root != null) {
+			root.reversed ^= true;
+		}
+	}
+
+	/**
+	 * Removes every car from the train, for when the world is being restored.
+	 */
+	void clear() {
+		//O(1)
+		changes++;
+		setRoot(null);
+	}
+
+	/**
+	 * Gets the number of cars on the train.
+	 * @return The size of the train.
+	 */
+	public int size() {
+		//O(1)
+		return sizeOf(root);
+	}
+
+	/**
+	 * Gets the car at a position on the train.
+	 * @param position The position of the car, 0 being the front car.
+	 * @return The car at that position.
+	 */
+	public Car carAt(int position) {
+		//O(log n)
+		if(position < 0 || position >= size()) {
+			throw new IndexOutOfBoundsException("Train " + getName() + " has no position " + position);
+		}
+		Node n = root;
+		while(true) {
+			push(n);
+			int leftSize = sizeOf(n.left);
+			if(position < leftSize) {
+				n = n.left;
+			}
+			else if(position == leftSize) {
+				return n.car;
+			}
+			else {
+				position -= leftSize + 1;
+				n = n.right;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of changes made to the cars on the train so far.
+	 * @return The modification count.
+	 */
+	int getModCount() {
+		return changes;
+	}
+
+	/**
+	 * Checks whether a car is on this train.
+	 * @param c The car to check.
+	 * @return Boolean stating whether this exact car is on the train.
+	 */
+	boolean holds(Car c) {
+		//O(log n)
+		Node n = yard.get(c);
+		return n != null && root != null && n.root() == root;
+	}
+
+	/**
+	 * Occupancy is kept in the tree by the cars themselves.
+	 * @param c The car.
+	 */
+	void occupancyChanged(Car c) {
+		//O(log n)
+		yard.get(c).occupancyChanged();
+	}
+
+	/**
+	 * A treap orders every car that has a node in its yard.
+	 * @param c A car this train placed.
+	 * @return Boolean stating whether the car is in a treap of this yard.
+	 */
+	boolean ordersCar(Car c) {
+		//O(1)
+		return yard.get(c) != null;
+	}
+
+	/**
+	 * Gets the car behind a car from the tree.
+	 * @param c A car in a treap of this yard.
+	 * @return The next car, or null if there is none.
+	 */
+	Car nextOf(Car c) {
+		//O(log n)
+		return yard.get(c).next();
+	}
+
+	/**
+	 * Gets the car in front of a car from the tree.
+	 * @param c A car in a treap of this yard.
+	 * @return The previous car, or null if there is none.
+	 */
+	Car previousOf(Car c) {
+		//O(log n)
+		return yard.get(c).previous();
+	}
+
+	/**
+	 * Gets the position of a car in its tree.
+	 * @param c A car in a treap of this yard.
+	 * @return The position, 0 being the front car.
+	 */
+	int rankOf(Car c) {
+		//O(log n)
+		return yard.get(c).rank();
+	}
+
+	/**
+	 * Gets the train whose tree a car is in.
+	 * @param c A car this train placed.
+	 * @return The train, or null for a car in a decoupled chain or in no treap.
+	 */
+	Train ownerOf(Car c) {
+		//O(log n)
+		Node n = yard.get(c);
+		return n == null ? null : n.owner();
+	}
+
+	/**
+	 * Forgets the node of a car that is about to be linked by hand.
+	 * @param c A car in a treap of this yard.
+	 */
+	void release(Car c) {
+		//O(1)
+		yard.remove(c);
+	}
+
+	/**
+	 * Counts the occupied cars in front of a position.
+	 * @param position The position.
+	 * @return The number of occupied cars at positions 0 to position - 1.
+	 */
+	private int occupiedBefore(int position) {
+		//O(log n)
+		int count = 0;
+		Node n = root;
+		while(n != null && position > 0) {
+			push(n);
+			int leftSize = sizeOf(n.left);
+			if(position <= leftSize) {
+				n = n.left;
+			}
+			else {
+				count += occupiedOf(n.left) + (n.occupied - occupiedOf(n.left) - occupiedOf(n.right));
+				position -= leftSize + 1;
+				n = n.right;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the k-th occupied car from the front.
+	 * @param k The rank of the car, 1 being the first occupied car.
+	 * @return The car, or null if there are fewer than k occupied cars.
+	 */
+	private Car occupiedAt(int k) {
+		//O(log n)
+		Node n = root;
+		if(n == null || n.occupied < k) {
+			return null;
+		}
+		while(true) {
+			push(n);
+			int leftOccupied = occupiedOf(n.left);
+			int self = n.occupied - leftOccupied - occupiedOf(n.right);
+			if(k <= leftOccupied) {
+				n = n.left;
+			}
+			else if(k == leftOccupied + self) {
+				return n.car;
+			}
+			else {
+				k -= leftOccupied + self;
+				n = n.right;
+			}
+		}
+	}
+
+	/**
+	 * Finds the nearest car in front of a car that has anyone in it.
+	 * @param c A car on this train.
+	 * @return The occupied car, or null if every car in front of c is empty.
+	 */
+	public Car nearestOccupiedBefore(Car c) {
+		//O(log n)
+		int before = occupiedBefore(yard.get(c).rank());
+		return before == 0 ? null : occupiedAt(before);
+	}
+
+	/**
+	 * Finds the nearest car behind a car that has anyone in it.
+	 * @param c A car on this train.
+	 * @return The occupied car, or null if every car behind c is empty.
+	 */
+	public Car nearestOccupiedAfter(Car c) {
+		//O(log n)
+		return occupiedAt(occupiedBefore(yard.get(c).rank() + 1) + 1);
+	}
+
+	/**
+	 * Gets an iterator over the cars from front to back.
+	 * @return An iterator for this train.
+	 */
+	public Iterator<Car> iterator() {
+		//O(1) amortized per car, an in-order walk that pushes reverses on the way down
+		return new Iterator<Car>() {
+
+			private Node[] stack = new Node[64];
+
+			private int depth = 0;
+
+			{
+				descend(root);
+			}
+
+			private void descend(Node n) {
+				while(n != null) {
+					push(n);
+					if(depth == stack.length) {
+						stack = Arrays.copyOf(stack, depth * 2);
+					}
+					stack[depth++] = n;
+					n = n.left;
+				}
+			}
+
+			public boolean hasNext() {
+				return depth > 0;
+			}
+
+			public Car next() {
+				if(depth == 0) {
+					throw new NoSuchElementException();
+				}
+				Node n = stack[--depth];
+				descend(n.right);
+				return n.car;
+			}
+		};
+	}
+
+	/**
+	 * Main method, checks the treap train against a plain train.
+	 * @param args command line arguments.
+	 */
+	public static void main(String[] args) {
+		Yard yard = new Yard();
+		Train t = new TreapTrain("T", 0, yard);
+		Car[] cs = new Car[50000];
+		for(int i = 0; i < cs.length; i++) {
+			cs[i] = new Car("C" + i, i);
+			t.connectCar(cs[i]);
+		}
+		Car back = t.disconnectCar(cs[30000]);
+		if(back == cs[30000] && t.size() == 30000 && cs[29999].getNext() == null && cs[30000].getTrain() == null
+				&& cs[29999].getTrain() == t && cs[29999].getPosition() == 29999 && cs[30001].getPrevious() == cs[30000]) {
+			System.out.println("Yay 1");
+		}
+
+		Train u = new TreapTrain("U", 1, yard);
+		u.connectCar(back);
+		t.reverseTrain();
+		if(u.size() == 20000 && cs[49999].getTrain() == u && cs[49999].getPosition() == 19999
+				&& t.carAt(0) == cs[29999] && cs[0].getPosition() == 29999 && cs[1].getNext() == cs[0]) {
+			System.out.println("Yay 2");
+		}
+
+		try {
+			t.disconnectCar(cs[40000]);
+		}
+		catch(RuntimeException e) {
+			if(t.disconnectCar(new Car("C5")) == cs[5] && t.size() == 29994) {
+				System.out.println("Yay 3");
+			}
+		}
+
+		Person near = new Person("Near", cs[20000]);
+		new Person("Far", cs[45000]);
+		boolean found = t.nearestOccupiedBefore(cs[25000]) == null && t.nearestOccupiedAfter(cs[25000]) == cs[20000];
+		u.reverseTrain();
+		found = found && u.nearestOccupiedBefore(cs[40000]) == cs[45000] && u.nearestOccupiedAfter(cs[40000]) == null;
+		cs[20000].removeOccupant(near);
+		found = found && t.nearestOccupiedAfter(cs[25000]) == null;
+		Car chain = u.disconnectCar(cs[45000]);
+		t.connectCar(chain);
+		found = found && t.nearestOccupiedAfter(cs[25000]) == cs[45000] && cs[45000].getPosition() == 29994
+				&& u.size() == 4999;
+		if(found) {
+			System.out.println("Yay 4");
+		}
+	}
+}
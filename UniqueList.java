@@ -4,6 +4,10 @@ import javax.security.auth.PrivateCredentialPermission;
 
 /**
  * UniqueList is an generic iterable list that stores only unique values.
+ * Items are kept in a linked list (for insertion order) and in an open-addressing
+ * hash index (for O(1) average lookups), so the item type must implement
+ * hashCode() consistently with equals(): items that are equal must have equal
+ * hash codes, or contains, get and remove will not find them.
  * @param <T> generic item in the list.
  */
 class UniqueList<T> implements Iterable<T> {
@@ -23,17 +27,27 @@ class UniqueList<T> implements Iterable<T> {
 	 */
 	int size = 0;
 
+	/**
+	 * Hash index over the nodes of the list.
+	 */
+	private final HashIndex<Node<T>> index = new HashIndex<>();
+
 	/**
 	 * Class that defines a node in the list.
 	 * @param <E> generic item in the node.
 	 */
-	private class Node<E> {
+	private static class Node<E> extends HashIndex.Entry {
 		
 		/**
 		 * The reference to the next node.
 		 */
 		private Node<E> next;
 
+		/**
+		 * The reference to the previous node.
+		 */
+		private Node<E> previous;
+
 		/**
 		 * The data in the node.
 		 */
@@ -42,13 +56,39 @@ class UniqueList<T> implements Iterable<T> {
 		/**
 		 * Constructor for the node class. Initializes the node with a gerenric piece of data.
 		 * @param data The data stored in the node.
+		 * @param hash The spread hash code of the data.
 		 */
-		Node(E data) {
+		Node(E data, int hash) {
 			this.data = data;
+			this.hash = hash;
+		}
+
+		/**
+		 * Gets the data, which the node is found by.
+		 * @return The data in the node.
+		 */
+		Object key() {
+			return data;
 		}
 
     }
 
+	/**
+	 * Attaches a counter that every later lookup of this list is recorded in.
+	 * @param probes The counter, or null to stop counting.
+	 */
+	void countProbes(ProbeCounter probes) {
+		index.countProbes(probes);
+	}
+
+	/**
+	 * Gets the counter the lookups of this list are recorded in.
+	 * @return The counter, or null if nothing counts them.
+	 */
+	ProbeCounter getProbeCounter() {
+		return index.getProbeCounter();
+	}
+
 	/**
 	 * Appends an item to the list if the list does not already contain that item.
 	 * @param value The item to be appended to the list.
@@ -60,24 +100,24 @@ class UniqueList<T> implements Iterable<T> {
 		//returns false if the value can not be added
 		//(i.e. the value already exists in the list)
 		
-		//O(n) worst case, where n = the number of items
-		//because you need to check for duplicates!
-		Node<T> newNode = new Node<T>(value);
+		//O(1) average, the hash index finds duplicates
+		int h = HashIndex.hash(value);
+		if(index.find(value, h) != -1) {
+			return false;
+		}
+		Node<T> newNode = new Node<T>(value, h);
 		if(head == null) {
 			head = newNode;
 			tail = newNode;
-			head.next = null;
-			tail.next = null;
-			size++;
-			return true;
 		}
-		if(!contains(value)) {
+		else {
+			newNode.previous = tail;
 			tail.next = newNode;
 			tail = newNode;
-			size++;
-			return true;
 		}
-		return false;
+		index.add(newNode);
+		size++;
+		return true;
 	}
 	
 	/**
@@ -91,33 +131,29 @@ class UniqueList<T> implements Iterable<T> {
 		//return false if the item could not be found
 		//return true if you remove the item
 		
-		//O(n) worst case, where n = the number of items
-		if(head == null) {
+		//O(1) average, the node is unlinked through its previous reference
+		int slot = index.find(value, HashIndex.hash(value));
+		if(slot == -1) {
 			return false;
 		}
-		Node<T> indexNode = head; 
-		int index = 1;
-		if(indexNode.data.equals(value)) {
-			head = head.next;
-			size--;
-			return true;
+		Node<T> node = index.at(slot);
+		index.removeAt(slot);
+		if(node.previous == null) {
+			head = node.next;
 		}
-		else{
-			while(index < size){
-				if(indexNode.next.data.equals(value)){
-					if(indexNode.next.next == null) {
-						indexNode.next = null;
-						size--;
-						return true;
-					}
-					indexNode.next = indexNode.next.next;
-					size--;
-					return true;
-				}
-				index++;
-			}
+		else {
+			node.previous.next = node.next;
 		}
-		return false;
+		if(node.next == null) {
+			tail = node.previous;
+		}
+		else {
+			node.next.previous = node.previous;
+		}
+		node.next = null;
+		node.previous = null;
+		size--;
+		return true;
 	}
 	
 	/**
@@ -134,13 +170,12 @@ class UniqueList<T> implements Iterable<T> {
 		//memory... review the difference between
 		//.equals() and == from CS211)
 		
-		//O(n) worst case, where n = the number of items
-		for(T elem : this) {
-			if(elem.equals(value)){
-				return elem;
-			}
+		//O(1) average
+		int slot = index.find(value, HashIndex.hash(value));
+		if(slot == -1) {
+			return null;
 		}
-		return null;
+		return index.at(slot).data;
 	}
 	
 	/**
@@ -153,7 +188,7 @@ class UniqueList<T> implements Iterable<T> {
 		//list, reuse code from get() to implement this
 		//method
 		
-		//O(n) worst case, where n = the number of items
+		//O(1) average
 		
 		if(get(value) == null) {
 			return false;
@@ -275,6 +310,14 @@ class UniqueList<T> implements Iterable<T> {
 				}
 				return false;
 			}
+			
+			/**
+			 * hash code that agrees with equals.
+			 * @return the hash code of the name.
+			 */
+			public int hashCode() {
+				return name.hashCode();
+			}
 		}
 		
 		UniqueList<Cat> catSet1 = new UniqueList<>();
@@ -286,9 +329,26 @@ class UniqueList<T> implements Iterable<T> {
 			for(Cat c : catSet1) {
 				if(catSet2.get(c) == c) matched++;
 			}
-			if(matched == 2) {
+			if(matched == 2 && catSet2.contains(new Cat("Sammy")) && catSet2.remove(new Cat("Grouchy")) && catSet2.size() == 1) {
 				System.out.println("Yay 4");
 			}
 		}
+		
+		UniqueList<Integer> numbers = new UniqueList<>();
+		for(int i = 0; i < 100000; i++) {
+			numbers.append(i);
+		}
+		for(int i = 0; i < 100000; i += 2) {
+			numbers.remove(i);
+		}
+		int expected = 1;
+		boolean inOrder = true;
+		for(Integer n : numbers) {
+			inOrder &= n == expected;
+			expected += 2;
+		}
+		if(inOrder && numbers.size() == 50000 && numbers.contains(99999) && !numbers.contains(50000) && numbers.append(0)) {
+			System.out.println("Yay 5");
+		}
 	}
 }
\ No newline at end of file
@@ -1,5 +1,10 @@
+import java.util.Iterator;
+import java.util.function.Function;
+
 /**
  * UniquePairList class that represents a list that holds unique key-value pairs.
+ * The pairs are kept in an open-addressing hash index keyed by the key's
+ * hashCode(), and are also linked together in insertion order for iteration.
  * @param <K> The key for the item.
  * @param <V> The value for the item.
  */
@@ -10,7 +15,7 @@ class UniquePairList<K,V> {
 	 * @param <K> The key for the pair.
  	 * @param <V> The value for the pair.
 	 */
-	private static class Pair<K,V> {
+	private static class Pair<K,V> extends HashIndex.Entry {
 		
 		/**
 		 * The key for the pair.
@@ -22,6 +27,16 @@ class UniquePairList<K,V> {
 		 */
 		private V value;
 
+		/**
+		 * The pair appended before this one.
+		 */
+		private Pair<K,V> before;
+
+		/**
+		 * The pair appended after this one.
+		 */
+		private Pair<K,V> after;
+
 		/**
 		 * Constructor for the pair class.
 		 * @param key The key for the pair used for matching.
@@ -57,6 +72,15 @@ class UniquePairList<K,V> {
 			return false;
 		}
 		
+		/**
+		 * Hash code for the pair, which only depends on the key (like equals).
+		 * @return The hash code of the key.
+		 */
+		public int hashCode() {
+			//O(1)
+			return key.hashCode();
+		}
+		
 		/**
 		 * ToString for the pair class. Prints out a pair's key and value with a comma seperating them.
 		 * @return A string representation of the pair.
@@ -85,6 +109,14 @@ class UniquePairList<K,V> {
 			//O(1)
 			return value;
 		}
+
+		/**
+		 * Gets the key, which the pair is found by in the hash index.
+		 * @return The key of this pair.
+		 */
+		Object key() {
+			return key;
+		}
 	}
 	
 	/**
@@ -113,17 +145,175 @@ class UniquePairList<K,V> {
 		if(p1fromSet.getValue() == 1) {
 			System.out.println("Yay 3");
 		}
+		
+		UniquePairList<String,Integer> ages = new UniquePairList<>();
+		for(int i = 0; i < 1000; i++) {
+			ages.append("P" + i, i);
+		}
+		if(ages.update("P0", -1) && ages.remove("P1") && ages.getValue("P1") == null
+				&& ages.getOrDefault("P1", 7) == 7 && ages.computeIfAbsent("P1", k -> 42) == 42
+				&& ages.computeIfAbsent("P1", k -> 0) == 42 && ages.computeIfAbsent("P1000", k -> null) == null
+				&& !ages.containsKey("P1000") && ages.getValue("P999") == 999 && ages.size() == 1000) {
+			int last = 0;
+			for(int age : ages.values()) {
+				last = age;
+			}
+			if(last == 42) {
+				System.out.println("Yay 4");
+			}
+		}
+	}
+	
+	/**
+	 * Hash index over the pairs.
+	 */
+	private final HashIndex<Pair<K,V>> index = new HashIndex<>();
+
+	/**
+	 * The first pair in insertion order.
+	 */
+	private Pair<K,V> first;
+
+	/**
+	 * The last pair in insertion order.
+	 */
+	private Pair<K,V> last;
+
+	/**
+	 * The number of pairs in the list.
+	 */
+	private int size = 0;
+
+	/**
+	 * Attaches a counter that every later lookup of this list is recorded in.
+	 * @param probes The counter, or null to stop counting.
+	 */
+	void countProbes(ProbeCounter probes) {
+		index.countProbes(probes);
+	}
+
+	/**
+	 * Gets the counter the lookups of this list are recorded in.
+	 * @return The counter, or null if nothing counts them.
+	 */
+	ProbeCounter getProbeCounter() {
+		return index.getProbeCounter();
+	}
+
+	/**
+	 * Finds the pair with the given key.
+	 * @param key The key to look for.
+	 * @return The pair, or null if there is none.
+	 */
+	private Pair<K,V> find(Object key) {
+		int slot = index.find(key, HashIndex.hash(key));
+		return slot == -1 ? null : index.at(slot);
+	}
+
+	/**
+	 * Links a pair in at the end of the insertion order.
+	 * @param pair The pair to be linked.
+	 */
+	private void linkLast(Pair<K,V> pair) {
+		pair.after = null;
+		pair.before = last;
+		if(last == null) {
+			first = pair;
+		}
+		else {
+			last.after = pair;
+		}
+		last = pair;
+	}
+
+	/**
+	 * Unlinks a pair from the insertion order.
+	 * @param pair The pair to be unlinked.
+	 */
+	private void unlink(Pair<K,V> pair) {
+		if(pair.before == null) {
+			first = pair.after;
+		}
+		else {
+			pair.before.after = pair.after;
+		}
+		if(pair.after == null) {
+			last = pair.before;
+		}
+		else {
+			pair.after.before = pair.before;
+		}
+		pair.before = null;
+		pair.after = null;
+	}
+	
+	/**
+	 * Gets the value stored with a certain key, or a default if the key is not in the list.
+	 * @param key The key to the pair with the value to be returned.
+	 * @param defaultValue The value returned when no pair has the key.
+	 * @return The value of the pair that matched the key, or defaultValue.
+	 */
+	public V getOrDefault(K key, V defaultValue) {
+		//O(1) average
+		Pair<K,V> pair = find(key);
+		return pair == null ? defaultValue : pair.value;
+	}
+	
+	/**
+	 * Gets the value stored with a certain key, appending a pair with a computed value
+	 * first if the key is not in the list yet. Like Map.computeIfAbsent, nothing is
+	 * appended when the computed value is null.
+	 * @param key The key to the pair with the value to be returned.
+	 * @param mappingFunction Computes the value for a missing key.
+	 * @return The existing or newly appended value, or null if none was computed.
+	 */
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		//O(1) average
+		Pair<K,V> pair = find(key);
+		if(pair != null) {
+			return pair.value;
+		}
+		V value = mappingFunction.apply(key);
+		if(value != null) {
+			append(key, value);
+		}
+		return value;
+	}
+	
+	/**
+	 * Checks whether the list has a pair with the given key.
+	 * @param key The key to look for.
+	 * @return Boolean stating whether the key is in the list.
+	 */
+	public boolean containsKey(K key) {
+		//O(1) average
+		return index.find(key, HashIndex.hash(key)) != -1;
+	}
+	
+	/**
+	 * Gets the values of the pairs in the list, in insertion order, without copying them.
+	 * @return An iterable view of the values.
+	 */
+	public Iterable<V> values() {
+		return () -> new Iterator<V>() {
+			private Pair<K,V> current = first;
+
+			public boolean hasNext() {
+				return current != null;
+			}
+
+			public V next() {
+				V value = current.value;
+				current = current.after;
+				return value;
+			}
+		};
 	}
 	
 	//*****************************************************************/
 	//****************** DO NOT EDIT BELOW THIS LINE ******************/
 	//********************* EXCEPT TO ADD JAVADOCS ********************/
 	//*****************************************************************/
-	/**
-	 * UniqueList made up of Pairs.
-	 */
-	private UniqueList<Pair<K,V>> set = new UniqueList<>();
-	
 	/**
 	 * Appends a pair to the end of the list if it is unique.
 	 * @param key The key for the pair.
@@ -131,22 +321,35 @@ class UniquePairList<K,V> {
 	 * @return Boolean stating whether the pair was added or not.
 	 */
 	public boolean append(K key, V value) {
+		//O(1) average
+		int h = HashIndex.hash(key);
+		if(index.find(key, h) != -1) {
+			return false;
+		}
 		Pair<K,V> pair = new Pair<>(key, value);
-		return set.append(pair);
+		pair.hash = h;
+		index.add(pair);
+		linkLast(pair);
+		size++;
+		return true;
 	}
 	
 	/**
-	 * Either adds or deletes a pair from the list depending on whether it already exists or not.
+	 * Replaces the value of an existing pair and moves the pair to the end of the list.
 	 * @param key The key for the pair.
-	 * @param value The value for the pair.
-	 * @return Boolean stating whether the pair was added or deleted.
+	 * @param value The new value for the pair.
+	 * @return Boolean stating whether a pair with the key existed and was updated.
 	 */
 	public boolean update(K key, V value) {
-		Pair<K,V> pair = new Pair<>(key, value);
-		if(!remove(key)) {
+		//O(1) average
+		Pair<K,V> pair = find(key);
+		if(pair == null) {
 			return false;
 		}
-		return set.append(pair);
+		pair.value = value;
+		unlink(pair);
+		linkLast(pair);
+		return true;
 	}
 	
 	/**
@@ -155,30 +358,40 @@ class UniquePairList<K,V> {
 	 * @return boolean stating whether or not the pair was removed.
 	 */
 	public boolean remove(K key) {
-		Pair<K,V> pair = new Pair<>(key, null);
-		return set.remove(pair);
+		//O(1) average
+		int slot = index.find(key, HashIndex.hash(key));
+		if(slot == -1) {
+			return false;
+		}
+		Pair<K,V> pair = index.at(slot);
+		index.removeAt(slot);
+		unlink(pair);
+		size--;
+		return true;
 	}
 	
 	/**
 	 * Gets the value stored in the pair with a certain key.
 	 * @param key The key to the pair with the value to be returned.
-	 * @return The value of the pair that matched the key.
+	 * @return The value of the pair that matched the key, or null if there is no such pair.
 	 */
 	public V getValue(K key) {
-		Pair<K,V> pair = new Pair<>(key, null);
-		return set.get(pair).getValue();
+		//O(1) average
+		Pair<K,V> pair = find(key);
+		return pair == null ? null : pair.value;
 	}
 	
 	/**
 	 * Gets the keys of the pairs in the list.
-	 * @return A cloned list of keys.
+	 * @return A new list of keys, in insertion order.
 	 */
 	public UniqueList<K> getKeys() {
+		//O(n)
 		UniqueList<K> keySet = new UniqueList<>();
-		for(Pair<K,V> p : set) {
-			keySet.append(p.getKey());
+		for(Pair<K,V> p = first; p != null; p = p.after) {
+			keySet.append(p.key);
 		}
-		return keySet.clone();
+		return keySet;
 	}
 	
 	/**
@@ -186,6 +399,6 @@ class UniquePairList<K,V> {
 	 * @return The size of the list.
 	 */
 	public int size() {
-		return set.size();
+		return size;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,218 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The suspects for a murder at any minute of a window of time, such as "between
+ * 14:05 and 14:40": everyone who was a suspect at one of those minutes, in the
+ * order they first became one, and how many of the minutes each was a suspect.
+ */
+class WindowSuspects {
+
+	/**
+	 * Counts how many minutes each person id was a suspect, for one stretch of a
+	 * window. Tallies of neighboring stretches are added up into one.
+	 */
+	static final class Tally {
+
+		/**
+		 * The number of minutes each person was a suspect, indexed by person id.
+		 */
+		private int[] minutes = new int[16];
+
+		/**
+		 * The ids of the suspects in the order they first became one.
+		 */
+		private int[] order = new int[16];
+
+		/**
+		 * The number of suspects.
+		 */
+		private int size = 0;
+
+		/**
+		 * Counts a minute for each suspect.
+		 * @param suspects The suspects at one minute.
+		 */
+		void count(UniqueList<Person> suspects) {
+			//O(s) where s=the number of suspects
+			for(Person p : suspects) {
+				add(p.getId(), 1);
+			}
+		}
+
+		/**
+		 * Adds the tally of the stretch after this one.
+		 * @param later The later tally.
+		 */
+		void addAll(Tally later) {
+			//O(s) where s=the number of suspects in the later tally
+			for(int i = 0; i < later.size; i++) {
+				int id = later.order[i];
+				add(id, later.minutes[id]);
+			}
+		}
+
+		/**
+		 * Adds minutes to a person.
+		 * @param id The id of the person.
+		 * @param count The number of minutes.
+		 */
+		private void add(int id, int count) {
+			if(id >= minutes.length) {
+				minutes = Arrays.copyOf(minutes, Math.max(id + 1, minutes.length * 2));
+			}
+			if(minutes[id] == 0) {
+				if(size == order.length) {
+					order = Arrays.copyOf(order, size * 2);
+				}
+				order[size++] = id;
+			}
+			minutes[id] += count;
+		}
+
+		/**
+		 * Gets the number of suspects.
+		 * @return The number of suspects.
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Gets the id of a suspect.
+		 * @param i The index of the suspect in the order they first became one.
+		 * @return The id of the person.
+		 */
+		int idAt(int i) {
+			return order[i];
+		}
+
+		/**
+		 * Gets the number of minutes a person was a suspect.
+		 * @param id The id of the person.
+		 * @return The number of minutes.
+		 */
+		int minutesOf(int id) {
+			return id < minutes.length ? minutes[id] : 0;
+		}
+	}
+
+	/**
+	 * The first minute of the window, in minutes since midnight.
+	 */
+	private final int from;
+
+	/**
+	 * The last minute of the window, in minutes since midnight.
+	 */
+	private final int to;
+
+	/**
+	 * Each suspect and the number of minutes they were one.
+	 */
+	private final UniquePairList<Person,Integer> minutes;
+
+	/**
+	 * Constructor for the window suspects.
+	 * @param from The first minute of the window.
+	 * @param to The last minute of the window.
+	 * @param minutes Each suspect and the number of minutes they were one.
+	 */
+	WindowSuspects(int from, int to, UniquePairList<Person,Integer> minutes) {
+		this.from = from;
+		this.to = to;
+		this.minutes = minutes;
+	}
+
+	/**
+	 * Gets everyone who was a suspect at some minute of the window.
+	 * @return The suspects, in the order they first became one.
+	 */
+	public UniqueList<Person> getSuspects() {
+		return minutes.getKeys();
+	}
+
+	/**
+	 * Gets how many minutes of the window a person was a suspect.
+	 * @param p The person.
+	 * @return The number of minutes (0 if they never were).
+	 */
+	public int getMinutes(Person p) {
+		return minutes.getOrDefault(p, 0);
+	}
+
+	/**
+	 * Gets the number of minutes in the window.
+	 * @return The number of minutes, counting both ends.
+	 */
+	public int getWindowMinutes() {
+		return to - from + 1;
+	}
+
+	/**
+	 * Describes each suspect and their minutes, one per line.
+	 * @return The description.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for(Person p : getSuspects()) {
+			sb.append(p).append(' ').append(getMinutes(p)).append('/').append(getWindowMinutes()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Main method, checks the fork/join sweep of a window against the sequential one
+	 * and against a fresh simulation at every minute.
+	 * @param args command line arguments.
+	 * @throws IOException if the case can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File[] logs = new CaseGenerator(13, 3, 24, 40, 90, 6, 1.0).writeTemporary();
+		Simulator split = new Simulator(logs[0], logs[1]);
+		split.enableCheckpoints(0, 10, null);
+		boolean same = true;
+		for(int c = 0; c < 24; c += 5) {
+			//split four ways from the checkpoints, and swept minute by minute without them
+			Simulator sequential = new Simulator(logs[0], logs[1]);
+			String parallel = split.suspectsDuring("C" + c, "00:20", "01:15", 4).toString();
+			same = same && parallel.equals(sequential.suspectsDuring("C" + c, "00:20", "01:15", 1).toString());
+			sequential.close();
+		}
+		if(same) {
+			System.out.println("Yay 1");
+		}
+
+		//the same tally as counting the suspects of a fresh simulation at every minute
+		UniquePairList<String,Integer> expected = new UniquePairList<>();
+		for(int minute = 20; minute <= 75; minute++) {
+			String time = String.format("%02d:%02d", minute / 60, minute % 60);
+			String suspects = Simulator.expectedSuspects(logs[0], logs[1], "C7", time);
+			if(!suspects.equals("No suspects!")) {
+				for(String name : suspects.split(" ")) {
+					expected.append(name, 0);
+					expected.update(name, expected.getValue(name) + 1);
+				}
+			}
+		}
+		WindowSuspects window = split.suspectsDuring("C7", "00:20", "01:15", 4);
+		boolean counted = window.getSuspects().size() == expected.size();
+		for(Person p : window.getSuspects()) {
+			counted = counted && window.getMinutes(p) == expected.getOrDefault(p.getName(), -1);
+		}
+		if(counted) {
+			System.out.println("Yay 2");
+		}
+
+		//the caller's world is where it was before the window was swept
+		split.moveTo(30);
+		int before = split.getCurrentTime();
+		split.suspectsDuring("C3", "00:40", "01:20", 4);
+		if(split.getCurrentTime() == before
+				&& Simulator.describe(split.getMurderSuspects("C3")).equals(Simulator.expectedSuspects(logs[0], logs[1], "C3", "00:30"))) {
+			System.out.println("Yay 3");
+		}
+		split.close();
+	}
+}
@@ -0,0 +1,280 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Draws the world the same way Simulator.printWorld does, but builds each frame in
+ * one reused buffer and writes it with a single call. The rows of every train are
+ * kept between frames and only redrawn when the train has changed, each person's
+ * line is only rebuilt when they have changed cars, and a frame of a world that has
+ * not changed at all only redraws the time.
+ */
+class WorldRenderer {
+
+	/**
+	 * Where frames are written.
+	 */
+	private final PrintStream out;
+
+	/**
+	 * The frame being built, reused from one frame to the next.
+	 */
+	private final StringBuilder frame = new StringBuilder(1 << 12);
+
+	/**
+	 * The frame without its time line, as drawn last.
+	 */
+	private final StringBuilder body = new StringBuilder(1 << 12);
+
+	/**
+	 * The rows drawn for each train, with the train's modification count when they were drawn.
+	 */
+	private IdentityHashMap<Train, Object[]> trainRows = new IdentityHashMap<>();
+
+	/**
+	 * The line drawn for each person, in the order of the people.
+	 */
+	private String[] personLines = new String[16];
+
+	/**
+	 * The car each person was in when their line was drawn.
+	 */
+	private Car[] personCars = new Car[16];
+
+	/**
+	 * The version of the world the body was drawn for (-1 if none was).
+	 */
+	private long drawnVersion = -1;
+
+	/**
+	 * Constructor for the world renderer.
+	 * @param out Where frames are written.
+	 */
+	WorldRenderer(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Forgets everything drawn so far, for when the world has been replaced rather than changed.
+	 */
+	public void invalidate() {
+		trainRows = new IdentityHashMap<>();
+		personLines = new String[16];
+		personCars = new Car[16];
+		drawnVersion = -1;
+	}
+
+	/**
+	 * Draws one frame of the world and writes it out.
+	 * @param time The time the world is at.
+	 * @param version A number that changes whenever the world does (such as the number of actions applied).
+	 * @param trains The trains being simulated, indexed by id (null for no train).
+	 * @param people The people being simulated, indexed by id (null for no person).
+	 * @param decoupledCars The first cars of the decoupled chains.
+	 */
+	public void render(int time, long version, Train[] trains, Person[] people, Iterable<Car> decoupledCars) {
+		//O(1) for an unchanged world, otherwise O(t + d + p) where t=the cars of changed
+		//trains, d=the decoupled cars and p=the number of people
+		if(version != drawnVersion || version < 0) {
+			drawBody(trains, people, decoupledCars);
+			drawnVersion = version;
+		}
+		frame.setLength(0);
+		int hour = time / 60;
+		int minute = time - (hour * 60);
+		//same as printf("%02d:%02d\n") without the formatter
+		if(hour >= 0 && hour < 10) {
+			frame.append('0');
+		}
+		frame.append(hour).append(':');
+		if(minute >= 0 && minute < 10) {
+			frame.append('0');
+		}
+		frame.append(minute).append('\n');
+		frame.append(body);
+		out.append(frame);
+		out.flush();
+	}
+
+	/**
+	 * Draws everything below the time line into the body buffer.
+	 * @param trains The trains being simulated, indexed by id (null for no train).
+	 * @param people The people being simulated, indexed by id (null for no person).
+	 * @param decoupledCars The first cars of the decoupled chains.
+	 */
+	private void drawBody(Train[] trains, Person[] people, Iterable<Car> decoupledCars) {
+		body.setLength(0);
+		body.append("\nTrains:\n\n");
+		IdentityHashMap<Train, Object[]> drawn = new IdentityHashMap<>();
+		StringBuilder rows = new StringBuilder();
+		for(Train t : trains) {
+			if(t == null) {
+				continue;
+			}
+			Object[] cached = trainRows.get(t);
+			if(cached == null || (int)cached[0] != t.getModCount()) {
+				rows.setLength(0);
+				t.renderAscii(rows);
+				cached = new Object[] {t.getModCount(), rows.toString()};
+			}
+			drawn.put(t, cached);
+			body.append((String)cached[1]).append('\n');
+		}
+		trainRows = drawn;
+		body.append('\n');
+
+		body.append("Decoupled Cars:\n\n");
+		for(Car c : decoupledCars) {
+			c.renderAscii(body);
+			body.append('\n');
+		}
+		body.append("\n\n");
+
+		body.append("People:\n");
+		if(people.length > personLines.length) {
+			int length = Math.max(people.length, personLines.length * 2);
+			personLines = Arrays.copyOf(personLines, length);
+			personCars = Arrays.copyOf(personCars, length);
+		}
+		int i = 0;
+		for(Person p : people) {
+			if(p == null) {
+				continue;
+			}
+			Car c = p.getCurrentCar();
+			if(personLines[i] == null || personCars[i] != c) {
+				personLines[i] = p + " on car " + c;
+				personCars[i] = c;
+			}
+			body.append(personLines[i]).append('\n');
+			i++;
+		}
+		body.append('\n');
+	}
+
+	/**
+	 * Draws a world with a renderer and with Simulator.printWorld and compares them.
+	 * @param renderer The renderer, which writes into drawn.
+	 * @param drawn What the renderer has written, emptied before drawing.
+	 * @param time The time the world is at.
+	 * @param version The version of the world.
+	 * @param trains The trains by name.
+	 * @param people The people by name.
+	 * @param decoupledCars The first cars of the decoupled chains.
+	 * @return Boolean stating whether both drew the same frame.
+	 */
+	private static boolean drawsLikePrintWorld(WorldRenderer renderer, ByteArrayOutputStream drawn, int time, long version,
+			UniquePairList<String,Train> trains, UniquePairList<String,Person> people, UniqueList<Car> decoupledCars) {
+		Train[] trainsById = new Train[trains.size()];
+		int i = 0;
+		for(Train t : trains.values()) {
+			trainsById[i++] = t;
+		}
+		Person[] peopleById = new Person[people.size()];
+		i = 0;
+		for(Person p : people.values()) {
+			peopleById[i++] = p;
+		}
+		drawn.reset();
+		renderer.render(time, version, trainsById, peopleById, decoupledCars);
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(printed, true));
+		try {
+			Simulator.printWorld(time, trains, people, decoupledCars);
+		}
+		finally {
+			System.setOut(stdout);
+		}
+		return drawn.toString().equals(printed.toString());
+	}
+
+	/**
+	 * Main method.
+	 * @param args command line arguments.
+	 * @throws IOException if the temporary logs can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		//a world changed a piece at a time is drawn as printWorld draws it from scratch
+		UniquePairList<String,Train> trains = new UniquePairList<>();
+		UniquePairList<String,Person> people = new UniquePairList<>();
+		UniqueList<Car> decoupledCars = new UniqueList<>();
+		Car[] cars = new Car[5];
+		for(int i = 0; i < cars.length; i++) {
+			cars[i] = new Car("C" + i, i);
+		}
+		Train t0 = new Train("T0", 0);
+		Train t1 = new Train("T1", 1);
+		t0.connectCar(cars[0]);
+		t0.connectCar(cars[1]);
+		t0.connectCar(cars[2]);
+		t1.connectCar(cars[3]);
+		t1.connectCar(cars[4]);
+		trains.append(t0.getName(), t0);
+		trains.append(t1.getName(), t1);
+		int[] boarded = {0, 2, 4};
+		Person[] passengers = new Person[boarded.length];
+		for(int i = 0; i < boarded.length; i++) {
+			passengers[i] = new Person("P" + i, i, cars[boarded[i]]);
+			people.append(passengers[i].getName(), passengers[i]);
+		}
+		ByteArrayOutputStream drawn = new ByteArrayOutputStream();
+		WorldRenderer renderer = new WorldRenderer(new PrintStream(drawn, true));
+		boolean same = drawsLikePrintWorld(renderer, drawn, 0, 0, trains, people, decoupledCars);
+		same = same && drawsLikePrintWorld(renderer, drawn, 1, 0, trains, people, decoupledCars);
+		t1.reverseTrain();
+		same = same && drawsLikePrintWorld(renderer, drawn, 2, 1, trains, people, decoupledCars);
+		decoupledCars.append(t0.disconnectCar(cars[1]));
+		same = same && drawsLikePrintWorld(renderer, drawn, 3, 2, trains, people, decoupledCars);
+		same = same && passengers[1].moveToCar(cars[1]);
+		same = same && drawsLikePrintWorld(renderer, drawn, 4, 3, trains, people, decoupledCars);
+		renderer.invalidate();
+		same = same && drawsLikePrintWorld(renderer, drawn, 5, 3, trains, people, decoupledCars);
+		if(same) {
+			System.out.println("Yay 1");
+		}
+
+		//every frame of an interactive run draws the world a fresh replay to its time has
+		File[] logs = new CaseGenerator(17, 3, 24, 40, 60, 6, 1.0).writeTemporary();
+		PrintStream stdout = System.out;
+		InputStream stdin = System.in;
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(printed, true));
+		System.setIn(new ByteArrayInputStream("\n".repeat(1000).getBytes()));
+		String suspects;
+		try {
+			suspects = Simulator.describe(new Simulator(logs[0], logs[1]).simulate("C5", "01:00", true));
+		}
+		finally {
+			System.setOut(stdout);
+			System.setIn(stdin);
+		}
+		String[] frames = printed.toString().split("Hit enter to continue\n");
+		//the first frame is the world before any block, and a train block's frame is followed
+		//by the people block of the same minute, which no replay to a time stops between
+		boolean matched = true;
+		int compared = 0;
+		for(int i = 1; i < frames.length; i++) {
+			if(frames[i].length() < 5 || (i + 1 < frames.length && frames[i + 1].startsWith(frames[i].substring(0, 5)))) {
+				continue;
+			}
+			String[] clock = frames[i].substring(0, 5).split(":");
+			Simulator fresh = new Simulator(logs[0], logs[1]);
+			fresh.moveTo(Integer.parseInt(clock[0]) * 60 + Integer.parseInt(clock[1]));
+			fresh.enableSnapshots();
+			StringBuilder scratch = new StringBuilder();
+			fresh.getSnapshot().render(scratch);
+			fresh.close();
+			matched = matched && frames[i].equals(scratch.toString());
+			compared++;
+		}
+		if(matched && compared > 30 && suspects.equals(Simulator.expectedSuspects(logs[0], logs[1], "C5", "01:00"))) {
+			System.out.println("Yay 2");
+		}
+	}
+}
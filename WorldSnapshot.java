@@ -0,0 +1,690 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An immutable copy of the simulated world as it was after one block of actions.
+ * The simulator publishes a new snapshot after every block it applies, so any number
+ * of other threads can ask who was where, find suspects or draw the world while the
+ * replay carries on, without locks. Consecutive snapshots share every part of the
+ * world that did not change between them: a block of moves only copies the occupants
+ * of the cars that were moved into or out of, and the trains are only copied again
+ * after a train action.
+ */
+final class WorldSnapshot {
+
+	/**
+	 * Shared empty array for cars with nothing in them.
+	 */
+	private static final int[] NONE = new int[0];
+
+	/**
+	 * The names of everything in the world, shared by every snapshot taken while they do not change.
+	 */
+	private static final class Names {
+
+		/**
+		 * The train names, indexed by train id.
+		 */
+		private final String[] trains;
+
+		/**
+		 * The car names, indexed by car id.
+		 */
+		private final String[] cars;
+
+		/**
+		 * The person names, indexed by person id.
+		 */
+		private final String[] people;
+
+		/**
+		 * The car ids by name.
+		 */
+		private final HashMap<String, Integer> carIds = new HashMap<>();
+
+		/**
+		 * The person ids by name.
+		 */
+		private final HashMap<String, Integer> personIds = new HashMap<>();
+
+		/**
+		 * The train ids in the order the simulator lists the trains.
+		 */
+		private final int[] trainOrder;
+
+		/**
+		 * The person ids in the order the simulator lists the people.
+		 */
+		private final int[] personOrder;
+
+		/**
+		 * Constructor for the names class.
+		 * @param trains The train names, indexed by train id.
+		 * @param cars The car names, indexed by car id.
+		 * @param people The person names, indexed by person id.
+		 * @param trainOrder The train ids in listing order.
+		 * @param personOrder The person ids in listing order.
+		 */
+		Names(String[] trains, String[] cars, String[] people, int[] trainOrder, int[] personOrder) {
+			this.trains = trains;
+			this.cars = cars;
+			this.people = people;
+			this.trainOrder = trainOrder;
+			this.personOrder = personOrder;
+			for(int id = 0; id < cars.length; id++) {
+				carIds.put(cars[id], id);
+			}
+			for(int id = 0; id < people.length; id++) {
+				personIds.put(people[id], id);
+			}
+		}
+	}
+
+	/**
+	 * Builds the snapshots of one simulation. It is told which cars and people the
+	 * actions of a block touched, and copies only those into the next snapshot.
+	 * Only the thread replaying the simulation may use it.
+	 */
+	static final class Publisher {
+
+		/**
+		 * The snapshot published last, or null if none has been.
+		 */
+		private volatile WorldSnapshot latest = null;
+
+		/**
+		 * The number of snapshots published.
+		 */
+		private long epoch = 0;
+
+		/**
+		 * Whether a train action happened since the last snapshot.
+		 */
+		private boolean trainsChanged = true;
+
+		/**
+		 * Whether each car (indexed by id) changed occupants since the last snapshot.
+		 */
+		private boolean[] carChanged = new boolean[16];
+
+		/**
+		 * The ids of the cars that changed occupants since the last snapshot.
+		 */
+		private int[] changedCars = new int[16];
+
+		/**
+		 * The number of changed cars.
+		 */
+		private int changedCarCount = 0;
+
+		/**
+		 * Whether each person (indexed by id) moved since the last snapshot.
+		 */
+		private boolean[] personChanged = new boolean[16];
+
+		/**
+		 * The ids of the people that moved since the last snapshot.
+		 */
+		private int[] changedPeople = new int[16];
+
+		/**
+		 * The number of people that moved.
+		 */
+		private int changedPersonCount = 0;
+
+		/**
+		 * Whether the next snapshot has to copy everything.
+		 */
+		private boolean everythingChanged = true;
+
+		/**
+		 * Gets the snapshot published last.
+		 * @return The snapshot, or null if none has been published.
+		 */
+		public WorldSnapshot latest() {
+			return latest;
+		}
+
+		/**
+		 * Records that a train was connected to or disconnected from.
+		 */
+		public void trainChanged() {
+			trainsChanged = true;
+		}
+
+		/**
+		 * Records that a person moved from one car to another.
+		 * @param person The id of the person.
+		 * @param from The id of the car they left.
+		 * @param to The id of the car they got into.
+		 */
+		public void personMoved(int person, int from, int to) {
+			//O(1) amortized
+			if(person >= personChanged.length) {
+				personChanged = Arrays.copyOf(personChanged, Math.max(person + 1, personChanged.length * 2));
+			}
+			if(!personChanged[person]) {
+				personChanged[person] = true;
+				if(changedPersonCount == changedPeople.length) {
+					changedPeople = Arrays.copyOf(changedPeople, changedPersonCount * 2);
+				}
+				changedPeople[changedPersonCount++] = person;
+			}
+			carChanged(from);
+			carChanged(to);
+		}
+
+		/**
+		 * Records that a car changed occupants.
+		 * @param car The id of the car.
+		 */
+		private void carChanged(int car) {
+			if(car >= carChanged.length) {
+				carChanged = Arrays.copyOf(carChanged, Math.max(car + 1, carChanged.length * 2));
+			}
+			if(!carChanged[car]) {
+				carChanged[car] = true;
+				if(changedCarCount == changedCars.length) {
+					changedCars = Arrays.copyOf(changedCars, changedCarCount * 2);
+				}
+				changedCars[changedCarCount++] = car;
+			}
+		}
+
+		/**
+		 * Records that the whole world was replaced, such as by restoring a checkpoint.
+		 */
+		public void everythingChanged() {
+			everythingChanged = true;
+		}
+
+		/**
+		 * Builds the next snapshot from the last one and what changed since, and publishes it.
+		 * @param time The time of the last block applied (-1 if none was).
+		 * @param actions The number of actions applied.
+		 * @param trainNames The train names.
+		 * @param carNames The car names.
+		 * @param personNames The person names.
+		 * @param trainsById The trains, indexed by id and listed in id order.
+		 * @param carsById The cars, indexed by id.
+		 * @param peopleById The people, indexed by id and listed in id order.
+		 * @param decoupledCars The first cars of the decoupled chains.
+		 * @param decoupledCount The number of decoupled chains.
+		 * @return The snapshot.
+		 */
+		public WorldSnapshot publish(int time, long actions, SymbolTable trainNames, SymbolTable carNames,
+				SymbolTable personNames, Train[] trainsById, Car[] carsById, Person[] peopleById,
+				Iterable<Car> decoupledCars, int decoupledCount) {
+			//O(t + c) after a train action, O(c + p + k) after a block of moves where
+			//k=the occupants of the changed cars, the rest is shared with the last snapshot
+			WorldSnapshot previous = latest;
+			boolean all = everythingChanged || previous == null;
+
+			//trains and people are only added while the initial positions are read,
+			//before the first snapshot, so the listing only changes with the names
+			Names names = previous == null ? null : previous.names;
+			if(names == null || names.trains.length != trainNames.size() || names.cars.length != carNames.size()
+					|| names.people.length != personNames.size()) {
+				names = new Names(namesOf(trainNames), namesOf(carNames), namesOf(personNames), idsOf(trainsById), idsOf(peopleById));
+				all = true;
+			}
+			int carCount = names.cars.length;
+
+			int[][] lines;
+			int[] lineOf;
+			int[] positionOf;
+			if(all || trainsChanged) {
+				lines = new int[trainNames.size() + decoupledCount][];
+				lineOf = new int[carCount];
+				positionOf = new int[carCount];
+				Arrays.fill(lineOf, -1);
+				Arrays.fill(positionOf, -1);
+				int line = 0;
+				for(; line < trainNames.size(); line++) {
+					Train t = line < trainsById.length ? trainsById[line] : null;
+					lines[line] = Checkpoint.idsOf(t);
+				}
+				for(Car first : decoupledCars) {
+					lines[line++] = Checkpoint.idsOf(first, -1);
+				}
+				for(line = 0; line < lines.length; line++) {
+					for(int position = 0; position < lines[line].length; position++) {
+						lineOf[lines[line][position]] = line;
+						positionOf[lines[line][position]] = position;
+					}
+				}
+			}
+			else {
+				lines = previous.lines;
+				lineOf = previous.lineOf;
+				positionOf = previous.positionOf;
+			}
+
+			int[][] occupants;
+			int[] carOf;
+			if(all) {
+				occupants = new int[carCount][];
+				for(int id = 0; id < carCount; id++) {
+					occupants[id] = occupantsOf(carsById, id);
+				}
+				carOf = new int[names.people.length];
+				Arrays.fill(carOf, -1);
+				for(int id = 0; id < carCount; id++) {
+					for(int person : occupants[id]) {
+						carOf[person] = id;
+					}
+				}
+			}
+			else {
+				occupants = changedCarCount == 0 ? previous.occupants : previous.occupants.clone();
+				for(int i = 0; i < changedCarCount; i++) {
+					occupants[changedCars[i]] = occupantsOf(carsById, changedCars[i]);
+				}
+				carOf = changedPersonCount == 0 ? previous.carOf : previous.carOf.clone();
+				for(int i = 0; i < changedCarCount; i++) {
+					for(int person : occupants[changedCars[i]]) {
+						carOf[person] = changedCars[i];
+					}
+				}
+			}
+
+			for(int i = 0; i < changedCarCount; i++) {
+				carChanged[changedCars[i]] = false;
+			}
+			for(int i = 0; i < changedPersonCount; i++) {
+				personChanged[changedPeople[i]] = false;
+			}
+			changedCarCount = 0;
+			changedPersonCount = 0;
+			trainsChanged = false;
+			everythingChanged = false;
+
+			WorldSnapshot s = new WorldSnapshot(++epoch, time, actions, names, trainNames.size(), lines, lineOf, positionOf,
+					occupants, carOf);
+			latest = s;
+			return s;
+		}
+
+		/**
+		 * Copies the names out of a symbol table.
+		 * @param symbols The symbol table.
+		 * @return The names, indexed by id.
+		 */
+		private static String[] namesOf(SymbolTable symbols) {
+			String[] names = new String[symbols.size()];
+			for(int id = 0; id < names.length; id++) {
+				names[id] = symbols.name(id);
+			}
+			return names;
+		}
+
+		/**
+		 * Gets the ids that have something in an array indexed by id, in id order.
+		 * @param byId The trains or people, indexed by id.
+		 * @return The ids.
+		 */
+		private static int[] idsOf(Object[] byId) {
+			int count = 0;
+			for(Object o : byId) {
+				if(o != null) {
+					count++;
+				}
+			}
+			int[] ids = new int[count];
+			int i = 0;
+			for(int id = 0; id < byId.length; id++) {
+				if(byId[id] != null) {
+					ids[i++] = id;
+				}
+			}
+			return ids;
+		}
+
+		/**
+		 * Gets the ids of the people in a car.
+		 * @param carsById The cars, indexed by id.
+		 * @param id The id of the car.
+		 * @return The person ids in boarding order.
+		 */
+		private static int[] occupantsOf(Car[] carsById, int id) {
+			Car c = id < carsById.length ? carsById[id] : null;
+			return c == null ? NONE : Checkpoint.idsOf(c.getOccupants());
+		}
+	}
+
+	/**
+	 * The number of snapshots published before and including this one.
+	 */
+	private final long epoch;
+
+	/**
+	 * The time of the last block applied before the snapshot (-1 if none was).
+	 */
+	private final int time;
+
+	/**
+	 * The number of actions applied before the snapshot.
+	 */
+	private final long actions;
+
+	/**
+	 * The names of everything in the world.
+	 */
+	private final Names names;
+
+	/**
+	 * The number of trains; lines past this are decoupled chains.
+	 */
+	private final int trainCount;
+
+	/**
+	 * The car ids of each train (by train id) and then of each decoupled chain, front to back.
+	 */
+	private final int[][] lines;
+
+	/**
+	 * The line each car is in, indexed by car id (-1 for a car that is nowhere).
+	 */
+	private final int[] lineOf;
+
+	/**
+	 * The position of each car in its line, indexed by car id.
+	 */
+	private final int[] positionOf;
+
+	/**
+	 * The person ids in each car in boarding order, indexed by car id.
+	 */
+	private final int[][] occupants;
+
+	/**
+	 * The car each person is in, indexed by person id (-1 for nobody's car).
+	 */
+	private final int[] carOf;
+
+	/**
+	 * Constructor for the world snapshot class.
+	 * @param epoch The number of snapshots published so far.
+	 * @param time The time of the last block applied.
+	 * @param actions The number of actions applied.
+	 * @param names The names of everything in the world.
+	 * @param trainCount The number of trains.
+	 * @param lines The car ids of each train and decoupled chain.
+	 * @param lineOf The line of each car.
+	 * @param positionOf The position of each car in its line.
+	 * @param occupants The person ids in each car.
+	 * @param carOf The car of each person.
+	 */
+	private WorldSnapshot(long epoch, int time, long actions, Names names, int trainCount, int[][] lines, int[] lineOf,
+			int[] positionOf, int[][] occupants, int[] carOf) {
+		this.epoch = epoch;
+		this.time = time;
+		this.actions = actions;
+		this.names = names;
+		this.trainCount = trainCount;
+		this.lines = lines;
+		this.lineOf = lineOf;
+		this.positionOf = positionOf;
+		this.occupants = occupants;
+		this.carOf = carOf;
+	}
+
+	/**
+	 * Gets the number of snapshots published before and including this one.
+	 * @return The epoch.
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Gets the time of the last block applied before the snapshot.
+	 * @return The time in minutes since midnight, or -1 if no block was applied.
+	 */
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets the number of actions applied before the snapshot.
+	 * @return The number of actions.
+	 */
+	public long getActions() {
+		return actions;
+	}
+
+	/**
+	 * Gets the names of the people in a car.
+	 * @param carName The name of the car.
+	 * @return The names in boarding order.
+	 * @throws RuntimeException if there is no such car.
+	 */
+	public String[] getOccupants(String carName) {
+		//O(k) where k=the number of occupants
+		return personNames(occupants[carId(carName)]);
+	}
+
+	/**
+	 * Gets the name of the car a person is in.
+	 * @param personName The name of the person.
+	 * @return The name of the car, or null if the person is in no car.
+	 * @throws RuntimeException if there is no such person.
+	 */
+	public String getCarOf(String personName) {
+		//O(1)
+		Integer id = names.personIds.get(personName);
+		if(id == null) {
+			throw new RuntimeException("No person " + personName);
+		}
+		return carOf[id] == -1 ? null : names.cars[carOf[id]];
+	}
+
+	/**
+	 * Gets the name of the train a car is on.
+	 * @param carName The name of the car.
+	 * @return The name of the train, or null if the car is decoupled.
+	 * @throws RuntimeException if there is no such car.
+	 */
+	public String getTrainOf(String carName) {
+		//O(1)
+		int line = lineOf[carId(carName)];
+		return line == -1 || line >= trainCount ? null : names.trains[line];
+	}
+
+	/**
+	 * Finds the suspects for a murder the same way Simulator.getMurderSuspects does:
+	 * the people in the murder car, or else the people in the nearest occupied cars in
+	 * front of and behind it.
+	 * @param carName The name of the murder car.
+	 * @return The names of the suspects.
+	 * @throws RuntimeException if there is no such car.
+	 */
+	public String[] getMurderSuspects(String carName) {
+		//O(n) where n=the distance to the nearest occupied cars
+		int car = carId(carName);
+		if(occupants[car].length > 0) {
+			return personNames(occupants[car]);
+		}
+		int line = lineOf[car];
+		if(line == -1) {
+			return new String[0];
+		}
+		int[] cars = lines[line];
+		int before = positionOf[car] - 1;
+		while(before >= 0 && occupants[cars[before]].length == 0) {
+			before--;
+		}
+		int after = positionOf[car] + 1;
+		while(after < cars.length && occupants[cars[after]].length == 0) {
+			after++;
+		}
+		int[] front = before >= 0 ? occupants[cars[before]] : NONE;
+		int[] back = after < cars.length ? occupants[cars[after]] : NONE;
+		int[] all = Arrays.copyOf(front, front.length + back.length);
+		System.arraycopy(back, 0, all, front.length, back.length);
+		return personNames(all);
+	}
+
+	/**
+	 * Draws the world as Simulator.printWorld would have at the time of the snapshot.
+	 * @param out The buffer to append to.
+	 */
+	public void render(StringBuilder out) {
+		//O(c + p)
+		int hour = time / 60;
+		int minute = time - (hour * 60);
+		if(hour >= 0 && hour < 10) {
+			out.append('0');
+		}
+		out.append(hour).append(':');
+		if(minute >= 0 && minute < 10) {
+			out.append('0');
+		}
+		out.append(minute).append("\n\nTrains:\n\n");
+		for(int train : names.trainOrder) {
+			int[] cars = lines[train];
+			int start = out.length();
+			out.append(names.trains[train]);
+			while(out.length() - start < 4) {
+				out.append(' ');
+			}
+			out.append("o O___");
+			appendRow(out, cars, " _________");
+			out.append("  _][__|o|");
+			appendNames(out, cars);
+			out.append(" |_______|");
+			appendRow(out, cars, "-|_______|");
+			out.append("  /O-O-O  ");
+			appendRow(out, cars, "   o   o  ");
+			out.append('\n');
+		}
+		out.append("\nDecoupled Cars:\n\n");
+		for(int line = trainCount; line < lines.length; line++) {
+			appendRow(out, lines[line], " _________");
+			appendNames(out, lines[line]);
+			appendRow(out, lines[line], "-|_______|");
+			appendRow(out, lines[line], "   o   o  ");
+			out.append('\n');
+		}
+		out.append("\n\nPeople:\n");
+		for(int person : names.personOrder) {
+			out.append(names.people[person]).append(" on car ").append(carOf[person] == -1 ? null : names.cars[carOf[person]]).append('\n');
+		}
+		out.append('\n');
+	}
+
+	/**
+	 * Appends one ascii row with the same piece for every car.
+	 * @param out The buffer to append to.
+	 * @param cars The car ids.
+	 * @param piece The piece drawn for each car.
+	 */
+	private static void appendRow(StringBuilder out, int[] cars, String piece) {
+		for(int i = 0; i < cars.length; i++) {
+			out.append(piece);
+		}
+		out.append('\n');
+	}
+
+	/**
+	 * Appends the ascii row with the car names.
+	 * @param out The buffer to append to.
+	 * @param cars The car ids.
+	 */
+	private void appendNames(StringBuilder out, int[] cars) {
+		for(int car : cars) {
+			Car.appendName(out, names.cars[car]);
+		}
+		out.append('\n');
+	}
+
+	/**
+	 * Gets the id of a car.
+	 * @param carName The name of the car.
+	 * @return The id.
+	 * @throws RuntimeException if there is no such car.
+	 */
+	private int carId(String carName) {
+		Integer id = names.carIds.get(carName);
+		if(id == null) {
+			throw new RuntimeException("No car " + carName);
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the names of people.
+	 * @param ids The person ids.
+	 * @return The names.
+	 */
+	private String[] personNames(int[] ids) {
+		String[] found = new String[ids.length];
+		for(int i = 0; i < ids.length; i++) {
+			found[i] = names.people[ids[i]];
+		}
+		return found;
+	}
+
+	/**
+	 * Describes a snapshot's suspects the way Simulator.describe does.
+	 * @param suspects The names of the suspects.
+	 * @return The names separated by spaces, or "No suspects!".
+	 */
+	private static String describe(String[] suspects) {
+		return suspects.length == 0 ? "No suspects!" : String.join(" ", suspects);
+	}
+
+	/**
+	 * Main method, checks snapshots kept while the replay carries on against fresh simulations.
+	 * @param args command line arguments.
+	 * @throws IOException if the case can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File[] logs = new CaseGenerator(17, 3, 24, 40, 90, 6, 1.0).writeTemporary();
+		Simulator s = new Simulator(logs[0], logs[1]);
+		s.enableSnapshots();
+		int[] times = {10, 30, 60};
+		WorldSnapshot[] kept = new WorldSnapshot[times.length];
+		String[] drawn = new String[times.length];
+		for(int i = 0; i < times.length; i++) {
+			s.moveTo(times[i]);
+			kept[i] = s.getSnapshot();
+			StringBuilder out = new StringBuilder();
+			kept[i].render(out);
+			drawn[i] = out.toString();
+		}
+		s.moveTo(90);
+		s.close();
+
+		//the kept snapshots still answer for their own time after the replay moved on
+		boolean same = true;
+		for(int i = 0; i < times.length; i++) {
+			String time = String.format("%02d:%02d", times[i] / 60, times[i] % 60);
+			for(int c = 0; c < 24; c++) {
+				same = same && describe(kept[i].getMurderSuspects("C" + c)).equals(Simulator.expectedSuspects(logs[0], logs[1], "C" + c, time));
+			}
+		}
+		if(same) {
+			System.out.println("Yay 1");
+		}
+
+		//and draw the same world as before, which is the world a snapshot built from scratch draws
+		boolean unchanged = true;
+		for(int i = 0; i < times.length; i++) {
+			StringBuilder out = new StringBuilder();
+			kept[i].render(out);
+			Simulator fresh = new Simulator(logs[0], logs[1]);
+			fresh.moveTo(times[i]);
+			fresh.enableSnapshots();
+			StringBuilder scratch = new StringBuilder();
+			fresh.getSnapshot().render(scratch);
+			fresh.close();
+			unchanged = unchanged && out.toString().equals(drawn[i]) && drawn[i].equals(scratch.toString());
+		}
+		if(unchanged && kept[0].getEpoch() < kept[1].getEpoch() && kept[1].getActions() < kept[2].getActions()) {
+			System.out.println("Yay 2");
+		}
+	}
+}
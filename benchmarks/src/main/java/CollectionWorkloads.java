@@ -0,0 +1,117 @@
+import benchmarks.CollectionBenchmarks;
+
+/**
+ * The UniqueList and UniquePairList operations measured by CollectionBenchmarks.
+ */
+class CollectionWorkloads implements CollectionBenchmarks.Workload {
+
+	/**
+	 * The items in the list.
+	 */
+	private Integer[] items;
+
+	/**
+	 * The keys in the pair list, named like cars.
+	 */
+	private String[] keys;
+
+	/**
+	 * A list holding every item.
+	 */
+	private UniqueList<Integer> list;
+
+	/**
+	 * A pair list holding every key with its index as the value.
+	 */
+	private UniquePairList<String,Integer> pairs;
+
+	/**
+	 * The index of the next item to use.
+	 */
+	private int next = 0;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setUp(int size) {
+		items = new Integer[size];
+		keys = new String[size];
+		list = new UniqueList<>();
+		pairs = new UniquePairList<>();
+		for(int i = 0; i < size; i++) {
+			items[i] = i;
+			keys[i] = "Car" + i;
+			list.append(items[i]);
+			pairs.append(keys[i], i);
+		}
+	}
+
+	/**
+	 * Gets the index of the next item, going back to the first after the last.
+	 * @return The index.
+	 */
+	private int nextIndex() {
+		int i = next;
+		next = i + 1 == items.length ? 0 : i + 1;
+		return i;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object uniqueListAppend() {
+		UniqueList<Integer> l = new UniqueList<>();
+		for(Integer item : items) {
+			l.append(item);
+		}
+		return l;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean uniqueListContains() {
+		return list.contains(items[nextIndex()]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object uniqueListGet() {
+		return list.get(items[nextIndex()]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean uniqueListRemoveAppend() {
+		Integer item = items[nextIndex()];
+		return list.remove(item) && list.append(item);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object uniquePairListAppend() {
+		UniquePairList<String,Integer> m = new UniquePairList<>();
+		for(int i = 0; i < keys.length; i++) {
+			m.append(keys[i], items[i]);
+		}
+		return m;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object uniquePairListGetValue() {
+		return pairs.getValue(keys[nextIndex()]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean uniquePairListUpdate() {
+		int i = nextIndex();
+		return pairs.update(keys[i], items[i]);
+	}
+}
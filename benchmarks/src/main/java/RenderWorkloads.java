@@ -0,0 +1,112 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import benchmarks.RenderBenchmarks;
+
+/**
+ * The drawing operations measured by RenderBenchmarks.
+ */
+class RenderWorkloads implements RenderBenchmarks.Workload {
+
+	/**
+	 * The trains by name.
+	 */
+	private final UniquePairList<String,Train> trains = new UniquePairList<>();
+
+	/**
+	 * The people by name.
+	 */
+	private final UniquePairList<String,Person> people = new UniquePairList<>();
+
+	/**
+	 * The trains, indexed by id, as the renderer takes them.
+	 */
+	private Train[] trainsById;
+
+	/**
+	 * The people, indexed by id, as the renderer takes them.
+	 */
+	private Person[] peopleById;
+
+	/**
+	 * The decoupled cars.
+	 */
+	private final UniqueList<Car> decoupledCars = new UniqueList<>();
+
+	/**
+	 * A stream that throws away everything printed to it.
+	 */
+	private final PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+
+	/**
+	 * Draws into nowhere.
+	 */
+	private final WorldRenderer renderer = new WorldRenderer(nowhere);
+
+	/**
+	 * The number of trains.
+	 */
+	private int trainCount;
+
+	/**
+	 * The version of the world, bumped whenever a train is reversed.
+	 */
+	private long version = 0;
+
+	/**
+	 * Picks the trains to reverse.
+	 */
+	private final Random random = new Random(3);
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setUp(int trainCount, int carsPerTrain) {
+		this.trainCount = trainCount;
+		trainsById = new Train[trainCount];
+		peopleById = new Person[trainCount * carsPerTrain];
+		for(int i = 0; i < trainCount; i++) {
+			Train t = new Train("T" + i, i);
+			for(int j = 0; j < carsPerTrain; j++) {
+				Car c = new Car("C" + (i * carsPerTrain + j));
+				t.connectCar(c);
+				Person p = new Person("P" + i + "_" + j, c);
+				people.append(p.getName(), p);
+				peopleById[i * carsPerTrain + j] = p;
+			}
+			trains.append(t.getName(), t);
+			trainsById[i] = t;
+		}
+		decoupledCars.append(new Car("D0"));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void printWorld() {
+		PrintStream stdout = System.out;
+		System.setOut(nowhere);
+		try {
+			Simulator.printWorld(600, trains, people, decoupledCars);
+		}
+		finally {
+			System.setOut(stdout);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void renderUnchanged() {
+		renderer.render(600, version, trainsById, peopleById, decoupledCars);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void renderOneReversed() {
+		trainsById[random.nextInt(trainCount)].reverseTrain();
+		renderer.render(600, ++version, trainsById, peopleById, decoupledCars);
+	}
+}
@@ -0,0 +1,279 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import benchmarks.SimulatorBenchmarks;
+
+/**
+ * The simulator operations measured by SimulatorBenchmarks, on a case written by
+ * CaseGenerator.
+ */
+class SimulatorWorkloads implements SimulatorBenchmarks.Workload {
+
+	/**
+	 * The number of queries suspectsFor answers at once.
+	 */
+	private static final int QUERIES = 1_000;
+
+	/**
+	 * The directory holding the logs.
+	 */
+	private File dir;
+
+	/**
+	 * The train log.
+	 */
+	private File trainFile;
+
+	/**
+	 * The people log.
+	 */
+	private File peopleFile;
+
+	/**
+	 * Both logs compiled into a binary event log.
+	 */
+	private File eventFile;
+
+	/**
+	 * The number of cars.
+	 */
+	private int cars;
+
+	/**
+	 * The number of minutes with actions.
+	 */
+	private int minutes;
+
+	/**
+	 * The last minute with actions ("HH:MM").
+	 */
+	private String end;
+
+	/**
+	 * A simulator replayed to the end.
+	 */
+	private Simulator done;
+
+	/**
+	 * A simulator replayed to the end with a suspect cache.
+	 */
+	private Simulator cached;
+
+	/**
+	 * A simulator replayed to the end with checkpoints every 10 minutes.
+	 */
+	private Simulator checkpointed;
+
+	/**
+	 * A simulator replayed to the end with the occupancy timeline.
+	 */
+	private Simulator indexed;
+
+	/**
+	 * Both logs compiled into an EventProgram.
+	 */
+	private EventProgram.Replay replay;
+
+	/**
+	 * Receives the suspects of the replay.
+	 */
+	private int[] suspectIds;
+
+	/**
+	 * The id of the murder car in the program.
+	 */
+	private int murderCar;
+
+	/**
+	 * The cars of the queries suspectsFor answers.
+	 */
+	private final String[] locations = new String[QUERIES];
+
+	/**
+	 * The times of the queries suspectsFor answers.
+	 */
+	private final String[] times = new String[QUERIES];
+
+	/**
+	 * Picks the cars and times to ask about.
+	 */
+	private final Random random = new Random(7);
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setUp(int cars, int people, int minutes) throws IOException {
+		this.cars = cars;
+		this.minutes = minutes;
+		dir = Files.createTempDirectory("train-bench").toFile();
+		trainFile = new File(dir, "train.txt");
+		peopleFile = new File(dir, "people.txt");
+		eventFile = new File(dir, "case.bin");
+		//half of the people move every minute and one train action happens every minute
+		new CaseGenerator(42, Math.max(1, cars / 100), cars, people, minutes, people / 2, 1.0).write(trainFile, peopleFile);
+		EventLog.compile(trainFile, peopleFile, eventFile);
+		end = time(minutes);
+
+		done = new Simulator(trainFile, peopleFile);
+		done.simulate("C0", end, false);
+		cached = new Simulator(trainFile, peopleFile);
+		cached.enableSuspectCache(1_000);
+		cached.simulate("C0", end, false);
+		checkpointed = new Simulator(trainFile, peopleFile);
+		checkpointed.enableCheckpoints(0, 10, null);
+		checkpointed.suspectsAt("C0", end);
+		indexed = new Simulator(trainFile, peopleFile);
+		indexed.enableTimeline();
+		indexed.timelineSuspects("C0", end);
+
+		EventProgram program = EventProgram.compile(trainFile, peopleFile);
+		replay = new EventProgram.Replay(program);
+		suspectIds = new int[program.personCount()];
+		murderCar = program.carId("C0");
+		for(int i = 0; i < QUERIES; i++) {
+			locations[i] = randomCar();
+			times[i] = randomTime();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void tearDown() {
+		checkpointed.close();
+		indexed.close();
+		eventFile.delete();
+		trainFile.delete();
+		peopleFile.delete();
+		dir.delete();
+	}
+
+	/**
+	 * Formats a time.
+	 * @param minute The time in minutes since midnight.
+	 * @return The time as "HH:MM".
+	 */
+	private static String time(int minute) {
+		return String.format("%02d:%02d", minute / 60, minute % 60);
+	}
+
+	/**
+	 * Picks a random car.
+	 * @return The name of the car.
+	 */
+	private String randomCar() {
+		return "C" + random.nextInt(cars);
+	}
+
+	/**
+	 * Picks a random time with actions.
+	 * @return The time as "HH:MM".
+	 */
+	private String randomTime() {
+		return time(random.nextInt(minutes + 1));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object getMurderSuspects() {
+		return done.getMurderSuspects(randomCar());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object getMurderSuspectsCached() {
+		return cached.getMurderSuspects("C" + random.nextInt(Math.min(cars, 100)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object simulate() throws IOException {
+		return new Simulator(trainFile, peopleFile).simulate("C0", end, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object simulateWithSnapshots() throws IOException {
+		Simulator s = new Simulator(trainFile, peopleFile);
+		s.enableSnapshots();
+		return s.simulate("C0", end, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object simulateMergedSources(int readAhead) throws IOException {
+		return new Simulator(new File[] {trainFile}, new File[] {peopleFile}, readAhead).simulate("C0", end, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object simulateEventLog() throws IOException {
+		return new Simulator(eventFile).simulate("C0", end, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object simulateOffHeap() throws IOException {
+		return new OffHeapWorld().simulate(trainFile, peopleFile, "C0", end);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object compileProgram() throws IOException {
+		return EventProgram.compile(trainFile, peopleFile);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int replayProgram() {
+		replay.reset();
+		replay.runUntil(minutes);
+		return replay.suspectIds(murderCar, suspectIds);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object suspectsAt() {
+		return checkpointed.suspectsAt(randomCar(), randomTime());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object suspectsDuring() {
+		int minute = random.nextInt(Math.max(1, minutes - 59));
+		return checkpointed.suspectsDuring(randomCar(), time(minute), time(minute + 59));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object timelineSuspects() {
+		return indexed.timelineSuspects(randomCar(), randomTime());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object suspectsFor() throws IOException {
+		Simulator s = new Simulator(trainFile, peopleFile);
+		try {
+			return s.suspectsFor(locations, times);
+		}
+		finally {
+			s.close();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+import java.util.Random;
+
+import benchmarks.TrainBenchmarks;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The Train and TreapTrain operations measured by TrainBenchmarks.
+ */
+class TrainWorkloads implements TrainBenchmarks.Workload {
+
+	/**
+	 * A train of cars named C0 to C(n-1), with a person in each end car.
+	 */
+	private Train train;
+
+	/**
+	 * The cars of the train, in their original order.
+	 */
+	private Car[] carsOnTrain;
+
+	/**
+	 * A TreapTrain with as many cars.
+	 */
+	private Train treap;
+
+	/**
+	 * The cars of the TreapTrain, in their original order.
+	 */
+	private Car[] carsOnTreap;
+
+	/**
+	 * Picks the cars to work on.
+	 */
+	private final Random random = new Random(42);
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setUp(int cars) {
+		train = new Train("T", 0);
+		carsOnTrain = new Car[cars];
+		treap = new TreapTrain("T", 0);
+		carsOnTreap = new Car[cars];
+		for(int i = 0; i < cars; i++) {
+			carsOnTrain[i] = new Car("C" + i, i);
+			train.connectCar(carsOnTrain[i]);
+			carsOnTreap[i] = new Car("C" + i, i);
+			treap.connectCar(carsOnTreap[i]);
+		}
+		//a sparse train: only the two end cars have anyone in them
+		new Person("Front", carsOnTrain[0]);
+		new Person("Back", carsOnTrain[cars - 1]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void disconnectConnect() {
+		//cut somewhere in the back half and put the cars back on
+		int n = carsOnTrain.length;
+		Car c = carsOnTrain[n / 2 + random.nextInt(n / 2)];
+		train.connectCar(train.disconnectCar(c));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reverse() {
+		train.reverseTrain();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void treapDisconnectConnect() {
+		int n = carsOnTreap.length;
+		Car c = carsOnTreap[n / 2 + random.nextInt(n / 2)];
+		if(c.getTrain() == treap) {
+			treap.connectCar(treap.disconnectCar(c));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void treapReverse() {
+		treap.reverseTrain();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Object treapGetNext() {
+		return carsOnTreap[random.nextInt(carsOnTreap.length)].getNext();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void nearestOccupied(Blackhole bh) {
+		Car c = carsOnTrain[random.nextInt(carsOnTrain.length)];
+		bh.consume(train.nearestOccupiedBefore(c));
+		bh.consume(train.nearestOccupiedAfter(c));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void walkToOccupied(Blackhole bh) {
+		Car c = carsOnTrain[random.nextInt(carsOnTrain.length)];
+		Car before = c.getPrevious();
+		while(before != null && before.getOccupants().size() == 0) {
+			before = before.getPrevious();
+		}
+		Car after = c.getNext();
+		while(after != null && after.getOccupants().size() == 0) {
+			after = after.getNext();
+		}
+		bh.consume(before);
+		bh.consume(after);
+	}
+}
@@ -0,0 +1,165 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * UniqueList and UniquePairList operations at several sizes. The lookups and
+ * updates work on one item per operation, cycling through every item; the appends
+ * build a whole list per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CollectionBenchmarks {
+
+	/**
+	 * The collection operations, implemented by CollectionWorkloads.
+	 */
+	public interface Workload {
+
+		/**
+		 * Fills a UniqueList and a UniquePairList.
+		 * @param size The number of items in each.
+		 */
+		void setUp(int size);
+
+		/**
+		 * Appends every item to a new UniqueList.
+		 * @return The list.
+		 */
+		Object uniqueListAppend();
+
+		/**
+		 * Checks whether the list holds the next item.
+		 * @return Whether it does.
+		 */
+		boolean uniqueListContains();
+
+		/**
+		 * Gets the next item from the list.
+		 * @return The item.
+		 */
+		Object uniqueListGet();
+
+		/**
+		 * Removes the next item from the list and appends it again.
+		 * @return Whether both worked.
+		 */
+		boolean uniqueListRemoveAppend();
+
+		/**
+		 * Appends every key to a new UniquePairList.
+		 * @return The list.
+		 */
+		Object uniquePairListAppend();
+
+		/**
+		 * Gets the value of the next key.
+		 * @return The value.
+		 */
+		Object uniquePairListGetValue();
+
+		/**
+		 * Updates the value of the next key.
+		 * @return Whether the key was there.
+		 */
+		boolean uniquePairListUpdate();
+	}
+
+	/**
+	 * The number of items in each collection.
+	 */
+	@Param({"1000", "10000", "100000"})
+	public int size;
+
+	/**
+	 * The operations being measured.
+	 */
+	private Workload workload;
+
+	/**
+	 * Fills the collections.
+	 */
+	@Setup
+	public void setUp() {
+		workload = Workloads.load("CollectionWorkloads", Workload.class);
+		workload.setUp(size);
+	}
+
+	/**
+	 * Measures UniqueList.append.
+	 * @return The list.
+	 */
+	@Benchmark
+	public Object uniqueListAppend() {
+		return workload.uniqueListAppend();
+	}
+
+	/**
+	 * Measures UniqueList.contains.
+	 * @return Whether the item was found.
+	 */
+	@Benchmark
+	public boolean uniqueListContains() {
+		return workload.uniqueListContains();
+	}
+
+	/**
+	 * Measures UniqueList.get.
+	 * @return The item.
+	 */
+	@Benchmark
+	public Object uniqueListGet() {
+		return workload.uniqueListGet();
+	}
+
+	/**
+	 * Measures UniqueList.remove followed by UniqueList.append.
+	 * @return Whether both worked.
+	 */
+	@Benchmark
+	public boolean uniqueListRemoveAppend() {
+		return workload.uniqueListRemoveAppend();
+	}
+
+	/**
+	 * Measures UniquePairList.append.
+	 * @return The list.
+	 */
+	@Benchmark
+	public Object uniquePairListAppend() {
+		return workload.uniquePairListAppend();
+	}
+
+	/**
+	 * Measures UniquePairList.getValue.
+	 * @return The value.
+	 */
+	@Benchmark
+	public Object uniquePairListGetValue() {
+		return workload.uniquePairListGetValue();
+	}
+
+	/**
+	 * Measures UniquePairList.update.
+	 * @return Whether the key was there.
+	 */
+	@Benchmark
+	public boolean uniquePairListUpdate() {
+		return workload.uniquePairListUpdate();
+	}
+}
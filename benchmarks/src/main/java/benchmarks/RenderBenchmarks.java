@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Drawing a world of trains, a decoupled car and people with Simulator.printWorld
+ * and with a WorldRenderer, writing to a stream that throws the bytes away.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RenderBenchmarks {
+
+	/**
+	 * The drawing operations, implemented by RenderWorkloads.
+	 */
+	public interface Workload {
+
+		/**
+		 * Builds the world, with one person in every car.
+		 * @param trains The number of trains.
+		 * @param carsPerTrain The number of cars on each train.
+		 */
+		void setUp(int trains, int carsPerTrain);
+
+		/**
+		 * Prints the world with Simulator.printWorld.
+		 */
+		void printWorld();
+
+		/**
+		 * Draws the world again without changing it.
+		 */
+		void renderUnchanged();
+
+		/**
+		 * Reverses a random train and draws the world again.
+		 */
+		void renderOneReversed();
+	}
+
+	/**
+	 * The number of trains.
+	 */
+	@Param({"20"})
+	public int trains;
+
+	/**
+	 * The number of cars on each train.
+	 */
+	@Param({"50"})
+	public int carsPerTrain;
+
+	/**
+	 * The operations being measured.
+	 */
+	private Workload workload;
+
+	/**
+	 * Builds the world.
+	 */
+	@Setup
+	public void setUp() {
+		workload = Workloads.load("RenderWorkloads", Workload.class);
+		workload.setUp(trains, carsPerTrain);
+	}
+
+	/**
+	 * Measures Simulator.printWorld.
+	 */
+	@Benchmark
+	public void printWorld() {
+		workload.printWorld();
+	}
+
+	/**
+	 * Measures WorldRenderer.render of a world that did not change.
+	 */
+	@Benchmark
+	public void renderUnchanged() {
+		workload.renderUnchanged();
+	}
+
+	/**
+	 * Measures WorldRenderer.render after one train was reversed.
+	 */
+	@Benchmark
+	public void renderOneReversed() {
+		workload.renderOneReversed();
+	}
+}
@@ -0,0 +1,307 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The simulator on a generated case: suspect queries on a replayed world, and
+ * full headless simulations through each way of reading and storing the world.
+ * Half of the people move and one train action happens every minute.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SimulatorBenchmarks {
+
+	/**
+	 * The simulator operations, implemented by SimulatorWorkloads.
+	 */
+	public interface Workload {
+
+		/**
+		 * Writes the case to temporary logs and replays the simulators the queries use.
+		 * @param cars The number of cars.
+		 * @param people The number of people.
+		 * @param minutes The number of minutes with actions.
+		 * @throws IOException if the logs can not be written or read.
+		 */
+		void setUp(int cars, int people, int minutes) throws IOException;
+
+		/**
+		 * Closes the simulators and deletes the logs.
+		 */
+		void tearDown();
+
+		/**
+		 * Gets the suspects of a random car at the end of the case.
+		 * @return The suspects.
+		 */
+		Object getMurderSuspects();
+
+		/**
+		 * Gets the suspects of one of 100 cars through a suspect cache.
+		 * @return The suspects.
+		 */
+		Object getMurderSuspectsCached();
+
+		/**
+		 * Runs a headless simulation of the text logs.
+		 * @return The suspects.
+		 * @throws IOException if the logs can not be read.
+		 */
+		Object simulate() throws IOException;
+
+		/**
+		 * Runs a headless simulation that publishes a snapshot after every block.
+		 * @return The suspects.
+		 * @throws IOException if the logs can not be read.
+		 */
+		Object simulateWithSnapshots() throws IOException;
+
+		/**
+		 * Runs a headless simulation of the logs as merged sources.
+		 * @param readAhead The number of blocks read ahead on other threads (0 for none).
+		 * @return The suspects.
+		 * @throws IOException if the logs can not be read.
+		 */
+		Object simulateMergedSources(int readAhead) throws IOException;
+
+		/**
+		 * Runs a headless simulation of the compiled binary event log.
+		 * @return The suspects.
+		 * @throws IOException if the log can not be read.
+		 */
+		Object simulateEventLog() throws IOException;
+
+		/**
+		 * Runs a headless simulation in an OffHeapWorld.
+		 * @return The suspects.
+		 * @throws IOException if the logs can not be read.
+		 */
+		Object simulateOffHeap() throws IOException;
+
+		/**
+		 * Compiles the logs into an EventProgram.
+		 * @return The program.
+		 * @throws IOException if the logs can not be read.
+		 */
+		Object compileProgram() throws IOException;
+
+		/**
+		 * Resets the replay of the compiled program, runs it to the end and gets the
+		 * suspects.
+		 * @return The number of suspects.
+		 */
+		int replayProgram();
+
+		/**
+		 * Gets the suspects of a random car at a random time through checkpoints.
+		 * @return The suspects.
+		 */
+		Object suspectsAt();
+
+		/**
+		 * Gets the suspects of a random car over a random 60 minute window through
+		 * checkpoints.
+		 * @return The suspects.
+		 */
+		Object suspectsDuring();
+
+		/**
+		 * Gets the suspects of a random car at a random time from the occupancy timeline.
+		 * @return The suspects.
+		 */
+		Object timelineSuspects();
+
+		/**
+		 * Answers 1000 random queries in one pass of a new simulator.
+		 * @return The suspects of each query.
+		 * @throws IOException if the logs can not be read.
+		 */
+		Object suspectsFor() throws IOException;
+	}
+
+	/**
+	 * The number of cars, and of people, in the case.
+	 */
+	@Param({"1000", "10000"})
+	public int size;
+
+	/**
+	 * The number of minutes with actions.
+	 */
+	@Param({"600"})
+	public int minutes;
+
+	/**
+	 * The operations being measured.
+	 */
+	private Workload workload;
+
+	/**
+	 * Writes the case and replays the simulators the queries use.
+	 * @throws IOException if the logs can not be written or read.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		workload = Workloads.load("SimulatorWorkloads", Workload.class);
+		workload.setUp(size, size, minutes);
+	}
+
+	/**
+	 * Closes the simulators and deletes the logs.
+	 */
+	@TearDown
+	public void tearDown() {
+		workload.tearDown();
+	}
+
+	/**
+	 * Measures Simulator.getMurderSuspects.
+	 * @return The suspects.
+	 */
+	@Benchmark
+	public Object getMurderSuspects() {
+		return workload.getMurderSuspects();
+	}
+
+	/**
+	 * Measures Simulator.getMurderSuspects with a suspect cache, asking about 100 cars.
+	 * @return The suspects.
+	 */
+	@Benchmark
+	public Object getMurderSuspectsCached() {
+		return workload.getMurderSuspectsCached();
+	}
+
+	/**
+	 * Measures a headless Simulator.simulate.
+	 * @return The suspects.
+	 * @throws IOException if the logs can not be read.
+	 */
+	@Benchmark
+	public Object simulate() throws IOException {
+		return workload.simulate();
+	}
+
+	/**
+	 * Measures a headless Simulator.simulate that publishes snapshots.
+	 * @return The suspects.
+	 * @throws IOException if the logs can not be read.
+	 */
+	@Benchmark
+	public Object simulateWithSnapshots() throws IOException {
+		return workload.simulateWithSnapshots();
+	}
+
+	/**
+	 * Measures a headless Simulator.simulate of merged sources read on this thread.
+	 * @return The suspects.
+	 * @throws IOException if the logs can not be read.
+	 */
+	@Benchmark
+	public Object simulateMergedSources() throws IOException {
+		return workload.simulateMergedSources(0);
+	}
+
+	/**
+	 * Measures a headless Simulator.simulate of merged sources read ahead on other threads.
+	 * @return The suspects.
+	 * @throws IOException if the logs can not be read.
+	 */
+	@Benchmark
+	public Object simulateMergedSourcesReadAhead() throws IOException {
+		return workload.simulateMergedSources(4);
+	}
+
+	/**
+	 * Measures a headless Simulator.simulate of a binary event log.
+	 * @return The suspects.
+	 * @throws IOException if the log can not be read.
+	 */
+	@Benchmark
+	public Object simulateEventLog() throws IOException {
+		return workload.simulateEventLog();
+	}
+
+	/**
+	 * Measures OffHeapWorld.simulate.
+	 * @return The suspects.
+	 * @throws IOException if the logs can not be read.
+	 */
+	@Benchmark
+	public Object simulateOffHeap() throws IOException {
+		return workload.simulateOffHeap();
+	}
+
+	/**
+	 * Measures EventProgram.compile.
+	 * @return The program.
+	 * @throws IOException if the logs can not be read.
+	 */
+	@Benchmark
+	public Object compileProgram() throws IOException {
+		return workload.compileProgram();
+	}
+
+	/**
+	 * Measures EventProgram.Replay reset, runUntil and suspectIds.
+	 * @return The number of suspects.
+	 */
+	@Benchmark
+	public int replayProgram() {
+		return workload.replayProgram();
+	}
+
+	/**
+	 * Measures Simulator.suspectsAt with checkpoints every 10 minutes.
+	 * @return The suspects.
+	 */
+	@Benchmark
+	public Object suspectsAt() {
+		return workload.suspectsAt();
+	}
+
+	/**
+	 * Measures Simulator.suspectsDuring over 60 minutes with checkpoints every 10 minutes.
+	 * @return The suspects.
+	 */
+	@Benchmark
+	public Object suspectsDuring() {
+		return workload.suspectsDuring();
+	}
+
+	/**
+	 * Measures Simulator.timelineSuspects.
+	 * @return The suspects.
+	 */
+	@Benchmark
+	public Object timelineSuspects() {
+		return workload.timelineSuspects();
+	}
+
+	/**
+	 * Measures Simulator.suspectsFor with 1000 queries.
+	 * @return The suspects of each query.
+	 * @throws IOException if the logs can not be read.
+	 */
+	@Benchmark
+	public Object suspectsFor() throws IOException {
+		return workload.suspectsFor();
+	}
+}
@@ -0,0 +1,161 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Connecting, disconnecting and reversing long Trains and TreapTrains, and finding
+ * the nearest occupied cars on a train where only the two end cars have anyone in
+ * them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TrainBenchmarks {
+
+	/**
+	 * The train operations, implemented by TrainWorkloads.
+	 */
+	public interface Workload {
+
+		/**
+		 * Builds a Train and a TreapTrain with a person in each end car of the Train.
+		 * @param cars The number of cars on each.
+		 */
+		void setUp(int cars);
+
+		/**
+		 * Disconnects a random car in the back half of the Train and connects the
+		 * disconnected cars again.
+		 */
+		void disconnectConnect();
+
+		/**
+		 * Reverses the Train.
+		 */
+		void reverse();
+
+		/**
+		 * Disconnects a random car in the back half of the TreapTrain and connects the
+		 * disconnected cars again.
+		 */
+		void treapDisconnectConnect();
+
+		/**
+		 * Reverses the TreapTrain.
+		 */
+		void treapReverse();
+
+		/**
+		 * Gets the car after a random car of the TreapTrain.
+		 * @return The car.
+		 */
+		Object treapGetNext();
+
+		/**
+		 * Finds the nearest occupied cars before and after a random car of the Train
+		 * through the Train.
+		 * @param bh Takes the cars.
+		 */
+		void nearestOccupied(Blackhole bh);
+
+		/**
+		 * Finds the same cars by walking from car to car.
+		 * @param bh Takes the cars.
+		 */
+		void walkToOccupied(Blackhole bh);
+	}
+
+	/**
+	 * The number of cars on each train.
+	 */
+	@Param({"10000", "100000"})
+	public int cars;
+
+	/**
+	 * The operations being measured.
+	 */
+	private Workload workload;
+
+	/**
+	 * Builds the trains.
+	 */
+	@Setup
+	public void setUp() {
+		workload = Workloads.load("TrainWorkloads", Workload.class);
+		workload.setUp(cars);
+	}
+
+	/**
+	 * Measures Train.disconnectCar followed by Train.connectCar.
+	 */
+	@Benchmark
+	public void disconnectConnect() {
+		workload.disconnectConnect();
+	}
+
+	/**
+	 * Measures Train.reverseTrain.
+	 */
+	@Benchmark
+	public void reverse() {
+		workload.reverse();
+	}
+
+	/**
+	 * Measures TreapTrain.disconnectCar followed by TreapTrain.connectCar.
+	 */
+	@Benchmark
+	public void treapDisconnectConnect() {
+		workload.treapDisconnectConnect();
+	}
+
+	/**
+	 * Measures TreapTrain.reverseTrain.
+	 */
+	@Benchmark
+	public void treapReverse() {
+		workload.treapReverse();
+	}
+
+	/**
+	 * Measures Car.getNext on a TreapTrain.
+	 * @return The next car.
+	 */
+	@Benchmark
+	public Object treapGetNext() {
+		return workload.treapGetNext();
+	}
+
+	/**
+	 * Measures Train.nearestOccupiedBefore and Train.nearestOccupiedAfter.
+	 * @param bh Takes the cars.
+	 */
+	@Benchmark
+	public void nearestOccupied(Blackhole bh) {
+		workload.nearestOccupied(bh);
+	}
+
+	/**
+	 * Measures walking Car.getPrevious and Car.getNext to the nearest occupied cars.
+	 * @param bh Takes the cars.
+	 */
+	@Benchmark
+	public void walkToOccupied(Blackhole bh) {
+		workload.walkToOccupied(bh);
+	}
+}
@@ -0,0 +1,36 @@
+package benchmarks;
+
+/**
+ * Loads the work behind a benchmark. JMH refuses benchmark classes in the default
+ * package, and code in a named package can not name the simulator's classes, which
+ * are all in the default package. So each benchmark class declares a Workload
+ * interface and a default-package class of this module implements it with the real
+ * calls; it is found by name once per trial, and the calls go through the interface.
+ */
+public final class Workloads {
+
+	/**
+	 * Constructor for Workloads, nothing creates one.
+	 */
+	private Workloads() {
+	}
+
+	/**
+	 * Creates the default-package class that implements a workload interface.
+	 * @param <T> The workload interface.
+	 * @param className The name of the implementing class.
+	 * @param type The workload interface.
+	 * @return A new instance of the class.
+	 */
+	static <T> T load(String className, Class<T> type) {
+		try {
+			java.lang.reflect.Constructor<?> constructor = Class.forName(className).getDeclaredConstructor();
+			//the classes are package-private like the rest of the default package
+			constructor.setAccessible(true);
+			return type.cast(constructor.newInstance());
+		}
+		catch(ReflectiveOperationException e) {
+			throw new RuntimeException("Can not load the workload " + className, e);
+		}
+	}
+}